@@ -2,6 +2,8 @@ package org.influxdb;
 
 import org.influxdb.dto.Point;
 
+import java.nio.file.Path;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
@@ -21,6 +23,17 @@ public final class BatchOptions implements Cloneable {
   public static final int DEFAULT_BUFFER_LIMIT = 10000;
   public static final TimeUnit DEFAULT_PRECISION = TimeUnit.NANOSECONDS;
   public static final boolean DEFAULT_DROP_ACTIONS_ON_QUEUE_EXHAUSTION = false;
+  public static final int DEFAULT_STRIPES = 1;
+  public static final int DEFAULT_FLUSH_CONCURRENCY = 1;
+  public static final int DEFAULT_MAX_BATCH_BYTES = 0;
+  public static final int DEFAULT_ADAPTIVE_WRITE_LATENCY = 0;
+  public static final long DEFAULT_SPOOL_MAX_BYTES = 1024L * 1024 * 1024;
+  public static final int DEFAULT_SPOOL_SEGMENT_BYTES = 16 * 1024 * 1024;
+  public static final int DEFAULT_INITIAL_RETRY_DELAY = 0;
+  public static final int DEFAULT_MAX_RETRY_DELAY = 30000;
+  public static final boolean DEFAULT_HTTP2_PRIOR_KNOWLEDGE = false;
+  public static final int DEFAULT_MAX_REQUESTS = 0;
+  public static final int DEFAULT_MAX_IDLE_CONNECTIONS = 0;
 
 
   /**
@@ -36,6 +49,24 @@ public final class BatchOptions implements Cloneable {
   private int bufferLimit = DEFAULT_BUFFER_LIMIT;
   private TimeUnit precision = DEFAULT_PRECISION;
   private boolean dropActionsOnQueueExhaustion = DEFAULT_DROP_ACTIONS_ON_QUEUE_EXHAUSTION;
+  private int stripes = DEFAULT_STRIPES;
+  private int flushConcurrency = DEFAULT_FLUSH_CONCURRENCY;
+  private int maxBatchBytes = DEFAULT_MAX_BATCH_BYTES;
+  private int adaptiveWriteLatency = DEFAULT_ADAPTIVE_WRITE_LATENCY;
+  private int maxActions;
+  private Consumer<BatchSizing> batchSizingHandler = (sizing) -> {
+  };
+  private Path spoolDirectory;
+  private long spoolMaxBytes = DEFAULT_SPOOL_MAX_BYTES;
+  private int spoolSegmentBytes = DEFAULT_SPOOL_SEGMENT_BYTES;
+  private Consumer<SpoolDepth> spoolDepthHandler = (depth) -> {
+  };
+  private int initialRetryDelay = DEFAULT_INITIAL_RETRY_DELAY;
+  private int maxRetryDelay = DEFAULT_MAX_RETRY_DELAY;
+  private Executor compressionExecutor;
+  private boolean http2PriorKnowledge = DEFAULT_HTTP2_PRIOR_KNOWLEDGE;
+  private int maxRequests = DEFAULT_MAX_REQUESTS;
+  private int maxIdleConnections = DEFAULT_MAX_IDLE_CONNECTIONS;
   private Consumer<Point> droppedActionHandler = (point) -> {
   };
 
@@ -109,7 +140,8 @@ public final class BatchOptions implements Cloneable {
   }
 
   /**
-   * @param exceptionHandler a consumer function to handle asynchronous errors
+   * @param exceptionHandler a consumer function to handle asynchronous errors. The points of batches dropped
+   *                         after a failed retry or from the spool are decoded from their line protocol
    * @return the BatchOptions instance to be able to use it in a fluent manner.
    */
   public BatchOptions exceptionHandler(final BiConsumer<Iterable<Point>, Throwable> exceptionHandler) {
@@ -166,6 +198,262 @@ public final class BatchOptions implements Cloneable {
     return clone;
   }
 
+  /**
+   * Split the action queue into a number of independent lanes. Every producer thread is pinned to one lane,
+   * so concurrent calls to {@link InfluxDB#write(Point)} do not contend on a single queue lock. All lanes
+   * are drained together on each flush; {@link #actions(int)}, {@link #bufferLimit(int)} and
+   * {@link #dropActionsOnQueueExhaustion(boolean)} apply to the lanes as a whole. If unspecified,
+   * will default to {@value #DEFAULT_STRIPES} (a single queue).
+   *
+   * @param stripes the number of lanes
+   * @return the BatchOptions instance to be able to use it in a fluent manner.
+   */
+  public BatchOptions stripes(final int stripes) {
+    BatchOptions clone = getClone();
+    clone.stripes = stripes;
+    return clone;
+  }
+
+  /**
+   * Set the number of flush workers writing batches to InfluxDB concurrently. With more than one worker the
+   * flushed batches are serialized and sent by a pool of worker threads (created by the
+   * {@link #threadFactory(ThreadFactory)}) instead of the single scheduler thread. At most flushConcurrency
+   * write requests are in flight at any time.
+   * <p>
+   * Batches for the same database and retention policy are always written by the same worker, in the order they
+   * were flushed, so the concurrency only applies across destinations: a client writing to a single database and
+   * retention policy has one write in flight. With a {@link #bufferLimit(int) retry buffer} larger than
+   * {@link #actions(int)} each worker keeps its own share of the retry buffer, the shares add up to the bufferLimit
+   * and every share must hold more than actions points, so there are at most bufferLimit / (actions + 1) workers;
+   * a larger flushConcurrency is reduced to this number. If unspecified, will default to
+   * {@value #DEFAULT_FLUSH_CONCURRENCY}.
+   *
+   * @param flushConcurrency the number of flush workers
+   * @return the BatchOptions instance to be able to use it in a fluent manner.
+   */
+  public BatchOptions flushConcurrency(final int flushConcurrency) {
+    BatchOptions clone = getClone();
+    clone.flushConcurrency = flushConcurrency;
+    return clone;
+  }
+
+  /**
+   * Set the target size of a write request body. The size of the line protocol of the points is estimated
+   * as they are written and a flush is triggered once the pending points reach maxBatchBytes, before
+   * {@link #actions(int) actions} points are collected. The flushed points are split into requests of at most
+   * maxBatchBytes, a single larger point is still written in a request of its own. With a
+   * {@link InfluxDB#setWriteCodec(WriteCodec) compressing codec} the target applies to the compressed body, the
+   * uncompressed size is derived from the compression ratio of the previous requests. If unspecified, will default to
+   * {@value #DEFAULT_MAX_BATCH_BYTES}, which means requests are only limited by the number of points.
+   *
+   * @param maxBatchBytes the target size of a request body in bytes, 0 for no limit
+   * @return the BatchOptions instance to be able to use it in a fluent manner.
+   */
+  public BatchOptions maxBatchBytes(final int maxBatchBytes) {
+    BatchOptions clone = getClone();
+    clone.maxBatchBytes = maxBatchBytes;
+    return clone;
+  }
+
+  /**
+   * Adapt the batch size and the flush duration to the latency of the writes. The {@link #actions(int) actions}
+   * become the initial batch size: every full batch written within the target latency grows the batch size by
+   * a tenth of the actions up to {@link #maxActions(int) maxActions}, a slower or failed write halves it down
+   * to a tenth of the actions. The {@link #flushDuration(int) flushDuration} becomes the longest flush duration,
+   * it is halved while at least half a batch is queued until a timed flush, down to a tenth of the configured
+   * duration, and restored step by step when less than a quarter is queued. Every change is reported to the
+   * {@link #batchSizingHandler(Consumer) batch sizing handler}. If unspecified, will default to
+   * {@value #DEFAULT_ADAPTIVE_WRITE_LATENCY}, which means actions and flushDuration are fixed.
+   *
+   * @param adaptiveWriteLatency the target latency of a write request (milliseconds), 0 to disable
+   * @return the BatchOptions instance to be able to use it in a fluent manner.
+   */
+  public BatchOptions adaptiveWriteLatency(final int adaptiveWriteLatency) {
+    BatchOptions clone = getClone();
+    clone.adaptiveWriteLatency = adaptiveWriteLatency;
+    return clone;
+  }
+
+  /**
+   * Set the largest batch size adaptive batching may choose, see {@link #adaptiveWriteLatency(int)}. The action
+   * queue holds this many actions. If unspecified or smaller than the {@link #actions(int) actions}, the
+   * batch size never exceeds the actions.
+   *
+   * @param maxActions the largest number of actions to collect
+   * @return the BatchOptions instance to be able to use it in a fluent manner.
+   */
+  public BatchOptions maxActions(final int maxActions) {
+    BatchOptions clone = getClone();
+    clone.maxActions = maxActions;
+    return clone;
+  }
+
+  /**
+   * Set a callback for the changes of the batch size and the flush duration made by adaptive batching, see
+   * {@link #adaptiveWriteLatency(int)}. It is called on the thread writing the batches and should not block.
+   *
+   * @param batchSizingHandler the handler of the batch size changes
+   * @return the BatchOptions instance to be able to use it in a fluent manner.
+   */
+  public BatchOptions batchSizingHandler(final Consumer<BatchSizing> batchSizingHandler) {
+    BatchOptions clone = getClone();
+    clone.batchSizingHandler = batchSizingHandler;
+    return clone;
+  }
+
+  /**
+   * Spool failed writes to disk when they no longer fit into the {@link #bufferLimit(int) retry buffer}.
+   * Instead of dropping the oldest failed batches, they are appended to memory-mapped segment files in the
+   * directory and written again, in order and before newer batches, once writes succeed. Spooled batches
+   * that are still there when the client is closed or the process dies are written after the next start
+   * with the same directory. The spool is only used when the bufferLimit is larger than the actions. The
+   * {@link #flushConcurrency(int) flush workers} share the spool, so the spooled batches are written in order
+   * also after a restart with another number of workers, and a worker writes new batches only once the spool is
+   * empty. If unspecified, failed writes are not spooled.
+   *
+   * @param spoolDirectory the directory of the segment files, only used by one client at a time
+   * @return the BatchOptions instance to be able to use it in a fluent manner.
+   */
+  public BatchOptions spoolDirectory(final Path spoolDirectory) {
+    BatchOptions clone = getClone();
+    clone.spoolDirectory = spoolDirectory;
+    return clone;
+  }
+
+  /**
+   * Set the maximum size of the segment files of the spool. A batch that does not fit anymore is handed to
+   * the {@link #exceptionHandler(BiConsumer) exception handler}. If unspecified, will default to
+   * {@value #DEFAULT_SPOOL_MAX_BYTES}.
+   *
+   * @param spoolMaxBytes the maximum number of bytes on disk
+   * @return the BatchOptions instance to be able to use it in a fluent manner.
+   */
+  public BatchOptions spoolMaxBytes(final long spoolMaxBytes) {
+    BatchOptions clone = getClone();
+    clone.spoolMaxBytes = spoolMaxBytes;
+    return clone;
+  }
+
+  /**
+   * Set the size of a segment file of the spool, a file is deleted once all its batches have been written.
+   * If unspecified, will default to {@value #DEFAULT_SPOOL_SEGMENT_BYTES}.
+   *
+   * @param spoolSegmentBytes the size of a segment file in bytes
+   * @return the BatchOptions instance to be able to use it in a fluent manner.
+   */
+  public BatchOptions spoolSegmentBytes(final int spoolSegmentBytes) {
+    BatchOptions clone = getClone();
+    clone.spoolSegmentBytes = spoolSegmentBytes;
+    return clone;
+  }
+
+  /**
+   * Set a callback for the depth of the spool, called whenever batches are spooled or written from the spool.
+   *
+   * @param spoolDepthHandler the handler of the spool depth
+   * @return the BatchOptions instance to be able to use it in a fluent manner.
+   */
+  public BatchOptions spoolDepthHandler(final Consumer<SpoolDepth> spoolDepthHandler) {
+    BatchOptions clone = getClone();
+    clone.spoolDepthHandler = spoolDepthHandler;
+    return clone;
+  }
+
+  /**
+   * Retry failed writes from a retry thread with a jittered exponential backoff instead of on every flush.
+   * The first failed write opens the circuit: new batches go to the {@link #bufferLimit(int) retry buffer}
+   * without a write attempt, so flushes do not wait for a server that is down. The retry thread writes the
+   * buffered batches in order, after this delay for the first retry, doubling it with every further failure
+   * up to the {@link #maxRetryDelay(int) maxRetryDelay}. Half of every delay is random. Once all buffered
+   * batches are written, the circuit closes and batches are written by the flush again. Only used when the
+   * bufferLimit is larger than the actions. If unspecified, failed writes are retried on every flush.
+   *
+   * @param initialRetryDelay the delay of the first retry (milliseconds), 0 to retry on every flush
+   * @return the BatchOptions instance to be able to use it in a fluent manner.
+   */
+  public BatchOptions initialRetryDelay(final int initialRetryDelay) {
+    BatchOptions clone = getClone();
+    clone.initialRetryDelay = initialRetryDelay;
+    return clone;
+  }
+
+  /**
+   * Set the longest delay between retries, see {@link #initialRetryDelay(int)}. If unspecified, will default to
+   * {@value #DEFAULT_MAX_RETRY_DELAY}.
+   *
+   * @param maxRetryDelay the longest delay between retries (milliseconds)
+   * @return the BatchOptions instance to be able to use it in a fluent manner.
+   */
+  public BatchOptions maxRetryDelay(final int maxRetryDelay) {
+    BatchOptions clone = getClone();
+    clone.maxRetryDelay = maxRetryDelay;
+    return clone;
+  }
+
+  /**
+   * Compress the batches of a flush concurrently on an executor while the client compresses its writes, see
+   * {@link InfluxDB#setWriteCodec(WriteCodec)}. Batches are compressed before their write, sent as they are and
+   * kept compressed for their retries and in the spool. The batches are still written in order. The executor is not
+   * shut down by the client. If unspecified, batches are compressed on the thread writing them.
+   *
+   * @param compressionExecutor the executor compressing the batches
+   * @return the BatchOptions instance to be able to use it in a fluent manner.
+   */
+  public BatchOptions compressionExecutor(final Executor compressionExecutor) {
+    BatchOptions clone = getClone();
+    clone.compressionExecutor = compressionExecutor;
+    return clone;
+  }
+
+  /**
+   * Write over cleartext HTTP/2 with prior knowledge (h2c) while batching is enabled. All writes share a single
+   * connection, every request is a stream of its own, so the {@link #flushConcurrency(int) flush workers} and
+   * {@link InfluxDB#writeAsync(org.influxdb.dto.BatchPoints) asynchronous writes} run concurrently without a
+   * connection each. The server, or a proxy in front of it, has to accept HTTP/2 without an upgrade, and the URL
+   * of the client has to be an http URL. If unspecified, will default to
+   * {@value #DEFAULT_HTTP2_PRIOR_KNOWLEDGE}, the protocols of the client are used.
+   *
+   * @param http2PriorKnowledge whether to write over HTTP/2 with prior knowledge
+   * @return the BatchOptions instance to be able to use it in a fluent manner.
+   */
+  public BatchOptions http2PriorKnowledge(final boolean http2PriorKnowledge) {
+    BatchOptions clone = getClone();
+    clone.http2PriorKnowledge = http2PriorKnowledge;
+    return clone;
+  }
+
+  /**
+   * Set the number of write requests executed concurrently while batching is enabled, for the server of the
+   * client as a whole and not just 5 per host like the default dispatcher of OkHttp. It limits the
+   * {@link InfluxDB#writeAsync(org.influxdb.dto.BatchPoints) asynchronous writes} in flight, the further ones
+   * wait in the dispatcher. If unspecified, will default to {@value #DEFAULT_MAX_REQUESTS}, which means the
+   * dispatcher of the client is used, unless {@link #http2PriorKnowledge(boolean) HTTP/2} or
+   * {@link #maxIdleConnections(int)} give the writes a client of their own, with up to 64 concurrent requests.
+   *
+   * @param maxRequests the number of concurrent write requests
+   * @return the BatchOptions instance to be able to use it in a fluent manner.
+   */
+  public BatchOptions maxRequests(final int maxRequests) {
+    BatchOptions clone = getClone();
+    clone.maxRequests = maxRequests;
+    return clone;
+  }
+
+  /**
+   * Set the number of idle connections kept open for writes while batching is enabled. If unspecified, will
+   * default to {@value #DEFAULT_MAX_IDLE_CONNECTIONS}, which means the connection pool of the client is used,
+   * unless {@link #http2PriorKnowledge(boolean) HTTP/2} or {@link #maxRequests(int)} give the writes a client of
+   * their own, keeping one connection with HTTP/2 and a connection per {@link #flushConcurrency(int) flush
+   * worker}, at least 5, otherwise.
+   *
+   * @param maxIdleConnections the number of idle connections kept open
+   * @return the BatchOptions instance to be able to use it in a fluent manner.
+   */
+  public BatchOptions maxIdleConnections(final int maxIdleConnections) {
+    BatchOptions clone = getClone();
+    clone.maxIdleConnections = maxIdleConnections;
+    return clone;
+  }
 
   /**
    * @return actions the number of actions to collect
@@ -239,6 +527,118 @@ public final class BatchOptions implements Cloneable {
     return droppedActionHandler;
   }
 
+  /**
+   * @return the number of lanes the action queue is split into, see {@link BatchOptions#stripes(int)}
+   */
+  public int getStripes() {
+    return stripes;
+  }
+
+  /**
+   * @return the number of flush workers, see {@link BatchOptions#flushConcurrency(int)}
+   */
+  public int getFlushConcurrency() {
+    return flushConcurrency;
+  }
+
+  /**
+   * @return the target size of a request body, see {@link BatchOptions#maxBatchBytes(int)}
+   */
+  public int getMaxBatchBytes() {
+    return maxBatchBytes;
+  }
+
+  /**
+   * @return the target latency of adaptive batching, see {@link BatchOptions#adaptiveWriteLatency(int)}
+   */
+  public int getAdaptiveWriteLatency() {
+    return adaptiveWriteLatency;
+  }
+
+  /**
+   * @return the largest batch size of adaptive batching, see {@link BatchOptions#maxActions(int)}
+   */
+  public int getMaxActions() {
+    return maxActions;
+  }
+
+  /**
+   * @return the handler of the batch size changes, see {@link BatchOptions#batchSizingHandler(Consumer)}
+   */
+  public Consumer<BatchSizing> getBatchSizingHandler() {
+    return batchSizingHandler;
+  }
+
+  /**
+   * @return the directory failed writes are spooled to, null if they are not spooled
+   */
+  public Path getSpoolDirectory() {
+    return spoolDirectory;
+  }
+
+  /**
+   * @return the maximum size of the spool, see {@link BatchOptions#spoolMaxBytes(long)}
+   */
+  public long getSpoolMaxBytes() {
+    return spoolMaxBytes;
+  }
+
+  /**
+   * @return the size of a segment file of the spool, see {@link BatchOptions#spoolSegmentBytes(int)}
+   */
+  public int getSpoolSegmentBytes() {
+    return spoolSegmentBytes;
+  }
+
+  /**
+   * @return the handler of the spool depth, see {@link BatchOptions#spoolDepthHandler(Consumer)}
+   */
+  public Consumer<SpoolDepth> getSpoolDepthHandler() {
+    return spoolDepthHandler;
+  }
+
+  /**
+   * @return the delay of the first retry, see {@link BatchOptions#initialRetryDelay(int)}
+   */
+  public int getInitialRetryDelay() {
+    return initialRetryDelay;
+  }
+
+  /**
+   * @return the longest delay between retries, see {@link BatchOptions#maxRetryDelay(int)}
+   */
+  public int getMaxRetryDelay() {
+    return maxRetryDelay;
+  }
+
+  /**
+   * @return the executor compressing batches, null if they are compressed on the thread writing them
+   */
+  public Executor getCompressionExecutor() {
+    return compressionExecutor;
+  }
+
+  /**
+   * @return whether writes use HTTP/2 with prior knowledge, see {@link BatchOptions#http2PriorKnowledge(boolean)}
+   */
+  public boolean isHttp2PriorKnowledge() {
+    return http2PriorKnowledge;
+  }
+
+  /**
+   * @return the number of concurrent write requests, see {@link BatchOptions#maxRequests(int)}
+   */
+  public int getMaxRequests() {
+    return maxRequests;
+  }
+
+  /**
+   * @return the number of idle connections kept open for writes, see {@link BatchOptions#maxIdleConnections(int)}
+   */
+  public int getMaxIdleConnections() {
+    return maxIdleConnections;
+  }
+
   private BatchOptions getClone() {
     try {
       return (BatchOptions) this.clone();
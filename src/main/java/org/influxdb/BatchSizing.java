@@ -0,0 +1,71 @@
+package org.influxdb;
+
+/**
+ * A change of the batch size or the flush duration chosen by adaptive batching, see
+ * {@link BatchOptions#adaptiveWriteLatency(int)}.
+ */
+public final class BatchSizing {
+
+  /**
+   * Why the batch size or the flush duration changed.
+   */
+  public enum Reason {
+    /** A full batch was written within the target latency, the batch size grows. */
+    WRITE_LATENCY_BELOW_TARGET,
+    /** A write took longer than the target latency, the batch size shrinks. */
+    WRITE_LATENCY_ABOVE_TARGET,
+    /** A write failed, the batch size shrinks. */
+    WRITE_FAILED,
+    /** The queue filled up to at least half a batch within the flush duration, it is shortened. */
+    QUEUE_FILLING,
+    /** Less than a quarter of a batch was queued within the flush duration, it is lengthened again. */
+    QUEUE_DRAINING
+  }
+
+  private final int actions;
+  private final long flushDuration;
+  private final long writeLatency;
+  private final Reason reason;
+
+  public BatchSizing(final int actions, final long flushDuration, final long writeLatency, final Reason reason) {
+    this.actions = actions;
+    this.flushDuration = flushDuration;
+    this.writeLatency = writeLatency;
+    this.reason = reason;
+  }
+
+  /**
+   * @return the number of actions that triggers a flush from now on
+   */
+  public int getActions() {
+    return this.actions;
+  }
+
+  /**
+   * @return the time to wait at most before flushing from now on (milliseconds)
+   */
+  public long getFlushDuration() {
+    return this.flushDuration;
+  }
+
+  /**
+   * @return the duration of the write causing the change (milliseconds), -1 for a change of the flush
+   *         duration
+   */
+  public long getWriteLatency() {
+    return this.writeLatency;
+  }
+
+  /**
+   * @return the reason of the change
+   */
+  public Reason getReason() {
+    return this.reason;
+  }
+
+  @Override
+  public String toString() {
+    return "BatchSizing [actions=" + this.actions + ", flushDuration=" + this.flushDuration + ", writeLatency="
+        + this.writeLatency + ", reason=" + this.reason + "]";
+  }
+}
@@ -0,0 +1,57 @@
+package org.influxdb;
+
+import java.io.IOException;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+
+import okio.GzipSink;
+import okio.Okio;
+import okio.Sink;
+import okio.Source;
+
+/**
+ * The gzip codec with a compression level, see {@link WriteCodec#gzip(int)}.
+ */
+final class GzipCodec implements WriteCodec {
+
+  static final String CONTENT_ENCODING = "gzip";
+
+  private final int level;
+
+  GzipCodec(final int level) {
+    if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+      throw new IllegalArgumentException("Expecting a compression level between -1 and 9 for level");
+    }
+    this.level = level;
+  }
+
+  @Override
+  public String getContentEncoding() {
+    return CONTENT_ENCODING;
+  }
+
+  @Override
+  public int getLevel() {
+    return this.level;
+  }
+
+  @Override
+  public Sink encode(final Sink sink) {
+    GzipSink gzip = new GzipSink(sink);
+    gzip.deflater().setLevel(this.level);
+    return gzip;
+  }
+
+  /**
+   * Decodes all gzip members of the source, unlike {@link okio.GzipSource} reading only the first one.
+   */
+  @Override
+  public Source decode(final Source source) throws IOException {
+    return Okio.source(new GZIPInputStream(Okio.buffer(source).inputStream()));
+  }
+
+  @Override
+  public String toString() {
+    return "gzip(" + this.level + ")";
+  }
+}
@@ -0,0 +1,40 @@
+package org.influxdb;
+
+import okio.Sink;
+import okio.Source;
+
+/**
+ * The codec sending request bodies uncompressed, see {@link WriteCodec#none()}.
+ */
+final class IdentityCodec implements WriteCodec {
+
+  static final IdentityCodec INSTANCE = new IdentityCodec();
+
+  private IdentityCodec() {
+  }
+
+  @Override
+  public String getContentEncoding() {
+    return null;
+  }
+
+  @Override
+  public int getLevel() {
+    return 0;
+  }
+
+  @Override
+  public Sink encode(final Sink sink) {
+    return sink;
+  }
+
+  @Override
+  public Source decode(final Source source) {
+    return source;
+  }
+
+  @Override
+  public String toString() {
+    return "none";
+  }
+}
@@ -1,17 +1,22 @@
 package org.influxdb;
 
 import org.influxdb.dto.BatchPoints;
+import org.influxdb.dto.ColumnarBatch;
+import org.influxdb.dto.ColumnarSeries;
 import org.influxdb.dto.Point;
 import org.influxdb.dto.Pong;
 import org.influxdb.dto.Query;
 import org.influxdb.dto.QueryResult;
+import org.influxdb.dto.Row;
 import retrofit2.Call;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * Interface with all available methods to access a InfluxDB database.
@@ -153,6 +158,33 @@ public interface InfluxDB extends AutoCloseable {
    */
   public boolean isGzipEnabled();
 
+  /**
+   * Set the codec compressing the request bodies of writes, see {@link WriteCodec}. {@link #enableGzip()} is the
+   * same as setting {@link WriteCodec#gzip()}, {@link #disableGzip()} the same as setting {@link WriteCodec#none()}.
+   * The default implementation supports only these two codecs.
+   * @param writeCodec the codec of write request bodies.
+   * @return the InfluxDB instance to be able to use it in a fluent manner.
+   */
+  public default InfluxDB setWriteCodec(final WriteCodec writeCodec) {
+    String contentEncoding = writeCodec.getContentEncoding();
+    if (contentEncoding == null) {
+      return disableGzip();
+    }
+    if (contentEncoding.equals(WriteCodec.gzip().getContentEncoding())) {
+      return enableGzip();
+    }
+    throw new UnsupportedOperationException("The write codec " + contentEncoding + " is not supported by "
+        + getClass().getName() + ", only WriteCodec.none() and WriteCodec.gzip()");
+  }
+
+  /**
+   * Returns the codec compressing the request bodies of writes.
+   * @return the codec of write request bodies, {@link WriteCodec#none()} if they are not compressed.
+   */
+  public default WriteCodec getWriteCodec() {
+    return isGzipEnabled() ? WriteCodec.gzip() : WriteCodec.none();
+  }
+
   /**
    * Enable batching of single Point writes to speed up writes significantly. This is the same as calling
    * InfluxDB.enableBatch(BatchOptions.DEFAULTS)
@@ -331,6 +363,38 @@ public interface InfluxDB extends AutoCloseable {
    */
   public void write(final String database, final String retentionPolicy, final Point point);
 
+  /**
+   * Write the rows of a columnar batch to the default database. With batching enabled the rows are written
+   * together with the other pending points, the batch must not be changed after this call. The default
+   * implementation writes the rows one by one with {@link #write(Point)}.
+   *
+   * @param batch
+   *            The rows to write
+   */
+  public default void write(final ColumnarBatch batch) {
+    for (Point point : batch.toPoints()) {
+      write(point);
+    }
+  }
+
+  /**
+   * Write the rows of a columnar batch to the database. With batching enabled the rows are written together
+   * with the other pending points, the batch must not be changed after this call. The default implementation
+   * writes the rows one by one with {@link #write(String, String, Point)}.
+   *
+   * @param database
+   *            the database to write to.
+   * @param retentionPolicy
+   *            the retentionPolicy to use.
+   * @param batch
+   *            The rows to write
+   */
+  public default void write(final String database, final String retentionPolicy, final ColumnarBatch batch) {
+    for (Point point : batch.toPoints()) {
+      write(database, retentionPolicy, point);
+    }
+  }
+
   /**
    * Write a single Point to the database through UDP.
    *
@@ -440,6 +504,65 @@ public interface InfluxDB extends AutoCloseable {
   public void write(final String database, final String retentionPolicy,
           final ConsistencyLevel consistency, final TimeUnit precision, final List<String> records);
 
+  /**
+   * Write a set of Points to the influxdb database without blocking the calling thread. The request is
+   * enqueued on the dispatcher of the HTTP client, the returned future completes once InfluxDB accepted the
+   * write. It fails with an {@link InfluxDBException} if InfluxDB rejected the write and with an
+   * {@link InfluxDBIOException} if the request could not be sent. Cancelling the future cancels the request.
+   * <p>
+   * Dependent stages without an executor run on the thread of the HTTP client, they should not block. The
+   * default implementation runs the blocking {@link #write(BatchPoints)} in the common fork join pool instead.
+   *
+   * @param batchPoints
+   *            the points to write
+   * @return the future completed when the write is done
+   */
+  public default CompletableFuture<Void> writeAsync(final BatchPoints batchPoints) {
+    return CompletableFuture.runAsync(() -> write(batchPoints));
+  }
+
+  /**
+   * Write a set of Points to the influxdb database with the string records without blocking the calling
+   * thread, see {@link #writeAsync(BatchPoints)}.
+   *
+   * @param database
+   *          the name of the database to write, the database set with {@link #setDatabase(String)} if null
+   * @param retentionPolicy
+   *          the retentionPolicy to use
+   * @param consistency
+   *          the ConsistencyLevel to use
+   * @param precision
+   *          the time precision to use
+   * @param records
+   *            the points in the correct lineprotocol.
+   * @return the future completed when the write is done
+   */
+  public default CompletableFuture<Void> writeAsync(final String database, final String retentionPolicy,
+          final ConsistencyLevel consistency, final TimeUnit precision, final String records) {
+    return CompletableFuture.runAsync(() -> write(database, retentionPolicy, consistency, precision, records));
+  }
+
+  /**
+   * Write a set of Points to the influxdb database with the list of string records without blocking the
+   * calling thread, see {@link #writeAsync(BatchPoints)}.
+   *
+   * @param database
+   *          the name of the database to write, the database set with {@link #setDatabase(String)} if null
+   * @param retentionPolicy
+   *          the retentionPolicy to use
+   * @param consistency
+   *          the ConsistencyLevel to use
+   * @param precision
+   *          the time precision to use
+   * @param records
+   *          the List of points in the correct lineprotocol.
+   * @return the future completed when the write is done
+   */
+  public default CompletableFuture<Void> writeAsync(final String database, final String retentionPolicy,
+          final ConsistencyLevel consistency, final TimeUnit precision, final List<String> records) {
+    return writeAsync(database, retentionPolicy, consistency, precision, String.join("\n", records));
+  }
+
   /**
    * Write a set of Points to the influxdb database with the string records through UDP.
    *
@@ -561,6 +684,49 @@ public interface InfluxDB extends AutoCloseable {
   public void query(Query query, int chunkSize, BiConsumer<Cancellable, QueryResult> onNext, Runnable onComplete,
                     Consumer<Throwable> onFailure);
 
+  /**
+   * Execute a query and stream the rows of its result, see {@link #queryStream(Query, int)}. InfluxDB sends the
+   * result in chunks of 10000 rows.
+   *
+   * @param query
+   *            the query to execute.
+   * @return the rows of the result, must be closed
+   */
+  public default Stream<Row> queryStream(final Query query) {
+    throw new UnsupportedOperationException("queryStream is not supported by " + getClass().getName());
+  }
+
+  /**
+   * Execute a query and stream the rows of its result. The rows are decoded one by one from the response while
+   * the stream is consumed, without building a {@link QueryResult}, so results of any size are read with
+   * bounded memory. The stream keeps the response open until it is consumed or closed, use it in a
+   * try-with-resources statement. Errors reported by InfluxDB are thrown as {@link InfluxDBException} while
+   * the stream is consumed.
+   *
+   * @param query
+   *            the query to execute.
+   * @param chunkSize
+   *            the number of rows InfluxDB sends in one chunk.
+   * @return the rows of the result, must be closed
+   */
+  public default Stream<Row> queryStream(final Query query, final int chunkSize) {
+    throw new UnsupportedOperationException("queryStream is not supported by " + getClass().getName());
+  }
+
+  /**
+   * Execute a query and read its result into columns. The rows are decoded from the chunked response straight
+   * into the primitive and dictionary encoded arrays of a {@link ColumnarSeries} per series, without a
+   * {@link QueryResult} or an object per row. Errors reported by InfluxDB are thrown as
+   * {@link InfluxDBException}.
+   *
+   * @param query
+   *            the query to execute.
+   * @return the series of all statements of the query, in the order of the response
+   */
+  public default List<ColumnarSeries> queryColumnar(final Query query) {
+    throw new UnsupportedOperationException("queryColumnar is not supported by " + getClass().getName());
+  }
+
   /**
    * Execute a query against a database.
    *
@@ -648,6 +814,18 @@ public interface InfluxDB extends AutoCloseable {
    */
   public InfluxDB setConsistency(final ConsistencyLevel consistency);
 
+  /**
+   * Set the options of the writes through UDP. Channels opened with the previous options are closed, so the
+   * options should be set before writing through UDP.
+   *
+   * @param udpOptions
+   *            the UDP options to set.
+   * @return the InfluxDB instance to be able to use it in a fluent manner.
+   */
+  public default InfluxDB setUdpOptions(final UdpOptions udpOptions) {
+    throw new UnsupportedOperationException("UDP options are not supported by " + getClass().getName());
+  }
+
   /**
    * Set the database which is used for writing points.
    *
@@ -0,0 +1,393 @@
+package org.influxdb;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+import org.influxdb.dto.BatchPoints;
+import org.influxdb.dto.Point;
+import org.influxdb.impl.Preconditions;
+
+/**
+ * Subscriber writing a stream of points in batches, with backpressure towards the source of the points.
+ * <p>
+ * The subscriber follows the Reactive Streams protocol: the publisher calls {@link #onSubscribe(Subscription)}
+ * once, then {@link #onNext(Point)} for at most as many points as were requested, and finally
+ * {@link #onComplete()} or {@link #onError(Throwable)}. Points are collected into batches of
+ * {@link BatchOptions#getActions() actions} points, or whatever arrived within the
+ * {@link BatchOptions#getFlushDuration() flush duration}, and written with {@link InfluxDB#writeAsync(BatchPoints)}
+ * one batch after the other. At most {@link BatchOptions#getBufferLimit() bufferLimit} points are requested
+ * ahead, more are only requested once batches have been written, so a slow InfluxDB slows down the source
+ * instead of dropping points or blocking a thread.
+ * <p>
+ * The client targets Java 8 and has no dependency on a Reactive Streams library, {@link Subscription} has the
+ * methods of {@code org.reactivestreams.Subscription} and {@code java.util.concurrent.Flow.Subscription}.
+ * A {@code Flow.Publisher<Point>} is connected with a small adapter:
+ *
+ * <pre>
+ * PointSubscriber writer = PointSubscriber.builder(influxDB).database("telemetry").build();
+ * publisher.subscribe(new Flow.Subscriber&lt;Point&gt;() {
+ *   public void onSubscribe(final Flow.Subscription s) {
+ *     writer.onSubscribe(new PointSubscriber.Subscription() {
+ *       public void request(final long n) { s.request(n); }
+ *       public void cancel() { s.cancel(); }
+ *     });
+ *   }
+ *   public void onNext(final Point point) { writer.onNext(point); }
+ *   public void onError(final Throwable t) { writer.onError(t); }
+ *   public void onComplete() { writer.onComplete(); }
+ * });
+ * writer.completion().join();
+ * </pre>
+ *
+ * Every written or failed batch is reported to the batch listener. When a batch cannot be written the
+ * subscription is cancelled, the points of the failed batch and of all batches not written yet are handed to
+ * the {@link BatchOptions#getExceptionHandler() exception handler} and {@link #completion()} fails with the
+ * cause.
+ */
+public final class PointSubscriber {
+
+  /**
+   * The subscription of a {@link PointSubscriber} to a source of points.
+   */
+  public interface Subscription {
+    /**
+     * Request more points.
+     *
+     * @param n the number of points the subscriber can take in addition to the ones requested before
+     */
+    void request(long n);
+
+    /**
+     * Stop sending points.
+     */
+    void cancel();
+  }
+
+  private final InfluxDB influxDB;
+  private final String database;
+  private final String retentionPolicy;
+  private final BatchOptions options;
+  private final BiConsumer<BatchPoints, Throwable> batchListener;
+  private final CompletableFuture<Void> completion = new CompletableFuture<>();
+
+  // guarded by this
+  private Subscription subscription;
+  private ScheduledExecutorService scheduler;
+  private BatchPoints current;
+  private final Deque<BatchPoints> ready = new ArrayDeque<>();
+  private boolean writing;
+  private boolean upstreamDone;
+  private Throwable upstreamError;
+  private boolean failed;
+  private boolean terminated;
+
+  private PointSubscriber(final Builder builder) {
+    this.influxDB = builder.influxDB;
+    this.database = builder.database;
+    this.retentionPolicy = builder.retentionPolicy;
+    this.options = builder.options;
+    this.batchListener = builder.batchListener;
+    this.current = newBatch();
+  }
+
+  /**
+   * Create a new Builder for a subscriber writing with the given client.
+   *
+   * @param influxDB the client to write the batches with
+   * @return the Builder instance
+   */
+  public static Builder builder(final InfluxDB influxDB) {
+    return new Builder(influxDB);
+  }
+
+  /**
+   * The Builder to create a new PointSubscriber instance.
+   */
+  public static final class Builder {
+    private final InfluxDB influxDB;
+    private String database;
+    private String retentionPolicy;
+    private BatchOptions options = BatchOptions.DEFAULTS;
+    private BiConsumer<BatchPoints, Throwable> batchListener = (batch, throwable) -> {
+    };
+
+    Builder(final InfluxDB influxDB) {
+      this.influxDB = Objects.requireNonNull(influxDB, "influxDB");
+    }
+
+    /**
+     * The database to write to. If unspecified, the default database of the client is used.
+     *
+     * @param database the name of the database
+     * @return the Builder instance
+     */
+    public Builder database(final String database) {
+      this.database = database;
+      return this;
+    }
+
+    /**
+     * The retentionPolicy to use.
+     *
+     * @param policy the retentionPolicy to use
+     * @return the Builder instance
+     */
+    public Builder retentionPolicy(final String policy) {
+      this.retentionPolicy = policy;
+      return this;
+    }
+
+    /**
+     * The batching of the points. The actions, flush duration, buffer limit, precision, consistency, thread
+     * factory and exception handler are used, like by {@link InfluxDB#enableBatch(BatchOptions)}.
+     *
+     * @param options the batch options
+     * @return the Builder instance
+     */
+    public Builder options(final BatchOptions options) {
+      this.options = Objects.requireNonNull(options, "options");
+      return this;
+    }
+
+    /**
+     * A callback for every batch, called with the batch and null once it has been written or with the
+     * cause if the write failed. It is called on the thread that completed the write and should not block.
+     *
+     * @param listener the batch listener
+     * @return the Builder instance
+     */
+    public Builder batchListener(final BiConsumer<BatchPoints, Throwable> listener) {
+      this.batchListener = Objects.requireNonNull(listener, "listener");
+      return this;
+    }
+
+    /**
+     * Create the PointSubscriber.
+     *
+     * @return the PointSubscriber instance
+     */
+    public PointSubscriber build() {
+      Preconditions.checkPositiveNumber(this.options.getActions(), "actions");
+      Preconditions.checkPositiveNumber(this.options.getFlushDuration(), "flushDuration");
+      Preconditions.checkPositiveNumber(this.options.getBufferLimit(), "bufferLimit");
+      return new PointSubscriber(this);
+    }
+  }
+
+  /**
+   * Start receiving points, requests the first {@link BatchOptions#getBufferLimit() bufferLimit} points.
+   * A second subscription is cancelled right away.
+   *
+   * @param s the subscription to the source of the points
+   */
+  public void onSubscribe(final Subscription s) {
+    Objects.requireNonNull(s, "subscription");
+    synchronized (this) {
+      if (this.subscription != null) {
+        s.cancel();
+        return;
+      }
+      this.subscription = s;
+      this.scheduler = Executors.newSingleThreadScheduledExecutor(this.options.getThreadFactory());
+      int flushDuration = this.options.getFlushDuration();
+      this.scheduler.scheduleWithFixedDelay(this::flush, flushDuration, flushDuration, TimeUnit.MILLISECONDS);
+    }
+    s.request(this.options.getBufferLimit());
+  }
+
+  /**
+   * Add a point to the current batch, the batch is written once it holds
+   * {@link BatchOptions#getActions() actions} points.
+   *
+   * @param point the next point
+   */
+  public void onNext(final Point point) {
+    Objects.requireNonNull(point, "point");
+    synchronized (this) {
+      if (this.failed || this.upstreamDone) {
+        return;
+      }
+      this.current.point(point);
+      if (this.current.getPoints().size() >= this.options.getActions()) {
+        seal();
+      }
+    }
+    drain();
+  }
+
+  /**
+   * The source failed, the points received so far are still written before {@link #completion()} fails with
+   * the given cause.
+   *
+   * @param throwable the failure of the source
+   */
+  public void onError(final Throwable throwable) {
+    Objects.requireNonNull(throwable, "throwable");
+    synchronized (this) {
+      this.upstreamError = throwable;
+    }
+    onComplete();
+  }
+
+  /**
+   * The source has no more points, the remaining points are written before {@link #completion()} completes.
+   */
+  public void onComplete() {
+    synchronized (this) {
+      if (this.upstreamDone) {
+        return;
+      }
+      this.upstreamDone = true;
+      seal();
+    }
+    drain();
+  }
+
+  /**
+   * Cancel the subscription, the points received so far are still written.
+   */
+  public void cancel() {
+    Subscription s;
+    synchronized (this) {
+      s = this.subscription;
+    }
+    if (s != null) {
+      s.cancel();
+    }
+    onComplete();
+  }
+
+  /**
+   * @return the future completed when the source completed and all points have been written
+   */
+  public CompletableFuture<Void> completion() {
+    return this.completion;
+  }
+
+  private void flush() {
+    synchronized (this) {
+      if (this.failed || this.upstreamDone) {
+        return;
+      }
+      seal();
+    }
+    drain();
+  }
+
+  /**
+   * Queue the current batch for writing and start a new one, must be called holding the lock.
+   */
+  private void seal() {
+    if (!this.current.getPoints().isEmpty()) {
+      this.ready.add(this.current);
+      this.current = newBatch();
+    }
+  }
+
+  /**
+   * Start writing the next ready batch unless a write is already in flight, so batches are written in order.
+   */
+  private void drain() {
+    BatchPoints next;
+    synchronized (this) {
+      if (this.writing || this.failed || this.terminated) {
+        return;
+      }
+      next = this.ready.poll();
+      if (next == null && this.upstreamDone) {
+        this.terminated = true;
+      }
+      if (next == null) {
+        if (this.terminated) {
+          terminate();
+        }
+        return;
+      }
+      this.writing = true;
+    }
+    try {
+      this.influxDB.writeAsync(next).whenComplete((result, throwable) -> written(next, throwable));
+    } catch (RuntimeException e) {
+      written(next, e);
+    }
+  }
+
+  private void written(final BatchPoints batch, final Throwable throwable) {
+    this.batchListener.accept(batch, throwable);
+    if (throwable != null) {
+      failed(batch, throwable);
+      return;
+    }
+    for (Point point : batch.getPoints()) {
+      point.release();
+    }
+    Subscription s;
+    synchronized (this) {
+      this.writing = false;
+      s = this.subscription;
+      if (this.upstreamDone) {
+        s = null;
+      }
+    }
+    if (s != null) {
+      s.request(batch.getPoints().size());
+    }
+    drain();
+  }
+
+  private void failed(final BatchPoints batch, final Throwable throwable) {
+    Subscription s;
+    List<Point> unwritten = new ArrayList<>(batch.getPoints());
+    synchronized (this) {
+      this.failed = true;
+      this.writing = false;
+      s = this.subscription;
+      for (BatchPoints pending : this.ready) {
+        unwritten.addAll(pending.getPoints());
+      }
+      this.ready.clear();
+      unwritten.addAll(this.current.getPoints());
+      this.current = newBatch();
+      if (this.scheduler != null) {
+        this.scheduler.shutdown();
+      }
+    }
+    if (s != null) {
+      s.cancel();
+    }
+    this.options.getExceptionHandler().accept(unwritten, throwable);
+    this.completion.completeExceptionally(throwable);
+  }
+
+  /**
+   * All points have been written.
+   */
+  private void terminate() {
+    synchronized (this) {
+      if (this.scheduler != null) {
+        this.scheduler.shutdown();
+      }
+    }
+    if (this.upstreamError != null) {
+      this.completion.completeExceptionally(this.upstreamError);
+    } else {
+      this.completion.complete(null);
+    }
+  }
+
+  private BatchPoints newBatch() {
+    return BatchPoints.database(this.database)
+                      .retentionPolicy(this.retentionPolicy)
+                      .consistency(this.options.getConsistency())
+                      .precision(this.options.getPrecision())
+                      .build();
+  }
+}
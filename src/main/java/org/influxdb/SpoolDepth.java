@@ -0,0 +1,56 @@
+package org.influxdb;
+
+import java.nio.file.Path;
+
+/**
+ * The amount of failed writes waiting in a spool directory to be written again, see
+ * {@link BatchOptions#spoolDirectory(Path)}.
+ */
+public final class SpoolDepth {
+
+  private final Path directory;
+  private final long batches;
+  private final long points;
+  private final long bytes;
+
+  public SpoolDepth(final Path directory, final long batches, final long points, final long bytes) {
+    this.directory = directory;
+    this.batches = batches;
+    this.points = points;
+    this.bytes = bytes;
+  }
+
+  /**
+   * @return the directory of the spool
+   */
+  public Path getDirectory() {
+    return this.directory;
+  }
+
+  /**
+   * @return the number of spooled batches
+   */
+  public long getBatches() {
+    return this.batches;
+  }
+
+  /**
+   * @return the number of points in the spooled batches
+   */
+  public long getPoints() {
+    return this.points;
+  }
+
+  /**
+   * @return the number of bytes the spooled batches take in the segment files
+   */
+  public long getBytes() {
+    return this.bytes;
+  }
+
+  @Override
+  public String toString() {
+    return "SpoolDepth [directory=" + this.directory + ", batches=" + this.batches + ", points=" + this.points
+        + ", bytes=" + this.bytes + "]";
+  }
+}
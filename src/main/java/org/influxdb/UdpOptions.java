@@ -0,0 +1,108 @@
+package org.influxdb;
+
+import java.util.function.Consumer;
+
+/**
+ * UdpOptions are used to configure the writes through UDP. See {@link InfluxDB#setUdpOptions(UdpOptions)}
+ */
+public final class UdpOptions implements Cloneable {
+
+  // fits the common ethernet MTU of 1500 bytes after the IP and UDP headers
+  public static final int DEFAULT_PAYLOAD_LIMIT = 1400;
+  // the largest payload of an UDP datagram over IPv4
+  public static final int MAX_PAYLOAD_LIMIT = 65507;
+  public static final int DEFAULT_QUEUE_CAPACITY = 0;
+
+  /**
+   * Default UDP options. This class is immutable, each configuration
+   * is built by taking the DEFAULTS and setting specific configuration
+   * properties.
+   */
+  public static final UdpOptions DEFAULTS = new UdpOptions();
+
+  private int payloadLimit = DEFAULT_PAYLOAD_LIMIT;
+  private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+  private Consumer<UdpQueueDepth> queueDepthHandler = (depth) -> {
+  };
+
+  private UdpOptions() {
+  }
+
+  /**
+   * Set the largest payload of a datagram. As many lines as fit the limit are packed into one datagram, a single
+   * larger line is still sent in a datagram of its own. Raise it up to {@value #MAX_PAYLOAD_LIMIT} for loopback or
+   * networks with jumbo frames. If unspecified, will default to {@value #DEFAULT_PAYLOAD_LIMIT}.
+   *
+   * @param payloadLimit the largest payload of a datagram in bytes
+   * @return the UdpOptions instance to be able to use it in a fluent manner.
+   */
+  public UdpOptions payloadLimit(final int payloadLimit) {
+    if (payloadLimit <= 0 || payloadLimit > MAX_PAYLOAD_LIMIT) {
+      throw new IllegalArgumentException("Expecting a payload limit between 1 and " + MAX_PAYLOAD_LIMIT);
+    }
+    UdpOptions clone = getClone();
+    clone.payloadLimit = payloadLimit;
+    return clone;
+  }
+
+  /**
+   * Send through UDP without blocking the writing threads. The records are put into a lock-free queue of each
+   * port and sent by a dedicated sender thread that packs them into datagrams, records written while the queue
+   * is full are dropped. If unspecified, will default to {@value #DEFAULT_QUEUE_CAPACITY}, which means the
+   * writing threads send the datagrams themselves.
+   *
+   * @param queueCapacity the number of records the queue of a port holds, rounded up to a power of two
+   * @return the UdpOptions instance to be able to use it in a fluent manner.
+   */
+  public UdpOptions queueCapacity(final int queueCapacity) {
+    if (queueCapacity < 0) {
+      throw new IllegalArgumentException("Expecting a non-negative queue capacity");
+    }
+    UdpOptions clone = getClone();
+    clone.queueCapacity = queueCapacity;
+    return clone;
+  }
+
+  /**
+   * Set a callback for the depth of the send queues, called by the sender thread of a port after every round of
+   * sends with the queued records and the records lost so far.
+   *
+   * @param queueDepthHandler the handler of the queue depth
+   * @return the UdpOptions instance to be able to use it in a fluent manner.
+   */
+  public UdpOptions queueDepthHandler(final Consumer<UdpQueueDepth> queueDepthHandler) {
+    UdpOptions clone = getClone();
+    clone.queueDepthHandler = queueDepthHandler;
+    return clone;
+  }
+
+  /**
+   * @return the largest payload of a datagram, see {@link UdpOptions#payloadLimit(int)}
+   */
+  public int getPayloadLimit() {
+    return payloadLimit;
+  }
+
+  /**
+   * @return the number of records the queue of a port holds, see {@link UdpOptions#queueCapacity(int)}
+   */
+  public int getQueueCapacity() {
+    return queueCapacity;
+  }
+
+  /**
+   * @return the handler of the queue depth, see {@link UdpOptions#queueDepthHandler(Consumer)}
+   */
+  public Consumer<UdpQueueDepth> getQueueDepthHandler() {
+    return queueDepthHandler;
+  }
+
+  private UdpOptions getClone() {
+    try {
+      return (UdpOptions) this.clone();
+    } catch (CloneNotSupportedException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+}
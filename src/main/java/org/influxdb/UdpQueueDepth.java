@@ -0,0 +1,54 @@
+package org.influxdb;
+
+/**
+ * The lines waiting in the send queue of an UDP port and the lines lost so far, see
+ * {@link UdpOptions#queueCapacity(int)}.
+ */
+public final class UdpQueueDepth {
+
+  private final int udpPort;
+  private final int queued;
+  private final long dropped;
+  private final long failedSends;
+
+  public UdpQueueDepth(final int udpPort, final int queued, final long dropped, final long failedSends) {
+    this.udpPort = udpPort;
+    this.queued = queued;
+    this.dropped = dropped;
+    this.failedSends = failedSends;
+  }
+
+  /**
+   * @return the UDP port of the queue
+   */
+  public int getUdpPort() {
+    return this.udpPort;
+  }
+
+  /**
+   * @return the number of records waiting to be sent
+   */
+  public int getQueued() {
+    return this.queued;
+  }
+
+  /**
+   * @return the number of records dropped so far because the queue was full
+   */
+  public long getDropped() {
+    return this.dropped;
+  }
+
+  /**
+   * @return the number of datagrams that could not be sent so far
+   */
+  public long getFailedSends() {
+    return this.failedSends;
+  }
+
+  @Override
+  public String toString() {
+    return "UdpQueueDepth [udpPort=" + this.udpPort + ", queued=" + this.queued + ", dropped=" + this.dropped
+        + ", failedSends=" + this.failedSends + "]";
+  }
+}
@@ -0,0 +1,79 @@
+package org.influxdb;
+
+import java.io.IOException;
+import java.util.zip.Deflater;
+
+import okio.Sink;
+import okio.Source;
+
+/**
+ * The compression of the request bodies of writes, see {@link InfluxDB#setWriteCodec(WriteCodec)}.
+ * <p>
+ * Besides the built-in codecs, a codec for any Content-Encoding the server or a proxy in front of it accepts can
+ * be implemented. The payloads of batches written again after a failure are concatenated when the batches are
+ * merged, so the encoding must decode concatenated payloads as a single stream, like gzip members or zstd frames
+ * do. Codecs are used by several threads at once, every call of {@link #encode(Sink)} must be independent.
+ */
+public interface WriteCodec {
+
+  /**
+   * @return the Content-Encoding of the encoded request bodies, null if they are sent as they are
+   */
+  String getContentEncoding();
+
+  /**
+   * @return the compression level, its meaning depends on the codec
+   */
+  int getLevel();
+
+  /**
+   * Wrap a sink to encode what is written to the returned sink. Closing the returned sink writes the end of the
+   * encoded stream and closes the given sink.
+   *
+   * @param sink the sink receiving the encoded bytes
+   * @return the sink encoding what is written to it
+   * @throws IOException if the encoding cannot be started
+   */
+  Sink encode(Sink sink) throws IOException;
+
+  /**
+   * Wrap a source to decode what is read from it, used to read back encoded batches.
+   *
+   * @param source the source of encoded bytes
+   * @return the source of decoded bytes
+   * @throws IOException if the decoding cannot be started
+   */
+  Source decode(Source source) throws IOException;
+
+  /**
+   * @return the codec sending request bodies as they are, streamed without buffering the encoded body
+   */
+  static WriteCodec none() {
+    return IdentityCodec.INSTANCE;
+  }
+
+  /**
+   * @return gzip with the default compression level of {@link Deflater}
+   */
+  static WriteCodec gzip() {
+    return gzip(Deflater.DEFAULT_COMPRESSION);
+  }
+
+  /**
+   * @param level the compression level from 0 (no compression) to 9 (best compression), or -1 for the default
+   * @return gzip with the given compression level
+   */
+  static WriteCodec gzip(final int level) {
+    return new GzipCodec(level);
+  }
+
+  /**
+   * A gzip stream any InfluxDB accepts, compressed with the fastest level of {@link Deflater}. It needs a
+   * fraction of the CPU time of the default level for line protocol, at a somewhat lower compression ratio.
+   *
+   * @return the fastest gzip codec
+   */
+  static WriteCodec fast() {
+    return gzip(Deflater.BEST_SPEED);
+  }
+}
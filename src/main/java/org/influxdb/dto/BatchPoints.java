@@ -1,5 +1,6 @@
 package org.influxdb.dto;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -11,6 +12,8 @@ import java.util.concurrent.TimeUnit;
 
 import org.influxdb.InfluxDB.ConsistencyLevel;
 
+import okio.BufferedSink;
+
 /**
  * {Purpose of This Type}.
  *
@@ -24,6 +27,7 @@ public class BatchPoints {
   private String retentionPolicy;
   private Map<String, String> tags;
   private List<Point> points;
+  private List<ColumnarBatch> columnarBatches = new ArrayList<>();
   private ConsistencyLevel consistency;
   private TimeUnit precision;
 
@@ -59,6 +63,7 @@ public class BatchPoints {
     private String retentionPolicy;
     private final Map<String, String> tags = new TreeMap<>();
     private final List<Point> points = new ArrayList<>();
+    private final List<ColumnarBatch> columnarBatches = new ArrayList<>();
     private ConsistencyLevel consistency;
     private TimeUnit precision;
 
@@ -127,6 +132,17 @@ public class BatchPoints {
       return this;
     }
 
+    /**
+     * Add the rows of a columnar batch to this set of points.
+     *
+     * @param batch the ColumnarBatch to add
+     * @return the Builder instance
+     */
+    public Builder columnarBatch(final ColumnarBatch batch) {
+      this.columnarBatches.add(Objects.requireNonNull(batch, "batch"));
+      return this;
+    }
+
     /**
      * Set the ConsistencyLevel to use. If not given it defaults to {@link ConsistencyLevel#ONE}
      *
@@ -157,9 +173,10 @@ public class BatchPoints {
       BatchPoints batchPoints = new BatchPoints();
       batchPoints.setDatabase(this.database);
       for (Point point : this.points) {
-        point.getTags().putAll(this.tags);
+        point.addTags(this.tags);
       }
       batchPoints.setPoints(this.points);
+      batchPoints.columnarBatches.addAll(this.columnarBatches);
       batchPoints.setRetentionPolicy(this.retentionPolicy);
       batchPoints.setTags(this.tags);
       if (null == this.consistency) {
@@ -240,11 +257,30 @@ public class BatchPoints {
    * @return this Instance to be able to daisy chain calls.
    */
   public BatchPoints point(final Point point) {
-    point.getTags().putAll(this.tags);
+    point.addTags(this.tags);
     this.points.add(point);
     return this;
   }
 
+  /**
+   * Add the rows of a columnar batch to these batches. The tags of this BatchPoints are added to every row
+   * when the line protocol is written.
+   *
+   * @param batch the ColumnarBatch to add
+   * @return this Instance to be able to daisy chain calls.
+   */
+  public BatchPoints columnarBatch(final ColumnarBatch batch) {
+    this.columnarBatches.add(Objects.requireNonNull(batch, "batch"));
+    return this;
+  }
+
+  /**
+   * @return the columnar batches
+   */
+  public List<ColumnarBatch> getColumnarBatches() {
+    return this.columnarBatches;
+  }
+
   /**
    * @return the tags
    */
@@ -288,13 +324,14 @@ public class BatchPoints {
             && Objects.equals(retentionPolicy, that.retentionPolicy)
             && Objects.equals(tags, that.tags)
             && Objects.equals(points, that.points)
+            && Objects.equals(columnarBatches, that.columnarBatches)
             && consistency == that.consistency
             && precision == that.precision;
   }
 
   @Override
   public int hashCode() {
-    return Objects.hash(database, retentionPolicy, tags, points, consistency, precision);
+    return Objects.hash(database, retentionPolicy, tags, points, columnarBatches, consistency, precision);
   }
 
   /**
@@ -315,13 +352,15 @@ public class BatchPoints {
            .append(this.precision)
            .append(", points=")
            .append(this.points)
+           .append(", columnarBatches=")
+           .append(this.columnarBatches)
            .append("]");
     return builder.toString();
   }
 
   // measurement[,tag=value,tag2=value2...] field=value[,field2=value2...] [unixnano]
   /**
-   * calculate the lineprotocol for all Points.
+   * calculate the lineprotocol for all Points, followed by the rows of the columnar batches.
    *
    * @return the String with newLines.
    */
@@ -331,9 +370,29 @@ public class BatchPoints {
     for (Point point : this.points) {
       sb.append(point.lineProtocol(this.precision)).append("\n");
     }
+    for (ColumnarBatch batch : this.columnarBatches) {
+      sb.append(batch.lineProtocol(this.precision, this.tags));
+    }
     return sb.toString();
   }
 
+  /**
+   * Write the lineprotocol for all Points as UTF-8 into the given sink. The written bytes are the same as
+   * the UTF-8 encoding of {@link #lineProtocol()}, without building the whole batch as a String first.
+   *
+   * @param sink the sink to write the lines to
+   * @throws IOException if the sink cannot be written
+   */
+  public void lineProtocol(final BufferedSink sink) throws IOException {
+    for (Point point : this.points) {
+      point.lineProtocol(sink, this.precision);
+      sink.writeByte('\n');
+    }
+    for (ColumnarBatch batch : this.columnarBatches) {
+      batch.lineProtocol(sink, this.precision, this.tags);
+    }
+  }
+
   /**
    * Test whether is possible to merge two BatchPoints objects.
    *
@@ -357,6 +416,7 @@ public class BatchPoints {
     boolean mergeAble = isMergeAbleWith(that);
     if (mergeAble) {
       this.points.addAll(that.points);
+      this.columnarBatches.addAll(that.columnarBatches);
     }
     return mergeAble;
   }
@@ -0,0 +1,766 @@
+package org.influxdb.dto;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.influxdb.impl.Preconditions;
+
+import okio.Buffer;
+import okio.BufferedSink;
+
+/**
+ * Rows of a single measurement stored column by column, for producers writing many points of the same shape.
+ * <p>
+ * The {@link Schema} fixes the measurement, the tag columns and the typed field columns, their escaped names
+ * are computed once. Every row holds a timestamp, a value per tag column and optionally a value per field
+ * column, kept in primitive arrays without a {@link Point} per row. The rows are written to line protocol in a
+ * single loop over the columns.
+ *
+ * <pre>
+ * ColumnarBatch.Schema schema = ColumnarBatch.Schema.measurement("cpu")
+ *     .tag("host")
+ *     .field("idle", ColumnarBatch.FieldType.DOUBLE)
+ *     .build();
+ * ColumnarBatch batch = ColumnarBatch.builder(schema).precision(TimeUnit.MILLISECONDS).build();
+ * for (Sample sample : samples) {
+ *   int row = batch.addRow(sample.time);
+ *   batch.setTag(row, 0, sample.host);
+ *   batch.setDouble(row, 0, sample.idle);
+ * }
+ * influxDB.write(batch);
+ * </pre>
+ *
+ * A batch is not thread safe. Once handed to the client for writing it must not be changed anymore.
+ */
+public final class ColumnarBatch {
+
+  /**
+   * The type of a field column.
+   */
+  public enum FieldType {
+    /** Integer values, written with the {@code i} suffix. */
+    LONG,
+    /** Floating point values, NaN and infinity are not written. */
+    DOUBLE,
+    /** Boolean values. */
+    BOOLEAN,
+    /** String values. */
+    STRING
+  }
+
+  private static final int DEFAULT_CAPACITY = 64;
+  private static final int WORD_SHIFT = 6;
+
+  private final Schema schema;
+  private final TimeUnit precision;
+  private long[] times;
+  private final String[][] tagValues;
+  private final long[][] fieldValues;
+  private final String[][] stringValues;
+  private final long[][] fieldsSet;
+  private int rowCount;
+
+  private ColumnarBatch(final Schema schema, final TimeUnit precision, final int capacity) {
+    this.schema = schema;
+    this.precision = precision;
+    this.times = new long[capacity];
+    this.tagValues = new String[schema.tagNames.length][capacity];
+    int fieldCount = schema.fieldNames.length;
+    this.fieldValues = new long[fieldCount][];
+    this.stringValues = new String[fieldCount][];
+    this.fieldsSet = new long[fieldCount][words(capacity)];
+    for (int i = 0; i < fieldCount; i++) {
+      if (schema.fieldTypes[i] == FieldType.STRING) {
+        this.stringValues[i] = new String[capacity];
+      } else {
+        this.fieldValues[i] = new long[capacity];
+      }
+    }
+  }
+
+  /**
+   * Create a new Builder for a batch of the given schema.
+   *
+   * @param schema the measurement, tags and fields of the rows
+   * @return the Builder instance
+   */
+  public static Builder builder(final Schema schema) {
+    return new Builder(schema);
+  }
+
+  /**
+   * The Builder to create a new ColumnarBatch instance.
+   */
+  public static final class Builder {
+    private final Schema schema;
+    private TimeUnit precision = TimeUnit.NANOSECONDS;
+    private int capacity = DEFAULT_CAPACITY;
+
+    Builder(final Schema schema) {
+      this.schema = Objects.requireNonNull(schema, "schema");
+    }
+
+    /**
+     * Set the time unit of the row timestamps. If unspecified, will default to {@link TimeUnit#NANOSECONDS}.
+     *
+     * @param precision the time unit of the timestamps given to {@link ColumnarBatch#addRow(long)}
+     * @return the Builder instance
+     */
+    public Builder precision(final TimeUnit precision) {
+      this.precision = Objects.requireNonNull(precision, "precision");
+      return this;
+    }
+
+    /**
+     * Set the number of rows the columns are allocated for, they grow when more rows are added.
+     *
+     * @param capacity the initial number of rows
+     * @return the Builder instance
+     */
+    public Builder capacity(final int capacity) {
+      Preconditions.checkPositiveNumber(capacity, "capacity");
+      this.capacity = capacity;
+      return this;
+    }
+
+    /**
+     * Create a new ColumnarBatch instance.
+     *
+     * @return the created ColumnarBatch
+     */
+    public ColumnarBatch build() {
+      return new ColumnarBatch(this.schema, this.precision, this.capacity);
+    }
+  }
+
+  /**
+   * @return the schema of the rows
+   */
+  public Schema getSchema() {
+    return this.schema;
+  }
+
+  /**
+   * @return the time unit of the row timestamps
+   */
+  public TimeUnit getPrecision() {
+    return this.precision;
+  }
+
+  /**
+   * @return the number of rows
+   */
+  public int getRowCount() {
+    return this.rowCount;
+  }
+
+  /**
+   * Add a row without tags and fields.
+   *
+   * @param time the timestamp of the row, in the precision of this batch
+   * @return the index of the new row
+   */
+  public int addRow(final long time) {
+    if (this.rowCount == this.times.length) {
+      grow();
+    }
+    int row = this.rowCount++;
+    this.times[row] = time;
+    return row;
+  }
+
+  /**
+   * Set the value of a tag column. An empty value leaves the tag out of the row, like
+   * {@link Point.Builder#tag(String, String)}.
+   *
+   * @param row the index of the row
+   * @param column the index of the tag column, see {@link Schema#tagIndex(String)}
+   * @param value the tag value
+   * @return this instance
+   */
+  public ColumnarBatch setTag(final int row, final int column, final String value) {
+    Objects.requireNonNull(value, "value");
+    checkRow(row);
+    this.tagValues[column][row] = value;
+    return this;
+  }
+
+  /**
+   * Set the value of a {@link FieldType#LONG} field column.
+   *
+   * @param row the index of the row
+   * @param column the index of the field column, see {@link Schema#fieldIndex(String)}
+   * @param value the field value
+   * @return this instance
+   */
+  public ColumnarBatch setLong(final int row, final int column, final long value) {
+    setField(row, column, FieldType.LONG, value);
+    return this;
+  }
+
+  /**
+   * Set the value of a {@link FieldType#DOUBLE} field column.
+   *
+   * @param row the index of the row
+   * @param column the index of the field column, see {@link Schema#fieldIndex(String)}
+   * @param value the field value
+   * @return this instance
+   */
+  public ColumnarBatch setDouble(final int row, final int column, final double value) {
+    setField(row, column, FieldType.DOUBLE, Double.doubleToRawLongBits(value));
+    return this;
+  }
+
+  /**
+   * Set the value of a {@link FieldType#BOOLEAN} field column.
+   *
+   * @param row the index of the row
+   * @param column the index of the field column, see {@link Schema#fieldIndex(String)}
+   * @param value the field value
+   * @return this instance
+   */
+  public ColumnarBatch setBoolean(final int row, final int column, final boolean value) {
+    long bits = 0;
+    if (value) {
+      bits = 1;
+    }
+    setField(row, column, FieldType.BOOLEAN, bits);
+    return this;
+  }
+
+  /**
+   * Set the value of a {@link FieldType#STRING} field column.
+   *
+   * @param row the index of the row
+   * @param column the index of the field column, see {@link Schema#fieldIndex(String)}
+   * @param value the field value
+   * @return this instance
+   */
+  public ColumnarBatch setString(final int row, final int column, final String value) {
+    Objects.requireNonNull(value, "value");
+    checkRow(row);
+    checkType(column, FieldType.STRING);
+    this.stringValues[column][row] = value;
+    markSet(column, row);
+    return this;
+  }
+
+  /**
+   * Remove all rows, keeping the allocated columns for the next rows.
+   */
+  public void clear() {
+    for (String[] column : this.tagValues) {
+      Arrays.fill(column, 0, this.rowCount, null);
+    }
+    for (String[] column : this.stringValues) {
+      if (column != null) {
+        Arrays.fill(column, 0, this.rowCount, null);
+      }
+    }
+    for (long[] set : this.fieldsSet) {
+      Arrays.fill(set, 0);
+    }
+    this.rowCount = 0;
+  }
+
+  /**
+   * Create a Point for each row that has fields, for example to report the rows of a failed write.
+   *
+   * @return the points, in row order
+   */
+  public List<Point> toPoints() {
+    List<Point> points = new ArrayList<>(this.rowCount);
+    for (int row = 0; row < this.rowCount; row++) {
+      if (!hasFields(row)) {
+        continue;
+      }
+      Point.Builder builder = Point.measurement(this.schema.measurement).time(this.times[row], this.precision);
+      for (int column = 0; column < this.tagValues.length; column++) {
+        String value = this.tagValues[column][row];
+        if (value != null) {
+          builder.tag(this.schema.tagNames[column], value);
+        }
+      }
+      for (int column = 0; column < this.fieldValues.length; column++) {
+        if (!isSet(column, row)) {
+          continue;
+        }
+        String name = this.schema.fieldNames[column];
+        long bits = longValue(column, row);
+        switch (this.schema.fieldTypes[column]) {
+          case LONG:
+            builder.addField(name, bits);
+            break;
+          case DOUBLE:
+            builder.addField(name, Double.longBitsToDouble(bits));
+            break;
+          case BOOLEAN:
+            builder.addField(name, bits != 0);
+            break;
+          default:
+            builder.addField(name, this.stringValues[column][row]);
+        }
+      }
+      points.add(builder.build());
+    }
+    return points;
+  }
+
+  /**
+   * Calculate the lineprotocol of all rows, with the timestamps in nanoseconds.
+   *
+   * @return the String with a newLine after every row, rows without fields are left out
+   */
+  public String lineProtocol() {
+    return lineProtocol(TimeUnit.NANOSECONDS, Collections.emptyMap());
+  }
+
+  String lineProtocol(final TimeUnit targetPrecision, final Map<String, String> extraTags) {
+    Buffer buffer = new Buffer();
+    try {
+      lineProtocol(buffer, targetPrecision, extraTags);
+    } catch (IOException e) {
+      // a Buffer is written in memory
+      throw new UncheckedIOException(e);
+    }
+    return buffer.readUtf8();
+  }
+
+  /**
+   * Write the lineprotocol of all rows as UTF-8 into the given sink, with a newLine after every row.
+   *
+   * @param sink the sink to write the lines to
+   * @param targetPrecision the time unit of the written timestamps
+   * @param extraTags tags added to every row, they replace row tags of the same name like the tags of a
+   *        {@link BatchPoints} replace the tags of its points
+   * @throws IOException if the sink cannot be written
+   */
+  void lineProtocol(final BufferedSink sink, final TimeUnit targetPrecision, final Map<String, String> extraTags)
+      throws IOException {
+    TagLayout layout = this.schema.tagLayout;
+    if (!extraTags.isEmpty()) {
+      layout = this.schema.tagLayout(extraTags);
+    }
+    TimeUnit target = targetPrecision;
+    if (target == null) {
+      target = TimeUnit.NANOSECONDS;
+    }
+    for (int row = 0; row < this.rowCount; row++) {
+      if (!hasWritableFields(row)) {
+        continue;
+      }
+      sink.write(this.schema.measurementBytes);
+      tags(sink, layout, row);
+      sink.writeByte(' ');
+      fields(sink, row);
+      sink.writeByte(' ');
+      sink.writeDecimalLong(target.convert(this.times[row], this.precision));
+      sink.writeByte('\n');
+    }
+  }
+
+  /**
+   * Estimate the size of the lineprotocol of all rows without writing it, like
+   * {@link Point#estimatedLineProtocolBytes()} does for a point.
+   *
+   * @return the estimated number of bytes of the lines of the rows with fields
+   */
+  public long estimatedLineProtocolBytes() {
+    TagLayout layout = this.schema.tagLayout;
+    long bytes = 0;
+    for (int row = 0; row < this.rowCount; row++) {
+      if (!hasWritableFields(row)) {
+        continue;
+      }
+      // the space in front of the fields, the last field separator stands for the newLine
+      bytes += this.schema.measurementBytes.length + 1 + Point.TIME_ESTIMATE_BYTES;
+      for (int i = 0; i < layout.prefixes.length; i++) {
+        String value = this.tagValues[layout.columns[i]][row];
+        if (value != null && !value.isEmpty()) {
+          bytes += layout.prefixes[i].length + value.length();
+        }
+      }
+      for (int column = 0; column < this.fieldValues.length; column++) {
+        if (isWritableField(column, row)) {
+          // the field separator
+          bytes += this.schema.fieldPrefixes[column].length + 1 + estimatedFieldBytes(column, row);
+        }
+      }
+    }
+    return bytes;
+  }
+
+  private int estimatedFieldBytes(final int column, final int row) {
+    switch (this.schema.fieldTypes[column]) {
+      case LONG:
+        return Point.decimalLength(this.fieldValues[column][row]) + 1;
+      case DOUBLE:
+        return Point.DOUBLE_ESTIMATE_BYTES;
+      case BOOLEAN:
+        return String.valueOf(this.fieldValues[column][row] != 0).length();
+      default:
+        return this.stringValues[column][row].length() + 2;
+    }
+  }
+
+  private void tags(final BufferedSink sink, final TagLayout layout, final int row) throws IOException {
+    for (int i = 0; i < layout.prefixes.length; i++) {
+      int column = layout.columns[i];
+      if (column < 0) {
+        sink.write(layout.prefixes[i]).write(layout.constants[i]);
+        continue;
+      }
+      String value = this.tagValues[column][row];
+      if (value != null && !value.isEmpty()) {
+        sink.write(layout.prefixes[i]);
+        Point.escapeKey(sink, value);
+      }
+    }
+  }
+
+  private void fields(final BufferedSink sink, final int row) throws IOException {
+    boolean first = true;
+    for (int column : this.schema.fieldOrder) {
+      if (!isWritableField(column, row)) {
+        continue;
+      }
+      if (!first) {
+        sink.writeByte(',');
+      }
+      first = false;
+      sink.write(this.schema.fieldPrefixes[column]);
+      long bits = longValue(column, row);
+      switch (this.schema.fieldTypes[column]) {
+        case LONG:
+          sink.writeDecimalLong(bits).writeByte('i');
+          break;
+        case DOUBLE:
+          Point.doubleField(sink, Double.longBitsToDouble(bits));
+          break;
+        case BOOLEAN:
+          sink.writeUtf8(String.valueOf(bits != 0));
+          break;
+        default:
+          sink.writeByte('"');
+          Point.escapeField(sink, this.stringValues[column][row]);
+          sink.writeByte('"');
+      }
+    }
+  }
+
+  private long longValue(final int column, final int row) {
+    long[] values = this.fieldValues[column];
+    if (values == null) {
+      return 0;
+    }
+    return values[row];
+  }
+
+  private boolean hasFields(final int row) {
+    for (int column = 0; column < this.fieldsSet.length; column++) {
+      if (isSet(column, row)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private boolean hasWritableFields(final int row) {
+    for (int column = 0; column < this.fieldsSet.length; column++) {
+      if (isWritableField(column, row)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private boolean isWritableField(final int column, final int row) {
+    if (!isSet(column, row)) {
+      return false;
+    }
+    return this.schema.fieldTypes[column] != FieldType.DOUBLE
+        || Double.isFinite(Double.longBitsToDouble(this.fieldValues[column][row]));
+  }
+
+  private void setField(final int row, final int column, final FieldType type, final long bits) {
+    checkRow(row);
+    checkType(column, type);
+    this.fieldValues[column][row] = bits;
+    markSet(column, row);
+  }
+
+  private boolean isSet(final int column, final int row) {
+    return (this.fieldsSet[column][row >>> WORD_SHIFT] & (1L << row)) != 0;
+  }
+
+  private void markSet(final int column, final int row) {
+    this.fieldsSet[column][row >>> WORD_SHIFT] |= 1L << row;
+  }
+
+  private void checkRow(final int row) {
+    if (row < 0 || row >= this.rowCount) {
+      throw new IndexOutOfBoundsException("row " + row + " of " + this.rowCount + " rows");
+    }
+  }
+
+  private void checkType(final int column, final FieldType type) {
+    if (this.schema.fieldTypes[column] != type) {
+      throw new IllegalArgumentException("Field " + this.schema.fieldNames[column] + " is of type "
+          + this.schema.fieldTypes[column] + ", not " + type);
+    }
+  }
+
+  private void grow() {
+    int capacity = this.times.length * 2;
+    this.times = Arrays.copyOf(this.times, capacity);
+    for (int i = 0; i < this.tagValues.length; i++) {
+      this.tagValues[i] = Arrays.copyOf(this.tagValues[i], capacity);
+    }
+    for (int i = 0; i < this.fieldsSet.length; i++) {
+      this.fieldsSet[i] = Arrays.copyOf(this.fieldsSet[i], words(capacity));
+      if (this.stringValues[i] != null) {
+        this.stringValues[i] = Arrays.copyOf(this.stringValues[i], capacity);
+      } else {
+        this.fieldValues[i] = Arrays.copyOf(this.fieldValues[i], capacity);
+      }
+    }
+  }
+
+  private static int words(final int rows) {
+    return ((rows - 1) >>> WORD_SHIFT) + 1;
+  }
+
+  @Override
+  public String toString() {
+    return "ColumnarBatch [measurement=" + this.schema.measurement + ", precision=" + this.precision
+        + ", rows=" + this.rowCount + "]";
+  }
+
+  /**
+   * The measurement, tag columns and field columns of a {@link ColumnarBatch}, with the escaped names already
+   * computed. Columns are addressed by the index in the order they were declared, the line protocol lists
+   * them sorted by name like a {@link Point}. Instances are immutable and can be shared between batches.
+   */
+  public static final class Schema {
+    private final String measurement;
+    private final String[] tagNames;
+    private final String[] fieldNames;
+    private final FieldType[] fieldTypes;
+    private final byte[] measurementBytes;
+    private final byte[][] fieldPrefixes;
+    private final int[] fieldOrder;
+    private final TagLayout tagLayout;
+
+    private Schema(final Builder builder) {
+      this.measurement = builder.measurement;
+      this.tagNames = builder.tagNames.toArray(new String[0]);
+      this.fieldNames = builder.fieldNames.toArray(new String[0]);
+      this.fieldTypes = builder.fieldTypes.toArray(new FieldType[0]);
+      StringBuilder sb = new StringBuilder();
+      Point.escapeKey(sb, this.measurement);
+      this.measurementBytes = sb.toString().getBytes(StandardCharsets.UTF_8);
+      this.fieldPrefixes = new byte[this.fieldNames.length][];
+      for (int i = 0; i < this.fieldNames.length; i++) {
+        this.fieldPrefixes[i] = (escape(this.fieldNames[i]) + '=').getBytes(StandardCharsets.UTF_8);
+      }
+      this.fieldOrder = sortedOrder(this.fieldNames);
+      this.tagLayout = tagLayout(Collections.emptyMap());
+    }
+
+    /**
+     * Create a new Builder for a schema of the given measurement.
+     *
+     * @param measurement the name of the measurement
+     * @return the Builder instance
+     */
+    public static Builder measurement(final String measurement) {
+      return new Builder(measurement);
+    }
+
+    /**
+     * The Builder to create a new Schema instance.
+     */
+    public static final class Builder {
+      private final String measurement;
+      private final List<String> tagNames = new ArrayList<>();
+      private final List<String> fieldNames = new ArrayList<>();
+      private final List<FieldType> fieldTypes = new ArrayList<>();
+      private final Set<String> names = new HashSet<>();
+
+      Builder(final String measurement) {
+        Preconditions.checkNonEmptyString(measurement, "measurement");
+        this.measurement = measurement;
+      }
+
+      /**
+       * Add a tag column, its index is the number of tag columns added before.
+       *
+       * @param name the tag name
+       * @return the Builder instance
+       */
+      public Builder tag(final String name) {
+        checkName(name);
+        this.tagNames.add(name);
+        return this;
+      }
+
+      /**
+       * Add a field column, its index is the number of field columns added before.
+       *
+       * @param name the field name
+       * @param type the type of the field values
+       * @return the Builder instance
+       */
+      public Builder field(final String name, final FieldType type) {
+        Objects.requireNonNull(type, "type");
+        checkName(name);
+        this.fieldNames.add(name);
+        this.fieldTypes.add(type);
+        return this;
+      }
+
+      /**
+       * Create a new Schema instance.
+       *
+       * @return the created Schema
+       */
+      public Schema build() {
+        Preconditions.checkPositiveNumber(this.fieldNames.size(), "fields size");
+        return new Schema(this);
+      }
+
+      private void checkName(final String name) {
+        Preconditions.checkNonEmptyString(name, "name");
+        if (!this.names.add(name)) {
+          throw new IllegalArgumentException("Column " + name + " is declared twice");
+        }
+      }
+    }
+
+    /**
+     * @return the name of the measurement
+     */
+    public String getMeasurement() {
+      return this.measurement;
+    }
+
+    /**
+     * @return the names of the tag columns, in declaration order
+     */
+    public List<String> getTagNames() {
+      return Collections.unmodifiableList(Arrays.asList(this.tagNames));
+    }
+
+    /**
+     * @return the names of the field columns, in declaration order
+     */
+    public List<String> getFieldNames() {
+      return Collections.unmodifiableList(Arrays.asList(this.fieldNames));
+    }
+
+    /**
+     * @param column the index of the field column
+     * @return the type of the field column
+     */
+    public FieldType getFieldType(final int column) {
+      return this.fieldTypes[column];
+    }
+
+    /**
+     * @param name the tag name
+     * @return the index of the tag column, or -1 if there is none of this name
+     */
+    public int tagIndex(final String name) {
+      return Arrays.asList(this.tagNames).indexOf(name);
+    }
+
+    /**
+     * @param name the field name
+     * @return the index of the field column, or -1 if there is none of this name
+     */
+    public int fieldIndex(final String name) {
+      return Arrays.asList(this.fieldNames).indexOf(name);
+    }
+
+    /**
+     * Merge the tag columns with tags of the same value for every row, sorted by name.
+     */
+    private TagLayout tagLayout(final Map<String, String> extraTags) {
+      Map<String, Object> sorted = new TreeMap<>();
+      for (int i = 0; i < this.tagNames.length; i++) {
+        sorted.put(this.tagNames[i], i);
+      }
+      for (Entry<String, String> tag : extraTags.entrySet()) {
+        if (tag.getValue() != null && !tag.getValue().isEmpty()) {
+          sorted.put(tag.getKey(), tag.getValue());
+        }
+      }
+      TagLayout layout = new TagLayout(sorted.size());
+      int i = 0;
+      for (Entry<String, Object> tag : sorted.entrySet()) {
+        layout.prefixes[i] = (',' + escape(tag.getKey()) + '=').getBytes(StandardCharsets.UTF_8);
+        if (tag.getValue() instanceof Integer) {
+          layout.columns[i] = (Integer) tag.getValue();
+        } else {
+          layout.columns[i] = -1;
+          layout.constants[i] = escape((String) tag.getValue()).getBytes(StandardCharsets.UTF_8);
+        }
+        i++;
+      }
+      return layout;
+    }
+
+    private static String escape(final String key) {
+      StringBuilder sb = new StringBuilder();
+      Point.escapeKey(sb, key);
+      return sb.toString();
+    }
+
+    private static int[] sortedOrder(final String[] names) {
+      Integer[] order = new Integer[names.length];
+      for (int i = 0; i < order.length; i++) {
+        order[i] = i;
+      }
+      Arrays.sort(order, (a, b) -> names[a].compareTo(names[b]));
+      int[] result = new int[order.length];
+      for (int i = 0; i < order.length; i++) {
+        result[i] = order[i];
+      }
+      return result;
+    }
+
+    @Override
+    public String toString() {
+      return "Schema [measurement=" + this.measurement + ", tags=" + Arrays.toString(this.tagNames)
+          + ", fields=" + Arrays.toString(this.fieldNames) + "]";
+    }
+  }
+
+  /**
+   * The escaped ",name=" prefixes of the tags of a row in line protocol order, each either taken from a tag
+   * column or a constant.
+   */
+  private static final class TagLayout {
+    private final byte[][] prefixes;
+    private final int[] columns;
+    private final byte[][] constants;
+
+    TagLayout(final int size) {
+      this.prefixes = new byte[size][];
+      this.columns = new int[size];
+      this.constants = new byte[size][];
+    }
+  }
+}
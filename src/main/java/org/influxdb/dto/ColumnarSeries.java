@@ -0,0 +1,674 @@
+package org.influxdb.dto;
+
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A series of a query result stored column by column, as returned by
+ * {@link org.influxdb.InfluxDB#queryColumnar(Query)}.
+ * <p>
+ * Every column keeps its values in a primitive array chosen by the values it holds: a {@code long[]} for
+ * integers and booleans, a {@code double[]} for floating point numbers and dictionary codes for strings, so the
+ * rows of a large result take about the size of the payload instead of a boxed value and a list per row. A
+ * column holding integers and floating point numbers is stored as doubles, a column holding values of other
+ * mixed types falls back to boxed values. Timestamps of the {@code time} column are stored as epoch
+ * nanoseconds.
+ *
+ * <pre>
+ * for (ColumnarSeries series : influxDB.queryColumnar(query)) {
+ *   int idle = series.getColumnIndex("idle");
+ *   ColumnarSeries.Cursor cursor = series.cursor();
+ *   while (cursor.next()) {
+ *     sum += cursor.getDouble(idle);
+ *   }
+ * }
+ * </pre>
+ */
+public final class ColumnarSeries {
+
+  /**
+   * The storage of a column, from the values it holds.
+   */
+  public enum ColumnType {
+    /** Only null values. */
+    NULL,
+    /** Integers, read with {@link Cursor#getLong(int)}. */
+    LONG,
+    /** Floating point numbers, or integers mixed with them, read with {@link Cursor#getDouble(int)}. */
+    DOUBLE,
+    /** Booleans, read with {@link Cursor#getBoolean(int)}. */
+    BOOLEAN,
+    /** Dictionary encoded strings, read with {@link Cursor#getString(int)}. */
+    STRING,
+    /** Boxed values of mixed or other types, read with {@link Cursor#getValue(int)}. */
+    OBJECT
+  }
+
+  private static final String TIME_COLUMN = "time";
+  private static final int DEFAULT_CAPACITY = 16;
+
+  private final int statementId;
+  private final String name;
+  private final Map<String, String> tags;
+  private final List<String> columns;
+  private final Column[] data;
+  private final int timeColumn;
+  private final int rowCount;
+
+  private ColumnarSeries(final Builder builder) {
+    this.statementId = builder.statementId;
+    this.name = builder.name;
+    this.tags = builder.tags;
+    this.columns = builder.columns;
+    this.data = builder.data;
+    this.timeColumn = builder.timeColumn;
+    this.rowCount = builder.rowCount;
+  }
+
+  /**
+   * Create a new Builder for a series with the given columns.
+   *
+   * @param columns the names of the columns
+   * @return the Builder instance
+   */
+  public static Builder builder(final List<String> columns) {
+    return new Builder(columns);
+  }
+
+  /**
+   * The Builder to create a new ColumnarSeries instance, filled row by row. The values of a row are added in
+   * any order, each column at most once, columns without a value are null.
+   */
+  public static final class Builder {
+    private final List<String> columns;
+    private final Column[] data;
+    private final int timeColumn;
+    private int statementId;
+    private String name;
+    private Map<String, String> tags = Collections.emptyMap();
+    private int rowCount;
+
+    Builder(final List<String> columns) {
+      this.columns = Collections.unmodifiableList(new ArrayList<>(Objects.requireNonNull(columns, "columns")));
+      this.data = new Column[columns.size()];
+      for (int i = 0; i < this.data.length; i++) {
+        this.data[i] = new Column();
+      }
+      this.timeColumn = columns.indexOf(TIME_COLUMN);
+    }
+
+    /**
+     * @param id the index of the statement of the query the series belongs to
+     * @return the Builder instance
+     */
+    public Builder statementId(final int id) {
+      this.statementId = id;
+      return this;
+    }
+
+    /**
+     * @param seriesName the name of the series
+     * @return the Builder instance
+     */
+    public Builder name(final String seriesName) {
+      this.name = seriesName;
+      return this;
+    }
+
+    /**
+     * @param seriesTags the tags of the series
+     * @return the Builder instance
+     */
+    public Builder tags(final Map<String, String> seriesTags) {
+      this.tags = Collections.unmodifiableMap(new HashMap<>(Objects.requireNonNull(seriesTags, "seriesTags")));
+      return this;
+    }
+
+    /**
+     * Add a null value to the current row.
+     *
+     * @param column the index of the column
+     * @return the Builder instance
+     */
+    public Builder addNull(final int column) {
+      column(column).addNull();
+      return this;
+    }
+
+    /**
+     * Add an integer value to the current row.
+     *
+     * @param column the index of the column
+     * @param value the value
+     * @return the Builder instance
+     */
+    public Builder addLong(final int column, final long value) {
+      column(column).addLong(value);
+      return this;
+    }
+
+    /**
+     * Add a floating point value to the current row.
+     *
+     * @param column the index of the column
+     * @param value the value
+     * @return the Builder instance
+     */
+    public Builder addDouble(final int column, final double value) {
+      column(column).addDouble(value);
+      return this;
+    }
+
+    /**
+     * Add a boolean value to the current row.
+     *
+     * @param column the index of the column
+     * @param value the value
+     * @return the Builder instance
+     */
+    public Builder addBoolean(final int column, final boolean value) {
+      column(column).addBoolean(value);
+      return this;
+    }
+
+    /**
+     * Add a string value to the current row. A RFC3339 timestamp of the {@code time} column is stored as epoch
+     * nanoseconds.
+     *
+     * @param column the index of the column
+     * @param value the value
+     * @return the Builder instance
+     */
+    public Builder addString(final int column, final String value) {
+      Column target = column(column);
+      if (value == null) {
+        target.addNull();
+      } else if (column == this.timeColumn) {
+        addTime(target, value);
+      } else {
+        target.addString(value);
+      }
+      return this;
+    }
+
+    /**
+     * Add a value of any type to the current row, numbers, booleans and strings are stored like by the typed
+     * methods.
+     *
+     * @param column the index of the column
+     * @param value the value
+     * @return the Builder instance
+     */
+    public Builder addValue(final int column, final Object value) {
+      if (value == null) {
+        addNull(column);
+      } else if (value instanceof Double || value instanceof Float) {
+        addDouble(column, ((Number) value).doubleValue());
+      } else if (value instanceof Long || value instanceof Integer || value instanceof Short
+          || value instanceof Byte) {
+        addLong(column, ((Number) value).longValue());
+      } else if (value instanceof Boolean) {
+        addBoolean(column, (Boolean) value);
+      } else if (value instanceof String) {
+        addString(column, (String) value);
+      } else {
+        column(column).addObject(value);
+      }
+      return this;
+    }
+
+    /**
+     * Complete the current row, the columns without a value are null.
+     *
+     * @return the Builder instance
+     */
+    public Builder endRow() {
+      this.rowCount++;
+      for (Column column : this.data) {
+        if (column.size < this.rowCount) {
+          column.addNull();
+        }
+      }
+      return this;
+    }
+
+    /**
+     * @return the number of completed rows
+     */
+    public int getRowCount() {
+      return this.rowCount;
+    }
+
+    /**
+     * Create a new ColumnarSeries instance with the completed rows. The builder must not be used anymore.
+     *
+     * @return the created ColumnarSeries
+     */
+    public ColumnarSeries build() {
+      return new ColumnarSeries(this);
+    }
+
+    private Column column(final int column) {
+      Column target = this.data[column];
+      if (target.size > this.rowCount) {
+        throw new IllegalStateException("Column " + this.columns.get(column) + " already has a value in row "
+            + this.rowCount);
+      }
+      return target;
+    }
+
+    private static void addTime(final Column target, final String value) {
+      Instant time;
+      try {
+        time = Instant.parse(value);
+      } catch (DateTimeParseException e) {
+        target.addString(value);
+        return;
+      }
+      target.addLong(TimeUnit.SECONDS.toNanos(time.getEpochSecond()) + time.getNano());
+    }
+  }
+
+  /**
+   * @return the index of the statement of the query the series belongs to
+   */
+  public int getStatementId() {
+    return this.statementId;
+  }
+
+  /**
+   * @return the name of the series, usually the measurement
+   */
+  public String getName() {
+    return this.name;
+  }
+
+  /**
+   * @return the tags of the series, empty if the query is not grouped by tags
+   */
+  public Map<String, String> getTags() {
+    return this.tags;
+  }
+
+  /**
+   * @return the names of the columns
+   */
+  public List<String> getColumns() {
+    return this.columns;
+  }
+
+  /**
+   * @param column the name of a column
+   * @return the index of the column, -1 if the series has no such column
+   */
+  public int getColumnIndex(final String column) {
+    return this.columns.indexOf(column);
+  }
+
+  /**
+   * @param column the index of a column
+   * @return how the values of the column are stored
+   */
+  public ColumnType getColumnType(final int column) {
+    return this.data[column].type;
+  }
+
+  /**
+   * @return the number of rows
+   */
+  public int getRowCount() {
+    return this.rowCount;
+  }
+
+  /**
+   * @return a new cursor before the first row
+   */
+  public Cursor cursor() {
+    return new Cursor(this);
+  }
+
+  @Override
+  public String toString() {
+    return "ColumnarSeries [statementId=" + this.statementId + ", name=" + this.name + ", tags=" + this.tags
+        + ", columns=" + this.columns + ", rowCount=" + this.rowCount + "]";
+  }
+
+  /**
+   * Reads the rows of a series one after the other, the values are read from the column arrays without boxing.
+   * A null value is read as 0, NaN or false by the primitive getters, see {@link #isNull(int)}.
+   */
+  public static final class Cursor {
+    private final ColumnarSeries series;
+    private int row = -1;
+
+    Cursor(final ColumnarSeries series) {
+      this.series = series;
+    }
+
+    /**
+     * Move to the next row.
+     *
+     * @return false if there is no more row
+     */
+    public boolean next() {
+      if (this.row + 1 >= this.series.rowCount) {
+        this.row = this.series.rowCount;
+        return false;
+      }
+      this.row++;
+      return true;
+    }
+
+    /**
+     * @return the index of the current row
+     */
+    public int getRow() {
+      return this.row;
+    }
+
+    /**
+     * @param column the index of a column
+     * @return whether the value of the column is null in the current row
+     */
+    public boolean isNull(final int column) {
+      return column(column).isNull(this.row);
+    }
+
+    /**
+     * @param column the index of a {@link ColumnType#LONG} or {@link ColumnType#DOUBLE} column
+     * @return the value of the column in the current row, a double is truncated
+     * @throws IllegalStateException if the column does not hold numbers
+     */
+    public long getLong(final int column) {
+      Column data = column(column);
+      switch (data.type) {
+      case LONG:
+        return data.longs[this.row];
+      case DOUBLE:
+        return (long) data.doubles[this.row];
+      case NULL:
+        return 0;
+      default:
+        throw wrongType(column, "numbers");
+      }
+    }
+
+    /**
+     * @param column the index of a {@link ColumnType#DOUBLE} or {@link ColumnType#LONG} column
+     * @return the value of the column in the current row
+     * @throws IllegalStateException if the column does not hold numbers
+     */
+    public double getDouble(final int column) {
+      Column data = column(column);
+      switch (data.type) {
+      case DOUBLE:
+        if (data.isNull(this.row)) {
+          return Double.NaN;
+        }
+        return data.doubles[this.row];
+      case LONG:
+        if (data.isNull(this.row)) {
+          return Double.NaN;
+        }
+        return data.longs[this.row];
+      case NULL:
+        return Double.NaN;
+      default:
+        throw wrongType(column, "numbers");
+      }
+    }
+
+    /**
+     * @param column the index of a {@link ColumnType#BOOLEAN} column
+     * @return the value of the column in the current row
+     * @throws IllegalStateException if the column does not hold booleans
+     */
+    public boolean getBoolean(final int column) {
+      Column data = column(column);
+      switch (data.type) {
+      case BOOLEAN:
+        return data.longs[this.row] != 0;
+      case NULL:
+        return false;
+      default:
+        throw wrongType(column, "booleans");
+      }
+    }
+
+    /**
+     * @param column the index of a column
+     * @return the value of the column in the current row, values of other types than strings are converted
+     */
+    public String getString(final int column) {
+      Column data = column(column);
+      if (data.type == ColumnType.STRING) {
+        return data.string(this.row);
+      }
+      Object value = data.get(this.row);
+      if (value == null) {
+        return null;
+      }
+      return String.valueOf(value);
+    }
+
+    /**
+     * @param column the index of a column
+     * @return the boxed value of the column in the current row
+     */
+    public Object getValue(final int column) {
+      return column(column).get(this.row);
+    }
+
+    /**
+     * @return the epoch nanoseconds of the {@code time} column in the current row
+     * @throws IllegalStateException if the series has no time column
+     */
+    public long getTime() {
+      if (this.series.timeColumn < 0) {
+        throw new IllegalStateException("Series " + this.series.name + " has no time column");
+      }
+      return getLong(this.series.timeColumn);
+    }
+
+    private Column column(final int column) {
+      if (this.row < 0 || this.row >= this.series.rowCount) {
+        throw new IllegalStateException("The cursor is not on a row");
+      }
+      return this.series.data[column];
+    }
+
+    private IllegalStateException wrongType(final int column, final String expected) {
+      return new IllegalStateException("Column " + this.series.columns.get(column) + " holds "
+          + this.series.data[column].type + " values, not " + expected);
+    }
+  }
+
+  /**
+   * The values of a column, the array of the column type holds them.
+   */
+  private static final class Column {
+    private ColumnType type = ColumnType.NULL;
+    private int size;
+    private int capacity;
+    private final BitSet nulls = new BitSet();
+    // the values of LONG and BOOLEAN columns
+    private long[] longs;
+    private double[] doubles;
+    // the dictionary codes of STRING columns
+    private int[] codes;
+    private List<String> dictionary;
+    private Map<String, Integer> dictionaryCodes;
+    private Object[] objects;
+
+    void addNull() {
+      reserve();
+      this.nulls.set(this.size++);
+    }
+
+    void addLong(final long value) {
+      reserve();
+      if (this.type == ColumnType.NULL) {
+        this.type = ColumnType.LONG;
+        this.longs = new long[this.capacity];
+      }
+      switch (this.type) {
+      case LONG:
+        this.longs[this.size] = value;
+        break;
+      case DOUBLE:
+        this.doubles[this.size] = value;
+        break;
+      default:
+        addObject(value);
+        return;
+      }
+      this.size++;
+    }
+
+    void addDouble(final double value) {
+      reserve();
+      if (this.type == ColumnType.NULL) {
+        this.type = ColumnType.DOUBLE;
+        this.doubles = new double[this.capacity];
+      } else if (this.type == ColumnType.LONG) {
+        toDoubles();
+      }
+      if (this.type == ColumnType.DOUBLE) {
+        this.doubles[this.size++] = value;
+      } else {
+        addObject(value);
+      }
+    }
+
+    void addBoolean(final boolean value) {
+      reserve();
+      if (this.type == ColumnType.NULL) {
+        this.type = ColumnType.BOOLEAN;
+        this.longs = new long[this.capacity];
+      }
+      if (this.type == ColumnType.BOOLEAN) {
+        if (value) {
+          this.longs[this.size] = 1;
+        }
+        this.size++;
+      } else {
+        addObject(value);
+      }
+    }
+
+    void addString(final String value) {
+      reserve();
+      if (this.type == ColumnType.NULL) {
+        this.type = ColumnType.STRING;
+        this.codes = new int[this.capacity];
+        this.dictionary = new ArrayList<>();
+        this.dictionaryCodes = new HashMap<>();
+      }
+      if (this.type == ColumnType.STRING) {
+        Integer code = this.dictionaryCodes.get(value);
+        if (code == null) {
+          code = this.dictionary.size();
+          this.dictionary.add(value);
+          this.dictionaryCodes.put(value, code);
+        }
+        this.codes[this.size++] = code;
+      } else {
+        addObject(value);
+      }
+    }
+
+    void addObject(final Object value) {
+      reserve();
+      if (this.type != ColumnType.OBJECT) {
+        toObjects();
+      }
+      this.objects[this.size++] = value;
+    }
+
+    boolean isNull(final int row) {
+      return this.nulls.get(row);
+    }
+
+    String string(final int row) {
+      if (isNull(row)) {
+        return null;
+      }
+      return this.dictionary.get(this.codes[row]);
+    }
+
+    Object get(final int row) {
+      if (isNull(row)) {
+        return null;
+      }
+      switch (this.type) {
+      case LONG:
+        return this.longs[row];
+      case DOUBLE:
+        return this.doubles[row];
+      case BOOLEAN:
+        return this.longs[row] != 0;
+      case STRING:
+        return string(row);
+      case OBJECT:
+        return this.objects[row];
+      default:
+        return null;
+      }
+    }
+
+    private void reserve() {
+      if (this.size < this.capacity) {
+        return;
+      }
+      if (this.capacity == 0) {
+        this.capacity = DEFAULT_CAPACITY;
+      } else {
+        this.capacity *= 2;
+      }
+      if (this.longs != null) {
+        this.longs = Arrays.copyOf(this.longs, this.capacity);
+      }
+      if (this.doubles != null) {
+        this.doubles = Arrays.copyOf(this.doubles, this.capacity);
+      }
+      if (this.codes != null) {
+        this.codes = Arrays.copyOf(this.codes, this.capacity);
+      }
+      if (this.objects != null) {
+        this.objects = Arrays.copyOf(this.objects, this.capacity);
+      }
+    }
+
+    private void toDoubles() {
+      this.doubles = new double[this.capacity];
+      for (int i = 0; i < this.size; i++) {
+        this.doubles[i] = this.longs[i];
+      }
+      this.longs = null;
+      this.type = ColumnType.DOUBLE;
+    }
+
+    private void toObjects() {
+      Object[] values = new Object[this.capacity];
+      for (int i = 0; i < this.size; i++) {
+        values[i] = get(i);
+      }
+      this.objects = values;
+      this.longs = null;
+      this.doubles = null;
+      this.codes = null;
+      this.dictionary = null;
+      this.dictionaryCodes = null;
+      this.type = ColumnType.OBJECT;
+    }
+  }
+}
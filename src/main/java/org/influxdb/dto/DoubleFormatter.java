@@ -0,0 +1,304 @@
+package org.influxdb.dto;
+
+import java.io.IOException;
+import java.math.BigInteger;
+
+import okio.BufferedSink;
+
+/**
+ * Formats finite double values for the line protocol.
+ * <p>
+ * The digits are the shortest decimal that rounds to the same double, computed with the Schubfach algorithm
+ * by Raffaello Giulietti ("The Schubfach way to render doubles"). They are written in plain notation (never
+ * with an exponent) and with at least one fractional digit, which is the text the previous
+ * {@link java.text.NumberFormat} based formatting produced, e.g. {@code 1.0}, {@code -0.0},
+ * {@code 0.000015} or {@code 100000000000000000000.0}.
+ * <p>
+ * The characters are encoded into a reusable buffer of the instance, so an instance must not be shared
+ * between threads.
+ */
+final class DoubleFormatter {
+
+  // the precision in bits, the exponent bits and the range of the unbiased exponent of a double
+  private static final int P = 53;
+  private static final int W = 11;
+  private static final int Q_MIN = -1074;
+  private static final long C_MIN = 1L << (P - 1);
+  private static final int BQ_MASK = (1 << W) - 1;
+  private static final long T_MASK = (1L << (P - 1)) - 1;
+  // subnormal significands below this value need one more digit of precision
+  private static final long C_TINY = 3;
+
+  // the range of the decimal exponents k covered by the table of powers of 10
+  private static final int K_MIN = -324;
+  private static final int K_MAX = 292;
+
+  // the table entries g satisfy 2^G_BITS <= g < 2^(G_BITS + 1)
+  private static final int G_BITS = 125;
+
+  private static final int BITS_63 = 63;
+  private static final int BITS_32 = 32;
+  private static final long MASK_63 = (1L << BITS_63) - 1;
+  private static final long MASK_32 = (1L << BITS_32) - 1;
+
+  // fixed point constants for the logarithm approximations
+  private static final long LOG10_2 = 661_971_961_083L;
+  private static final long LOG10_3_QUARTERS = -274_743_187_321L;
+  private static final int LOG10_2_SHIFT = 41;
+  private static final long LOG2_10 = 913_124_641_741L;
+  private static final int LOG2_10_SHIFT = 38;
+
+  private static final int BASE = 10;
+  private static final int TWO_DIGITS = 100;
+  private static final int MAX_DIGITS = 20;
+  // a negative subnormal written in plain notation has the most characters, e.g. -0.[323 zeros]49
+  private static final int MAX_CHARS = 360;
+
+  /**
+   * 126 bit approximations g of 10^-k, for k in [K_MIN, K_MAX], split into the upper 63 bits g1 and the lower
+   * 63 bits g0. g = floor(10^-k 2^-r) + 1, with r chosen such that 2^125 &lt;= g &lt; 2^126.
+   */
+  private static final long[] G = createPowersOfTen();
+
+  private final byte[] chars = new byte[MAX_CHARS];
+  private final byte[] digits = new byte[MAX_DIGITS];
+  private int length;
+
+  /**
+   * Append the formatted value to the given builder.
+   *
+   * @param sb the builder
+   * @param v a finite value
+   */
+  void format(final StringBuilder sb, final double v) {
+    int len = encode(v);
+    for (int i = 0; i < len; i++) {
+      sb.append((char) this.chars[i]);
+    }
+  }
+
+  /**
+   * Write the formatted value to the given sink.
+   *
+   * @param sink the sink
+   * @param v a finite value
+   * @throws IOException if the sink cannot be written
+   */
+  void format(final BufferedSink sink, final double v) throws IOException {
+    sink.write(this.chars, 0, encode(v));
+  }
+
+  /**
+   * Format the value into the internal buffer.
+   *
+   * @return the number of characters written
+   */
+  int encode(final double v) {
+    this.length = 0;
+    long bits = Double.doubleToRawLongBits(v);
+    long t = bits & T_MASK;
+    int bq = (int) (bits >>> (P - 1)) & BQ_MASK;
+    if (bq == BQ_MASK) {
+      throw new IllegalArgumentException("Value is not finite: " + v);
+    }
+    if (bits < 0) {
+      append('-');
+    }
+    if (bq != 0) {
+      // normal value: v = c 2^q, with q = -mq
+      int mq = -Q_MIN + 1 - bq;
+      long c = C_MIN | t;
+      // fast path for integers
+      if (0 < mq && mq < P) {
+        long f = c >> mq;
+        if (f << mq == c) {
+          return toChars(f, 0);
+        }
+      }
+      return toDecimal(-mq, c, 0);
+    }
+    if (t != 0) {
+      // subnormal value
+      if (t < C_TINY) {
+        return toDecimal(Q_MIN, BASE * t, -1);
+      }
+      return toDecimal(Q_MIN, t, 0);
+    }
+    return toChars(0, 0);
+  }
+
+  private int toDecimal(final int q, final long c, final int dk) {
+    int out = (int) c & 1;
+    long cb = c << 2;
+    long cbr = cb + 2;
+    long cbl;
+    int k;
+    if (c != C_MIN || q == Q_MIN) {
+      cbl = cb - 2;
+      k = flog10pow2(q);
+    } else {
+      // the predecessor of v is closer, the rounding interval is not symmetric
+      cbl = cb - 1;
+      k = flog10threeQuartersPow2(q);
+    }
+    int h = q + flog2pow10(-k) + 2;
+
+    int index = (k - K_MIN) << 1;
+    long g1 = G[index];
+    long g0 = G[index + 1];
+
+    long vb = rop(g1, g0, cb << h);
+    long vbl = rop(g1, g0, cbl << h);
+    long vbr = rop(g1, g0, cbr << h);
+
+    long s = vb >> 2;
+    if (s >= TWO_DIGITS) {
+      // try the shorter candidates sp10 and tp10, with one digit less than s
+      long sp10 = BASE * (s / BASE);
+      long tp10 = sp10 + BASE;
+      boolean upin = vbl + out <= sp10 << 2;
+      boolean wpin = (tp10 << 2) + out <= vbr;
+      if (upin && !wpin) {
+        return toChars(sp10, k);
+      }
+      if (wpin && !upin) {
+        return toChars(tp10, k);
+      }
+    }
+
+    long t = s + 1;
+    boolean uin = vbl + out <= s << 2;
+    boolean win = (t << 2) + out <= vbr;
+    if (uin && !win) {
+      return toChars(s, k + dk);
+    }
+    if (win && !uin) {
+      return toChars(t, k + dk);
+    }
+    // both s and t are in the rounding interval, pick the closest one, the even one on a tie
+    long cmp = vb - ((s + t) << 1);
+    if (cmp < 0 || cmp == 0 && (s & 1) == 0) {
+      return toChars(s, k + dk);
+    }
+    return toChars(t, k + dk);
+  }
+
+  /**
+   * Render f 10^e in plain notation, with at least one fractional digit.
+   */
+  private int toChars(final long significand, final int exponent) {
+    long f = significand;
+    int e = exponent;
+    if (f == 0) {
+      append('0');
+      append('.');
+      append('0');
+      return this.length;
+    }
+    while (f % BASE == 0) {
+      f /= BASE;
+      e++;
+    }
+    int len = 0;
+    for (long rest = f; rest != 0; rest /= BASE) {
+      this.digits[len++] = (byte) ('0' + rest % BASE);
+    }
+    // digits are in reverse order, the number of integral digits is len + e
+    int integral = len + e;
+    if (integral <= 0) {
+      append('0');
+      append('.');
+      for (int i = integral; i < 0; i++) {
+        append('0');
+      }
+      for (int i = len - 1; i >= 0; i--) {
+        append(this.digits[i]);
+      }
+    } else if (e >= 0) {
+      for (int i = len - 1; i >= 0; i--) {
+        append(this.digits[i]);
+      }
+      for (int i = 0; i < e; i++) {
+        append('0');
+      }
+      append('.');
+      append('0');
+    } else {
+      for (int i = len - 1; i >= 0; i--) {
+        if (i == len - 1 - integral) {
+          append('.');
+        }
+        append(this.digits[i]);
+      }
+    }
+    return this.length;
+  }
+
+  private void append(final int c) {
+    this.chars[this.length++] = (byte) c;
+  }
+
+  /**
+   * Computes rop(cp g 2^-127), where g = g1 2^63 + g0, see the Schubfach paper.
+   */
+  private static long rop(final long g1, final long g0, final long cp) {
+    long x1 = multiplyHigh(g0, cp);
+    long y0 = g1 * cp;
+    long y1 = multiplyHigh(g1, cp);
+    long z = (y0 >>> 1) + x1;
+    long vbp = y1 + (z >>> BITS_63);
+    return vbp | ((z & MASK_63) + MASK_63) >>> BITS_63;
+  }
+
+  /**
+   * The upper 64 bits of the 128 bit product, Math.multiplyHigh is not available on Java 8.
+   */
+  static long multiplyHigh(final long x, final long y) {
+    long x1 = x >> BITS_32;
+    long x2 = x & MASK_32;
+    long y1 = y >> BITS_32;
+    long y2 = y & MASK_32;
+    long z2 = x2 * y2;
+    long t = x1 * y2 + (z2 >>> BITS_32);
+    long z1 = t & MASK_32;
+    long z0 = t >> BITS_32;
+    z1 += x2 * y1;
+    return x1 * y1 + z0 + (z1 >> BITS_32);
+  }
+
+  // floor(e log10(2)), valid for |e| <= 5456721
+  private static int flog10pow2(final int e) {
+    return (int) (e * LOG10_2 >> LOG10_2_SHIFT);
+  }
+
+  // floor(e log10(2) + log10(3/4)), valid for |e| <= 5456721
+  private static int flog10threeQuartersPow2(final int e) {
+    return (int) ((e * LOG10_2 + LOG10_3_QUARTERS) >> LOG10_2_SHIFT);
+  }
+
+  // floor(e log2(10)), valid for |e| <= 1838394
+  private static int flog2pow10(final int e) {
+    return (int) (e * LOG2_10 >> LOG2_10_SHIFT);
+  }
+
+  private static long[] createPowersOfTen() {
+    long[] g = new long[(K_MAX - K_MIN + 1) << 1];
+    BigInteger mask63 = BigInteger.valueOf(MASK_63);
+    for (int k = K_MIN; k <= K_MAX; k++) {
+      // g = floor(10^-k 2^-r) + 1 with r = flog2pow10(-k) - G_BITS
+      int e = -k;
+      int r = flog2pow10(e) - G_BITS;
+      BigInteger value;
+      if (e >= 0) {
+        value = BigInteger.TEN.pow(e).shiftRight(r);
+      } else {
+        value = BigInteger.ONE.shiftLeft(-r).divide(BigInteger.TEN.pow(-e));
+      }
+      value = value.add(BigInteger.ONE);
+      int index = (k - K_MIN) << 1;
+      g[index] = value.shiftRight(BITS_63).longValueExact();
+      g[index + 1] = value.and(mask63).longValue();
+    }
+    return g;
+  }
+}
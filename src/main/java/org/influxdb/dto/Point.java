@@ -3,17 +3,14 @@ package org.influxdb.dto;
 import org.influxdb.BuilderException;
 import org.influxdb.InfluxDBMapperException;
 import org.influxdb.annotation.Column;
-import org.influxdb.annotation.Exclude;
 import org.influxdb.annotation.Measurement;
-import org.influxdb.annotation.TimeColumn;
+import org.influxdb.impl.MeasurementBinding;
 import org.influxdb.impl.Preconditions;
-import org.influxdb.impl.TypeMapper;
 
+import okio.BufferedSink;
+
+import java.io.IOException;
 import java.lang.annotation.Annotation;
-import java.lang.reflect.Field;
-import java.lang.reflect.Modifier;
-import java.lang.reflect.ParameterizedType;
-import java.lang.reflect.Type;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.math.RoundingMode;
@@ -24,7 +21,6 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.TreeMap;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -35,10 +31,12 @@ import java.util.concurrent.TimeUnit;
  */
 public class Point {
   private String measurement;
-  private Map<String, String> tags;
+  private SortedArrayMap<String> tags;
   private Number time;
   private TimeUnit precision = TimeUnit.NANOSECONDS;
-  private Map<String, Object> fields;
+  private SortedArrayMap<Object> fields;
+  private SeriesKey seriesKey;
+  private PointPool pool;
   private static final int MAX_FRACTION_DIGITS = 340;
   private static final ThreadLocal<NumberFormat> NUMBER_FORMATTER =
           ThreadLocal.withInitial(() -> {
@@ -48,6 +46,21 @@ public class Point {
             numberFormat.setMinimumFractionDigits(1);
             return numberFormat;
           });
+  private static final ThreadLocal<DoubleFormatter> DOUBLE_FORMATTER = ThreadLocal.withInitial(DoubleFormatter::new);
+
+  /**
+   * System property to switch the formatting of double and float fields back to {@link NumberFormat}.
+   * Set it to {@code legacy} to use it, by default the shortest representation is written.
+   */
+  public static final String NUMBER_FORMAT_PROPERTY = "org.influxdb.dto.Point.numberFormat";
+  private static final boolean LEGACY_NUMBER_FORMAT = "legacy".equalsIgnoreCase(
+          System.getProperty(NUMBER_FORMAT_PROPERTY));
+
+  /** The assumed length of a floating point value, most shortest representations are not longer. */
+  static final int DOUBLE_ESTIMATE_BYTES = 20;
+  /** The length of a space and a timestamp in nanoseconds. */
+  static final int TIME_ESTIMATE_BYTES = 20;
+  private static final int RADIX = 10;
 
   private static final int DEFAULT_STRING_BUILDER_SIZE = 1024;
   private static final ThreadLocal<StringBuilder> CACHED_STRINGBUILDERS =
@@ -68,6 +81,20 @@ public class Point {
     return new Builder(measurement);
   }
 
+  /**
+   * Create a new Point Build build to create a new Point of an already escaped series in a fluent manner.
+   * The measurement and tags of the series are written without escaping them again, as long as no further
+   * tags are added to the point.
+   *
+   * @param seriesKey the measurement and tags of the point, see {@link SeriesKeyCache}
+   * @return the Builder instance
+   */
+
+  public static Builder series(final SeriesKey seriesKey) {
+    Objects.requireNonNull(seriesKey, "seriesKey");
+    return new Builder(seriesKey);
+  }
+
   /**
    * Create a new Point Build build to create a new Point in a fluent manner from a POJO.
    *
@@ -98,17 +125,89 @@ public class Point {
    */
   public static final class Builder {
     private static final BigInteger NANOSECONDS_PER_SECOND = BigInteger.valueOf(1000000000L);
-    private final String measurement;
-    private final Map<String, String> tags = new TreeMap<>();
+    private String measurement;
+    private SortedArrayMap<String> tags = new SortedArrayMap<>();
     private Number time;
     private TimeUnit precision;
-    private final Map<String, Object> fields = new TreeMap<>();
+    private SortedArrayMap<Object> fields = new SortedArrayMap<>();
+    private SeriesKey seriesKey;
+    private final PointPool pool;
 
     /**
      * @param measurement
      */
     Builder(final String measurement) {
+      this(measurement, null);
+    }
+
+    /**
+     * @param seriesKey
+     */
+    Builder(final SeriesKey seriesKey) {
+      this(seriesKey, null);
+    }
+
+    /**
+     * @param measurement
+     * @param pool the pool to take the built points from, null to create new points
+     */
+    Builder(final String measurement, final PointPool pool) {
       this.measurement = measurement;
+      this.pool = pool;
+    }
+
+    /**
+     * @param seriesKey
+     * @param pool the pool to take the built points from, null to create new points
+     */
+    Builder(final SeriesKey seriesKey, final PointPool pool) {
+      this.measurement = seriesKey.getMeasurement();
+      this.seriesKey = seriesKey;
+      this.pool = pool;
+    }
+
+    /**
+     * Clear this builder to build another point of the given measurement. Points built before are not
+     * changed, so one builder can be reused for all points written by a thread.
+     *
+     * @param measurementToSet
+     *            the name of the measurement.
+     * @return the Builder instance.
+     */
+    public Builder reset(final String measurementToSet) {
+      clear();
+      this.measurement = measurementToSet;
+      this.seriesKey = null;
+      return this;
+    }
+
+    /**
+     * Clear this builder to build another point of the given series, see {@link Point#series(SeriesKey)}.
+     * Points built before are not changed.
+     *
+     * @param seriesKeyToSet
+     *            the measurement and tags of the point.
+     * @return the Builder instance.
+     */
+    public Builder reset(final SeriesKey seriesKeyToSet) {
+      Objects.requireNonNull(seriesKeyToSet, "seriesKey");
+      clear();
+      this.measurement = seriesKeyToSet.getMeasurement();
+      this.seriesKey = seriesKeyToSet;
+      return this;
+    }
+
+    private void clear() {
+      if (this.pool == null) {
+        // the maps were handed over to the last built point
+        this.tags = new SortedArrayMap<>();
+        this.fields = new SortedArrayMap<>();
+      } else {
+        this.tags.clear();
+        this.fields.clear();
+      }
+      this.time = null;
+      this.precision = null;
     }
 
     /**
@@ -173,32 +272,32 @@ public class Point {
     }
 
     public Builder addField(final String field, final boolean value) {
-      fields.put(field, value);
+      fields.putBoolean(field, value);
       return this;
     }
 
     public Builder addField(final String field, final long value) {
-      fields.put(field, value);
+      fields.putLong(field, value);
       return this;
     }
 
     public Builder addField(final String field, final double value) {
-      fields.put(field, value);
+      fields.putDouble(field, value);
       return this;
     }
 
     public Builder addField(final String field, final int value) {
-      fields.put(field, value);
+      fields.putInt(field, value);
       return this;
     }
 
     public Builder addField(final String field, final float value) {
-      fields.put(field, value);
+      fields.putFloat(field, value);
       return this;
     }
 
     public Builder addField(final String field, final short value) {
-      fields.put(field, value);
+      fields.putShort(field, value);
       return this;
     }
 
@@ -282,47 +381,9 @@ public class Point {
      * @return the Builder instance
      */
     public Builder addFieldsFromPOJO(final Object pojo) {
-
-      Class<?> clazz = pojo.getClass();
-      Measurement measurement = clazz.getAnnotation(Measurement.class);
-      boolean allFields = measurement != null && measurement.allFields();
-
-      while (clazz != null) {
-
-      TypeMapper typeMapper = TypeMapper.empty();
-      while (clazz != null) {
-        for (Field field : clazz.getDeclaredFields()) {
-
-          Column column = field.getAnnotation(Column.class);
-
-          if (column == null && !(allFields
-                  && !field.isAnnotationPresent(Exclude.class) && !Modifier.isStatic(field.getModifiers()))) {
-            continue;
-          }
-
-          field.setAccessible(true);
-
-          String fieldName;
-          if (column != null && !column.name().isEmpty()) {
-            fieldName = column.name();
-          } else {
-            fieldName = field.getName();
-          }
-
-          addFieldByAttribute(pojo, field, column != null && column.tag(), fieldName, typeMapper);
-        }
-
-        Class<?> superclass = clazz.getSuperclass();
-        Type genericSuperclass = clazz.getGenericSuperclass();
-        if (genericSuperclass instanceof ParameterizedType) {
-          typeMapper = TypeMapper.of((ParameterizedType) genericSuperclass, superclass);
-        } else {
-          typeMapper = TypeMapper.empty();
-        }
-
-        clazz = superclass;
+      for (MeasurementBinding.Property property : MeasurementBinding.of(pojo.getClass()).getProperties()) {
+        addFieldByAttribute(pojo, property);
       }
-    }
 
       if (this.fields.isEmpty()) {
         throw new BuilderException("Class " + pojo.getClass().getName()
@@ -332,48 +393,38 @@ public class Point {
       return this;
     }
 
-    private void addFieldByAttribute(final Object pojo, final Field field, final boolean tag,
-                                     final String fieldName, final TypeMapper typeMapper) {
-      try {
-        Object fieldValue = field.get(pojo);
-
-        TimeColumn tc = field.getAnnotation(TimeColumn.class);
-        Class<?> fieldType = (Class<?>) typeMapper.resolve(field.getGenericType());
-        if (tc != null) {
-          if (Instant.class.isAssignableFrom(fieldType)) {
-            Optional.ofNullable((Instant) fieldValue).ifPresent(instant -> {
-              TimeUnit timeUnit = tc.timeUnit();
-              if (timeUnit == TimeUnit.NANOSECONDS || timeUnit == TimeUnit.MICROSECONDS) {
-                this.time = BigInteger.valueOf(instant.getEpochSecond())
-                        .multiply(NANOSECONDS_PER_SECOND)
-                        .add(BigInteger.valueOf(instant.getNano()))
-                        .divide(BigInteger.valueOf(TimeUnit.NANOSECONDS.convert(1, timeUnit)));
-              } else {
-                this.time = timeUnit.convert(instant.toEpochMilli(), TimeUnit.MILLISECONDS);
-              }
-              this.precision = timeUnit;
-            });
-            return;
-          }
-
-          throw new InfluxDBMapperException(
-              "Unsupported type " + fieldType + " for time: should be of Instant type");
+    private void addFieldByAttribute(final Object pojo, final MeasurementBinding.Property property) {
+      Object fieldValue = property.get(pojo);
+
+      TimeUnit timeUnit = property.getTimeUnit();
+      if (timeUnit != null) {
+        if (property.getValueType() == MeasurementBinding.ValueType.INSTANT) {
+          Optional.ofNullable((Instant) fieldValue).ifPresent(instant -> {
+            if (timeUnit == TimeUnit.NANOSECONDS || timeUnit == TimeUnit.MICROSECONDS) {
+              this.time = BigInteger.valueOf(instant.getEpochSecond())
+                      .multiply(NANOSECONDS_PER_SECOND)
+                      .add(BigInteger.valueOf(instant.getNano()))
+                      .divide(BigInteger.valueOf(TimeUnit.NANOSECONDS.convert(1, timeUnit)));
+            } else {
+              this.time = timeUnit.convert(instant.toEpochMilli(), TimeUnit.MILLISECONDS);
+            }
+            this.precision = timeUnit;
+          });
+          return;
         }
 
-        if (tag) {
-          if (fieldValue != null) {
-            this.tags.put(fieldName, (String) fieldValue);
-          }
-        } else {
-          if (fieldValue != null) {
-            setField(fieldType, fieldName, fieldValue);
-          }
-        }
+        throw new InfluxDBMapperException(
+            "Unsupported type " + property.getType() + " for time: should be of Instant type");
+      }
 
-      } catch (IllegalArgumentException | IllegalAccessException e) {
-        // Can not happen since we use metadata got from the object
-        throw new BuilderException(
-            "Field " + fieldName + " could not found on class " + pojo.getClass().getSimpleName());
+      if (property.isTag()) {
+        if (fieldValue != null) {
+          this.tags.put(property.getColumn(), (String) fieldValue);
+        }
+      } else {
+        if (fieldValue != null) {
+          setField(property, fieldValue);
+        }
       }
     }
 
@@ -385,40 +436,66 @@ public class Point {
     public Point build() {
       Preconditions.checkNonEmptyString(this.measurement, "measurement");
       Preconditions.checkPositiveNumber(this.fields.size(), "fields size");
-      Point point = new Point();
-      point.setFields(this.fields);
+      Point point;
+      if (this.pool == null) {
+        point = new Point();
+        point.setFields(this.fields);
+      } else {
+        // the point owns its maps, copy into them so this builder can be cleared and reused
+        point = this.pool.acquire();
+        point.copyFields(this.fields);
+      }
       point.setMeasurement(this.measurement);
       if (this.time != null) {
           point.setTime(this.time);
           point.setPrecision(this.precision);
       }
-      point.setTags(this.tags);
+      if (this.seriesKey == null) {
+        if (this.pool == null) {
+          point.setTags(this.tags);
+        } else {
+          point.copyTags(this.tags);
+        }
+      } else if (this.tags.isEmpty()) {
+        point.setSeriesKey(this.seriesKey);
+      } else {
+        SortedArrayMap<String> mergedTags = new SortedArrayMap<>(this.seriesKey.sortedTags());
+        mergedTags.putAll(this.tags);
+        point.setTags(mergedTags);
+      }
       return point;
     }
 
-    private void setField(
-            final Class<?> fieldType,
-            final String columnName,
-            final Object value) {
-      if (boolean.class.isAssignableFrom(fieldType) || Boolean.class.isAssignableFrom(fieldType)) {
+    private void setField(final MeasurementBinding.Property property, final Object value) {
+      String columnName = property.getColumn();
+      switch (property.getValueType()) {
+      case BOOLEAN:
         addField(columnName, (boolean) value);
-      } else if (long.class.isAssignableFrom(fieldType) || Long.class.isAssignableFrom(fieldType)) {
+        break;
+      case LONG:
         addField(columnName, (long) value);
-      } else if (double.class.isAssignableFrom(fieldType) || Double.class.isAssignableFrom(fieldType)) {
+        break;
+      case DOUBLE:
         addField(columnName, (double) value);
-      } else if (float.class.isAssignableFrom(fieldType) || Float.class.isAssignableFrom(fieldType)) {
+        break;
+      case FLOAT:
         addField(columnName, (float) value);
-      } else if (int.class.isAssignableFrom(fieldType) || Integer.class.isAssignableFrom(fieldType)) {
+        break;
+      case INT:
         addField(columnName, (int) value);
-      } else if (short.class.isAssignableFrom(fieldType) || Short.class.isAssignableFrom(fieldType)) {
+        break;
+      case SHORT:
         addField(columnName, (short) value);
-      } else if (String.class.isAssignableFrom(fieldType)) {
+        break;
+      case STRING:
         addField(columnName, (String) value);
-      } else if (Enum.class.isAssignableFrom(fieldType)) {
+        break;
+      case ENUM:
         addField(columnName, ((Enum<?>) value).name());
-      } else {
+        break;
+      default:
         throw new InfluxDBMapperException(
-                "Unsupported type " + fieldType + " for column " + columnName);
+                "Unsupported type " + property.getType() + " for column " + columnName);
       }
     }
   }
@@ -444,7 +521,51 @@ public class Point {
    *            the tags to set
    */
   void setTags(final Map<String, String> tags) {
-    this.tags = tags;
+    this.tags = toSortedArrayMap(tags);
+    this.seriesKey = null;
+  }
+
+  /**
+   * Replace the tags of this point with a copy of the given tags, reusing the tag map owned by this point.
+   *
+   * @param tagsToCopy
+   *            the tags to copy
+   */
+  void copyTags(final SortedArrayMap<String> tagsToCopy) {
+    if (this.tags == null || this.seriesKey != null) {
+      this.tags = new SortedArrayMap<>();
+    }
+    this.tags.copyFrom(tagsToCopy);
+    this.seriesKey = null;
+  }
+
+  /**
+   * @param seriesKey
+   *            the series to set, its tags become the tags of this point
+   */
+  void setSeriesKey(final SeriesKey seriesKey) {
+    this.seriesKey = seriesKey;
+    this.tags = seriesKey.sortedTags();
+  }
+
+  /**
+   * Add tags to this point, replacing tags with the same name. The escaped series of the point is only
+   * dropped if this changes its tags.
+   *
+   * @param tagsToAdd
+   *            the tags to add
+   */
+  void addTags(final Map<String, String> tagsToAdd) {
+    for (Entry<String, String> tag : tagsToAdd.entrySet()) {
+      if (Objects.equals(tag.getValue(), this.tags.get(tag.getKey()))) {
+        continue;
+      }
+      if (this.seriesKey != null) {
+        this.tags = new SortedArrayMap<>(this.tags);
+        this.seriesKey = null;
+      }
+      this.tags.put(tag.getKey(), tag.getValue());
+    }
   }
 
   /**
@@ -474,7 +595,65 @@ public class Point {
    *            the fields to set
    */
   void setFields(final Map<String, Object> fields) {
-    this.fields = fields;
+    this.fields = toSortedArrayMap(fields);
+  }
+
+  /**
+   * Replace the fields of this point with a copy of the given fields, reusing the field map owned by this
+   * point.
+   *
+   * @param fieldsToCopy
+   *            the fields to copy
+   */
+  void copyFields(final SortedArrayMap<Object> fieldsToCopy) {
+    if (this.fields == null) {
+      this.fields = new SortedArrayMap<>();
+    }
+    this.fields.copyFrom(fieldsToCopy);
+  }
+
+  /**
+   * @param pool
+   *            the pool this point is returned to by {@link #release()}
+   */
+  void setPool(final PointPool pool) {
+    this.pool = pool;
+  }
+
+  /**
+   * Return this point to the {@link PointPool} it was built from, so its storage is reused for another
+   * point. The point must not be used anymore afterwards. Points that were not built by a pool are left
+   * to the garbage collector, for them this does nothing.
+   * <p>
+   * Points written with batching enabled are released by the client once their batch has been written.
+   */
+  public void release() {
+    PointPool owner = this.pool;
+    if (owner == null) {
+      return;
+    }
+    this.pool = null;
+    this.measurement = null;
+    this.time = null;
+    this.precision = TimeUnit.NANOSECONDS;
+    if (this.seriesKey == null && this.tags != null) {
+      this.tags.clear();
+    } else {
+      this.tags = null;
+    }
+    this.seriesKey = null;
+    if (this.fields != null) {
+      this.fields.clear();
+    }
+    owner.recycle(this);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <V> SortedArrayMap<V> toSortedArrayMap(final Map<String, V> map) {
+    if (map instanceof SortedArrayMap) {
+      return (SortedArrayMap<V>) map;
+    }
+    return new SortedArrayMap<>(map);
   }
 
   @Override
@@ -556,8 +735,12 @@ public class Point {
     StringBuilder sb = CACHED_STRINGBUILDERS.get();
     sb.setLength(0);
 
-    escapeKey(sb, measurement);
-    concatenatedTags(sb);
+    if (this.seriesKey != null) {
+      sb.append(this.seriesKey.lineProtocol()).append(' ');
+    } else {
+      escapeKey(sb, measurement);
+      concatenatedTags(sb);
+    }
     int writtenFields = concatenatedFields(sb);
     if (writtenFields == 0) {
       return "";
@@ -567,42 +750,196 @@ public class Point {
     return sb.toString();
   }
 
+  /**
+   * Write the lineprotocol entry for a single point as UTF-8 into the given sink, using a specific
+   * {@link TimeUnit} for the timestamp. The written bytes are the same as the UTF-8 encoding of
+   * {@link #lineProtocol(TimeUnit)}, but keys, values and the timestamp are encoded straight into the
+   * sink without building an intermediate String.
+   *
+   * @param sink the sink to write the entry to, without newLine
+   * @param precision the time precision unit for this point
+   * @return true if the entry was written, false when there are no fields to write
+   * @throws IOException if the sink cannot be written
+   */
+  public boolean lineProtocol(final BufferedSink sink, final TimeUnit precision) throws IOException {
+    if (!hasWritableFields()) {
+      return false;
+    }
+    if (this.seriesKey != null) {
+      sink.write(this.seriesKey.lineProtocolBytes()).writeByte(' ');
+    } else {
+      escapeKey(sink, measurement);
+      concatenatedTags(sink);
+    }
+    concatenatedFields(sink);
+    formatedTime(sink, precision);
+    return true;
+  }
+
+  /**
+   * Estimate the size of the lineprotocol entry of this point, including the newLine, without writing it.
+   * Characters count as one byte, escaping is ignored and floating point values and the timestamp count with
+   * their usual maximum length, so the estimate is close for ASCII names and values.
+   *
+   * @return the estimated number of bytes of the entry, 0 when there are no fields to write
+   */
+  public int estimatedLineProtocolBytes() {
+    int bytes = 0;
+    for (int i = 0; i < this.fields.size(); i++) {
+      if (isWritableField(i)) {
+        // the field separator and the equals sign
+        bytes += this.fields.keyAt(i).length() + 2 + estimatedFieldBytes(i);
+      }
+    }
+    if (bytes == 0) {
+      return 0;
+    }
+    if (this.seriesKey != null) {
+      bytes += this.seriesKey.lineProtocolBytes().length;
+    } else {
+      bytes += this.measurement.length();
+      for (int i = 0; i < this.tags.size(); i++) {
+        bytes += this.tags.keyAt(i).length() + this.tags.valueAt(i).length() + 2;
+      }
+    }
+    if (this.time != null) {
+      bytes += TIME_ESTIMATE_BYTES;
+    }
+    // the space in front of the fields, the last field separator stands for the newLine
+    return bytes + 1;
+  }
+
+  private int estimatedFieldBytes(final int index) {
+    switch (this.fields.typeAt(index)) {
+      case SortedArrayMap.TYPE_DOUBLE:
+      case SortedArrayMap.TYPE_FLOAT:
+        return DOUBLE_ESTIMATE_BYTES;
+      case SortedArrayMap.TYPE_BOOLEAN:
+        return String.valueOf(this.fields.longAt(index) != 0).length();
+      case SortedArrayMap.TYPE_OBJECT:
+        return estimatedFieldBytes(this.fields.valueAt(index));
+      default:
+        return decimalLength(this.fields.longAt(index)) + 1;
+    }
+  }
+
+  private static int estimatedFieldBytes(final Object value) {
+    if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+      return decimalLength(((Number) value).longValue()) + 1;
+    } else if (value instanceof Number) {
+      return DOUBLE_ESTIMATE_BYTES;
+    } else if (value instanceof String) {
+      return ((String) value).length() + 2;
+    }
+    return String.valueOf(value).length();
+  }
+
+  /**
+   * @return the number of characters of the decimal representation of the value, including the sign
+   */
+  static int decimalLength(final long value) {
+    if (value == Long.MIN_VALUE) {
+      return Long.toString(value).length();
+    }
+    int length = 1;
+    long remaining = value;
+    if (remaining < 0) {
+      length++;
+      remaining = -remaining;
+    }
+    while (remaining >= RADIX) {
+      remaining /= RADIX;
+      length++;
+    }
+    return length;
+  }
+
   public String getMeasurement(){
     return this.measurement;
   }
 
+  private boolean hasWritableFields() {
+    for (int i = 0; i < this.fields.size(); i++) {
+      if (isWritableField(i)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void concatenatedTags(final BufferedSink sink) throws IOException {
+    for (int i = 0; i < this.tags.size(); i++) {
+      sink.writeByte(',');
+      escapeKey(sink, this.tags.keyAt(i));
+      sink.writeByte('=');
+      escapeKey(sink, this.tags.valueAt(i));
+    }
+    sink.writeByte(' ');
+  }
+
+  private void concatenatedFields(final BufferedSink sink) throws IOException {
+    boolean first = true;
+    for (int i = 0; i < this.fields.size(); i++) {
+      if (!isWritableField(i)) {
+        continue;
+      }
+      if (!first) {
+        sink.writeByte(',');
+      }
+      first = false;
+      escapeKey(sink, this.fields.keyAt(i));
+      sink.writeByte('=');
+      if (this.fields.typeAt(i) != SortedArrayMap.TYPE_OBJECT) {
+        primitiveField(sink, i);
+      } else {
+        objectField(sink, this.fields.valueAt(i));
+      }
+    }
+  }
+
+  private static void objectField(final BufferedSink sink, final Object value) throws IOException {
+    if (value instanceof Number) {
+      if (isFloatingPoint(value)) {
+        DOUBLE_FORMATTER.get().format(sink, ((Number) value).doubleValue());
+      } else if (value instanceof Double || value instanceof Float || value instanceof BigDecimal) {
+        sink.writeUtf8(NUMBER_FORMATTER.get().format(value));
+      } else if (value instanceof Long || value instanceof Integer
+              || value instanceof Short || value instanceof Byte) {
+        sink.writeDecimalLong(((Number) value).longValue()).writeByte('i');
+      } else {
+        sink.writeUtf8(value.toString()).writeByte('i');
+      }
+    } else if (value instanceof String) {
+      sink.writeByte('"');
+      escapeField(sink, (String) value);
+      sink.writeByte('"');
+    } else {
+      sink.writeUtf8(String.valueOf(value));
+    }
+  }
+
   private void concatenatedTags(final StringBuilder sb) {
-    for (Entry<String, String> tag : this.tags.entrySet()) {
+    for (int i = 0; i < this.tags.size(); i++) {
       sb.append(',');
-      escapeKey(sb, tag.getKey());
+      escapeKey(sb, this.tags.keyAt(i));
       sb.append('=');
-      escapeKey(sb, tag.getValue());
+      escapeKey(sb, this.tags.valueAt(i));
     }
     sb.append(' ');
   }
 
   private int concatenatedFields(final StringBuilder sb) {
     int fieldCount = 0;
-    for (Entry<String, Object> field : this.fields.entrySet()) {
-      Object value = field.getValue();
-      if (value == null || isNotFinite(value)) {
+    for (int i = 0; i < this.fields.size(); i++) {
+      if (!isWritableField(i)) {
         continue;
       }
-      escapeKey(sb, field.getKey());
+      escapeKey(sb, this.fields.keyAt(i));
       sb.append('=');
-      if (value instanceof Number) {
-        if (value instanceof Double || value instanceof Float || value instanceof BigDecimal) {
-          sb.append(NUMBER_FORMATTER.get().format(value));
-        } else {
-          sb.append(value).append('i');
-        }
-      } else if (value instanceof String) {
-        String stringValue = (String) value;
-        sb.append('"');
-        escapeField(sb, stringValue);
-        sb.append('"');
+      if (this.fields.typeAt(i) != SortedArrayMap.TYPE_OBJECT) {
+        primitiveField(sb, i);
       } else {
-        sb.append(value);
+        objectField(sb, this.fields.valueAt(i));
       }
 
       sb.append(',');
@@ -632,6 +969,38 @@ public class Point {
     }
   }
 
+  static void escapeKey(final BufferedSink sink, final String key) throws IOException {
+    // copy the runs between escaped characters in one go, escaped characters are all ASCII
+    int start = 0;
+    for (int i = 0; i < key.length(); i++) {
+      switch (key.charAt(i)) {
+        case ' ':
+        case ',':
+        case '=':
+          sink.writeUtf8(key, start, i).writeByte('\\');
+          start = i;
+          break;
+        default:
+      }
+    }
+    sink.writeUtf8(key, start, key.length());
+  }
+
+  static void escapeField(final BufferedSink sink, final String field) throws IOException {
+    int start = 0;
+    for (int i = 0; i < field.length(); i++) {
+      switch (field.charAt(i)) {
+        case '\\':
+        case '\"':
+          sink.writeUtf8(field, start, i).writeByte('\\');
+          start = i;
+          break;
+        default:
+      }
+    }
+    sink.writeUtf8(field, start, field.length());
+  }
+
   static void escapeField(final StringBuilder sb, final String field) {
     for (int i = 0; i < field.length(); i++) {
       switch (field.charAt(i)) {
@@ -644,6 +1013,103 @@ public class Point {
     }
   }
 
+  private static void objectField(final StringBuilder sb, final Object value) {
+    if (value instanceof Number) {
+      if (isFloatingPoint(value)) {
+        DOUBLE_FORMATTER.get().format(sb, ((Number) value).doubleValue());
+      } else if (value instanceof Double || value instanceof Float || value instanceof BigDecimal) {
+        sb.append(NUMBER_FORMATTER.get().format(value));
+      } else {
+        sb.append(value).append('i');
+      }
+    } else if (value instanceof String) {
+      sb.append('"');
+      escapeField(sb, (String) value);
+      sb.append('"');
+    } else {
+      sb.append(value);
+    }
+  }
+
+  /**
+   * Write an unboxed field value.
+   */
+  private void primitiveField(final BufferedSink sink, final int index) throws IOException {
+    switch (this.fields.typeAt(index)) {
+      case SortedArrayMap.TYPE_DOUBLE:
+      case SortedArrayMap.TYPE_FLOAT:
+        doubleField(sink, this.fields.doubleAt(index));
+        break;
+      case SortedArrayMap.TYPE_BOOLEAN:
+        sink.writeUtf8(String.valueOf(this.fields.longAt(index) != 0));
+        break;
+      default:
+        sink.writeDecimalLong(this.fields.longAt(index)).writeByte('i');
+    }
+  }
+
+  /**
+   * Append an unboxed field value.
+   */
+  private void primitiveField(final StringBuilder sb, final int index) {
+    switch (this.fields.typeAt(index)) {
+      case SortedArrayMap.TYPE_DOUBLE:
+      case SortedArrayMap.TYPE_FLOAT:
+        doubleField(sb, this.fields.doubleAt(index));
+        break;
+      case SortedArrayMap.TYPE_BOOLEAN:
+        sb.append(this.fields.longAt(index) != 0);
+        break;
+      default:
+        sb.append(this.fields.longAt(index)).append('i');
+    }
+  }
+
+  /**
+   * Write a finite double field value, honouring the legacy number format.
+   */
+  static void doubleField(final BufferedSink sink, final double value) throws IOException {
+    if (LEGACY_NUMBER_FORMAT) {
+      sink.writeUtf8(NUMBER_FORMATTER.get().format(value));
+    } else {
+      DOUBLE_FORMATTER.get().format(sink, value);
+    }
+  }
+
+  /**
+   * Append a finite double field value, honouring the legacy number format.
+   */
+  static void doubleField(final StringBuilder sb, final double value) {
+    if (LEGACY_NUMBER_FORMAT) {
+      sb.append(NUMBER_FORMATTER.get().format(value));
+    } else {
+      DOUBLE_FORMATTER.get().format(sb, value);
+    }
+  }
+
+  /**
+   * Null values, NaN and infinity are not written, without boxing primitive values to check it.
+   */
+  private boolean isWritableField(final int index) {
+    switch (this.fields.typeAt(index)) {
+      case SortedArrayMap.TYPE_OBJECT:
+        Object value = this.fields.valueAt(index);
+        return value != null && !isNotFinite(value);
+      case SortedArrayMap.TYPE_DOUBLE:
+      case SortedArrayMap.TYPE_FLOAT:
+        return Double.isFinite(this.fields.doubleAt(index));
+      default:
+        return true;
+    }
+  }
+
+  /**
+   * Double and float values are written with {@link DoubleFormatter}, unless the legacy formatting is selected.
+   */
+  private static boolean isFloatingPoint(final Object value) {
+    return !LEGACY_NUMBER_FORMAT && (value instanceof Double || value instanceof Float);
+  }
+
   private static boolean isNotFinite(final Object value) {
     return value instanceof Double && !Double.isFinite((Double) value)
             || value instanceof Float && !Float.isFinite((Float) value);
@@ -653,6 +1119,35 @@ public class Point {
     if (this.time == null) {
       return;
     }
+    if (this.time instanceof BigInteger || this.time instanceof BigDecimal) {
+      sb.append(" ").append(convertedBigTime(precision));
+    } else {
+      sb.append(" ").append(convertedTime(precision));
+    }
+  }
+
+  private void formatedTime(final BufferedSink sink, final TimeUnit precision) throws IOException {
+    if (this.time == null) {
+      return;
+    }
+    sink.writeByte(' ');
+    if (this.time instanceof BigInteger || this.time instanceof BigDecimal) {
+      sink.writeUtf8(convertedBigTime(precision).toString());
+    } else {
+      sink.writeDecimalLong(convertedTime(precision));
+    }
+  }
+
+  private long convertedTime(final TimeUnit precision) {
+    TimeUnit converterPrecision = precision;
+
+    if (converterPrecision == null) {
+      converterPrecision = TimeUnit.NANOSECONDS;
+    }
+    return converterPrecision.convert(this.time.longValue(), this.precision);
+  }
+
+  private BigInteger convertedBigTime(final TimeUnit precision) {
     TimeUnit converterPrecision = precision;
 
     if (converterPrecision == null) {
@@ -667,8 +1162,8 @@ public class Point {
         conversionFactor = this.precision.convert(1, converterPrecision);
         time = time.divide(BigInteger.valueOf(conversionFactor));
       }
-      sb.append(" ").append(time);
-    } else if (this.time instanceof BigDecimal) {
+      return time;
+    } else {
       BigDecimal time = (BigDecimal) this.time;
       long conversionFactor = converterPrecision.convert(1, this.precision);
       if (conversionFactor >= 1) {
@@ -677,9 +1172,7 @@ public class Point {
         conversionFactor = this.precision.convert(1, converterPrecision);
         time = time.divide(BigDecimal.valueOf(conversionFactor), RoundingMode.HALF_UP);
       }
-      sb.append(" ").append(time.toBigInteger());
-    } else {
-      sb.append(" ").append(converterPrecision.convert(this.time.longValue(), this.precision));
+      return time.toBigInteger();
     }
   }
 
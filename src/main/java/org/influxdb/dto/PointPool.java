@@ -0,0 +1,91 @@
+package org.influxdb.dto;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.influxdb.impl.Preconditions;
+
+/**
+ * Pool of recyclable {@link Point}s for producers writing many points per second.
+ * <p>
+ * Builders of a pool copy their tags and fields into a point taken from the pool, so neither the builder
+ * nor the point allocate new storage once the pool is warm. A builder can be {@link Point.Builder#reset(String)
+ * reset} and reused for the next point. A point goes back to the pool with {@link Point#release()}; with
+ * batching enabled this is done by the client once the batch containing the point has been written, points
+ * of failed batches are handed to the exception handler and are not reused.
+ *
+ * <pre>
+ * PointPool pool = new PointPool(4096);
+ * Point.Builder builder = pool.builder("cpu");
+ * for (Sample sample : samples) {
+ *   influxDB.write(builder.reset("cpu").tag("host", sample.host).addField("idle", sample.idle).build());
+ * }
+ * </pre>
+ *
+ * The pool is thread safe, a builder is not and should be used by one thread only.
+ */
+public final class PointPool {
+
+  /**
+   * The default maximum number of pooled points.
+   */
+  public static final int DEFAULT_MAX_SIZE = 1024;
+
+  private final BlockingQueue<Point> points;
+
+  /**
+   * Create a pool keeping up to {@link #DEFAULT_MAX_SIZE} released points.
+   */
+  public PointPool() {
+    this(DEFAULT_MAX_SIZE);
+  }
+
+  /**
+   * @param maxSize the maximum number of released points kept for reuse
+   */
+  public PointPool(final int maxSize) {
+    Preconditions.checkPositiveNumber(maxSize, "maxSize");
+    this.points = new ArrayBlockingQueue<>(maxSize);
+  }
+
+  /**
+   * Create a builder that builds points of this pool.
+   *
+   * @param measurement the name of the measurement of the first point
+   * @return the Builder instance
+   */
+  public Point.Builder builder(final String measurement) {
+    return new Point.Builder(measurement, this);
+  }
+
+  /**
+   * Create a builder that builds points of this pool.
+   *
+   * @param seriesKey the measurement and tags of the first point, see {@link Point#series(SeriesKey)}
+   * @return the Builder instance
+   */
+  public Point.Builder builder(final SeriesKey seriesKey) {
+    return new Point.Builder(seriesKey, this);
+  }
+
+  /**
+   * @return the number of released points waiting to be reused
+   */
+  public int size() {
+    return this.points.size();
+  }
+
+  Point acquire() {
+    Point point = this.points.poll();
+    if (point == null) {
+      point = new Point();
+    }
+    point.setPool(this);
+    return point;
+  }
+
+  void recycle(final Point point) {
+    // when the pool is full the point is left to the garbage collector
+    this.points.offer(point);
+  }
+}
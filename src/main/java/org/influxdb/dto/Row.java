@@ -0,0 +1,80 @@
+package org.influxdb.dto;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A single row of a query result, as returned by {@link org.influxdb.InfluxDB#queryStream(Query)}. The rows of
+ * a series share their name, tags and columns.
+ */
+public final class Row {
+
+  private final int statementId;
+  private final String seriesName;
+  private final Map<String, String> tags;
+  private final List<String> columns;
+  private final List<Object> values;
+
+  public Row(final int statementId, final String seriesName, final Map<String, String> tags,
+             final List<String> columns, final List<Object> values) {
+    this.statementId = statementId;
+    this.seriesName = seriesName;
+    this.tags = tags;
+    this.columns = columns;
+    this.values = values;
+  }
+
+  /**
+   * @return the index of the statement of the query the row belongs to
+   */
+  public int getStatementId() {
+    return this.statementId;
+  }
+
+  /**
+   * @return the name of the series, usually the measurement
+   */
+  public String getSeriesName() {
+    return this.seriesName;
+  }
+
+  /**
+   * @return the tags of the series, empty if the query is not grouped by tags
+   */
+  public Map<String, String> getTags() {
+    return this.tags;
+  }
+
+  /**
+   * @return the names of the columns
+   */
+  public List<String> getColumns() {
+    return this.columns;
+  }
+
+  /**
+   * @return the values of the row in the order of the columns. Numbers are decoded like in {@link QueryResult},
+   *         as {@code Double}s from JSON and as integer types or {@code Double}s from MessagePack.
+   */
+  public List<Object> getValues() {
+    return this.values;
+  }
+
+  /**
+   * @param column the name of a column
+   * @return the value of the column, null if the row has no such column
+   */
+  public Object getValue(final String column) {
+    int index = this.columns.indexOf(column);
+    if (index < 0) {
+      return null;
+    }
+    return this.values.get(index);
+  }
+
+  @Override
+  public String toString() {
+    return "Row [statementId=" + this.statementId + ", seriesName=" + this.seriesName + ", tags=" + this.tags
+        + ", values=" + this.values + "]";
+  }
+}
@@ -0,0 +1,119 @@
+package org.influxdb.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+
+import org.influxdb.impl.Preconditions;
+
+/**
+ * The series of a point, its measurement and tag set, with the escaped line protocol already computed.
+ * <p>
+ * Points built with {@link Point#series(SeriesKey)} copy these bytes instead of escaping the measurement and
+ * every tag each time they are written. Instances are immutable and can be shared between threads, use a
+ * {@link SeriesKeyCache} to reuse them for repeating series.
+ */
+public final class SeriesKey {
+
+  private final String measurement;
+  private final SortedArrayMap<String> tags;
+  private final Map<String, String> unmodifiableTags;
+  private final String lineProtocol;
+  private final byte[] lineProtocolBytes;
+
+  private SeriesKey(final String measurement, final SortedArrayMap<String> tags) {
+    this.measurement = measurement;
+    this.tags = tags;
+    this.unmodifiableTags = Collections.unmodifiableMap(tags);
+    StringBuilder sb = new StringBuilder();
+    Point.escapeKey(sb, measurement);
+    for (int i = 0; i < tags.size(); i++) {
+      sb.append(',');
+      Point.escapeKey(sb, tags.keyAt(i));
+      sb.append('=');
+      Point.escapeKey(sb, tags.valueAt(i));
+    }
+    this.lineProtocol = sb.toString();
+    this.lineProtocolBytes = this.lineProtocol.getBytes(StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Create the key of a series. Tags with an empty name or value are ignored, like in
+   * {@link Point.Builder#tag(String, String)}.
+   *
+   * @param measurement the name of the measurement
+   * @param tags the tags of the series
+   * @return the series key
+   */
+  public static SeriesKey of(final String measurement, final Map<String, String> tags) {
+    Preconditions.checkNonEmptyString(measurement, "measurement");
+    SortedArrayMap<String> sortedTags = new SortedArrayMap<>();
+    for (Entry<String, String> tag : tags.entrySet()) {
+      Objects.requireNonNull(tag.getKey(), "tagName");
+      Objects.requireNonNull(tag.getValue(), "value");
+      if (!tag.getKey().isEmpty() && !tag.getValue().isEmpty()) {
+        sortedTags.put(tag.getKey(), tag.getValue());
+      }
+    }
+    return new SeriesKey(measurement, sortedTags);
+  }
+
+  /**
+   * @return the name of the measurement
+   */
+  public String getMeasurement() {
+    return this.measurement;
+  }
+
+  /**
+   * @return the unmodifiable tags, sorted by name
+   */
+  public Map<String, String> getTags() {
+    return this.unmodifiableTags;
+  }
+
+  /**
+   * @return the tags shared with the points of this series, must not be modified
+   */
+  SortedArrayMap<String> sortedTags() {
+    return this.tags;
+  }
+
+  /**
+   * @return the escaped measurement and tags, as written in front of the fields
+   */
+  String lineProtocol() {
+    return this.lineProtocol;
+  }
+
+  /**
+   * @return the UTF-8 encoding of {@link #lineProtocol()}, must not be modified
+   */
+  byte[] lineProtocolBytes() {
+    return this.lineProtocolBytes;
+  }
+
+  @Override
+  public boolean equals(final Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    SeriesKey seriesKey = (SeriesKey) o;
+    return this.measurement.equals(seriesKey.measurement) && this.tags.equals(seriesKey.tags);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(this.measurement, this.tags);
+  }
+
+  @Override
+  public String toString() {
+    return "SeriesKey [" + this.lineProtocol + "]";
+  }
+}
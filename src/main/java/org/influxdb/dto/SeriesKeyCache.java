@@ -0,0 +1,128 @@
+package org.influxdb.dto;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+import org.influxdb.impl.Preconditions;
+
+/**
+ * Bounded least recently used cache of {@link SeriesKey}s.
+ * <p>
+ * Looking up a series that was seen before returns the same key, so its measurement and tags are escaped
+ * only once. When the cache is full the least recently used series is evicted. The cache is thread safe.
+ *
+ * <pre>
+ * SeriesKeyCache cache = new SeriesKeyCache(10_000);
+ * Point point = Point.series(cache.get("cpu", tags)).addField("idle", 90L).build();
+ * </pre>
+ */
+public final class SeriesKeyCache {
+
+  /**
+   * The default maximum number of cached series.
+   */
+  public static final int DEFAULT_MAX_SIZE = 10_000;
+
+  private static final int INITIAL_CAPACITY = 16;
+  private static final float LOAD_FACTOR = 0.75f;
+
+  private final int maxSize;
+  private final Map<Lookup, SeriesKey> cache;
+
+  /**
+   * Create a cache holding up to {@link #DEFAULT_MAX_SIZE} series.
+   */
+  public SeriesKeyCache() {
+    this(DEFAULT_MAX_SIZE);
+  }
+
+  /**
+   * @param maxSize the maximum number of cached series
+   */
+  public SeriesKeyCache(final int maxSize) {
+    Preconditions.checkPositiveNumber(maxSize, "maxSize");
+    this.maxSize = maxSize;
+    this.cache = new LinkedHashMap<Lookup, SeriesKey>(INITIAL_CAPACITY, LOAD_FACTOR, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(final Map.Entry<Lookup, SeriesKey> eldest) {
+        return size() > SeriesKeyCache.this.maxSize;
+      }
+    };
+  }
+
+  /**
+   * Get the key of a series, creating and caching it when it was not seen before.
+   *
+   * @param measurement the name of the measurement
+   * @param tags the tags of the series
+   * @return the series key
+   */
+  public SeriesKey get(final String measurement, final Map<String, String> tags) {
+    Lookup lookup = new Lookup(measurement, tags);
+    synchronized (this.cache) {
+      SeriesKey seriesKey = this.cache.get(lookup);
+      if (seriesKey != null) {
+        return seriesKey;
+      }
+    }
+    SeriesKey seriesKey = SeriesKey.of(measurement, tags);
+    synchronized (this.cache) {
+      this.cache.put(new Lookup(measurement, new TreeMap<>(tags)), seriesKey);
+    }
+    return seriesKey;
+  }
+
+  /**
+   * @return the number of cached series
+   */
+  public int size() {
+    synchronized (this.cache) {
+      return this.cache.size();
+    }
+  }
+
+  /**
+   * Remove all cached series.
+   */
+  public void clear() {
+    synchronized (this.cache) {
+      this.cache.clear();
+    }
+  }
+
+  /**
+   * Cache key on the tags as given by the caller, so a hit does not need to copy or sort them.
+   */
+  private static final class Lookup {
+    private final String measurement;
+    private final Map<String, String> tags;
+    private final int hash;
+
+    Lookup(final String measurement, final Map<String, String> tags) {
+      this.measurement = measurement;
+      this.tags = tags;
+      this.hash = Objects.hash(measurement, tags);
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Lookup)) {
+        return false;
+      }
+      Lookup other = (Lookup) o;
+      return Objects.equals(this.measurement, other.measurement) && this.tags.equals(other.tags);
+    }
+
+    @Override
+    public int hashCode() {
+      return this.hash;
+    }
+  }
+}
@@ -0,0 +1,361 @@
+package org.influxdb.dto;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Map of the tags or fields of a point, keeping the keys sorted in a plain array.
+ * <p>
+ * Points have only a few tags and fields, for those a binary search over an array is as fast as a
+ * {@link java.util.TreeMap}, without allocating an entry object per key. The line protocol is written by index
+ * with {@link #keyAt(int)} and {@link #valueAt(int)}; {@link #entrySet()} iterates in key order like a
+ * TreeMap. The map can be cleared and refilled without allocating, which is used by reusable builders.
+ * <p>
+ * Numeric and boolean field values can be stored unboxed with the {@code put*} methods of the primitive types.
+ * They are kept in a {@code long} column next to a type per entry, doubles and floats as their raw bits, and
+ * are only boxed when read through the {@link Map} interface. The primitive columns are allocated on the
+ * first primitive value, maps of tags never need them.
+ *
+ * @param <V> the type of the values
+ */
+final class SortedArrayMap<V> extends AbstractMap<String, V> {
+
+  /** The value is an object in the values array. */
+  static final byte TYPE_OBJECT = 0;
+  /** The value is a long in the primitive column. */
+  static final byte TYPE_LONG = 1;
+  /** The value is an int in the primitive column. */
+  static final byte TYPE_INT = 2;
+  /** The value is a short in the primitive column. */
+  static final byte TYPE_SHORT = 3;
+  /** The value is a double, stored as its raw bits in the primitive column. */
+  static final byte TYPE_DOUBLE = 4;
+  /** The value is a float, stored as the raw bits of the widened double in the primitive column. */
+  static final byte TYPE_FLOAT = 5;
+  /** The value is a boolean, stored as 0 or 1 in the primitive column. */
+  static final byte TYPE_BOOLEAN = 6;
+
+  private static final int INITIAL_CAPACITY = 8;
+  private static final String[] EMPTY_KEYS = new String[0];
+  private static final Object[] EMPTY_VALUES = new Object[0];
+
+  private String[] keys;
+  private Object[] values;
+  private byte[] types;
+  private long[] primitives;
+  private int size;
+  private int modCount;
+
+  SortedArrayMap() {
+    this.keys = EMPTY_KEYS;
+    this.values = EMPTY_VALUES;
+  }
+
+  SortedArrayMap(final Map<String, ? extends V> map) {
+    this();
+    if (map instanceof SortedArrayMap) {
+      copyFrom((SortedArrayMap<? extends V>) map);
+    } else {
+      putAll(map);
+    }
+  }
+
+  /**
+   * @param index the index of the entry, in key order
+   * @return the key of the entry
+   */
+  String keyAt(final int index) {
+    return this.keys[index];
+  }
+
+  /**
+   * @param index the index of the entry, in key order
+   * @return the value of the entry, primitive values are boxed
+   */
+  @SuppressWarnings("unchecked")
+  V valueAt(final int index) {
+    switch (typeAt(index)) {
+      case TYPE_LONG:
+        return (V) Long.valueOf(this.primitives[index]);
+      case TYPE_INT:
+        return (V) Integer.valueOf((int) this.primitives[index]);
+      case TYPE_SHORT:
+        return (V) Short.valueOf((short) this.primitives[index]);
+      case TYPE_DOUBLE:
+        return (V) Double.valueOf(doubleAt(index));
+      case TYPE_FLOAT:
+        return (V) Float.valueOf((float) doubleAt(index));
+      case TYPE_BOOLEAN:
+        return (V) Boolean.valueOf(this.primitives[index] != 0);
+      default:
+        return (V) this.values[index];
+    }
+  }
+
+  /**
+   * @param index the index of the entry, in key order
+   * @return the type of the value, one of the {@code TYPE_*} constants
+   */
+  byte typeAt(final int index) {
+    if (this.types == null) {
+      return TYPE_OBJECT;
+    }
+    return this.types[index];
+  }
+
+  /**
+   * @param index the index of an entry of type long, int, short or boolean
+   * @return the value
+   */
+  long longAt(final int index) {
+    return this.primitives[index];
+  }
+
+  /**
+   * @param index the index of an entry of type double or float
+   * @return the value
+   */
+  double doubleAt(final int index) {
+    return Double.longBitsToDouble(this.primitives[index]);
+  }
+
+  void putLong(final String key, final long value) {
+    putPrimitive(key, TYPE_LONG, value);
+  }
+
+  void putInt(final String key, final int value) {
+    putPrimitive(key, TYPE_INT, value);
+  }
+
+  void putShort(final String key, final short value) {
+    putPrimitive(key, TYPE_SHORT, value);
+  }
+
+  void putDouble(final String key, final double value) {
+    putPrimitive(key, TYPE_DOUBLE, Double.doubleToRawLongBits(value));
+  }
+
+  void putFloat(final String key, final float value) {
+    putPrimitive(key, TYPE_FLOAT, Double.doubleToRawLongBits(value));
+  }
+
+  void putBoolean(final String key, final boolean value) {
+    long bits = 0;
+    if (value) {
+      bits = 1;
+    }
+    putPrimitive(key, TYPE_BOOLEAN, bits);
+  }
+
+  /**
+   * Replace the content of this map with the content of the other map, reusing the arrays of this map
+   * when they are large enough.
+   *
+   * @param other the map to copy
+   */
+  void copyFrom(final SortedArrayMap<? extends V> other) {
+    if (this.keys.length < other.size) {
+      this.keys = new String[other.size];
+      this.values = new Object[other.size];
+      this.types = null;
+      this.primitives = null;
+    } else if (this.size > other.size) {
+      Arrays.fill(this.keys, other.size, this.size, null);
+      Arrays.fill(this.values, other.size, this.size, null);
+    }
+    System.arraycopy(other.keys, 0, this.keys, 0, other.size);
+    System.arraycopy(other.values, 0, this.values, 0, other.size);
+    if (other.types != null) {
+      ensurePrimitives();
+      System.arraycopy(other.types, 0, this.types, 0, other.size);
+      System.arraycopy(other.primitives, 0, this.primitives, 0, other.size);
+    } else if (this.types != null) {
+      Arrays.fill(this.types, 0, other.size, TYPE_OBJECT);
+    }
+    this.size = other.size;
+    this.modCount++;
+  }
+
+  @Override
+  public int size() {
+    return this.size;
+  }
+
+  @Override
+  public boolean containsKey(final Object key) {
+    return indexOf(key) >= 0;
+  }
+
+  @Override
+  public V get(final Object key) {
+    int index = indexOf(key);
+    if (index < 0) {
+      return null;
+    }
+    return valueAt(index);
+  }
+
+  @Override
+  public V put(final String key, final V value) {
+    int index = indexOf(key);
+    V previous = null;
+    if (index >= 0) {
+      previous = valueAt(index);
+    } else {
+      index = insert(key, -(index + 1));
+    }
+    this.values[index] = value;
+    if (this.types != null) {
+      this.types[index] = TYPE_OBJECT;
+    }
+    return previous;
+  }
+
+  @Override
+  public V remove(final Object key) {
+    int index = indexOf(key);
+    if (index < 0) {
+      return null;
+    }
+    V previous = valueAt(index);
+    removeAt(index);
+    return previous;
+  }
+
+  @Override
+  public void clear() {
+    Arrays.fill(this.keys, 0, this.size, null);
+    Arrays.fill(this.values, 0, this.size, null);
+    this.size = 0;
+    this.modCount++;
+  }
+
+  @Override
+  public Set<Entry<String, V>> entrySet() {
+    return new EntrySet();
+  }
+
+  private void putPrimitive(final String key, final byte type, final long bits) {
+    int index = indexOf(key);
+    if (index < 0) {
+      index = insert(key, -(index + 1));
+    }
+    ensurePrimitives();
+    this.values[index] = null;
+    this.types[index] = type;
+    this.primitives[index] = bits;
+  }
+
+  private void ensurePrimitives() {
+    if (this.types == null) {
+      this.types = new byte[this.keys.length];
+      this.primitives = new long[this.keys.length];
+    }
+  }
+
+  /**
+   * Insert the key at the given index, shifting the following entries.
+   *
+   * @return the index
+   */
+  private int insert(final String key, final int index) {
+    if (key == null) {
+      throw new NullPointerException("key");
+    }
+    if (this.size == this.keys.length) {
+      int capacity = Math.max(INITIAL_CAPACITY, this.size * 2);
+      this.keys = Arrays.copyOf(this.keys, capacity);
+      this.values = Arrays.copyOf(this.values, capacity);
+      if (this.types != null) {
+        this.types = Arrays.copyOf(this.types, capacity);
+        this.primitives = Arrays.copyOf(this.primitives, capacity);
+      }
+    }
+    int moved = this.size - index;
+    System.arraycopy(this.keys, index, this.keys, index + 1, moved);
+    System.arraycopy(this.values, index, this.values, index + 1, moved);
+    if (this.types != null) {
+      System.arraycopy(this.types, index, this.types, index + 1, moved);
+      System.arraycopy(this.primitives, index, this.primitives, index + 1, moved);
+    }
+    this.keys[index] = key;
+    this.size++;
+    this.modCount++;
+    return index;
+  }
+
+  private void removeAt(final int index) {
+    int moved = this.size - index - 1;
+    System.arraycopy(this.keys, index + 1, this.keys, index, moved);
+    System.arraycopy(this.values, index + 1, this.values, index, moved);
+    if (this.types != null) {
+      System.arraycopy(this.types, index + 1, this.types, index, moved);
+      System.arraycopy(this.primitives, index + 1, this.primitives, index, moved);
+    }
+    this.size--;
+    this.keys[this.size] = null;
+    this.values[this.size] = null;
+    this.modCount++;
+  }
+
+  /**
+   * @return the index of the key, or -(insertion point + 1) if it is not contained
+   */
+  private int indexOf(final Object key) {
+    if (!(key instanceof String)) {
+      return -1;
+    }
+    return Arrays.binarySearch(this.keys, 0, this.size, key);
+  }
+
+  private final class EntrySet extends AbstractSet<Entry<String, V>> {
+
+    @Override
+    public int size() {
+      return SortedArrayMap.this.size;
+    }
+
+    @Override
+    public Iterator<Entry<String, V>> iterator() {
+      return new Iterator<Entry<String, V>>() {
+        private int next;
+        private int last = -1;
+        private int expectedModCount = SortedArrayMap.this.modCount;
+
+        @Override
+        public boolean hasNext() {
+          return this.next < SortedArrayMap.this.size;
+        }
+
+        @Override
+        public Entry<String, V> next() {
+          if (this.expectedModCount != SortedArrayMap.this.modCount) {
+            throw new ConcurrentModificationException();
+          }
+          if (!hasNext()) {
+            throw new NoSuchElementException();
+          }
+          this.last = this.next++;
+          return new SimpleImmutableEntry<>(keyAt(this.last), valueAt(this.last));
+        }
+
+        @Override
+        public void remove() {
+          if (this.last < 0) {
+            throw new IllegalStateException();
+          }
+          removeAt(this.last);
+          this.next = this.last;
+          this.last = -1;
+          this.expectedModCount = SortedArrayMap.this.modCount;
+        }
+      };
+    }
+  }
+}
@@ -0,0 +1,134 @@
+package org.influxdb.impl;
+
+import org.influxdb.BatchSizing;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Adapts the batch size and the flush interval of a {@link BatchProcessor} to the observed write latency.
+ * <p>
+ * The batch size follows additive increase / multiplicative decrease: every full batch written within the
+ * target latency grows it by a tenth of the configured actions, a slower or failed write halves it. It stays
+ * between a tenth of the configured actions and the maximum. The flush interval is halved whenever at least
+ * half a batch was queued until a timed flush and doubled back once less than a quarter was queued, it stays
+ * between a tenth of the configured interval and the configured interval.
+ */
+final class AdaptiveBatchSizer {
+
+  private static final int RANGE_DIVISOR = 10;
+  private static final int DRAINING_DIVISOR = 4;
+  private static final long NO_LATENCY = -1;
+
+  private final long targetLatencyNanos;
+  private final int minActions;
+  private final int maxActions;
+  private final int minFlushInterval;
+  private final int maxFlushInterval;
+  private final TimeUnit flushIntervalUnit;
+  private final Consumer<BatchSizing> handler;
+  private volatile int actions;
+  private volatile int flushInterval;
+
+  /**
+   * @param actions the configured actions, the initial batch size
+   * @param maxActions the largest batch size
+   * @param flushInterval the configured flush interval, the longest one
+   * @param flushIntervalUnit the unit of the flush interval
+   * @param targetLatency the target latency of a write (milliseconds)
+   * @param handler called with every change of the batch size or the flush interval
+   */
+  AdaptiveBatchSizer(final int actions, final int maxActions, final int flushInterval,
+                     final TimeUnit flushIntervalUnit, final int targetLatency, final Consumer<BatchSizing> handler) {
+    this.targetLatencyNanos = TimeUnit.MILLISECONDS.toNanos(targetLatency);
+    this.minActions = Math.max(actions / RANGE_DIVISOR, 1);
+    this.maxActions = Math.max(maxActions, actions);
+    this.minFlushInterval = Math.max(flushInterval / RANGE_DIVISOR, 1);
+    this.maxFlushInterval = flushInterval;
+    this.flushIntervalUnit = flushIntervalUnit;
+    this.handler = handler;
+    this.actions = actions;
+    this.flushInterval = flushInterval;
+  }
+
+  /**
+   * @return the number of actions that triggers a flush
+   */
+  int getActions() {
+    return this.actions;
+  }
+
+  /**
+   * @return the largest batch size
+   */
+  int getMaxActions() {
+    return this.maxActions;
+  }
+
+  /**
+   * @return the time until the next timed flush, in the unit of the configured interval
+   */
+  int getFlushInterval() {
+    return this.flushInterval;
+  }
+
+  /**
+   * Adapt the batch size to a finished write.
+   *
+   * @param points the number of written points
+   * @param latencyNanos the duration of the write
+   * @param failed true if the write failed or is retried later
+   */
+  synchronized void written(final int points, final long latencyNanos, final boolean failed) {
+    if (points == 0) {
+      return;
+    }
+    int next;
+    BatchSizing.Reason reason;
+    if (failed) {
+      next = Math.max(this.actions / 2, this.minActions);
+      reason = BatchSizing.Reason.WRITE_FAILED;
+    } else if (latencyNanos > this.targetLatencyNanos) {
+      next = Math.max(this.actions / 2, this.minActions);
+      reason = BatchSizing.Reason.WRITE_LATENCY_ABOVE_TARGET;
+    } else if (points * 2L >= this.actions) {
+      // only batches that were filled tell that the size is the limit
+      next = (int) Math.min((long) this.actions + this.minActions, this.maxActions);
+      reason = BatchSizing.Reason.WRITE_LATENCY_BELOW_TARGET;
+    } else {
+      return;
+    }
+    if (next != this.actions) {
+      this.actions = next;
+      changed(TimeUnit.NANOSECONDS.toMillis(latencyNanos), reason);
+    }
+  }
+
+  /**
+   * Adapt the flush interval to the number of actions queued until a timed flush.
+   *
+   * @param drainedActions the number of actions written by the flush
+   */
+  synchronized void flushed(final int drainedActions) {
+    int next;
+    BatchSizing.Reason reason;
+    if (drainedActions * 2L >= this.actions) {
+      next = Math.max(this.flushInterval / 2, this.minFlushInterval);
+      reason = BatchSizing.Reason.QUEUE_FILLING;
+    } else if (drainedActions * (long) DRAINING_DIVISOR < this.actions) {
+      next = (int) Math.min(this.flushInterval * 2L, this.maxFlushInterval);
+      reason = BatchSizing.Reason.QUEUE_DRAINING;
+    } else {
+      return;
+    }
+    if (next != this.flushInterval) {
+      this.flushInterval = next;
+      changed(NO_LATENCY, reason);
+    }
+  }
+
+  private void changed(final long latency, final BatchSizing.Reason reason) {
+    this.handler.accept(new BatchSizing(this.actions, this.flushIntervalUnit.toMillis(this.flushInterval), latency,
+                                        reason));
+  }
+}
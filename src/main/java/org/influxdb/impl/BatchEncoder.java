@@ -0,0 +1,110 @@
+package org.influxdb.impl;
+
+import org.influxdb.InfluxDB;
+import org.influxdb.WriteCodec;
+import org.influxdb.dto.BatchPoints;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * Compresses flushed batches with the {@link WriteCodec} of the client before they are written.
+ * <p>
+ * A compressed batch is sent with its Content-Encoding already set, so it is not compressed again in the
+ * interceptor chain, and the same bytes are kept for its retries and in the spool. With a compression executor
+ * the batches of a flush are compressed concurrently, otherwise on the thread writing them. Without compression
+ * the batches are not encoded up front, their line protocol is streamed into the request.
+ */
+final class BatchEncoder {
+
+  private final Supplier<WriteCodec> codec;
+  private final Executor executor;
+
+  /**
+   * @param codec the current codec of the client
+   * @param executor the executor compressing the batches, null to compress on the writing thread
+   */
+  BatchEncoder(final Supplier<WriteCodec> codec, final Executor executor) {
+    this.codec = codec;
+    this.executor = executor;
+  }
+
+  /**
+   * @param influxDB the client
+   * @return an encoder compressing with the codec of the client on the writing thread
+   */
+  static BatchEncoder of(final InfluxDB influxDB) {
+    if (influxDB instanceof InfluxDBImpl) {
+      return new BatchEncoder(influxDB::getWriteCodec, null);
+    }
+    return new BatchEncoder(WriteCodec::none, null);
+  }
+
+  /**
+   * @return whether batches are compressed before they are written
+   */
+  boolean isCompressing() {
+    return currentCodec().getContentEncoding() != null;
+  }
+
+  private WriteCodec currentCodec() {
+    WriteCodec writeCodec = this.codec.get();
+    if (writeCodec == null) {
+      return WriteCodec.none();
+    }
+    return writeCodec;
+  }
+
+  /**
+   * Encode a batch to keep it for a retry, compressed while the client compresses its writes.
+   *
+   * @param batchPoints the batch
+   * @return the encoded batch
+   */
+  EncodedBatch encode(final BatchPoints batchPoints) {
+    return EncodedBatch.encode(batchPoints, currentCodec());
+  }
+
+  /**
+   * Compress the batches of a flush before they are written.
+   *
+   * @param batches the batches
+   * @return the compressed batches in the same order, null if the client does not compress its writes
+   */
+  List<EncodedBatch> compress(final List<BatchPoints> batches) {
+    if (batches.isEmpty()) {
+      return null;
+    }
+    // all batches of a flush use the same codec, even if it is changed meanwhile
+    WriteCodec writeCodec = currentCodec();
+    if (writeCodec.getContentEncoding() == null) {
+      return null;
+    }
+    List<EncodedBatch> compressed = new ArrayList<>(batches.size());
+    if (this.executor == null || batches.size() == 1) {
+      for (BatchPoints batchPoints : batches) {
+        compressed.add(EncodedBatch.encode(batchPoints, writeCodec));
+      }
+      return compressed;
+    }
+    List<CompletableFuture<EncodedBatch>> futures = new ArrayList<>(batches.size());
+    for (BatchPoints batchPoints : batches) {
+      futures.add(CompletableFuture.supplyAsync(() -> EncodedBatch.encode(batchPoints, writeCodec), this.executor));
+    }
+    try {
+      for (CompletableFuture<EncodedBatch> future : futures) {
+        compressed.add(future.join());
+      }
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw e;
+    }
+    return compressed;
+  }
+}
@@ -0,0 +1,39 @@
+package org.influxdb.impl;
+
+import java.io.IOException;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+import org.influxdb.dto.BatchPoints;
+
+/**
+ * Request body streaming the line protocol of a {@link BatchPoints} into the request.
+ * <p>
+ * The points are encoded as UTF-8 straight into the sink of the connection, the batch is never built as
+ * a whole String or byte array. As the length is not known in advance the body is sent with chunked
+ * transfer encoding.
+ */
+final class BatchPointsRequestBody extends RequestBody {
+
+  private final BatchPoints batchPoints;
+
+  BatchPointsRequestBody(final BatchPoints batchPoints) {
+    this.batchPoints = batchPoints;
+  }
+
+  @Override
+  public MediaType contentType() {
+    return InfluxDBImpl.MEDIA_TYPE_STRING;
+  }
+
+  @Override
+  public long contentLength() {
+    return -1;
+  }
+
+  @Override
+  public void writeTo(final BufferedSink sink) throws IOException {
+    this.batchPoints.lineProtocol(sink);
+  }
+}
@@ -2,24 +2,35 @@ package org.influxdb.impl;
 
 import org.influxdb.InfluxDB;
 import org.influxdb.InfluxDB.ConsistencyLevel;
+import org.influxdb.BatchSizing;
+import org.influxdb.InfluxDBIOException;
+import org.influxdb.SpoolDepth;
+import org.influxdb.WriteCodec;
 import org.influxdb.dto.BatchPoints;
+import org.influxdb.dto.ColumnarBatch;
 import org.influxdb.dto.Point;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Objects;
-import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import java.util.function.DoubleSupplier;
 import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -34,7 +45,21 @@ import java.util.logging.Logger;
 public final class BatchProcessor {
 
   private static final Logger LOG = Logger.getLogger(BatchProcessor.class.getName());
-  protected final BlockingQueue<AbstractBatchEntry> queue;
+  // the flushes a destination stays without entries before it is dropped, the next entry creates it again
+  private static final int IDLE_FLUSHES = 10;
+  private final ConcurrentMap<Destination, HttpDestination> httpDestinations = new ConcurrentHashMap<>();
+  private final ConcurrentMap<Integer, UdpDestination> udpDestinations = new ConcurrentHashMap<>();
+  // the batches handed over to the batch writer by the running flush
+  private final List<BatchPoints> flushedBatches = new ArrayList<>();
+  private final int stripes;
+  // the places of every lane, one permit per queued action, null for an unbounded queue
+  private final Semaphore[] capacity;
+  // the places of all lanes together
+  private final int queueCapacity;
+  // a flush submitted by put and not started yet
+  private final AtomicBoolean writeScheduled = new AtomicBoolean();
+  private final AtomicInteger pendingActions = new AtomicInteger();
+  private final AtomicLong pendingBytes = new AtomicLong();
   private final ScheduledExecutorService scheduler;
   private final BiConsumer<Iterable<Point>, Throwable> exceptionHandler;
   final InfluxDB influxDB;
@@ -45,6 +70,9 @@ public final class BatchProcessor {
   private final int jitterInterval;
   private final TimeUnit precision;
   private final BatchWriter batchWriter;
+  private final int maxBatchBytes;
+  private final DoubleSupplier compressionRatio;
+  private final AdaptiveBatchSizer sizer;
   private boolean dropActionsOnQueueExhaustion;
   Consumer<Point> droppedActionHandler;
   Supplier<Double> randomSupplier;
@@ -69,6 +97,21 @@ public final class BatchProcessor {
 
     private boolean dropActionsOnQueueExhaustion;
     private Consumer<Point> droppedActionsHandler;
+    private int stripes = 1;
+    private int flushConcurrency = 1;
+    private int maxBatchBytes;
+    private DoubleSupplier compressionRatio = () -> 1;
+    private int adaptiveWriteLatency;
+    private int maxActions;
+    private Consumer<BatchSizing> batchSizingHandler = (sizing) -> { };
+    private Path spoolDirectory;
+    private long spoolMaxBytes;
+    private int spoolSegmentBytes;
+    private Consumer<SpoolDepth> spoolDepthHandler;
+    private int initialRetryDelay;
+    private int maxRetryDelay;
+    private Executor compressionExecutor;
+    private Supplier<WriteCodec> writeCodec = WriteCodec::none;
     /**
      * @param threadFactory
      *            is optional.
@@ -190,6 +233,130 @@ public final class BatchProcessor {
 
 
 
+    /**
+     * The number of independent lanes the action queue is split into. Each producer thread is pinned to
+     * one lane, the lanes are drained together on every flush.
+     *
+     * @param stripes
+     *            the number of lanes, 1 means a single shared queue
+     *
+     * @return this Builder to use it fluent
+     */
+    public Builder stripes(final int stripes) {
+      this.stripes = stripes;
+      return this;
+    }
+
+    /**
+     * The number of flush workers writing batches to InfluxDB concurrently. Batches of the same database and
+     * retention policy are always written by the same worker, in the order they were flushed. With a retry
+     * buffer there are at most bufferLimit / (actions + 1) workers, see
+     * {@link org.influxdb.BatchOptions#flushConcurrency(int)}.
+     *
+     * @param flushConcurrency
+     *            the number of flush workers, 1 means batches are written by the scheduler thread itself
+     *
+     * @return this Builder to use it fluent
+     */
+    public Builder flushConcurrency(final int flushConcurrency) {
+      this.flushConcurrency = flushConcurrency;
+      return this;
+    }
+
+    /**
+     * The target size of a write request body, see {@link org.influxdb.BatchOptions#maxBatchBytes(int)}.
+     *
+     * @param maxBatchBytes
+     *            the target size in bytes, 0 for no limit
+     * @param compressionRatio
+     *            the current ratio of the uncompressed to the compressed size of request bodies
+     *
+     * @return this Builder to use it fluent
+     */
+    public Builder maxBatchBytes(final int maxBatchBytes, final DoubleSupplier compressionRatio) {
+      this.maxBatchBytes = maxBatchBytes;
+      this.compressionRatio = compressionRatio;
+      return this;
+    }
+
+    /**
+     * Adapt the batch size and the flush interval to the write latency, see
+     * {@link org.influxdb.BatchOptions#adaptiveWriteLatency(int)}.
+     *
+     * @param targetLatency
+     *            the target latency of a write in milliseconds, 0 to keep actions and interval fixed
+     * @param maxActionsLimit
+     *            the largest batch size, the actions are never exceeded if it is smaller
+     * @param handler
+     *            called with every change of the batch size or the flush interval
+     *
+     * @return this Builder to use it fluent
+     */
+    public Builder adaptive(final int targetLatency, final int maxActionsLimit,
+                            final Consumer<BatchSizing> handler) {
+      this.adaptiveWriteLatency = targetLatency;
+      this.maxActions = maxActionsLimit;
+      this.batchSizingHandler = handler;
+      return this;
+    }
+
+    /**
+     * Spool batches overflowing the retry buffer to segment files in a directory.
+     *
+     * @param directory
+     *            the spool directory, null to not spool
+     * @param maxBytes
+     *            the maximum size of the segment files together
+     * @param segmentBytes
+     *            the size of a segment file
+     * @param depthHandler
+     *            the handler of the spool depth
+     *
+     * @return this Builder to use it fluent
+     */
+    public Builder spool(final Path directory, final long maxBytes, final int segmentBytes,
+                         final Consumer<SpoolDepth> depthHandler) {
+      this.spoolDirectory = directory;
+      this.spoolMaxBytes = maxBytes;
+      this.spoolSegmentBytes = segmentBytes;
+      this.spoolDepthHandler = depthHandler;
+      return this;
+    }
+
+    /**
+     * Retry failed writes from a retry thread with a backoff, see
+     * {@link org.influxdb.BatchOptions#initialRetryDelay(int)}.
+     *
+     * @param initialDelay
+     *            the delay of the first retry in milliseconds, 0 to retry on every flush
+     * @param maxDelay
+     *            the longest delay between retries in milliseconds
+     *
+     * @return this Builder to use it fluent
+     */
+    public Builder retryBackoff(final int initialDelay, final int maxDelay) {
+      this.initialRetryDelay = initialDelay;
+      this.maxRetryDelay = maxDelay;
+      return this;
+    }
+
+    /**
+     * Compress the batches before they are written with the codec of the client, see
+     * {@link org.influxdb.BatchOptions#compressionExecutor(Executor)}.
+     *
+     * @param executor
+     *            the executor compressing the batches, null to compress on the thread writing them
+     * @param writeCodec
+     *            the current codec of the client
+     *
+     * @return this Builder to use it fluent
+     */
+    public Builder compression(final Executor executor, final Supplier<WriteCodec> writeCodec) {
+      this.compressionExecutor = executor;
+      this.writeCodec = writeCodec;
+      return this;
+    }
+
     /**
      * Consistency level for batch write.
      *
@@ -227,23 +394,104 @@ public final class BatchProcessor {
       Preconditions.checkPositiveNumber(this.flushInterval, "flushInterval");
       Preconditions.checkNotNegativeNumber(jitterInterval, "jitterInterval");
       Preconditions.checkNotNegativeNumber(bufferLimit, "bufferLimit");
+      Preconditions.checkPositiveNumber(this.stripes, "stripes");
+      Preconditions.checkPositiveNumber(this.flushConcurrency, "flushConcurrency");
+      Preconditions.checkNotNegativeNumber(this.maxBatchBytes, "maxBatchBytes");
       Objects.requireNonNull(this.flushIntervalUnit, "flushIntervalUnit");
+      Objects.requireNonNull(this.compressionRatio, "compressionRatio");
+      Preconditions.checkNotNegativeNumber(this.adaptiveWriteLatency, "adaptiveWriteLatency");
+      Preconditions.checkNotNegativeNumber(this.maxActions, "maxActions");
+      Objects.requireNonNull(this.batchSizingHandler, "batchSizingHandler");
+      Preconditions.checkNotNegativeNumber(this.initialRetryDelay, "initialRetryDelay");
+      Preconditions.checkNotNegativeNumber(this.maxRetryDelay, "maxRetryDelay");
+      Objects.requireNonNull(this.writeCodec, "writeCodec");
+      AdaptiveBatchSizer sizer = null;
+      if (this.adaptiveWriteLatency > 0) {
+        sizer = new AdaptiveBatchSizer(this.actions, this.maxActions, this.flushInterval, this.flushIntervalUnit,
+                                       this.adaptiveWriteLatency, this.batchSizingHandler);
+      }
       Objects.requireNonNull(this.threadFactory, "threadFactory");
       Objects.requireNonNull(this.exceptionHandler, "exceptionHandler");
-      BatchWriter batchWriter;
+      if (this.spoolDirectory != null) {
+        Preconditions.checkPositiveNumber(this.spoolSegmentBytes, "spoolSegmentBytes");
+        Objects.requireNonNull(this.spoolDepthHandler, "spoolDepthHandler");
+      }
+      int workers = this.flushConcurrency;
+      if (this.bufferLimit > this.actions) {
+        // every worker keeps its own retry buffer, a share of the limit holding more than one batch
+        workers = Math.max(1, Math.min(workers, this.bufferLimit / (this.actions + 1)));
+        if (workers < this.flushConcurrency) {
+          LOG.log(Level.WARNING, "Using {0} flush workers instead of {1}, the bufferLimit {2} holds more than "
+              + "actions {3} points for {0} workers only", new Object[] {workers, this.flushConcurrency,
+              this.bufferLimit, this.actions});
+        }
+      }
+      // the workers share the spool, its batches are replayed in order whatever the number of workers was
+      WriteSpool spool = null;
       if (this.bufferLimit > this.actions) {
-        batchWriter = new RetryCapableBatchWriter(this.influxDB, this.exceptionHandler, this.bufferLimit, this.actions);
+        spool = createSpool();
+      }
+      BatchWriter batchWriter;
+      if (workers > 1) {
+        List<BatchWriter> workerWriters = new ArrayList<>(workers);
+        for (int i = 0; i < workers; i++) {
+          // the shares add up to the limit
+          int workerBufferLimit = this.bufferLimit / workers + (i < this.bufferLimit % workers ? 1 : 0);
+          WriteSpool workerSpool = spool;
+          if (spool != null && i > 0) {
+            workerSpool = spool.share();
+          }
+          workerWriters.add(trackLatency(createBatchWriter(workerBufferLimit, workerSpool), sizer));
+        }
+        batchWriter = new ParallelBatchWriter(workerWriters, this.threadFactory, this.exceptionHandler);
       } else {
-        batchWriter = new OneShotBatchWriter(this.influxDB);
+        batchWriter = trackLatency(createBatchWriter(this.bufferLimit, spool), sizer);
       }
       return new BatchProcessor(this.influxDB, batchWriter, this.threadFactory, this.actions, this.flushIntervalUnit,
                                 this.flushInterval, this.jitterInterval, exceptionHandler, this.consistencyLevel,
-                                this.precision, this.dropActionsOnQueueExhaustion, this.droppedActionsHandler);
+                                this.precision, this.dropActionsOnQueueExhaustion, this.droppedActionsHandler,
+                                this.stripes, this.maxBatchBytes, this.compressionRatio, sizer);
+    }
+
+    private static BatchWriter trackLatency(final BatchWriter batchWriter, final AdaptiveBatchSizer sizer) {
+      if (sizer == null) {
+        return batchWriter;
+      }
+      return new LatencyTrackingBatchWriter(batchWriter, sizer);
+    }
+
+    private BatchWriter createBatchWriter(final int retryBufferLimit, final WriteSpool spool) {
+      BatchEncoder encoder = new BatchEncoder(this.writeCodec, this.compressionExecutor);
+      if (this.bufferLimit > this.actions) {
+        int bytes = this.maxBatchBytes;
+        DoubleSupplier ratio = this.compressionRatio;
+        RetryBackoff backoff = null;
+        if (this.initialRetryDelay > 0) {
+          backoff = new RetryBackoff(this.initialRetryDelay, this.maxRetryDelay);
+        }
+        return new RetryCapableBatchWriter(this.influxDB, this.exceptionHandler, retryBufferLimit, this.actions,
+                                           () -> batchBytesLimit(bytes, ratio), spool,
+                                           backoff, this.threadFactory, encoder);
+      }
+      return new OneShotBatchWriter(this.influxDB, encoder);
+    }
+
+    private WriteSpool createSpool() {
+      if (this.spoolDirectory == null) {
+        return null;
+      }
+      try {
+        return new WriteSpool(this.spoolDirectory, this.spoolMaxBytes, this.spoolSegmentBytes,
+                              this.spoolDepthHandler, this.writeCodec);
+      } catch (IOException e) {
+        throw new InfluxDBIOException(e);
+      }
     }
   }
 
   abstract static class AbstractBatchEntry {
       private final Point point;
+      private long bytes = -1;
 
       public AbstractBatchEntry(final Point point) {
         this.point = point;
@@ -252,6 +500,27 @@ public final class BatchProcessor {
       public Point getPoint() {
         return this.point;
       }
+
+      /**
+       * @return the number of actions this entry counts towards the flush threshold
+       */
+      int getActions() {
+        return 1;
+      }
+
+      /**
+       * @return the estimated size of the line protocol of this entry, computed on the first call
+       */
+      long getBytes() {
+        if (this.bytes < 0) {
+          this.bytes = estimateBytes();
+        }
+        return this.bytes;
+      }
+
+      long estimateBytes() {
+        return this.point.estimatedLineProtocolBytes();
+      }
   }
 
   static class HttpBatchEntry extends AbstractBatchEntry {
@@ -273,6 +542,29 @@ public final class BatchProcessor {
     }
   }
 
+  static class ColumnarBatchEntry extends HttpBatchEntry {
+    private final ColumnarBatch columnarBatch;
+
+    public ColumnarBatchEntry(final ColumnarBatch columnarBatch, final String db, final String rp) {
+      super(null, db, rp);
+      this.columnarBatch = columnarBatch;
+    }
+
+    public ColumnarBatch getColumnarBatch() {
+      return this.columnarBatch;
+    }
+
+    @Override
+    int getActions() {
+      return this.columnarBatch.getRowCount();
+    }
+
+    @Override
+    long estimateBytes() {
+      return this.columnarBatch.estimatedLineProtocolBytes();
+    }
+  }
+
   static class UdpBatchEntry extends AbstractBatchEntry {
       private final int udpPort;
 
@@ -301,7 +593,9 @@ public final class BatchProcessor {
                  final int actions, final TimeUnit flushIntervalUnit, final int flushInterval, final int jitterInterval,
                  final BiConsumer<Iterable<Point>, Throwable> exceptionHandler,
                  final ConsistencyLevel consistencyLevel, final TimeUnit precision,
-                 final boolean dropActionsOnQueueExhaustion, final Consumer<Point> droppedActionHandler) {
+                 final boolean dropActionsOnQueueExhaustion, final Consumer<Point> droppedActionHandler,
+                 final int stripes, final int maxBatchBytes, final DoubleSupplier compressionRatio,
+                 final AdaptiveBatchSizer sizer) {
     super();
     this.influxDB = influxDB;
     this.batchWriter = batchWriter;
@@ -315,21 +609,30 @@ public final class BatchProcessor {
     this.precision = precision;
     this.dropActionsOnQueueExhaustion = dropActionsOnQueueExhaustion;
     this.droppedActionHandler = droppedActionHandler;
-    if (actions > 1 && actions < Integer.MAX_VALUE) {
-        this.queue = new LinkedBlockingQueue<>(actions);
+    this.maxBatchBytes = maxBatchBytes;
+    this.compressionRatio = compressionRatio;
+    this.sizer = sizer;
+    this.stripes = stripes;
+    if (sizer != null) {
+      // adaptive batches may grow up to the maximum
+      this.queueCapacity = sizer.getMaxActions();
     } else {
-        this.queue = new LinkedBlockingQueue<>();
+      this.queueCapacity = actions;
     }
+    this.capacity = createCapacity(this.queueCapacity, stripes);
     this.randomSupplier = Math::random;
 
     Runnable flushRunnable = new Runnable() {
       @Override
       public void run() {
         // write doesn't throw any exceptions
-        write();
+        int drainedActions = write();
+        if (BatchProcessor.this.sizer != null) {
+          BatchProcessor.this.sizer.flushed(drainedActions);
+        }
         int jitterInterval = (int) (randomSupplier.get() * BatchProcessor.this.jitterInterval);
         BatchProcessor.this.scheduler.schedule(this,
-                BatchProcessor.this.flushInterval + jitterInterval, BatchProcessor.this.flushIntervalUnit);
+                currentFlushInterval() + jitterInterval, BatchProcessor.this.flushIntervalUnit);
       }
     };
     // Flush at specified Rate
@@ -338,59 +641,80 @@ public final class BatchProcessor {
             this.flushIntervalUnit);
   }
 
-  void write() {
-    List<Point> currentBatch = null;
+  /**
+   * Create the backpressure of the lanes. The places given by actions are split between the lanes, so the
+   * lanes together hold at most as many actions as given by actions. With more lanes than actions only the
+   * first lanes have places.
+   */
+  private static Semaphore[] createCapacity(final int actions, final int stripes) {
+    if (actions <= 1 || actions == Integer.MAX_VALUE) {
+      return null;
+    }
+    int lanes = Math.min(actions, stripes);
+    Semaphore[] capacity = new Semaphore[lanes];
+    for (int i = 0; i < lanes; i++) {
+      capacity[i] = new Semaphore(places(actions, lanes, i));
+    }
+    return capacity;
+  }
+
+  private static int places(final int actions, final int lanes, final int lane) {
+    return actions / lanes + (lane < actions % lanes ? 1 : 0);
+  }
+
+  /**
+   * @return the places the entry takes in the lane, one per action but at most all places of the lane
+   */
+  private int permits(final int lane, final AbstractBatchEntry batchEntry) {
+    if (this.capacity == null) {
+      return 0;
+    }
+    return Math.min(batchEntry.getActions(), places(this.queueCapacity, this.capacity.length, lane));
+  }
+
+  /**
+   * Write the queued entries. The filled batches of every destination are swapped for empty ones and handed
+   * over as they are, the entries were already grouped by {@link #put(AbstractBatchEntry)}.
+   *
+   * @return the number of actions taken from the queue
+   */
+  synchronized int write() {
+    int drainedActions = 0;
+    boolean handedOver = false;
     try {
-      if (this.queue.isEmpty()) {
-        BatchProcessor.this.batchWriter.write(Collections.emptyList());
-        return;
+      long batchBytesLimit = batchBytesLimit(this.maxBatchBytes, this.compressionRatio);
+      for (HttpDestination destination : this.httpDestinations.values()) {
+        drainedActions += destination.drainTo(this.flushedBatches, batchBytesLimit);
+        destination.retireIfIdle();
       }
-      //for batch on HTTP.
-      Map<String, BatchPoints> batchKeyToBatchPoints = new HashMap<>();
-      //for batch on UDP.
-      Map<Integer, List<String>> udpPortToBatchPoints = new HashMap<>();
-      List<AbstractBatchEntry> batchEntries = new ArrayList<>(this.queue.size());
-      this.queue.drainTo(batchEntries);
-      currentBatch = new ArrayList<>(batchEntries.size());
-
-      for (AbstractBatchEntry batchEntry : batchEntries) {
-        Point point = batchEntry.getPoint();
-        currentBatch.add(point);
-        if (batchEntry instanceof HttpBatchEntry) {
-            HttpBatchEntry httpBatchEntry = HttpBatchEntry.class.cast(batchEntry);
-            String dbName = httpBatchEntry.getDb();
-            String rp = httpBatchEntry.getRp();
-            String batchKey = dbName + "_" + rp;
-            if (!batchKeyToBatchPoints.containsKey(batchKey)) {
-              BatchPoints batchPoints = BatchPoints.database(dbName)
-                                                   .retentionPolicy(rp).consistency(getConsistencyLevel())
-                                                   .precision(getPrecision()).build();
-              batchKeyToBatchPoints.put(batchKey, batchPoints);
-            }
-            batchKeyToBatchPoints.get(batchKey).point(point);
-        } else if (batchEntry instanceof UdpBatchEntry) {
-            UdpBatchEntry udpBatchEntry = UdpBatchEntry.class.cast(batchEntry);
-            int udpPort = udpBatchEntry.getUdpPort();
-            if (!udpPortToBatchPoints.containsKey(udpPort)) {
-              List<String> batchPoints = new ArrayList<String>();
-              udpPortToBatchPoints.put(udpPort, batchPoints);
-            }
-            udpPortToBatchPoints.get(udpPort).add(point.lineProtocol());
-        }
+      for (UdpDestination destination : this.udpDestinations.values()) {
+        drainedActions += destination.swap();
+        destination.retireIfIdle();
       }
 
-      BatchProcessor.this.batchWriter.write(batchKeyToBatchPoints.values());
-
-      for (Entry<Integer, List<String>> entry : udpPortToBatchPoints.entrySet()) {
-          for (String lineprotocolStr : entry.getValue()) {
-              BatchProcessor.this.influxDB.write(entry.getKey(), lineprotocolStr);
-          }
+      BatchProcessor.this.batchWriter.write(this.flushedBatches);
+      // the written http points may already be released, only the udp points can still fail
+      handedOver = true;
+      for (UdpDestination destination : this.udpDestinations.values()) {
+        destination.send();
       }
     } catch (Throwable t) {
       // any exception wouldn't stop the scheduler
-      exceptionHandler.accept(currentBatch, t);
+      List<Point> failed = new ArrayList<>();
+      if (!handedOver) {
+        for (BatchPoints batchPoints : this.flushedBatches) {
+          failed.addAll(BatchWriter.points(batchPoints));
+        }
+      }
+      for (UdpDestination destination : this.udpDestinations.values()) {
+        destination.unsent(failed);
+      }
+      exceptionHandler.accept(failed, t);
       LOG.log(Level.SEVERE, "Batch could not be sent. Data will be lost", t);
+    } finally {
+      this.flushedBatches.clear();
     }
+    return drainedActions;
   }
 
   /**
@@ -400,25 +724,466 @@ public final class BatchProcessor {
    *            the batchEntry to write to the cache.
    */
   void put(final AbstractBatchEntry batchEntry) {
+    int lane = acquire(batchEntry);
+    if (lane < 0) {
+      return;
+    }
+    int permits = permits(lane, batchEntry);
+    long entryBytes = 0;
+    if (this.maxBatchBytes > 0) {
+      entryBytes = batchEntry.getBytes();
+    }
+    // a destination retired by a flush meanwhile is created again
+    if (batchEntry instanceof HttpBatchEntry) {
+      HttpBatchEntry httpBatchEntry = (HttpBatchEntry) batchEntry;
+      long batchBytesLimit = batchBytesLimit(this.maxBatchBytes, this.compressionRatio);
+      HttpDestination destination = httpDestination(httpBatchEntry.getDb(), httpBatchEntry.getRp());
+      while (!destination.add(lane, httpBatchEntry, permits, entryBytes, batchBytesLimit)) {
+        destination = httpDestination(httpBatchEntry.getDb(), httpBatchEntry.getRp());
+      }
+    } else {
+      int udpPort = ((UdpBatchEntry) batchEntry).getUdpPort();
+      UdpDestination destination = udpDestination(udpPort);
+      while (!destination.add(lane, batchEntry.getPoint(), entryBytes)) {
+        destination = udpDestination(udpPort);
+      }
+    }
+    boolean full = this.pendingActions.addAndGet(batchEntry.getActions()) >= currentActions();
+    if (this.maxBatchBytes > 0
+        && this.pendingBytes.addAndGet(entryBytes) >= batchBytesLimit(this.maxBatchBytes, this.compressionRatio)) {
+      full = true;
+    }
+    if (full) {
+      scheduleWrite();
+    }
+  }
+
+  /**
+   * Take the places of the entry's actions in the lane of the calling thread first and then in the remaining
+   * lanes, so the queue only counts as exhausted when no lane has room for it. The entry is blocked or dropped
+   * if it is.
+   *
+   * @return the lane holding the place, -1 if the entry was dropped
+   */
+  private int acquire(final AbstractBatchEntry batchEntry) {
+    int home = laneIndex();
+    if (this.capacity == null) {
+      return home;
+    }
+    home %= this.capacity.length;
+    for (int i = 0; i < this.capacity.length; i++) {
+      int lane = (home + i) % this.capacity.length;
+      if (this.capacity[lane].tryAcquire(permits(lane, batchEntry))) {
+        return lane;
+      }
+    }
+    if (this.dropActionsOnQueueExhaustion) {
+      dropped(batchEntry);
+      return -1;
+    }
+    // all lanes are full, make sure a flush is on its way before blocking
+    scheduleWrite();
     try {
-        if (this.dropActionsOnQueueExhaustion) {
-          if (!this.queue.offer(batchEntry)) {
-            this.droppedActionHandler.accept(batchEntry.getPoint());
-            return;
+      this.capacity[home].acquire(permits(home, batchEntry));
+    } catch (InterruptedException e) {
+      throw new RuntimeException(e);
+    }
+    return home;
+  }
+
+  /**
+   * Give back the places of flushed entries of a lane and stop counting their actions and bytes.
+   */
+  private void drained(final int lane, final int permits, final int drainedActions, final long drainedBytes) {
+    if (this.capacity != null) {
+      this.capacity[lane].release(permits);
+    }
+    this.pendingActions.addAndGet(-drainedActions);
+    this.pendingBytes.addAndGet(-drainedBytes);
+  }
+
+  private int currentActions() {
+    if (this.sizer == null) {
+      return this.actions;
+    }
+    return this.sizer.getActions();
+  }
+
+  private int currentFlushInterval() {
+    if (this.sizer == null) {
+      return this.flushInterval;
+    }
+    return this.sizer.getFlushInterval();
+  }
+
+  /**
+   * The uncompressed size of a request body that is expected to be compressed to the target size.
+   *
+   * @return the limit of the line protocol of a batch in bytes, {@link Long#MAX_VALUE} for no limit
+   */
+  static long batchBytesLimit(final int maxBatchBytes, final DoubleSupplier compressionRatio) {
+    if (maxBatchBytes <= 0) {
+      return Long.MAX_VALUE;
+    }
+    return (long) (maxBatchBytes * Math.max(compressionRatio.getAsDouble(), 1));
+  }
+
+  private void dropped(final AbstractBatchEntry batchEntry) {
+    if (batchEntry instanceof ColumnarBatchEntry) {
+      ((ColumnarBatchEntry) batchEntry).getColumnarBatch().toPoints().forEach(this.droppedActionHandler);
+    } else {
+      this.droppedActionHandler.accept(batchEntry.getPoint());
+    }
+  }
+
+  private int laneIndex() {
+    if (this.stripes == 1) {
+      return 0;
+    }
+    return (int) (Thread.currentThread().getId() % this.stripes);
+  }
+
+  private HttpDestination httpDestination(final String db, final String rp) {
+    Destination key = new Destination(db, rp);
+    HttpDestination destination = this.httpDestinations.get(key);
+    if (destination == null) {
+      destination = this.httpDestinations.computeIfAbsent(key, HttpDestination::new);
+    }
+    return destination;
+  }
+
+  private UdpDestination udpDestination(final int udpPort) {
+    UdpDestination destination = this.udpDestinations.get(udpPort);
+    if (destination == null) {
+      destination = this.udpDestinations.computeIfAbsent(udpPort, UdpDestination::new);
+    }
+    return destination;
+  }
+
+  /**
+   * The database and retention policy of a http destination.
+   */
+  private static final class Destination {
+    private static final int HASH_MULTIPLIER = 31;
+    private final String db;
+    private final String rp;
+
+    Destination(final String db, final String rp) {
+      this.db = db;
+      this.rp = rp;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Destination)) {
+        return false;
+      }
+      Destination that = (Destination) o;
+      return Objects.equals(this.db, that.db) && Objects.equals(this.rp, that.rp);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(this.db) * HASH_MULTIPLIER + Objects.hashCode(this.rp);
+    }
+  }
+
+  /**
+   * The entries of one lane of a http destination, guarded by the lane itself.
+   */
+  private static final class HttpLane {
+    // the batch filled by put, null until the first entry after a flush
+    private BatchPoints batch;
+    private long batchBytes;
+    // the batches closed because they reached the size limit, oldest first, null if there are none
+    private List<BatchPoints> sealed;
+    private int permits;
+    private int actions;
+    private long bytes;
+  }
+
+  /**
+   * The queued entries of a database and retention policy. Every producer thread appends to the batch of its
+   * lane, a flush takes the batches of all lanes. A destination without entries for {@link #IDLE_FLUSHES}
+   * flushes is retired and dropped.
+   */
+  private final class HttpDestination {
+    private final Destination key;
+    private final HttpLane[] lanes;
+    // the flushes without entries, only used by the flush
+    private int idleFlushes;
+    // guarded by all lanes, no entry is added once set
+    private boolean retired;
+
+    HttpDestination(final Destination key) {
+      this.key = key;
+      this.lanes = new HttpLane[BatchProcessor.this.stripes];
+      for (int i = 0; i < this.lanes.length; i++) {
+        this.lanes[i] = new HttpLane();
+      }
+    }
+
+    /**
+     * @return false if the destination is retired, the entry was not added
+     */
+    boolean add(final int lane, final HttpBatchEntry batchEntry, final int permits, final long entryBytes,
+                final long batchBytesLimit) {
+      HttpLane target = this.lanes[lane];
+      synchronized (target) {
+        if (this.retired) {
+          return false;
+        }
+        if (target.batch == null) {
+          target.batch = newBatch();
+        } else if (target.batchBytes > 0 && target.batchBytes + entryBytes > batchBytesLimit) {
+          if (target.sealed == null) {
+            target.sealed = new ArrayList<>();
           }
+          target.sealed.add(target.batch);
+          target.batch = newBatch();
+          target.batchBytes = 0;
+        }
+        if (batchEntry instanceof ColumnarBatchEntry) {
+          target.batch.columnarBatch(((ColumnarBatchEntry) batchEntry).getColumnarBatch());
         } else {
-          this.queue.put(batchEntry);
+          target.batch.point(batchEntry.getPoint());
         }
-    } catch (InterruptedException e) {
-        throw new RuntimeException(e);
+        target.batchBytes += entryBytes;
+        target.permits += permits;
+        target.actions += batchEntry.getActions();
+        target.bytes += entryBytes;
+      }
+      return true;
+    }
+
+    /**
+     * Take the batches of all lanes, merging the open batches of the lanes as long as they fit the limit.
+     *
+     * @return the number of actions taken
+     */
+    int drainTo(final List<BatchPoints> flushed, final long batchBytesLimit) {
+      int drainedActions = 0;
+      BatchPoints merged = null;
+      long mergedBytes = 0;
+      this.idleFlushes++;
+      for (int i = 0; i < this.lanes.length; i++) {
+        HttpLane lane = this.lanes[i];
+        BatchPoints batch;
+        long batchBytes;
+        List<BatchPoints> sealed;
+        synchronized (lane) {
+          if (lane.batch == null) {
+            continue;
+          }
+          this.idleFlushes = 0;
+          batch = lane.batch;
+          batchBytes = lane.batchBytes;
+          sealed = lane.sealed;
+          drained(i, lane.permits, lane.actions, lane.bytes);
+          drainedActions += lane.actions;
+          lane.batch = null;
+          lane.batchBytes = 0;
+          lane.sealed = null;
+          lane.permits = 0;
+          lane.actions = 0;
+          lane.bytes = 0;
+        }
+        if (sealed != null) {
+          // the open batch follows the sealed ones of its lane
+          flushed.addAll(sealed);
+          merged = null;
+        }
+        if (merged != null && mergedBytes + batchBytes <= batchBytesLimit) {
+          merged.mergeIn(batch);
+          mergedBytes += batchBytes;
+        } else {
+          flushed.add(batch);
+          merged = batch;
+          mergedBytes = batchBytes;
+        }
+      }
+      return drainedActions;
+    }
+
+    /**
+     * Retire and drop the destination if it had no entries for {@link #IDLE_FLUSHES} flushes and still has none.
+     */
+    void retireIfIdle() {
+      if (this.idleFlushes >= IDLE_FLUSHES) {
+        retire(0);
+      }
+    }
+
+    private void retire(final int from) {
+      if (from == this.lanes.length) {
+        // all lanes are locked, an entry is added to this destination or to the one created after it
+        this.retired = true;
+        BatchProcessor.this.httpDestinations.remove(this.key, this);
+        return;
+      }
+      HttpLane lane = this.lanes[from];
+      synchronized (lane) {
+        if (lane.batch == null) {
+          retire(from + 1);
+        }
+      }
+    }
+
+    private BatchPoints newBatch() {
+      return BatchPoints.database(this.key.db).retentionPolicy(this.key.rp).consistency(getConsistencyLevel())
+                        .precision(getPrecision()).build();
+    }
+  }
+
+  /**
+   * The points of one lane of an udp destination, guarded by the lane itself.
+   */
+  private static final class UdpLane {
+    private List<Point> points = new ArrayList<>();
+    // the points taken by the running flush, emptied once they are sent
+    private List<Point> sending = new ArrayList<>();
+    private long bytes;
+  }
+
+  /**
+   * The queued points of an udp port. A flush swaps the filled list of every lane with the emptied one. A
+   * destination without points for {@link #IDLE_FLUSHES} flushes is retired and dropped.
+   */
+  private final class UdpDestination {
+    private final int udpPort;
+    private final UdpLane[] lanes;
+    // the points sent by the running flush, the ones of all lanes in order
+    private final Iterable<Point> sending;
+    // the flushes without points, only used by the flush
+    private int idleFlushes;
+    // guarded by all lanes, no point is added once set
+    private boolean retired;
+
+    UdpDestination(final int udpPort) {
+      this.udpPort = udpPort;
+      this.lanes = new UdpLane[BatchProcessor.this.stripes];
+      for (int i = 0; i < this.lanes.length; i++) {
+        this.lanes[i] = new UdpLane();
+      }
+      this.sending = () -> Arrays.stream(this.lanes).flatMap(lane -> lane.sending.stream()).iterator();
+    }
+
+    /**
+     * @return false if the destination is retired, the point was not added
+     */
+    boolean add(final int lane, final Point point, final long entryBytes) {
+      UdpLane target = this.lanes[lane];
+      synchronized (target) {
+        if (this.retired) {
+          return false;
+        }
+        target.points.add(point);
+        target.bytes += entryBytes;
+      }
+      return true;
     }
-    if (this.queue.size() >= this.actions) {
+
+    /**
+     * @return the number of points taken
+     */
+    int swap() {
+      int drainedActions = 0;
+      for (int i = 0; i < this.lanes.length; i++) {
+        UdpLane lane = this.lanes[i];
+        synchronized (lane) {
+          List<Point> filled = lane.points;
+          lane.points = lane.sending;
+          lane.sending = filled;
+          drained(i, filled.size(), filled.size(), lane.bytes);
+          lane.bytes = 0;
+        }
+        drainedActions += lane.sending.size();
+      }
+      if (drainedActions == 0) {
+        this.idleFlushes++;
+      } else {
+        this.idleFlushes = 0;
+      }
+      return drainedActions;
+    }
+
+    /**
+     * Retire and drop the destination if it had no points for {@link #IDLE_FLUSHES} flushes and still has none.
+     */
+    void retireIfIdle() {
+      if (this.idleFlushes >= IDLE_FLUSHES) {
+        retire(0);
+      }
+    }
+
+    private void retire(final int from) {
+      if (from == this.lanes.length) {
+        // all lanes are locked, a point is added to this destination or to the one created after it
+        this.retired = true;
+        BatchProcessor.this.udpDestinations.remove(this.udpPort, this);
+        return;
+      }
+      UdpLane lane = this.lanes[from];
+      synchronized (lane) {
+        if (lane.points.isEmpty()) {
+          retire(from + 1);
+        }
+      }
+    }
+
+    void send() {
+      if (this.idleFlushes > 0) {
+        return;
+      }
+      InfluxDB target = BatchProcessor.this.influxDB;
+      // a single write packs the points of the flush into as few datagrams as possible
+      if (target instanceof InfluxDBImpl) {
+        ((InfluxDBImpl) target).writePoints(this.udpPort, this.sending);
+      } else {
+        List<String> lines = new ArrayList<>();
+        for (Point point : this.sending) {
+          lines.add(point.lineProtocol());
+        }
+        target.write(this.udpPort, lines);
+      }
+      for (UdpLane lane : this.lanes) {
+        for (Point point : lane.sending) {
+          point.release();
+        }
+        lane.sending.clear();
+      }
+    }
+
+    void unsent(final List<Point> failed) {
+      for (UdpLane lane : this.lanes) {
+        failed.addAll(lane.sending);
+        lane.sending.clear();
+      }
+    }
+  }
+
+  /**
+   * Submit a flush unless one is submitted and not started yet, blocked producers do not queue up flushes.
+   */
+  private void scheduleWrite() {
+    if (!this.writeScheduled.compareAndSet(false, true)) {
+      return;
+    }
+    try {
       this.scheduler.submit(new Runnable() {
         @Override
         public void run() {
+          // entries put from now on need a flush of their own
+          BatchProcessor.this.writeScheduled.set(false);
           write();
         }
       });
+    } catch (RejectedExecutionException e) {
+      this.writeScheduled.set(false);
+      throw e;
     }
   }
 
@@ -438,6 +1203,7 @@ public final class BatchProcessor {
    */
   void flush() {
     this.write();
+    this.batchWriter.awaitPendingWrites();
   }
 
   public ConsistencyLevel getConsistencyLevel() {
@@ -459,4 +1225,8 @@ public final class BatchProcessor {
   public Consumer<Point> getDroppedActionHandler() {
     return droppedActionHandler;
   }
+
+  public int getStripes() {
+    return stripes;
+  }
 }
@@ -1,8 +1,12 @@
 package org.influxdb.impl;
 
 import org.influxdb.dto.BatchPoints;
+import org.influxdb.dto.ColumnarBatch;
+import org.influxdb.dto.Point;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 
 /**
  * Write individual batches to InfluxDB.
@@ -14,9 +18,76 @@ interface BatchWriter {
    */
   void write(Collection<BatchPoints> batchPointsCollection);
 
+  /**
+   * Wait until all batches handed over to {@link #write(Collection)} have been written. Writers that
+   * write synchronously have nothing to wait for.
+   */
+  default void awaitPendingWrites() {
+  }
+
+  /**
+   * @return true if failed batches are kept to be written again later
+   */
+  default boolean isRetrying() {
+    return false;
+  }
+
   /**
    * FLush all cached writes into InfluxDB. The application is about to exit.
    */
   void close();
-}
 
+  /**
+   * Return the points of a written batch to their pool, see {@link Point#release()}. Must only be called
+   * once the batch has been written successfully, points of failed batches go to the exception handler.
+   * @param batchPoints the written batch
+   */
+  static void release(final BatchPoints batchPoints) {
+    for (Point point : batchPoints.getPoints()) {
+      point.release();
+    }
+  }
+
+  /**
+   * @param batchPoints a batch
+   * @return the number of points and columnar rows of the batch
+   */
+  static int size(final BatchPoints batchPoints) {
+    int size = batchPoints.getPoints().size();
+    for (ColumnarBatch batch : batchPoints.getColumnarBatches()) {
+      size += batch.getRowCount();
+    }
+    return size;
+  }
+
+  /**
+   * @param batchPoints a batch
+   * @return the estimated size of the line protocol of the points and columnar rows of the batch
+   */
+  static long estimatedBytes(final BatchPoints batchPoints) {
+    long bytes = 0;
+    for (Point point : batchPoints.getPoints()) {
+      bytes += point.estimatedLineProtocolBytes();
+    }
+    for (ColumnarBatch batch : batchPoints.getColumnarBatches()) {
+      bytes += batch.estimatedLineProtocolBytes();
+    }
+    return bytes;
+  }
+
+  /**
+   * The points of a batch for the exception handler, the rows of columnar batches are converted to points.
+   * @param batchPoints a failed batch
+   * @return the points of the batch
+   */
+  static List<Point> points(final BatchPoints batchPoints) {
+    if (batchPoints.getColumnarBatches().isEmpty()) {
+      return batchPoints.getPoints();
+    }
+    List<Point> points = new ArrayList<>(batchPoints.getPoints());
+    for (ColumnarBatch batch : batchPoints.getColumnarBatches()) {
+      points.addAll(batch.toPoints());
+    }
+    return points;
+  }
+}
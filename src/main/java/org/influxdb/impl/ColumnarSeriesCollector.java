@@ -0,0 +1,103 @@
+package org.influxdb.impl;
+
+import org.influxdb.dto.ColumnarSeries;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Fills {@link ColumnarSeries} with the rows pulled from a {@link RowDecoder}, the values go from the decoder
+ * into the column arrays without a row object. The parts of a series split over several chunks are joined.
+ */
+final class ColumnarSeriesCollector implements RowDecoder.ValueSink {
+
+  private final RowDecoder decoder;
+  private final List<ColumnarSeries> series = new ArrayList<>();
+  private ColumnarSeries.Builder builder;
+  private int seriesVersion = -1;
+  private int statementId;
+  private String name;
+  private Map<String, String> tags;
+  private List<String> columns;
+
+  ColumnarSeriesCollector(final RowDecoder decoder) {
+    this.decoder = decoder;
+  }
+
+  /**
+   * Read all rows of the response and close it.
+   *
+   * @return the series of all statements, in the order of the response
+   * @throws IOException if the response cannot be read
+   */
+  List<ColumnarSeries> collect() throws IOException {
+    try {
+      while (this.decoder.nextRow()) {
+        if (this.decoder.getSeriesVersion() != this.seriesVersion) {
+          this.seriesVersion = this.decoder.getSeriesVersion();
+          startSeries();
+        }
+        this.decoder.readValues(this);
+        this.builder.endRow();
+      }
+      if (this.builder != null) {
+        this.series.add(this.builder.build());
+      }
+      return this.series;
+    } finally {
+      this.decoder.close();
+    }
+  }
+
+  private void startSeries() {
+    if (this.builder != null) {
+      // the next chunk of a partial series repeats its name, tags and columns
+      if (this.statementId == this.decoder.getStatementId() && Objects.equals(this.name, this.decoder.getSeriesName())
+          && this.tags.equals(this.decoder.getTags()) && this.columns.equals(this.decoder.getColumns())) {
+        return;
+      }
+      this.series.add(this.builder.build());
+    }
+    this.statementId = this.decoder.getStatementId();
+    this.name = this.decoder.getSeriesName();
+    this.tags = this.decoder.getTags();
+    this.columns = this.decoder.getColumns();
+    this.builder = ColumnarSeries.builder(this.columns)
+        .statementId(this.statementId)
+        .name(this.name)
+        .tags(this.tags);
+  }
+
+  @Override
+  public void nullValue(final int column) {
+    this.builder.addNull(column);
+  }
+
+  @Override
+  public void longValue(final int column, final long value) {
+    this.builder.addLong(column, value);
+  }
+
+  @Override
+  public void doubleValue(final int column, final double value) {
+    this.builder.addDouble(column, value);
+  }
+
+  @Override
+  public void stringValue(final int column, final String value) {
+    this.builder.addString(column, value);
+  }
+
+  @Override
+  public void booleanValue(final int column, final boolean value) {
+    this.builder.addBoolean(column, value);
+  }
+
+  @Override
+  public void objectValue(final int column, final Object value) {
+    this.builder.addValue(column, value);
+  }
+}
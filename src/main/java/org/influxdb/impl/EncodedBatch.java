@@ -0,0 +1,227 @@
+package org.influxdb.impl;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.BufferedSource;
+import okio.Okio;
+import okio.Sink;
+import org.influxdb.InfluxDB.ConsistencyLevel;
+import org.influxdb.WriteCodec;
+import org.influxdb.dto.BatchPoints;
+import org.influxdb.dto.Point;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A batch kept as the encoded line protocol of its points, to be written again without serializing its points
+ * once more and without keeping them alive.
+ * <p>
+ * The payload is a list of chunks, merging a batch appends its chunks without copying them. Compressed chunks
+ * are separate streams of their {@link WriteCodec}, like gzip members, their concatenation is decoded as one.
+ */
+final class EncodedBatch {
+
+  private final String database;
+  private final String retentionPolicy;
+  private final ConsistencyLevel consistency;
+  private final TimeUnit precision;
+  private final String contentEncoding;
+  private final WriteCodec codec;
+  private final List<byte[]> chunks = new ArrayList<>(1);
+  private int points;
+  private long bytes;
+  private long lineProtocolSize;
+
+  EncodedBatch(final String database, final String retentionPolicy, final ConsistencyLevel consistency,
+               final TimeUnit precision, final String contentEncoding, final WriteCodec codec, final int points,
+               final byte[] payload, final long lineProtocolSize) {
+    this.database = database;
+    this.retentionPolicy = retentionPolicy;
+    this.consistency = consistency;
+    this.precision = precision;
+    this.contentEncoding = contentEncoding;
+    this.codec = codec;
+    this.points = points;
+    this.chunks.add(payload);
+    this.bytes = payload.length;
+    this.lineProtocolSize = lineProtocolSize;
+  }
+
+  /**
+   * Encode the line protocol of a batch.
+   *
+   * @param batchPoints the batch
+   * @param codec the codec compressing the line protocol, {@link WriteCodec#none()} to keep it as it is
+   * @return the encoded batch
+   */
+  static EncodedBatch encode(final BatchPoints batchPoints, final WriteCodec codec) {
+    Buffer lineProtocol = new Buffer();
+    Buffer payload = lineProtocol;
+    long lineProtocolSize;
+    try {
+      batchPoints.lineProtocol(lineProtocol);
+      lineProtocolSize = lineProtocol.size();
+      if (codec.getContentEncoding() != null) {
+        payload = new Buffer();
+        Sink sink = codec.encode(payload);
+        sink.write(lineProtocol, lineProtocolSize);
+        sink.close();
+      }
+    } catch (IOException e) {
+      // a Buffer does not fail, a codec failing to encode fails the write
+      throw new UncheckedIOException(e);
+    }
+    TimeUnit precision = batchPoints.getPrecision();
+    if (precision == null) {
+      precision = TimeUnit.NANOSECONDS;
+    }
+    ConsistencyLevel consistency = batchPoints.getConsistency();
+    if (consistency == null) {
+      consistency = ConsistencyLevel.ONE;
+    }
+    return new EncodedBatch(batchPoints.getDatabase(), batchPoints.getRetentionPolicy(), consistency, precision,
+                            codec.getContentEncoding(), codec, BatchWriter.size(batchPoints),
+                            payload.readByteArray(), lineProtocolSize);
+  }
+
+  /**
+   * Append the payload of a batch written to the same database and retention policy.
+   *
+   * @param that the batch to merge in
+   * @return false if the batches cannot be written in a single request
+   */
+  boolean mergeIn(final EncodedBatch that) {
+    if (!Objects.equals(this.database, that.database) || !Objects.equals(this.retentionPolicy, that.retentionPolicy)
+        || this.consistency != that.consistency || this.precision != that.precision
+        || !Objects.equals(this.contentEncoding, that.contentEncoding)) {
+      return false;
+    }
+    this.chunks.addAll(that.chunks);
+    this.points += that.points;
+    this.bytes += that.bytes;
+    this.lineProtocolSize += that.lineProtocolSize;
+    return true;
+  }
+
+  String getDatabase() {
+    return this.database;
+  }
+
+  String getRetentionPolicy() {
+    return this.retentionPolicy;
+  }
+
+  ConsistencyLevel getConsistency() {
+    return this.consistency;
+  }
+
+  TimeUnit getPrecision() {
+    return this.precision;
+  }
+
+  /**
+   * @return the Content-Encoding of the payload, null if it is the line protocol as it is
+   */
+  String getContentEncoding() {
+    return this.contentEncoding;
+  }
+
+  /**
+   * @return the number of points and columnar rows of the batch
+   */
+  int getPoints() {
+    return this.points;
+  }
+
+  /**
+   * @return the size of the payload
+   */
+  long getBytes() {
+    return this.bytes;
+  }
+
+  /**
+   * @return the size of the uncompressed line protocol
+   */
+  long getLineProtocolSize() {
+    return this.lineProtocolSize;
+  }
+
+  /**
+   * @return the payload as it is written, compressed if the batch is
+   */
+  byte[] getPayload() {
+    if (this.chunks.size() == 1) {
+      return this.chunks.get(0);
+    }
+    Buffer payload = new Buffer();
+    for (byte[] chunk : this.chunks) {
+      payload.write(chunk);
+    }
+    return payload.readByteArray();
+  }
+
+  /**
+   * @return the uncompressed line protocol
+   */
+  byte[] getLineProtocolBytes() {
+    if (this.contentEncoding == null) {
+      return getPayload();
+    }
+    if (this.codec == null) {
+      throw new IllegalStateException("No codec to decode a batch with Content-Encoding " + this.contentEncoding);
+    }
+    // the codec reads all streams of the payload, a merged or spooled payload has several
+    try (BufferedSource lineProtocol = Okio.buffer(this.codec.decode(new Buffer().write(getPayload())))) {
+      return lineProtocol.readByteArray();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * @return the uncompressed line protocol
+   */
+  String getLineProtocol() {
+    return new String(getLineProtocolBytes(), StandardCharsets.UTF_8);
+  }
+
+  /**
+   * @return the points decoded from the line protocol, for the exception handler once the batch is dropped
+   */
+  List<Point> decodePoints() {
+    return LineProtocolDecoder.decode(getLineProtocol(), this.precision);
+  }
+
+  /**
+   * @return a request body writing the payload as it is, with a known length
+   */
+  RequestBody requestBody() {
+    return new RequestBody() {
+      @Override
+      public MediaType contentType() {
+        return InfluxDBImpl.MEDIA_TYPE_STRING;
+      }
+
+      @Override
+      public long contentLength() {
+        return EncodedBatch.this.bytes;
+      }
+
+      @Override
+      public void writeTo(final BufferedSink sink) throws IOException {
+        for (byte[] chunk : EncodedBatch.this.chunks) {
+          sink.write(chunk);
+        }
+      }
+    };
+  }
+}
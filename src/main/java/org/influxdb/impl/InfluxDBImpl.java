@@ -15,12 +15,18 @@ import org.influxdb.BatchOptions;
 import org.influxdb.InfluxDB;
 import org.influxdb.InfluxDBException;
 import org.influxdb.InfluxDBIOException;
+import org.influxdb.UdpOptions;
+import org.influxdb.WriteCodec;
 import org.influxdb.dto.BatchPoints;
 import org.influxdb.dto.BoundParameterQuery;
+import org.influxdb.dto.ColumnarBatch;
+import org.influxdb.dto.ColumnarSeries;
 import org.influxdb.dto.Point;
 import org.influxdb.dto.Pong;
 import org.influxdb.dto.Query;
 import org.influxdb.dto.QueryResult;
+import org.influxdb.dto.Row;
+import org.influxdb.impl.BatchProcessor.ColumnarBatchEntry;
 import org.influxdb.impl.BatchProcessor.HttpBatchEntry;
 import org.influxdb.impl.BatchProcessor.UdpBatchEntry;
 import org.influxdb.msgpack.MessagePackConverterFactory;
@@ -35,19 +41,20 @@ import retrofit2.converter.moshi.MoshiConverterFactory;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.DatagramPacket;
-import java.net.DatagramSocket;
 import java.net.InetAddress;
-import java.net.InetSocketAddress;
-import java.net.SocketException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.UnknownHostException;
-import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
@@ -57,6 +64,8 @@ import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Implementation of a InluxDB API.
@@ -67,8 +76,12 @@ public class InfluxDBImpl implements InfluxDB {
 
   private static final String APPLICATION_MSGPACK = "application/x-msgpack";
 
+  private static final String GZIP = "gzip";
+
   static final okhttp3.MediaType MEDIA_TYPE_STRING = MediaType.parse("text/plain");
 
+  private static final int DEFAULT_QUERY_STREAM_CHUNK_SIZE = 10000;
+
   private static final String SHOW_DATABASE_COMMAND_ENCODED = Query.encode("SHOW DATABASES");
 
   /**
@@ -84,14 +97,18 @@ public class InfluxDBImpl implements InfluxDB {
   private final Retrofit retrofit;
   private final OkHttpClient client;
   private final InfluxDBService influxDBService;
+  // the service of the write transport while batching is enabled with one
+  private volatile InfluxDBService writeService;
+  private WriteTransport writeTransport;
   private BatchProcessor batchProcessor;
   private final AtomicBoolean batchEnabled = new AtomicBoolean(false);
   private final LongAdder writeCount = new LongAdder();
   private final LongAdder unBatchedCount = new LongAdder();
   private final LongAdder batchedCount = new LongAdder();
-  private volatile DatagramSocket datagramSocket;
+  private final ConcurrentMap<Integer, UdpSender> udpSenders = new ConcurrentHashMap<>();
+  private volatile UdpOptions udpOptions = UdpOptions.DEFAULTS;
   private final HttpLoggingInterceptor loggingInterceptor;
-  private final GzipRequestInterceptor gzipRequestInterceptor;
+  private final WriteCodecInterceptor writeCodecInterceptor;
   private LogLevel logLevel = LogLevel.NONE;
   private String database;
   private String retentionPolicy = "autogen";
@@ -146,10 +163,10 @@ public class InfluxDBImpl implements InfluxDB {
     this.loggingInterceptor = new HttpLoggingInterceptor();
     setLogLevel(LOG_LEVEL);
 
-    this.gzipRequestInterceptor = new GzipRequestInterceptor();
+    this.writeCodecInterceptor = new WriteCodecInterceptor();
     OkHttpClient.Builder clonedOkHttpBuilder = okHttpBuilder.build().newBuilder()
             .addInterceptor(loggingInterceptor)
-            .addInterceptor(gzipRequestInterceptor);
+            .addInterceptor(writeCodecInterceptor);
     if (username != null && password != null) {
       clonedOkHttpBuilder.addInterceptor(new BasicAuthInterceptor(username, password));
     }
@@ -179,6 +196,7 @@ public class InfluxDBImpl implements InfluxDB {
     this.retrofit = clonedRetrofitBuilder.client(this.client)
             .addConverterFactory(converterFactory).build();
     this.influxDBService = this.retrofit.create(InfluxDBService.class);
+    this.writeService = this.influxDBService;
 
   }
 
@@ -197,16 +215,17 @@ public class InfluxDBImpl implements InfluxDB {
     this.loggingInterceptor = new HttpLoggingInterceptor();
     setLogLevel(LOG_LEVEL);
 
-    this.gzipRequestInterceptor = new GzipRequestInterceptor();
+    this.writeCodecInterceptor = new WriteCodecInterceptor();
     OkHttpClient.Builder clonedBuilder = client.build().newBuilder()
             .addInterceptor(loggingInterceptor)
-            .addInterceptor(gzipRequestInterceptor)
+            .addInterceptor(writeCodecInterceptor)
             .addInterceptor(new BasicAuthInterceptor(username, password));
     this.client = clonedBuilder.build();
     this.retrofit = new Retrofit.Builder().baseUrl(url)
         .client(this.client)
         .addConverterFactory(MoshiConverterFactory.create()).build();
     this.influxDBService = influxDBService;
+    this.writeService = influxDBService;
 
     chunkProccesor = new JSONChunkProccesor(adapter);
   }
@@ -268,8 +287,7 @@ public class InfluxDBImpl implements InfluxDB {
    */
   @Override
   public InfluxDB enableGzip() {
-    this.gzipRequestInterceptor.enable();
-    return this;
+    return setWriteCodec(WriteCodec.gzip());
   }
 
   /**
@@ -277,8 +295,7 @@ public class InfluxDBImpl implements InfluxDB {
    */
   @Override
   public InfluxDB disableGzip() {
-    this.gzipRequestInterceptor.disable();
-    return this;
+    return setWriteCodec(WriteCodec.none());
   }
 
   /**
@@ -286,7 +303,41 @@ public class InfluxDBImpl implements InfluxDB {
    */
   @Override
   public boolean isGzipEnabled() {
-    return this.gzipRequestInterceptor.isEnabled();
+    return GZIP.equals(this.writeCodecInterceptor.getCodec().getContentEncoding());
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public InfluxDB setWriteCodec(final WriteCodec writeCodec) {
+    this.writeCodecInterceptor.setCodec(writeCodec);
+    return this;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public WriteCodec getWriteCodec() {
+    return this.writeCodecInterceptor.getCodec();
+  }
+
+  /**
+   * @return whether the request bodies of writes are compressed, with gzip or any other codec
+   */
+  boolean isWriteCompressed() {
+    return this.writeCodecInterceptor.isEnabled();
+  }
+
+  /**
+   * @return the ratio of the uncompressed to the sent size of write request bodies, 1 without compression
+   */
+  double writeCompressionRatio() {
+    if (!isWriteCompressed()) {
+      return 1;
+    }
+    return this.writeCodecInterceptor.compressionRatio();
   }
 
   @Override
@@ -301,18 +352,40 @@ public class InfluxDBImpl implements InfluxDB {
     if (this.batchEnabled.get()) {
       throw new IllegalStateException("BatchProcessing is already enabled.");
     }
-    this.batchProcessor = BatchProcessor
-            .builder(this)
-            .actions(batchOptions.getActions())
-            .exceptionHandler(batchOptions.getExceptionHandler())
-            .interval(batchOptions.getFlushDuration(), batchOptions.getJitterDuration(), TimeUnit.MILLISECONDS)
-            .threadFactory(batchOptions.getThreadFactory())
-            .bufferLimit(batchOptions.getBufferLimit())
-            .consistencyLevel(batchOptions.getConsistency())
-            .precision(batchOptions.getPrecision())
-            .dropActionsOnQueueExhaustion(batchOptions.isDropActionsOnQueueExhaustion())
-            .droppedActionHandler(batchOptions.getDroppedActionHandler())
-            .build();
+    WriteTransport transport = WriteTransport.of(this.client, this.retrofit, batchOptions);
+    try {
+      this.batchProcessor = BatchProcessor
+              .builder(this)
+              .actions(batchOptions.getActions())
+              .exceptionHandler(batchOptions.getExceptionHandler())
+              .interval(batchOptions.getFlushDuration(), batchOptions.getJitterDuration(), TimeUnit.MILLISECONDS)
+              .threadFactory(batchOptions.getThreadFactory())
+              .bufferLimit(batchOptions.getBufferLimit())
+              .consistencyLevel(batchOptions.getConsistency())
+              .precision(batchOptions.getPrecision())
+              .dropActionsOnQueueExhaustion(batchOptions.isDropActionsOnQueueExhaustion())
+              .droppedActionHandler(batchOptions.getDroppedActionHandler())
+              .stripes(batchOptions.getStripes())
+              .flushConcurrency(batchOptions.getFlushConcurrency())
+              .maxBatchBytes(batchOptions.getMaxBatchBytes(), this::writeCompressionRatio)
+              .adaptive(batchOptions.getAdaptiveWriteLatency(), batchOptions.getMaxActions(),
+                        batchOptions.getBatchSizingHandler())
+              .spool(batchOptions.getSpoolDirectory(), batchOptions.getSpoolMaxBytes(),
+                     batchOptions.getSpoolSegmentBytes(), batchOptions.getSpoolDepthHandler())
+              .retryBackoff(batchOptions.getInitialRetryDelay(), batchOptions.getMaxRetryDelay())
+              .compression(batchOptions.getCompressionExecutor(), this::getWriteCodec)
+              .build();
+    } catch (RuntimeException e) {
+      // the transport is not used by any processor yet, release its threads and connections
+      if (transport != null) {
+        transport.close();
+      }
+      throw e;
+    }
+    if (transport != null) {
+      this.writeTransport = transport;
+      this.writeService = transport.getService();
+    }
     this.batchEnabled.set(true);
     return this;
   }
@@ -365,6 +438,7 @@ public class InfluxDBImpl implements InfluxDB {
             .consistencyLevel(consistency)
             .dropActionsOnQueueExhaustion(dropActionsOnQueueExhaustion)
             .droppedActionHandler(droppedActionHandler)
+            .compression(null, this::getWriteCodec)
             .build();
     this.batchEnabled.set(true);
     return this;
@@ -376,6 +450,18 @@ public class InfluxDBImpl implements InfluxDB {
     if (this.batchProcessor != null) {
       this.batchProcessor.flushAndShutdown();
     }
+    if (this.writeTransport != null) {
+      this.writeService = this.influxDBService;
+      this.writeTransport.close();
+      this.writeTransport = null;
+    }
+  }
+
+  /**
+   * @return the transport of the writes while batching is enabled, null if they use the client as is
+   */
+  WriteTransport getWriteTransport() {
+    return this.writeTransport;
   }
 
   @Override
@@ -454,6 +540,32 @@ public class InfluxDBImpl implements InfluxDB {
     this.writeCount.increment();
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void write(final ColumnarBatch batch) {
+    write(database, retentionPolicy, batch);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void write(final String database, final String retentionPolicy, final ColumnarBatch batch) {
+    if (this.batchEnabled.get()) {
+      this.batchProcessor.put(new ColumnarBatchEntry(batch, database, retentionPolicy));
+    } else {
+      BatchPoints batchPoints = BatchPoints.database(database)
+                                           .retentionPolicy(retentionPolicy)
+                                           .precision(batch.getPrecision())
+                                           .columnarBatch(batch).build();
+      this.write(batchPoints);
+      this.unBatchedCount.add(batch.getRowCount());
+    }
+    this.writeCount.add(batch.getRowCount());
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -471,18 +583,51 @@ public class InfluxDBImpl implements InfluxDB {
 
   @Override
   public void write(final BatchPoints batchPoints) {
-    this.batchedCount.add(batchPoints.getPoints().size());
-    RequestBody lineProtocol = RequestBody.create(MEDIA_TYPE_STRING, batchPoints.lineProtocol());
+    execute(callWrite(batchPoints));
+  }
+
+  @Override
+  public CompletableFuture<Void> writeAsync(final BatchPoints batchPoints) {
+    return enqueue(callWrite(batchPoints));
+  }
+
+  private Call<ResponseBody> callWrite(final BatchPoints batchPoints) {
+    this.batchedCount.add(BatchWriter.size(batchPoints));
+    RequestBody lineProtocol = new BatchPointsRequestBody(batchPoints);
     String db = batchPoints.getDatabase();
     if (db == null) {
-        db = this.database;
+      db = this.database;
     }
-    execute(this.influxDBService.writePoints(
+    return this.writeService.writePoints(
         db,
         batchPoints.getRetentionPolicy(),
         TimeUtil.toTimePrecision(batchPoints.getPrecision()),
         batchPoints.getConsistency().value(),
-        lineProtocol));
+        lineProtocol);
+  }
+
+  /**
+   * Write a batch encoded earlier, as it is.
+   *
+   * @param batch the encoded batch
+   */
+  void write(final EncodedBatch batch) {
+    this.batchedCount.add(batch.getPoints());
+    String db = batch.getDatabase();
+    if (db == null) {
+        db = this.database;
+    }
+    String contentEncoding = batch.getContentEncoding();
+    if (contentEncoding != null) {
+      this.writeCodecInterceptor.compressed(batch.getLineProtocolSize(), batch.getBytes());
+    }
+    execute(this.writeService.writePoints(
+        db,
+        batch.getRetentionPolicy(),
+        TimeUtil.toTimePrecision(batch.getPrecision()),
+        batch.getConsistency().value(),
+        contentEncoding,
+        batch.requestBody()));
   }
 
   @Override
@@ -497,12 +642,33 @@ public class InfluxDBImpl implements InfluxDB {
   @Override
   public void write(final String database, final String retentionPolicy, final ConsistencyLevel consistency,
           final TimeUnit precision, final String records) {
-    execute(this.influxDBService.writePoints(
+    execute(callWrite(database, retentionPolicy, consistency, precision, records));
+  }
+
+  @Override
+  public CompletableFuture<Void> writeAsync(final String database, final String retentionPolicy,
+          final ConsistencyLevel consistency, final TimeUnit precision, final String records) {
+    String db = database;
+    if (db == null) {
+      db = this.database;
+    }
+    return enqueue(callWrite(db, retentionPolicy, consistency, precision, records));
+  }
+
+  @Override
+  public CompletableFuture<Void> writeAsync(final String database, final String retentionPolicy,
+          final ConsistencyLevel consistency, final TimeUnit precision, final List<String> records) {
+    return writeAsync(database, retentionPolicy, consistency, precision, String.join("\n", records));
+  }
+
+  private Call<ResponseBody> callWrite(final String database, final String retentionPolicy,
+          final ConsistencyLevel consistency, final TimeUnit precision, final String records) {
+    return this.writeService.writePoints(
         database,
         retentionPolicy,
         TimeUtil.toTimePrecision(precision),
         consistency.value(),
-        RequestBody.create(MEDIA_TYPE_STRING, records)));
+        RequestBody.create(MEDIA_TYPE_STRING, records));
   }
 
   @Override
@@ -530,35 +696,79 @@ public class InfluxDBImpl implements InfluxDB {
    */
   @Override
   public void write(final int udpPort, final String records) {
-    initialDatagramSocket();
-    byte[] bytes = records.getBytes(StandardCharsets.UTF_8);
     try {
-        datagramSocket.send(new DatagramPacket(bytes, bytes.length, new InetSocketAddress(hostName, udpPort)));
+      udpSender(udpPort).send(records);
     } catch (IOException e) {
-        throw new InfluxDBIOException(e);
+      throw new InfluxDBIOException(e);
     }
   }
 
-  private void initialDatagramSocket() {
-    if (datagramSocket == null) {
-        synchronized (InfluxDBImpl.class) {
-            if (datagramSocket == null) {
-                try {
-                    datagramSocket = new DatagramSocket();
-                } catch (SocketException e) {
-                    throw new InfluxDBIOException(e);
-                }
-            }
+  private UdpSender udpSender(final int udpPort) {
+    UdpSender sender = this.udpSenders.get(udpPort);
+    if (sender == null) {
+      sender = this.udpSenders.computeIfAbsent(udpPort, port -> {
+        UdpOptions options = this.udpOptions;
+        try {
+          if (options.getQueueCapacity() > 0) {
+            return new QueuedUdpSender(this.hostName, port, options.getPayloadLimit(), options.getQueueCapacity(),
+                                       options.getQueueDepthHandler());
+          }
+          return new UdpSender(this.hostName, port, options.getPayloadLimit());
+        } catch (IOException e) {
+          throw new InfluxDBIOException(e);
         }
+      });
     }
-}
+    return sender;
+  }
+
+  private void closeUdpSenders() {
+    for (Iterator<UdpSender> senders = this.udpSenders.values().iterator(); senders.hasNext();) {
+      UdpSender sender = senders.next();
+      senders.remove();
+      try {
+        sender.close();
+      } catch (IOException e) {
+        // the channel is released anyway
+      }
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public InfluxDB setUdpOptions(final UdpOptions udpOptions) {
+    this.udpOptions = Objects.requireNonNull(udpOptions, "udpOptions");
+    // the channels of the previous options are opened again on the next write
+    closeUdpSenders();
+    return this;
+  }
 
   /**
    * {@inheritDoc}
    */
   @Override
   public void write(final int udpPort, final List<String> records) {
-    write(udpPort, String.join("\n", records));
+    try {
+      udpSender(udpPort).send(records);
+    } catch (IOException e) {
+      throw new InfluxDBIOException(e);
+    }
+  }
+
+  /**
+   * Send the line protocol of points to an UDP port, encoded straight into the datagrams.
+   *
+   * @param udpPort the UDP port InfluxDB is listening on
+   * @param points the points, with their timestamps in nanoseconds
+   */
+  void writePoints(final int udpPort, final Iterable<Point> points) {
+    try {
+      udpSender(udpPort).sendPoints(points);
+    } catch (IOException e) {
+      throw new InfluxDBIOException(e);
+    }
   }
 
   /**
@@ -651,18 +861,7 @@ public class InfluxDBImpl implements InfluxDB {
   @Override
   public void query(final Query query, final int chunkSize, final BiConsumer<Cancellable, QueryResult> onNext,
                     final Runnable onComplete, final Consumer<Throwable> onFailure) {
-    Call<ResponseBody> call;
-    if (query instanceof BoundParameterQuery) {
-      BoundParameterQuery boundParameterQuery = (BoundParameterQuery) query;
-      call = this.influxDBService.query(getDatabase(query), query.getCommandWithUrlEncoded(), chunkSize,
-          boundParameterQuery.getParameterJsonWithUrlEncoded());
-    } else {
-      if (query.requiresPost()) {
-        call = this.influxDBService.query(getDatabase(query), query.getCommandWithUrlEncoded(), chunkSize, null);
-      } else {
-        call = this.influxDBService.query(getDatabase(query), query.getCommandWithUrlEncoded(), chunkSize);
-      }
-    }
+    Call<ResponseBody> call = callChunkedQuery(query, chunkSize);
 
     call.enqueue(new Callback<ResponseBody>() {
       @Override
@@ -803,6 +1002,82 @@ public class InfluxDBImpl implements InfluxDB {
     return false;
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Stream<Row> queryStream(final Query query) {
+    return queryStream(query, DEFAULT_QUERY_STREAM_CHUNK_SIZE);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Stream<Row> queryStream(final Query query, final int chunkSize) {
+    RowDecoder decoder = rowDecoder(query, chunkSize);
+    Spliterator<Row> rows = Spliterators.spliteratorUnknownSize(new RowIterator(decoder),
+                                                                Spliterator.ORDERED | Spliterator.NONNULL);
+    return StreamSupport.stream(rows, false).onClose(decoder::close);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public List<ColumnarSeries> queryColumnar(final Query query) {
+    try {
+      return new ColumnarSeriesCollector(rowDecoder(query, DEFAULT_QUERY_STREAM_CHUNK_SIZE)).collect();
+    } catch (IOException e) {
+      throw new InfluxDBIOException(e);
+    }
+  }
+
+  /**
+   * Execute a query and map the rows of a measurement onto objects while the response is parsed.
+   */
+  <T> List<T> queryPOJO(final Query query, final Class<T> clazz, final String measurementName) {
+    RowDecoder decoder = rowDecoder(query, DEFAULT_QUERY_STREAM_CHUNK_SIZE);
+    // times are RFC3339 strings in JSON, the MessagePack time extension is decoded to epoch nanoseconds
+    TimeUnit precision = TimeUnit.MILLISECONDS;
+    if (messagePack) {
+      precision = TimeUnit.NANOSECONDS;
+    }
+    try {
+      return new PojoRowCollector<>(decoder, clazz, measurementName, precision).collect();
+    } catch (IOException e) {
+      throw new InfluxDBIOException(e);
+    }
+  }
+
+  private RowDecoder rowDecoder(final Query query, final int chunkSize) {
+    checkMessagePackSupport();
+    ResponseBody body = execute(callChunkedQuery(query, chunkSize));
+    if (messagePack) {
+      return new MessagePackRowDecoder(body);
+    }
+    return new JsonRowDecoder(body);
+  }
+
+  /**
+   * Calls the influxDBService for the chunked query.
+   */
+  private Call<ResponseBody> callChunkedQuery(final Query query, final int chunkSize) {
+    Call<ResponseBody> call;
+    if (query instanceof BoundParameterQuery) {
+      BoundParameterQuery boundParameterQuery = (BoundParameterQuery) query;
+      call = this.influxDBService.query(getDatabase(query), query.getCommandWithUrlEncoded(), chunkSize,
+          boundParameterQuery.getParameterJsonWithUrlEncoded());
+    } else {
+      if (query.requiresPost()) {
+        call = this.influxDBService.query(getDatabase(query), query.getCommandWithUrlEncoded(), chunkSize, null);
+      } else {
+        call = this.influxDBService.query(getDatabase(query), query.getCommandWithUrlEncoded(), chunkSize);
+      }
+    }
+    return call;
+  }
+
   /**
    * Calls the influxDBService for the query.
    */
@@ -826,7 +1101,7 @@ public class InfluxDBImpl implements InfluxDB {
     public String error;
   }
 
-  private boolean checkMessagePackSupport() {
+  private boolean isMessagePackSupported() {
     Matcher matcher = Pattern.compile("(\\d+\\.*)+").matcher(version());
     if (!matcher.find()) {
       return false;
@@ -840,9 +1115,14 @@ public class InfluxDBImpl implements InfluxDB {
   }
 
   private QueryResult executeQuery(final Call<QueryResult> call) {
+    checkMessagePackSupport();
+    return execute(call);
+  }
+
+  private void checkMessagePackSupport() {
     if (messagePack) {
       if (messagePackSupport == null) {
-        messagePackSupport = checkMessagePackSupport();
+        messagePackSupport = isMessagePackSupported();
       }
 
       if (!messagePackSupport) {
@@ -850,7 +1130,6 @@ public class InfluxDBImpl implements InfluxDB {
             "MessagePack format is only supported from InfluxDB version 1.4 and later");
       }
     }
-    return execute(call);
   }
 
   private <T> T execute(final Call<T> call) {
@@ -859,15 +1138,59 @@ public class InfluxDBImpl implements InfluxDB {
       if (response.isSuccessful()) {
         return response.body();
       }
-      try (ResponseBody errorBody = response.errorBody()) {
-        if (messagePack) {
-          throw InfluxDBException.buildExceptionForErrorState(errorBody.byteStream());
+      throw errorState(response);
+    } catch (IOException e) {
+      throw new InfluxDBIOException(e);
+    }
+  }
+
+  /**
+   * Enqueue a write call on the dispatcher of the HTTP client, failures are mapped to exceptions like
+   * {@link #execute(Call)} does.
+   */
+  private CompletableFuture<Void> enqueue(final Call<ResponseBody> call) {
+    CompletableFuture<Void> future = new CompletableFuture<>();
+    call.enqueue(new Callback<ResponseBody>() {
+      @Override
+      public void onResponse(final Call<ResponseBody> call, final Response<ResponseBody> response) {
+        if (response.isSuccessful()) {
+          if (response.body() != null) {
+            response.body().close();
+          }
+          future.complete(null);
+          return;
+        }
+        try {
+          future.completeExceptionally(errorState(response));
+        } catch (IOException e) {
+          future.completeExceptionally(new InfluxDBIOException(e));
+        }
+      }
+
+      @Override
+      public void onFailure(final Call<ResponseBody> call, final Throwable throwable) {
+        if (throwable instanceof IOException) {
+          future.completeExceptionally(new InfluxDBIOException((IOException) throwable));
         } else {
-          throw InfluxDBException.buildExceptionForErrorState(errorBody.string());
+          future.completeExceptionally(throwable);
         }
       }
-    } catch (IOException e) {
-      throw new InfluxDBIOException(e);
+    });
+    future.whenComplete((result, throwable) -> {
+      if (future.isCancelled()) {
+        call.cancel();
+      }
+    });
+    return future;
+  }
+
+  private InfluxDBException errorState(final Response<?> response) throws IOException {
+    try (ResponseBody errorBody = response.errorBody()) {
+      if (messagePack) {
+        return InfluxDBException.buildExceptionForErrorState(errorBody.byteStream());
+      } else {
+        return InfluxDBException.buildExceptionForErrorState(errorBody.string());
+      }
     }
   }
 
@@ -890,9 +1213,7 @@ public class InfluxDBImpl implements InfluxDB {
     try {
         this.disableBatch();
     } finally {
-        if (datagramSocket != null && !datagramSocket.isClosed()) {
-            datagramSocket.close();
-        }
+        closeUdpSenders();
     }
     this.client.dispatcher().executorService().shutdown();
     this.client.connectionPool().evictAll();
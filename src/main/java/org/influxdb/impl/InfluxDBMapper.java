@@ -7,6 +7,7 @@ import org.influxdb.dto.Query;
 import org.influxdb.dto.QueryResult;
 
 import java.util.List;
+import java.util.Objects;
 
 public class InfluxDBMapper extends InfluxDBResultMapper {
 
@@ -17,14 +18,18 @@ public class InfluxDBMapper extends InfluxDBResultMapper {
   }
 
   public <T> List<T> query(final Query query, final Class<T> clazz, final String measurementName) {
+    if (influxDB instanceof InfluxDBImpl) {
+      // map the rows while the response is parsed, without building the QueryResult
+      Objects.requireNonNull(measurementName, "measurementName");
+      return ((InfluxDBImpl) influxDB).queryPOJO(query, clazz, measurementName);
+    }
     QueryResult queryResult = influxDB.query(query);
     return toPOJO(queryResult, clazz, measurementName);
   }
 
   public <T> List<T> query(final Query query, final Class<T> clazz) {
     throwExceptionIfMissingAnnotation(clazz);
-    QueryResult queryResult = influxDB.query(query);
-    return toPOJO(queryResult, clazz);
+    return query(query, clazz, getMeasurementName(clazz));
   }
 
   public <T> List<T> query(final Class<T> clazz) {
@@ -41,8 +46,7 @@ public class InfluxDBMapper extends InfluxDBResultMapper {
               + " should specify a database value for this operation");
     }
 
-    QueryResult queryResult = influxDB.query(new Query("SELECT * FROM " + measurement, database));
-    return toPOJO(queryResult, clazz);
+    return query(new Query("SELECT * FROM " + measurement, database), clazz, measurement);
   }
 
   public <T> void save(final T model) {
@@ -2,14 +2,18 @@ package org.influxdb.impl;
 
 import org.influxdb.BatchOptions;
 import org.influxdb.InfluxDB;
+import org.influxdb.UdpOptions;
+import org.influxdb.WriteCodec;
 import org.influxdb.dto.*;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class InfluxDBParallelImpl implements InfluxDB{
     private final Map<List<String>, InfluxDB> influxDBMap = new HashMap<>();
@@ -52,6 +56,16 @@ public class InfluxDBParallelImpl implements InfluxDB{
                 .orElse(null);
     }
 
+    private String firstMeasurement(final BatchPoints batchPoints) {
+        if (!batchPoints.getPoints().isEmpty()) {
+            return batchPoints.getPoints().get(0).getMeasurement();
+        }
+        if (!batchPoints.getColumnarBatches().isEmpty()) {
+            return batchPoints.getColumnarBatches().get(0).getSchema().getMeasurement();
+        }
+        return null;
+    }
+
     private List<String> extractUniqueMeasurements(String records) {
         String[] lines = records.split("\n");
 
@@ -105,6 +119,19 @@ public class InfluxDBParallelImpl implements InfluxDB{
         return !isGzipEnabledForAll.contains(false);
     }
 
+    @Override
+    public InfluxDB setWriteCodec(final WriteCodec writeCodec) {
+        influxDBMap.values()
+                .forEach(con -> con.setWriteCodec(writeCodec));
+        return this;
+    }
+
+    @Override
+    public WriteCodec getWriteCodec() {
+        return influxDBMap.values().stream()
+                .map(InfluxDB::getWriteCodec).findFirst().orElse(WriteCodec.none());
+    }
+
     @Override
     public InfluxDB enableBatch() {
         enableBatch(BatchOptions.DEFAULTS);
@@ -247,6 +274,22 @@ public class InfluxDBParallelImpl implements InfluxDB{
         }
     }
 
+    @Override
+    public void write(final ColumnarBatch batch) {
+        InfluxDB influxDB = getCorrespondingConnection(batch.getSchema().getMeasurement());
+        if (influxDB != null) {
+            influxDB.write(batch);
+        }
+    }
+
+    @Override
+    public void write(final String database, final String retentionPolicy, final ColumnarBatch batch) {
+        InfluxDB influxDB = getCorrespondingConnection(batch.getSchema().getMeasurement());
+        if (influxDB != null) {
+            influxDB.write(database, retentionPolicy, batch);
+        }
+    }
+
     @Override
     public void write(int udpPort, Point point) {
         String measurement = point.getMeasurement();
@@ -260,27 +303,22 @@ public class InfluxDBParallelImpl implements InfluxDB{
 
     @Override
     public void write(BatchPoints batchPoints) {
-        if(!batchPoints.getPoints().isEmpty()) {
-            String measurement = batchPoints.getPoints().get(0).getMeasurement();
-            if (measurement!=null) {
-                InfluxDB influxDB = getCorrespondingConnection(measurement);
-                if (influxDB!=null) {
-                    influxDB.write(batchPoints);
-                }
+        String measurement = firstMeasurement(batchPoints);
+        if (measurement!=null) {
+            InfluxDB influxDB = getCorrespondingConnection(measurement);
+            if (influxDB!=null) {
+                influxDB.write(batchPoints);
             }
         }
-
     }
 
     @Override
     public void writeWithRetry(BatchPoints batchPoints) {
-        if(!batchPoints.getPoints().isEmpty()) {
-            String measurement = batchPoints.getPoints().get(0).getMeasurement();
-            if (measurement!=null) {
-                InfluxDB influxDB = getCorrespondingConnection(measurement);
-                if (influxDB!=null) {
-                    influxDB.writeWithRetry(batchPoints);
-                }
+        String measurement = firstMeasurement(batchPoints);
+        if (measurement!=null) {
+            InfluxDB influxDB = getCorrespondingConnection(measurement);
+            if (influxDB!=null) {
+                influxDB.writeWithRetry(batchPoints);
             }
         }
     }
@@ -333,6 +371,46 @@ public class InfluxDBParallelImpl implements InfluxDB{
         }
     }
 
+    @Override
+    public CompletableFuture<Void> writeAsync(final BatchPoints batchPoints) {
+        String measurement = firstMeasurement(batchPoints);
+        if (measurement != null) {
+            InfluxDB influxDB = getCorrespondingConnection(measurement);
+            if (influxDB != null) {
+                return influxDB.writeAsync(batchPoints);
+            }
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<Void> writeAsync(final String database, final String retentionPolicy,
+            final ConsistencyLevel consistency, final TimeUnit precision, final String records) {
+        List<String> measurements = extractUniqueMeasurements(records);
+        if (!measurements.isEmpty()) {
+            InfluxDB influxDB = getCorrespondingConnection(measurements.get(0));
+            if (influxDB != null) {
+                return influxDB.writeAsync(database, retentionPolicy, consistency, precision, records);
+            }
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<Void> writeAsync(final String database, final String retentionPolicy,
+            final ConsistencyLevel consistency, final TimeUnit precision, final List<String> records) {
+        if (!records.isEmpty()) {
+            List<String> measurements = extractUniqueMeasurements(records.get(0));
+            if (!measurements.isEmpty()) {
+                InfluxDB influxDB = getCorrespondingConnection(measurements.get(0));
+                if (influxDB != null) {
+                    return influxDB.writeAsync(database, retentionPolicy, consistency, precision, records);
+                }
+            }
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+
     @Override
     public void write(int udpPort, String records) {
         List<String> measurements = extractUniqueMeasurements(records);
@@ -371,6 +449,36 @@ public class InfluxDBParallelImpl implements InfluxDB{
             return influxDB.query(query);
         }
     }
+
+    @Override
+    public Stream<Row> queryStream(final Query query) {
+        return streamConnection(query).queryStream(query);
+    }
+
+    @Override
+    public Stream<Row> queryStream(final Query query, final int chunkSize) {
+        return streamConnection(query).queryStream(query, chunkSize);
+    }
+
+    @Override
+    public List<ColumnarSeries> queryColumnar(final Query query) {
+        return streamConnection(query).queryColumnar(query);
+    }
+
+    private InfluxDB streamConnection(final Query query) {
+        if (!isDQL(query.getCommand())) {
+            return new ArrayList<>(influxDBMap.values()).get(0);
+        }
+        String measurement = extractMeasurementFromQuery(query.getCommand());
+        InfluxDB influxDB = null;
+        if (measurement != null) {
+            influxDB = getCorrespondingConnection(measurement);
+        }
+        if (influxDB == null) {
+            throw new IllegalArgumentException("No connection for the measurement of the query: " + measurement);
+        }
+        return influxDB;
+    }
     @Override
     public List<QueryResult> queries(Query query) {
         if (isDQL(query.getCommand())) {
@@ -567,6 +675,13 @@ public class InfluxDBParallelImpl implements InfluxDB{
         return this;
     }
 
+    @Override
+    public InfluxDB setUdpOptions(final UdpOptions udpOptions) {
+        influxDBMap.values()
+                .forEach(influxDB -> influxDB.setUdpOptions(udpOptions));
+        return this;
+    }
+
     @Override
     public InfluxDB setDatabase(String database) {
         influxDBMap.values()
@@ -21,25 +21,14 @@
 package org.influxdb.impl;
 
 import org.influxdb.InfluxDBMapperException;
-import org.influxdb.annotation.Column;
-import org.influxdb.annotation.Exclude;
 import org.influxdb.annotation.Measurement;
 import org.influxdb.dto.QueryResult;
 
-import java.lang.reflect.Field;
-import java.lang.reflect.Modifier;
-import java.lang.reflect.ParameterizedType;
-import java.lang.reflect.Type;
-import java.time.Instant;
-import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeFormatterBuilder;
-import java.time.temporal.ChronoField;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map.Entry;
 import java.util.Objects;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -49,30 +38,6 @@ import java.util.concurrent.TimeUnit;
  */
 public class InfluxDBResultMapper {
 
-  /**
-   * Data structure used to cache classes used as measurements.
-   */
-  private static class ClassInfo {
-    ConcurrentMap<String, Field> fieldMap;
-    ConcurrentMap<Field, TypeMapper> typeMappers;
-  }
-  private static final
-    ConcurrentMap<String, ClassInfo> CLASS_INFO_CACHE = new ConcurrentHashMap<>();
-
-  private static final int FRACTION_MIN_WIDTH = 0;
-  private static final int FRACTION_MAX_WIDTH = 9;
-  private static final boolean ADD_DECIMAL_POINT = true;
-
-  /**
-   * When a query is executed without {@link TimeUnit}, InfluxDB returns the <code>time</code>
-   * column as a RFC3339 date.
-   */
-  private static final DateTimeFormatter RFC3339_FORMATTER = new DateTimeFormatterBuilder()
-    .appendPattern("yyyy-MM-dd'T'HH:mm:ss")
-    .appendFraction(ChronoField.NANO_OF_SECOND, FRACTION_MIN_WIDTH, FRACTION_MAX_WIDTH, ADD_DECIMAL_POINT)
-    .appendZoneOrOffsetId()
-    .toFormatter();
-
   /**
    * <p>
    * Process a {@link QueryResult} object returned by the InfluxDB client inspecting the internal
@@ -212,55 +177,10 @@ public class InfluxDBResultMapper {
 
   void cacheMeasurementClass(final Class<?>... classVarAgrs) {
     for (Class<?> clazz : classVarAgrs) {
-      if (CLASS_INFO_CACHE.containsKey(clazz.getName())) {
-        continue;
-      }
-      ConcurrentMap<String, Field> fieldMap = new ConcurrentHashMap<>();
-      ConcurrentMap<Field, TypeMapper> typeMappers = new ConcurrentHashMap<>();
-
-      Measurement measurement = clazz.getAnnotation(Measurement.class);
-      boolean allFields = measurement != null && measurement.allFields();
-
-      Class<?> c = clazz;
-      TypeMapper typeMapper = TypeMapper.empty();
-      while (c != null) {
-        for (Field field : c.getDeclaredFields()) {
-          Column colAnnotation = field.getAnnotation(Column.class);
-          if (colAnnotation == null && !(allFields
-                  && !field.isAnnotationPresent(Exclude.class) && !Modifier.isStatic(field.getModifiers()))) {
-            continue;
-          }
-
-          fieldMap.put(getFieldName(field, colAnnotation), field);
-          typeMappers.put(field, typeMapper);
-        }
-
-        Class<?> superclass = c.getSuperclass();
-        Type genericSuperclass = c.getGenericSuperclass();
-        if (genericSuperclass instanceof ParameterizedType) {
-          typeMapper = TypeMapper.of((ParameterizedType) genericSuperclass, superclass);
-        } else {
-          typeMapper = TypeMapper.empty();
-        }
-
-        c = superclass;
-      }
-
-      ClassInfo classInfo = new ClassInfo();
-      classInfo.fieldMap = fieldMap;
-      classInfo.typeMappers = typeMappers;
-      CLASS_INFO_CACHE.putIfAbsent(clazz.getName(), classInfo);
+      MeasurementBinding.of(clazz);
     }
   }
 
-  private static String getFieldName(final Field field, final Column colAnnotation) {
-    if (colAnnotation != null && !colAnnotation.name().isEmpty()) {
-      return colAnnotation.name();
-    }
-
-    return field.getName();
-  }
-
   String getMeasurementName(final Class<?> clazz) {
     return ((Measurement) clazz.getAnnotation(Measurement.class)).name();
   }
@@ -279,115 +199,47 @@ public class InfluxDBResultMapper {
 
   <T> List<T> parseSeriesAs(final QueryResult.Series series, final Class<T> clazz, final List<T> result,
                             final TimeUnit precision) {
+    MeasurementBinding binding = MeasurementBinding.of(clazz);
     int columnSize = series.getColumns().size();
-
-    ClassInfo classInfo = CLASS_INFO_CACHE.get(clazz.getName());
-    try {
-      T object = null;
-      for (List<Object> row : series.getValues()) {
-        for (int i = 0; i < columnSize; i++) {
-          Field correspondingField = classInfo.fieldMap.get(series.getColumns().get(i)/*InfluxDB columnName*/);
-          if (correspondingField != null) {
-            if (object == null) {
-              object = clazz.newInstance();
-            }
-            setFieldValue(object, correspondingField, row.get(i), precision,
-                    classInfo.typeMappers.get(correspondingField));
-          }
-        }
-        // When the "GROUP BY" clause is used, "tags" are returned as Map<String,String> and
-        // accordingly with InfluxDB documentation
-        // https://docs.influxdata.com/influxdb/v1.2/concepts/glossary/#tag-value
-        // "tag" values are always String.
-        if (series.getTags() != null && !series.getTags().isEmpty()) {
-          for (Entry<String, String> entry : series.getTags().entrySet()) {
-            Field correspondingField = classInfo.fieldMap.get(entry.getKey()/*InfluxDB columnName*/);
-            if (correspondingField != null) {
-              // I don't think it is possible to reach here without a valid "object"
-              setFieldValue(object, correspondingField, entry.getValue(), precision,
-                      classInfo.typeMappers.get(correspondingField));
-            }
-          }
-        }
-        if (object != null) {
-          result.add(object);
-          object = null;
+    // the fields of the columns and tags are looked up once per series
+    MeasurementBinding.Property[] properties = new MeasurementBinding.Property[columnSize];
+    boolean mapped = false;
+    for (int i = 0; i < columnSize; i++) {
+      properties[i] = binding.getProperty(series.getColumns().get(i)/*InfluxDB columnName*/);
+      mapped |= properties[i] != null;
+    }
+    List<MeasurementBinding.Property> tagProperties = new ArrayList<>();
+    List<String> tagValues = new ArrayList<>();
+    // When the "GROUP BY" clause is used, "tags" are returned as Map<String,String> and
+    // accordingly with InfluxDB documentation
+    // https://docs.influxdata.com/influxdb/v1.2/concepts/glossary/#tag-value
+    // "tag" values are always String.
+    if (series.getTags() != null) {
+      for (Entry<String, String> entry : series.getTags().entrySet()) {
+        MeasurementBinding.Property property = binding.getProperty(entry.getKey()/*InfluxDB columnName*/);
+        if (property != null) {
+          tagProperties.add(property);
+          tagValues.add(entry.getValue());
         }
       }
-    } catch (InstantiationException | IllegalAccessException e) {
-      throw new InfluxDBMapperException(e);
-    }
-    return result;
-  }
-
-  /**
-   * InfluxDB client returns any number as Double.
-   * See <a href="https://github.com/influxdata/influxdb-java/issues/153#issuecomment-259681987">...</a>
-   * for more information.
-   *
-   */
-  private static <T> void setFieldValue(final T object, final Field field, final Object value, final TimeUnit precision,
-                                        final TypeMapper typeMapper)
-    throws IllegalArgumentException, IllegalAccessException {
-    if (value == null) {
-      return;
     }
-    Type fieldType = typeMapper.resolve(field.getGenericType());
-    if (!field.isAccessible()) {
-      field.setAccessible(true);
+    if (!mapped) {
+      return result;
     }
-    field.set(object, adaptValue((Class<?>) fieldType, value, precision, field.getName(), object.getClass().getName()));
-  }
 
-  private static Object adaptValue(final Class<?> fieldType, final Object value, final TimeUnit precision,
-                                   final String fieldName, final String className) {
-    try {
-      if (String.class.isAssignableFrom(fieldType)) {
-        return String.valueOf(value);
-      }
-      if (Instant.class.isAssignableFrom(fieldType)) {
-        if (value instanceof String) {
-          return Instant.from(RFC3339_FORMATTER.parse(String.valueOf(value)));
+    for (List<Object> row : series.getValues()) {
+      @SuppressWarnings("unchecked")
+      T object = (T) binding.newInstance();
+      for (int i = 0; i < columnSize; i++) {
+        if (properties[i] != null) {
+          properties[i].set(object, row.get(i), precision);
         }
-        if (value instanceof Long) {
-          return Instant.ofEpochMilli(toMillis((long) value, precision));
-        }
-        if (value instanceof Double) {
-          return Instant.ofEpochMilli(toMillis(((Double) value).longValue(), precision));
-        }
-        if (value instanceof Integer) {
-          return Instant.ofEpochMilli(toMillis(((Integer) value).longValue(), precision));
-        }
-        throw new InfluxDBMapperException("Unsupported type " + fieldType + " for field " + fieldName);
-      }
-      if (Double.class.isAssignableFrom(fieldType) || double.class.isAssignableFrom(fieldType)) {
-        return value;
-      }
-      if (Long.class.isAssignableFrom(fieldType) || long.class.isAssignableFrom(fieldType)) {
-        return ((Double) value).longValue();
-      }
-      if (Integer.class.isAssignableFrom(fieldType) || int.class.isAssignableFrom(fieldType)) {
-        return ((Double) value).intValue();
       }
-      if (Boolean.class.isAssignableFrom(fieldType) || boolean.class.isAssignableFrom(fieldType)) {
-        return Boolean.valueOf(String.valueOf(value));
+      for (int i = 0; i < tagProperties.size(); i++) {
+        tagProperties.get(i).set(object, tagValues.get(i), precision);
       }
-      if (Enum.class.isAssignableFrom(fieldType)) {
-        //noinspection unchecked
-        return Enum.valueOf((Class<Enum>) fieldType, String.valueOf(value));
-      }
-    } catch (ClassCastException e) {
-      String msg = "Class '%s' field '%s' was defined with a different field type and caused a ClassCastException. "
-        + "The correct type is '%s' (current field value: '%s').";
-      throw new InfluxDBMapperException(
-        String.format(msg, className, fieldName, value.getClass().getName(), value));
+      result.add(object);
     }
-
-    throw new InfluxDBMapperException(
-           String.format("Class '%s' field '%s' is from an unsupported type '%s'.", className, fieldName, fieldType));
-  }
-
-  private static long toMillis(final long value, final TimeUnit precision) {
-    return TimeUnit.MILLISECONDS.convert(value, precision);
+    return result;
   }
 }
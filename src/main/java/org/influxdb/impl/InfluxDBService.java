@@ -9,6 +9,7 @@ import retrofit2.http.Body;
 import retrofit2.http.Field;
 import retrofit2.http.FormUrlEncoded;
 import retrofit2.http.GET;
+import retrofit2.http.Header;
 import retrofit2.http.POST;
 import retrofit2.http.Query;
 import retrofit2.http.Streaming;
@@ -45,6 +46,15 @@ interface InfluxDBService {
       @Query(RP) String retentionPolicy, @Query(PRECISION) String precision,
       @Query(CONSISTENCY) String consistency, @Body RequestBody batchPoints);
 
+  /**
+   * Write an encoded batch, the Content-Encoding header tells whether it is already compressed.
+   */
+  @POST("write")
+  public Call<ResponseBody> writePoints(@Query(DB) String database,
+      @Query(RP) String retentionPolicy, @Query(PRECISION) String precision,
+      @Query(CONSISTENCY) String consistency, @Header("Content-Encoding") String contentEncoding,
+      @Body RequestBody batchPoints);
+
   @GET("query")
   public Call<QueryResult> query(@Query(DB) String db,
       @Query(EPOCH) String epoch, @Query(value = Q, encoded = true) String query);
@@ -0,0 +1,208 @@
+package org.influxdb.impl;
+
+import com.squareup.moshi.JsonReader;
+import okhttp3.ResponseBody;
+import org.influxdb.InfluxDBException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decodes the rows of a JSON query response with a streaming {@link JsonReader}. The chunks of a chunked
+ * response are read as a sequence of top-level values.
+ */
+final class JsonRowDecoder extends RowDecoder {
+
+  // the JSON object or array the reader is in
+  private static final int DOCUMENT = 0;
+  private static final int DOCUMENT_FIELDS = 1;
+  private static final int RESULTS = 2;
+  private static final int RESULT_FIELDS = 3;
+  private static final int SERIES_LIST = 4;
+  private static final int SERIES_FIELDS = 5;
+  private static final int VALUES = 6;
+
+  private final JsonReader reader;
+  private int state = DOCUMENT;
+  private String name;
+  private Map<String, String> tags;
+  private List<String> columns;
+
+  JsonRowDecoder(final ResponseBody body) {
+    super(body);
+    this.reader = JsonReader.of(body.source());
+    // a chunked response is a sequence of documents
+    this.reader.setLenient(true);
+  }
+
+  @Override
+  boolean nextRow() throws IOException {
+    while (true) {
+      switch (this.state) {
+      case DOCUMENT:
+        if (this.reader.peek() == JsonReader.Token.END_DOCUMENT) {
+          return false;
+        }
+        this.reader.beginObject();
+        this.state = DOCUMENT_FIELDS;
+        break;
+      case DOCUMENT_FIELDS:
+        this.state = documentField();
+        break;
+      case RESULTS:
+        if (this.reader.hasNext()) {
+          this.reader.beginObject();
+          statement(0);
+          this.state = RESULT_FIELDS;
+        } else {
+          this.reader.endArray();
+          this.state = DOCUMENT_FIELDS;
+        }
+        break;
+      case RESULT_FIELDS:
+        this.state = resultField();
+        break;
+      case SERIES_LIST:
+        if (this.reader.hasNext()) {
+          this.reader.beginObject();
+          this.name = null;
+          this.tags = Collections.emptyMap();
+          this.columns = Collections.emptyList();
+          this.state = SERIES_FIELDS;
+        } else {
+          this.reader.endArray();
+          this.state = RESULT_FIELDS;
+        }
+        break;
+      case SERIES_FIELDS:
+        this.state = seriesField();
+        break;
+      default:
+        if (this.reader.hasNext()) {
+          return true;
+        }
+        this.reader.endArray();
+        this.state = SERIES_FIELDS;
+        break;
+      }
+    }
+  }
+
+  private int documentField() throws IOException {
+    if (!this.reader.hasNext()) {
+      this.reader.endObject();
+      return DOCUMENT;
+    }
+    String field = this.reader.nextName();
+    if ("results".equals(field)) {
+      this.reader.beginArray();
+      return RESULTS;
+    }
+    if ("error".equals(field)) {
+      throw new InfluxDBException(this.reader.nextString());
+    }
+    this.reader.skipValue();
+    return DOCUMENT_FIELDS;
+  }
+
+  private int resultField() throws IOException {
+    if (!this.reader.hasNext()) {
+      this.reader.endObject();
+      return RESULTS;
+    }
+    String field = this.reader.nextName();
+    if ("statement_id".equals(field)) {
+      statement(this.reader.nextInt());
+    } else if ("series".equals(field)) {
+      this.reader.beginArray();
+      return SERIES_LIST;
+    } else if ("error".equals(field)) {
+      throw new InfluxDBException(this.reader.nextString());
+    } else {
+      this.reader.skipValue();
+    }
+    return RESULT_FIELDS;
+  }
+
+  private int seriesField() throws IOException {
+    if (!this.reader.hasNext()) {
+      this.reader.endObject();
+      return SERIES_LIST;
+    }
+    String field = this.reader.nextName();
+    if (this.reader.peek() == JsonReader.Token.NULL) {
+      this.reader.skipValue();
+      return SERIES_FIELDS;
+    }
+    switch (field) {
+    case "name":
+      this.name = this.reader.nextString();
+      break;
+    case "tags":
+      this.tags = readTags();
+      break;
+    case "columns":
+      this.columns = readColumns();
+      break;
+    case "values":
+      this.reader.beginArray();
+      series(this.name, this.tags, this.columns);
+      return VALUES;
+    default:
+      this.reader.skipValue();
+      break;
+    }
+    return SERIES_FIELDS;
+  }
+
+  private Map<String, String> readTags() throws IOException {
+    Map<String, String> seriesTags = new HashMap<>();
+    this.reader.beginObject();
+    while (this.reader.hasNext()) {
+      seriesTags.put(this.reader.nextName(), this.reader.nextString());
+    }
+    this.reader.endObject();
+    return Collections.unmodifiableMap(seriesTags);
+  }
+
+  private List<String> readColumns() throws IOException {
+    List<String> seriesColumns = new ArrayList<>();
+    this.reader.beginArray();
+    while (this.reader.hasNext()) {
+      seriesColumns.add(this.reader.nextString());
+    }
+    this.reader.endArray();
+    return Collections.unmodifiableList(seriesColumns);
+  }
+
+  @Override
+  void readValues(final ValueSink sink) throws IOException {
+    this.reader.beginArray();
+    for (int column = 0; this.reader.hasNext(); column++) {
+      switch (this.reader.peek()) {
+      case NULL:
+        this.reader.nextNull();
+        sink.nullValue(column);
+        break;
+      case NUMBER:
+        // numbers are doubles like in QueryResult
+        sink.doubleValue(column, this.reader.nextDouble());
+        break;
+      case STRING:
+        sink.stringValue(column, this.reader.nextString());
+        break;
+      case BOOLEAN:
+        sink.booleanValue(column, this.reader.nextBoolean());
+        break;
+      default:
+        sink.objectValue(column, this.reader.readJsonValue());
+        break;
+      }
+    }
+    this.reader.endArray();
+  }
+}
@@ -0,0 +1,50 @@
+package org.influxdb.impl;
+
+import org.influxdb.dto.BatchPoints;
+
+import java.util.Collection;
+
+/**
+ * Batch writer reporting the duration of the writes of its delegate to an {@link AdaptiveBatchSizer}.
+ */
+class LatencyTrackingBatchWriter implements BatchWriter {
+
+  private final BatchWriter delegate;
+  private final AdaptiveBatchSizer sizer;
+
+  LatencyTrackingBatchWriter(final BatchWriter delegate, final AdaptiveBatchSizer sizer) {
+    this.delegate = delegate;
+    this.sizer = sizer;
+  }
+
+  @Override
+  public void write(final Collection<BatchPoints> batchPointsCollection) {
+    int points = 0;
+    for (BatchPoints batchPoints : batchPointsCollection) {
+      points += BatchWriter.size(batchPoints);
+    }
+    long start = System.nanoTime();
+    boolean failed = true;
+    try {
+      this.delegate.write(batchPointsCollection);
+      failed = this.delegate.isRetrying();
+    } finally {
+      this.sizer.written(points, System.nanoTime() - start, failed);
+    }
+  }
+
+  @Override
+  public boolean isRetrying() {
+    return this.delegate.isRetrying();
+  }
+
+  @Override
+  public void awaitPendingWrites() {
+    this.delegate.awaitPendingWrites();
+  }
+
+  @Override
+  public void close() {
+    this.delegate.close();
+  }
+}
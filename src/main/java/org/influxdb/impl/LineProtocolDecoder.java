@@ -0,0 +1,203 @@
+package org.influxdb.impl;
+
+import org.influxdb.dto.Point;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decodes line protocol written by {@link Point#lineProtocol(TimeUnit)} back into points, so the exception
+ * handler receives the points of a batch that was only kept as its encoded line protocol.
+ * <p>
+ * Integer and unsigned fields become {@code Long} fields, or {@code BigInteger} ones if they do not fit, floating
+ * point fields become {@code Double} fields. The timestamps keep the precision of the batch.
+ */
+final class LineProtocolDecoder {
+
+  private final String lineProtocol;
+  private final TimeUnit precision;
+  private int pos;
+
+  private LineProtocolDecoder(final String lineProtocol, final TimeUnit precision) {
+    this.lineProtocol = lineProtocol;
+    this.precision = precision;
+  }
+
+  /**
+   * @param lineProtocol the lines of the points, separated by newlines
+   * @param precision the precision of the timestamps
+   * @return the points of the lines
+   * @throws IllegalArgumentException if a line is not valid line protocol
+   */
+  static List<Point> decode(final String lineProtocol, final TimeUnit precision) {
+    LineProtocolDecoder decoder = new LineProtocolDecoder(lineProtocol, precision);
+    List<Point> points = new ArrayList<>();
+    while (decoder.skipNewLines()) {
+      points.add(decoder.nextPoint());
+    }
+    return points;
+  }
+
+  private boolean skipNewLines() {
+    while (this.pos < this.lineProtocol.length() && this.lineProtocol.charAt(this.pos) == '\n') {
+      this.pos++;
+    }
+    return this.pos < this.lineProtocol.length();
+  }
+
+  private Point nextPoint() {
+    Point.Builder builder = Point.measurement(readKey(false));
+    while (peek() == ',') {
+      this.pos++;
+      String tag = readKey(true);
+      expect('=');
+      builder.tag(tag, readKey(false));
+    }
+    expect(' ');
+    while (true) {
+      String field = readKey(true);
+      expect('=');
+      readFieldValue(builder, field);
+      if (peek() != ',') {
+        break;
+      }
+      this.pos++;
+    }
+    if (peek() == ' ') {
+      this.pos++;
+      String time = readToken();
+      try {
+        builder.time(Long.parseLong(time), this.precision);
+      } catch (NumberFormatException e) {
+        throw invalid("timestamp " + time);
+      }
+    }
+    if (peek() != '\n' && peek() != -1) {
+      throw invalid("end of line");
+    }
+    return builder.build();
+  }
+
+  /**
+   * Read a measurement, tag or field key, or a tag value, with its escaped space, comma and equals signs.
+   *
+   * @param key true to stop at an equals sign as well
+   */
+  private String readKey(final boolean key) {
+    StringBuilder sb = new StringBuilder();
+    while (this.pos < this.lineProtocol.length()) {
+      char c = this.lineProtocol.charAt(this.pos);
+      if (c == '\\' && this.pos + 1 < this.lineProtocol.length()
+          && isEscaped(this.lineProtocol.charAt(this.pos + 1))) {
+        sb.append(this.lineProtocol.charAt(this.pos + 1));
+        this.pos += 2;
+        continue;
+      }
+      if (c == ',' || c == ' ' || c == '\n' || key && c == '=') {
+        break;
+      }
+      sb.append(c);
+      this.pos++;
+    }
+    if (sb.length() == 0) {
+      throw invalid("key");
+    }
+    return sb.toString();
+  }
+
+  private static boolean isEscaped(final char c) {
+    return c == ' ' || c == ',' || c == '=';
+  }
+
+  private void readFieldValue(final Point.Builder builder, final String field) {
+    if (peek() == '"') {
+      builder.addField(field, readString());
+      return;
+    }
+    String value = readToken();
+    switch (value) {
+      case "t":
+      case "T":
+      case "true":
+      case "True":
+      case "TRUE":
+        builder.addField(field, true);
+        return;
+      case "f":
+      case "F":
+      case "false":
+      case "False":
+      case "FALSE":
+        builder.addField(field, false);
+        return;
+      default:
+    }
+    try {
+      char suffix = value.isEmpty() ? ' ' : value.charAt(value.length() - 1);
+      if (suffix == 'i' || suffix == 'u') {
+        String digits = value.substring(0, value.length() - 1);
+        try {
+          builder.addField(field, Long.parseLong(digits));
+        } catch (NumberFormatException e) {
+          builder.addField(field, new BigInteger(digits));
+        }
+      } else {
+        builder.addField(field, Double.parseDouble(value));
+      }
+    } catch (NumberFormatException e) {
+      throw invalid("value of field " + field);
+    }
+  }
+
+  private String readString() {
+    StringBuilder sb = new StringBuilder();
+    this.pos++;
+    while (this.pos < this.lineProtocol.length()) {
+      char c = this.lineProtocol.charAt(this.pos++);
+      if (c == '"') {
+        return sb.toString();
+      }
+      if (c == '\\' && this.pos < this.lineProtocol.length()) {
+        char next = this.lineProtocol.charAt(this.pos);
+        if (next == '"' || next == '\\') {
+          c = next;
+          this.pos++;
+        }
+      }
+      sb.append(c);
+    }
+    throw invalid("end of string");
+  }
+
+  private String readToken() {
+    int start = this.pos;
+    while (this.pos < this.lineProtocol.length()) {
+      char c = this.lineProtocol.charAt(this.pos);
+      if (c == ',' || c == ' ' || c == '\n') {
+        break;
+      }
+      this.pos++;
+    }
+    return this.lineProtocol.substring(start, this.pos);
+  }
+
+  private int peek() {
+    if (this.pos < this.lineProtocol.length()) {
+      return this.lineProtocol.charAt(this.pos);
+    }
+    return -1;
+  }
+
+  private void expect(final char c) {
+    if (peek() != c) {
+      throw invalid("'" + c + "'");
+    }
+    this.pos++;
+  }
+
+  private IllegalArgumentException invalid(final String expected) {
+    return new IllegalArgumentException("Invalid line protocol, expected " + expected + " at " + this.pos);
+  }
+}
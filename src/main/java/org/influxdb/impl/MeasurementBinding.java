@@ -0,0 +1,448 @@
+package org.influxdb.impl;
+
+import org.influxdb.InfluxDBMapperException;
+import org.influxdb.annotation.Column;
+import org.influxdb.annotation.Exclude;
+import org.influxdb.annotation.Measurement;
+import org.influxdb.annotation.TimeColumn;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.temporal.ChronoField;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The columns of a measurement class bound to its fields, resolved once per class and cached.
+ * <p>
+ * Every field is read and written through {@link MethodHandle}s instead of {@link Field#get(Object)} and
+ * {@link Field#set(Object, Object)}, with the type variables of generic superclasses resolved and the converter
+ * of the values read from InfluxDB selected from the field type up front. Serves {@link InfluxDBResultMapper}
+ * and {@link org.influxdb.dto.Point.Builder#addFieldsFromPOJO(Object)}.
+ */
+public final class MeasurementBinding {
+
+  /**
+   * The kind of value a field holds.
+   */
+  public enum ValueType {
+    BOOLEAN, LONG, DOUBLE, FLOAT, INT, SHORT, STRING, ENUM, INSTANT, OTHER
+  }
+
+  /**
+   * Converts a value read from InfluxDB to the type of a field.
+   */
+  @FunctionalInterface
+  interface Converter {
+    Object convert(Object value, TimeUnit precision);
+  }
+
+  private static final ConcurrentMap<Class<?>, MeasurementBinding> CACHE = new ConcurrentHashMap<>();
+  private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+  private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+  private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+  private static final int FRACTION_MIN_WIDTH = 0;
+  private static final int FRACTION_MAX_WIDTH = 9;
+  private static final boolean ADD_DECIMAL_POINT = true;
+
+  /**
+   * When a query is executed without {@link TimeUnit}, InfluxDB returns the <code>time</code>
+   * column as a RFC3339 date.
+   */
+  private static final DateTimeFormatter RFC3339_FORMATTER = new DateTimeFormatterBuilder()
+    .appendPattern("yyyy-MM-dd'T'HH:mm:ss")
+    .appendFraction(ChronoField.NANO_OF_SECOND, FRACTION_MIN_WIDTH, FRACTION_MAX_WIDTH, ADD_DECIMAL_POINT)
+    .appendZoneOrOffsetId()
+    .toFormatter();
+
+  private final Class<?> clazz;
+  private final MethodHandle constructor;
+  private final List<Property> properties;
+  private final Map<String, Property> propertiesByColumn;
+
+  private MeasurementBinding(final Class<?> clazz) {
+    this.clazz = clazz;
+    this.constructor = constructor(clazz);
+    List<Property> classProperties = new ArrayList<>();
+    Map<String, Property> byColumn = new HashMap<>();
+
+    Measurement measurement = clazz.getAnnotation(Measurement.class);
+    boolean allFields = measurement != null && measurement.allFields();
+
+    Class<?> c = clazz;
+    TypeMapper typeMapper = TypeMapper.empty();
+    while (c != null) {
+      for (Field field : c.getDeclaredFields()) {
+        Column colAnnotation = field.getAnnotation(Column.class);
+        if (colAnnotation == null && !(allFields
+                && !field.isAnnotationPresent(Exclude.class) && !Modifier.isStatic(field.getModifiers()))) {
+          continue;
+        }
+        Property property = new Property(clazz, field, colAnnotation, (Class<?>) typeMapper.resolve(
+            field.getGenericType()));
+        classProperties.add(property);
+        byColumn.put(property.column, property);
+      }
+
+      Class<?> superclass = c.getSuperclass();
+      Type genericSuperclass = c.getGenericSuperclass();
+      if (genericSuperclass instanceof ParameterizedType) {
+        typeMapper = TypeMapper.of((ParameterizedType) genericSuperclass, superclass);
+      } else {
+        typeMapper = TypeMapper.empty();
+      }
+
+      c = superclass;
+    }
+    this.properties = Collections.unmodifiableList(classProperties);
+    this.propertiesByColumn = byColumn;
+  }
+
+  /**
+   * @param clazz a measurement class
+   * @return the cached binding of the class
+   */
+  public static MeasurementBinding of(final Class<?> clazz) {
+    MeasurementBinding binding = CACHE.get(clazz);
+    if (binding == null) {
+      binding = new MeasurementBinding(clazz);
+      MeasurementBinding previous = CACHE.putIfAbsent(clazz, binding);
+      if (previous != null) {
+        binding = previous;
+      }
+    }
+    return binding;
+  }
+
+  /**
+   * @return the mapped fields, from the fields of the class to the ones of its superclasses
+   */
+  public List<Property> getProperties() {
+    return this.properties;
+  }
+
+  /**
+   * @param column the name of a column
+   * @return the field the column is mapped to, null if none
+   */
+  Property getProperty(final String column) {
+    return this.propertiesByColumn.get(column);
+  }
+
+  /**
+   * @return a new instance of the class, created with its no-arg constructor
+   */
+  Object newInstance() {
+    if (this.constructor == null) {
+      throw new InfluxDBMapperException(new InstantiationException(this.clazz.getName()));
+    }
+    try {
+      return this.constructor.invokeExact();
+    } catch (Throwable e) {
+      throw rethrow(e);
+    }
+  }
+
+  private static MethodHandle constructor(final Class<?> clazz) {
+    if (Modifier.isAbstract(clazz.getModifiers())) {
+      return null;
+    }
+    try {
+      Constructor<?> constructor = clazz.getDeclaredConstructor();
+      constructor.setAccessible(true);
+      return LOOKUP.unreflectConstructor(constructor).asType(MethodType.methodType(Object.class));
+    } catch (NoSuchMethodException | IllegalAccessException | RuntimeException e) {
+      return null;
+    }
+  }
+
+  private static RuntimeException rethrow(final Throwable e) {
+    if (e instanceof RuntimeException) {
+      return (RuntimeException) e;
+    }
+    if (e instanceof Error) {
+      throw (Error) e;
+    }
+    return new InfluxDBMapperException(e);
+  }
+
+  /**
+   * A field of a measurement class and the column it is mapped to.
+   */
+  public static final class Property {
+    private final String column;
+    private final String fieldName;
+    private final String className;
+    private final boolean tag;
+    private final TimeUnit timeUnit;
+    private final Class<?> type;
+    private final ValueType valueType;
+    private final MethodHandle getter;
+    private final MethodHandle setter;
+    // the setters without boxing, of primitive double, long and int fields
+    private final MethodHandle doubleSetter;
+    private final MethodHandle longSetter;
+    private final MethodHandle intSetter;
+    private final Converter converter;
+
+    Property(final Class<?> clazz, final Field field, final Column colAnnotation, final Class<?> type) {
+      if (colAnnotation != null && !colAnnotation.name().isEmpty()) {
+        this.column = colAnnotation.name();
+      } else {
+        this.column = field.getName();
+      }
+      this.fieldName = field.getName();
+      this.className = clazz.getName();
+      this.tag = colAnnotation != null && colAnnotation.tag();
+      TimeColumn timeColumn = field.getAnnotation(TimeColumn.class);
+      if (timeColumn == null) {
+        this.timeUnit = null;
+      } else {
+        this.timeUnit = timeColumn.timeUnit();
+      }
+      this.type = type;
+      this.valueType = valueType(type);
+      try {
+        field.setAccessible(true);
+        MethodHandle fieldGetter = LOOKUP.unreflectGetter(field);
+        MethodHandle fieldSetter = LOOKUP.unreflectSetter(field);
+        this.getter = fieldGetter.asType(GETTER_TYPE);
+        this.setter = fieldSetter.asType(SETTER_TYPE);
+        this.doubleSetter = primitiveSetter(fieldSetter, double.class);
+        this.longSetter = primitiveSetter(fieldSetter, long.class);
+        this.intSetter = primitiveSetter(fieldSetter, int.class);
+      } catch (IllegalAccessException e) {
+        throw new InfluxDBMapperException(e);
+      }
+      this.converter = converter();
+    }
+
+    private MethodHandle primitiveSetter(final MethodHandle fieldSetter, final Class<?> primitive) {
+      if (this.type != primitive) {
+        return null;
+      }
+      return fieldSetter.asType(MethodType.methodType(void.class, Object.class, primitive));
+    }
+
+    /**
+     * @return the name of the column
+     */
+    public String getColumn() {
+      return this.column;
+    }
+
+    /**
+     * @return whether the column is a tag
+     */
+    public boolean isTag() {
+      return this.tag;
+    }
+
+    /**
+     * @return the time unit of a {@link TimeColumn}, null if the field is no time column
+     */
+    public TimeUnit getTimeUnit() {
+      return this.timeUnit;
+    }
+
+    /**
+     * @return the type of the field, with type variables resolved
+     */
+    public Class<?> getType() {
+      return this.type;
+    }
+
+    /**
+     * @return the kind of value the field holds
+     */
+    public ValueType getValueType() {
+      return this.valueType;
+    }
+
+    /**
+     * @param target an instance of the measurement class
+     * @return the value of the field
+     */
+    public Object get(final Object target) {
+      try {
+        return this.getter.invokeExact(target);
+      } catch (Throwable e) {
+        throw rethrow(e);
+      }
+    }
+
+    /**
+     * Set a value read from InfluxDB, converted to the type of the field. A null value leaves the field unset.
+     */
+    void set(final Object target, final Object value, final TimeUnit precision) {
+      if (value == null) {
+        return;
+      }
+      try {
+        this.setter.invokeExact(target, this.converter.convert(value, precision));
+      } catch (ClassCastException e) {
+        String msg = "Class '%s' field '%s' was defined with a different field type and caused a ClassCastException. "
+          + "The correct type is '%s' (current field value: '%s').";
+        throw new InfluxDBMapperException(
+          String.format(msg, this.className, this.fieldName, value.getClass().getName(), value));
+      } catch (Throwable e) {
+        throw rethrow(e);
+      }
+    }
+
+    /**
+     * Set a number, without boxing into a primitive double field.
+     */
+    void setDouble(final Object target, final double value, final TimeUnit precision) {
+      try {
+        switch (this.valueType) {
+        case DOUBLE:
+          if (this.doubleSetter == null) {
+            this.setter.invokeExact(target, (Object) value);
+          } else {
+            this.doubleSetter.invokeExact(target, value);
+          }
+          break;
+        case LONG:
+        case INT:
+        case INSTANT:
+          setLong(target, (long) value, precision);
+          break;
+        default:
+          set(target, value, precision);
+          break;
+        }
+      } catch (Throwable e) {
+        throw rethrow(e);
+      }
+    }
+
+    /**
+     * Set an integer, without boxing into a primitive long or int field.
+     */
+    void setLong(final Object target, final long value, final TimeUnit precision) {
+      try {
+        switch (this.valueType) {
+        case DOUBLE:
+          setDouble(target, value, precision);
+          break;
+        case LONG:
+          if (this.longSetter == null) {
+            this.setter.invokeExact(target, (Object) value);
+          } else {
+            this.longSetter.invokeExact(target, value);
+          }
+          break;
+        case INT:
+          if (this.intSetter == null) {
+            this.setter.invokeExact(target, (Object) (int) value);
+          } else {
+            this.intSetter.invokeExact(target, (int) value);
+          }
+          break;
+        case INSTANT:
+          this.setter.invokeExact(target, (Object) Instant.ofEpochMilli(toMillis(value, precision)));
+          break;
+        default:
+          set(target, value, precision);
+          break;
+        }
+      } catch (Throwable e) {
+        throw rethrow(e);
+      }
+    }
+
+    /**
+     * InfluxDB client returns any number as Double.
+     * See <a href="https://github.com/influxdata/influxdb-java/issues/153#issuecomment-259681987">...</a>
+     * for more information.
+     */
+    private Converter converter() {
+      switch (this.valueType) {
+      case STRING:
+        return (value, precision) -> String.valueOf(value);
+      case INSTANT:
+        return this::toInstant;
+      case DOUBLE:
+        return (value, precision) -> value;
+      case LONG:
+        return (value, precision) -> ((Double) value).longValue();
+      case INT:
+        return (value, precision) -> ((Double) value).intValue();
+      case BOOLEAN:
+        return (value, precision) -> Boolean.valueOf(String.valueOf(value));
+      case ENUM:
+        return this::toEnum;
+      default:
+        return (value, precision) -> {
+          throw new InfluxDBMapperException(String.format("Class '%s' field '%s' is from an unsupported type '%s'.",
+                                                          this.className, this.fieldName, this.type));
+        };
+      }
+    }
+
+    private Object toInstant(final Object value, final TimeUnit precision) {
+      if (value instanceof String) {
+        return Instant.from(RFC3339_FORMATTER.parse(String.valueOf(value)));
+      }
+      if (value instanceof Long) {
+        return Instant.ofEpochMilli(toMillis((long) value, precision));
+      }
+      if (value instanceof Double) {
+        return Instant.ofEpochMilli(toMillis(((Double) value).longValue(), precision));
+      }
+      if (value instanceof Integer) {
+        return Instant.ofEpochMilli(toMillis(((Integer) value).longValue(), precision));
+      }
+      throw new InfluxDBMapperException("Unsupported type " + this.type + " for field " + this.fieldName);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Object toEnum(final Object value, final TimeUnit precision) {
+      return Enum.valueOf((Class<Enum>) this.type, String.valueOf(value));
+    }
+  }
+
+  private static ValueType valueType(final Class<?> type) {
+    if (boolean.class.isAssignableFrom(type) || Boolean.class.isAssignableFrom(type)) {
+      return ValueType.BOOLEAN;
+    } else if (long.class.isAssignableFrom(type) || Long.class.isAssignableFrom(type)) {
+      return ValueType.LONG;
+    } else if (double.class.isAssignableFrom(type) || Double.class.isAssignableFrom(type)) {
+      return ValueType.DOUBLE;
+    } else if (float.class.isAssignableFrom(type) || Float.class.isAssignableFrom(type)) {
+      return ValueType.FLOAT;
+    } else if (int.class.isAssignableFrom(type) || Integer.class.isAssignableFrom(type)) {
+      return ValueType.INT;
+    } else if (short.class.isAssignableFrom(type) || Short.class.isAssignableFrom(type)) {
+      return ValueType.SHORT;
+    } else if (String.class.isAssignableFrom(type)) {
+      return ValueType.STRING;
+    } else if (Enum.class.isAssignableFrom(type)) {
+      return ValueType.ENUM;
+    } else if (Instant.class.isAssignableFrom(type)) {
+      return ValueType.INSTANT;
+    }
+    return ValueType.OTHER;
+  }
+
+  private static long toMillis(final long value, final TimeUnit precision) {
+    return TimeUnit.MILLISECONDS.convert(value, precision);
+  }
+}
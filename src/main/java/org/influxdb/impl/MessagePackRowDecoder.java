@@ -0,0 +1,218 @@
+package org.influxdb.impl;
+
+import okhttp3.ResponseBody;
+import org.influxdb.InfluxDBException;
+import org.msgpack.core.ExtensionTypeHeader;
+import org.msgpack.core.MessageFormat;
+import org.msgpack.core.MessagePack;
+import org.msgpack.core.MessageUnpacker;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decodes the rows of a MessagePack query response with a {@link MessageUnpacker}. The chunks of a chunked
+ * response are read as a sequence of maps.
+ */
+final class MessagePackRowDecoder extends RowDecoder {
+
+  private static final byte MSG_PACK_TIME_EXT_TYPE = 5;
+  private static final int NANOS_START_INDEX = 8;
+
+  // the map or array the unpacker is in
+  private static final int DOCUMENT = 0;
+  private static final int DOCUMENT_FIELDS = 1;
+  private static final int RESULTS = 2;
+  private static final int RESULT_FIELDS = 3;
+  private static final int SERIES_LIST = 4;
+  private static final int SERIES_FIELDS = 5;
+  private static final int VALUES = 6;
+
+  private final MessageUnpacker unpacker;
+  private int state = DOCUMENT;
+  // the entries left in the map or array of every state
+  private final int[] remaining = new int[VALUES + 1];
+  private String name;
+  private Map<String, String> tags;
+  private List<String> columns;
+
+  MessagePackRowDecoder(final ResponseBody body) {
+    super(body);
+    this.unpacker = MessagePack.newDefaultUnpacker(body.byteStream());
+  }
+
+  @Override
+  boolean nextRow() throws IOException {
+    while (true) {
+      if (this.state == DOCUMENT) {
+        if (!this.unpacker.hasNext()) {
+          return false;
+        }
+        enter(DOCUMENT_FIELDS, this.unpacker.unpackMapHeader());
+      } else if (this.remaining[this.state] == 0) {
+        // the map or array of the state is done, back to the enclosing one
+        this.state--;
+      } else {
+        this.remaining[this.state]--;
+        switch (this.state) {
+        case DOCUMENT_FIELDS:
+          documentField();
+          break;
+        case RESULTS:
+          statement(0);
+          enter(RESULT_FIELDS, this.unpacker.unpackMapHeader());
+          break;
+        case RESULT_FIELDS:
+          resultField();
+          break;
+        case SERIES_LIST:
+          this.name = null;
+          this.tags = Collections.emptyMap();
+          this.columns = Collections.emptyList();
+          enter(SERIES_FIELDS, this.unpacker.unpackMapHeader());
+          break;
+        case SERIES_FIELDS:
+          seriesField();
+          break;
+        default:
+          return true;
+        }
+      }
+    }
+  }
+
+  private void enter(final int nextState, final int entries) {
+    this.state = nextState;
+    this.remaining[nextState] = entries;
+  }
+
+  private void documentField() throws IOException {
+    String field = this.unpacker.unpackString();
+    if ("results".equals(field)) {
+      enter(RESULTS, this.unpacker.unpackArrayHeader());
+    } else if ("error".equals(field)) {
+      throw new InfluxDBException(this.unpacker.unpackString());
+    } else {
+      this.unpacker.skipValue();
+    }
+  }
+
+  private void resultField() throws IOException {
+    String field = this.unpacker.unpackString();
+    if ("statement_id".equals(field)) {
+      statement(this.unpacker.unpackInt());
+    } else if ("series".equals(field)) {
+      enter(SERIES_LIST, this.unpacker.unpackArrayHeader());
+    } else if ("error".equals(field)) {
+      throw new InfluxDBException(this.unpacker.unpackString());
+    } else {
+      this.unpacker.skipValue();
+    }
+  }
+
+  private void seriesField() throws IOException {
+    String field = this.unpacker.unpackString();
+    if (this.unpacker.tryUnpackNil()) {
+      return;
+    }
+    switch (field) {
+    case "name":
+      this.name = this.unpacker.unpackString();
+      break;
+    case "tags":
+      this.tags = readTags();
+      break;
+    case "columns":
+      this.columns = readColumns();
+      break;
+    case "values":
+      enter(VALUES, this.unpacker.unpackArrayHeader());
+      series(this.name, this.tags, this.columns);
+      break;
+    default:
+      this.unpacker.skipValue();
+      break;
+    }
+  }
+
+  private Map<String, String> readTags() throws IOException {
+    int size = this.unpacker.unpackMapHeader();
+    Map<String, String> seriesTags = new HashMap<>();
+    for (int i = 0; i < size; i++) {
+      seriesTags.put(this.unpacker.unpackString(), this.unpacker.unpackString());
+    }
+    return Collections.unmodifiableMap(seriesTags);
+  }
+
+  private List<String> readColumns() throws IOException {
+    int size = this.unpacker.unpackArrayHeader();
+    List<String> seriesColumns = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      seriesColumns.add(this.unpacker.unpackString());
+    }
+    return Collections.unmodifiableList(seriesColumns);
+  }
+
+  @Override
+  void readValues(final ValueSink sink) throws IOException {
+    int size = this.unpacker.unpackArrayHeader();
+    for (int column = 0; column < size; column++) {
+      MessageFormat format = this.unpacker.getNextFormat();
+      switch (format.getValueType()) {
+      case NIL:
+        this.unpacker.unpackNil();
+        sink.nullValue(column);
+        break;
+      case BOOLEAN:
+        sink.booleanValue(column, this.unpacker.unpackBoolean());
+        break;
+      case INTEGER:
+        if (format == MessageFormat.UINT64) {
+          BigInteger value = this.unpacker.unpackBigInteger();
+          if (value.bitLength() < Long.SIZE) {
+            sink.longValue(column, value.longValue());
+          } else {
+            sink.objectValue(column, value);
+          }
+        } else {
+          sink.longValue(column, this.unpacker.unpackLong());
+        }
+        break;
+      case FLOAT:
+        sink.doubleValue(column, this.unpacker.unpackDouble());
+        break;
+      case STRING:
+        sink.stringValue(column, this.unpacker.unpackString());
+        break;
+      case EXTENSION:
+        readExtension(column, sink);
+        break;
+      default:
+        sink.objectValue(column, this.unpacker.unpackValue());
+        break;
+      }
+    }
+  }
+
+  private void readExtension(final int column, final ValueSink sink) throws IOException {
+    ExtensionTypeHeader extension = this.unpacker.unpackExtensionTypeHeader();
+    byte[] payload = new byte[extension.getLength()];
+    this.unpacker.readPayload(payload);
+    if (extension.getType() != MSG_PACK_TIME_EXT_TYPE) {
+      sink.nullValue(column);
+      return;
+    }
+    // epoch nanos encoded like https://github.com/tinylib/msgp/blob/master/msgp/write.go#L594
+    ByteBuffer buffer = ByteBuffer.wrap(payload);
+    long epochSeconds = buffer.getLong();
+    int nanosOffset = buffer.getInt(NANOS_START_INDEX);
+    sink.longValue(column, TimeUnit.SECONDS.toNanos(epochSeconds) + nanosOffset);
+  }
+}
@@ -0,0 +1,94 @@
+package org.influxdb.impl;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded lock-free queue for many producer threads and a single consumer thread. Every slot carries a
+ * sequence number telling whether it is free for the producer claiming its position or filled for the consumer
+ * (the bounded queue of Dmitry Vyukov).
+ *
+ * @param <E> the type of the elements
+ */
+final class MpscRing<E> {
+
+  private final AtomicReferenceArray<E> slots;
+  private final AtomicLongArray sequences;
+  private final int mask;
+  private final AtomicLong tail = new AtomicLong();
+  // only written by the consumer
+  private volatile long head;
+
+  /**
+   * @param capacity the least number of elements the ring holds, rounded up to a power of two
+   */
+  MpscRing(final int capacity) {
+    int size = Integer.highestOneBit(Math.max(capacity, 1));
+    if (size < capacity) {
+      size <<= 1;
+    }
+    this.slots = new AtomicReferenceArray<>(size);
+    this.sequences = new AtomicLongArray(size);
+    for (int i = 0; i < size; i++) {
+      this.sequences.set(i, i);
+    }
+    this.mask = size - 1;
+  }
+
+  /**
+   * @return the number of elements the ring holds
+   */
+  int capacity() {
+    return this.mask + 1;
+  }
+
+  /**
+   * Add an element without blocking, may be called by any thread.
+   *
+   * @param element the element to add
+   * @return false if the ring is full
+   */
+  boolean offer(final E element) {
+    while (true) {
+      long position = this.tail.get();
+      int index = (int) position & this.mask;
+      long distance = this.sequences.get(index) - position;
+      if (distance == 0) {
+        if (this.tail.compareAndSet(position, position + 1)) {
+          this.slots.lazySet(index, element);
+          this.sequences.lazySet(index, position + 1);
+          return true;
+        }
+      } else if (distance < 0) {
+        return false;
+      }
+      // another producer claimed the position, try the next one
+    }
+  }
+
+  /**
+   * Take the oldest element, must only be called by the consumer thread.
+   *
+   * @return the element or null if the ring is empty
+   */
+  E poll() {
+    long position = this.head;
+    int index = (int) position & this.mask;
+    if (this.sequences.get(index) != position + 1) {
+      return null;
+    }
+    E element = this.slots.get(index);
+    this.slots.lazySet(index, null);
+    this.sequences.lazySet(index, position + this.mask + 1);
+    this.head = position + 1;
+    return element;
+  }
+
+  /**
+   * @return the number of elements in the ring, an estimate while producers are adding
+   */
+  int size() {
+    return (int) Math.max(this.tail.get() - this.head, 0);
+  }
+}
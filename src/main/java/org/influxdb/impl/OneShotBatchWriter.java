@@ -3,7 +3,9 @@ package org.influxdb.impl;
 import org.influxdb.InfluxDB;
 import org.influxdb.dto.BatchPoints;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 
 /**
  * Batch writer that tries to write BatchPoints exactly once.
@@ -11,15 +13,34 @@ import java.util.Collection;
 class OneShotBatchWriter implements BatchWriter {
 
   private InfluxDB influxDB;
+  private BatchEncoder encoder;
 
   OneShotBatchWriter(final InfluxDB influxDB) {
+    this(influxDB, BatchEncoder.of(influxDB));
+  }
+
+  OneShotBatchWriter(final InfluxDB influxDB, final BatchEncoder encoder) {
     this.influxDB = influxDB;
+    this.encoder = encoder;
   }
 
   @Override
   public void write(final Collection<BatchPoints> batchPointsCollection) {
+    // only InfluxDBImpl writes encoded batches, other implementations get the points
+    List<EncodedBatch> compressed = influxDB instanceof InfluxDBImpl
+        ? encoder.compress(new ArrayList<>(batchPointsCollection)) : null;
+    if (compressed == null) {
+      for (BatchPoints batchPoints : batchPointsCollection) {
+        influxDB.write(batchPoints);
+      }
+    } else {
+      for (EncodedBatch batch : compressed) {
+        ((InfluxDBImpl) influxDB).write(batch);
+      }
+    }
+    // a failure above hands all points to the exception handler, so release only once all were written
     for (BatchPoints batchPoints : batchPointsCollection) {
-      influxDB.write(batchPoints);
+      BatchWriter.release(batchPoints);
     }
   }
 
@@ -0,0 +1,126 @@
+package org.influxdb.impl;
+
+import org.influxdb.dto.BatchPoints;
+import org.influxdb.dto.Point;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Batch writer that hands the batches over to a pool of flush workers, so that several write requests
+ * can be in flight at the same time.
+ * <p>
+ * Every worker is a single thread with its own delegate {@link BatchWriter}. All batches of one
+ * database / retention policy pair are always handled by the same worker, which keeps their write order
+ * (and the ordering guarantees of a retrying delegate). The number of batches handed over but not yet
+ * written is bounded by the number of workers; when all workers are busy {@link #write(Collection)} blocks
+ * the caller until one of them finished.
+ */
+class ParallelBatchWriter implements BatchWriter {
+
+  private static final Logger LOG = Logger.getLogger(ParallelBatchWriter.class.getName());
+
+  private final List<BatchWriter> writers;
+  private final ExecutorService[] workers;
+  private final Semaphore inFlight;
+  private final BiConsumer<Iterable<Point>, Throwable> exceptionHandler;
+
+  ParallelBatchWriter(final List<BatchWriter> writers, final ThreadFactory threadFactory,
+                      final BiConsumer<Iterable<Point>, Throwable> exceptionHandler) {
+    this.writers = writers;
+    this.exceptionHandler = exceptionHandler;
+    this.workers = new ExecutorService[writers.size()];
+    for (int i = 0; i < this.workers.length; i++) {
+      this.workers[i] = Executors.newSingleThreadExecutor(threadFactory);
+    }
+    this.inFlight = new Semaphore(writers.size());
+  }
+
+  @Override
+  public void write(final Collection<BatchPoints> batchPointsCollection) {
+    if (batchPointsCollection.isEmpty()) {
+      // give every worker the chance to retry its buffered batches
+      for (int i = 0; i < this.workers.length; i++) {
+        submit(i, Collections.emptyList());
+      }
+      return;
+    }
+    for (BatchPoints batchPoints : batchPointsCollection) {
+      submit(workerIndex(batchPoints, this.workers.length), Collections.singletonList(batchPoints));
+    }
+  }
+
+  @Override
+  public void awaitPendingWrites() {
+    int permits = this.workers.length;
+    this.inFlight.acquireUninterruptibly(permits);
+    this.inFlight.release(permits);
+  }
+
+  @Override
+  public void close() {
+    awaitPendingWrites();
+    for (int i = 0; i < this.workers.length; i++) {
+      // closed already by disableBatch() before close()
+      if (this.workers[i].isShutdown()) {
+        continue;
+      }
+      BatchWriter writer = this.writers.get(i);
+      this.workers[i].execute(writer::close);
+      this.workers[i].shutdown();
+    }
+    try {
+      for (ExecutorService worker : this.workers) {
+        worker.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void submit(final int index, final Collection<BatchPoints> batch) {
+    try {
+      this.inFlight.acquire();
+    } catch (InterruptedException e) {
+      throw new RuntimeException(e);
+    }
+    BatchWriter writer = this.writers.get(index);
+    try {
+      this.workers[index].execute(() -> {
+        try {
+          writer.write(batch);
+        } catch (Throwable t) {
+          for (BatchPoints batchPoints : batch) {
+            this.exceptionHandler.accept(BatchWriter.points(batchPoints), t);
+          }
+          LOG.log(Level.SEVERE, "Batch could not be sent. Data will be lost", t);
+        } finally {
+          this.inFlight.release();
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      this.inFlight.release();
+      throw e;
+    }
+  }
+
+  /**
+   * Pick the worker for the given batch. Batches with the same database and retention policy always map
+   * to the same worker.
+   */
+  static int workerIndex(final BatchPoints batchPoints, final int workerCount) {
+    int hash = Objects.hash(batchPoints.getDatabase(), batchPoints.getRetentionPolicy());
+    return (hash & Integer.MAX_VALUE) % workerCount;
+  }
+}
@@ -0,0 +1,176 @@
+package org.influxdb.impl;
+
+import org.influxdb.InfluxDBException;
+import org.influxdb.InfluxDBMapperException;
+import org.influxdb.impl.MeasurementBinding.Property;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Maps the rows pulled from a {@link RowDecoder} onto the fields of a measurement class while the response is
+ * parsed, without a {@link org.influxdb.dto.QueryResult} or a list per row. The fields of the columns are looked
+ * up once per series, numbers are set into primitive fields without boxing.
+ *
+ * @param <T> the measurement class
+ */
+final class PojoRowCollector<T> implements RowDecoder.ValueSink {
+
+  private final RowDecoder decoder;
+  private final MeasurementBinding binding;
+  private final String measurementName;
+  private final TimeUnit precision;
+  private final List<T> result = new ArrayList<>();
+  private int seriesVersion = -1;
+  private boolean mapped;
+  // the field of every column of the current series, null for the columns without field
+  private Property[] columnProperties = new Property[0];
+  private final List<Property> tagProperties = new ArrayList<>();
+  private final List<String> tagValues = new ArrayList<>();
+  private T object;
+
+  /**
+   * @param precision the time unit of integer timestamps in the response
+   */
+  PojoRowCollector(final RowDecoder decoder, final Class<T> clazz, final String measurementName,
+                   final TimeUnit precision) {
+    this.decoder = decoder;
+    this.binding = MeasurementBinding.of(clazz);
+    this.measurementName = measurementName;
+    this.precision = precision;
+  }
+
+  /**
+   * Read all rows of the response and close it.
+   *
+   * @return the objects of the rows of the measurement, in the order of the response
+   * @throws IOException if the response cannot be read
+   * @throws InfluxDBMapperException if the response reports an error or a value cannot be mapped
+   */
+  List<T> collect() throws IOException {
+    try {
+      while (this.decoder.nextRow()) {
+        if (this.decoder.getSeriesVersion() != this.seriesVersion) {
+          this.seriesVersion = this.decoder.getSeriesVersion();
+          bindSeries();
+        }
+        if (this.mapped) {
+          this.object = newInstance();
+          this.decoder.readValues(this);
+          for (int i = 0; i < this.tagProperties.size(); i++) {
+            this.tagProperties.get(i).set(this.object, this.tagValues.get(i), this.precision);
+          }
+          this.result.add(this.object);
+        } else {
+          this.decoder.readValues(IgnoredValues.INSTANCE);
+        }
+      }
+      return this.result;
+    } catch (InfluxDBException e) {
+      throw new InfluxDBMapperException("InfluxDB returned an error: " + e.getMessage(), e);
+    } finally {
+      this.decoder.close();
+    }
+  }
+
+  private void bindSeries() {
+    List<String> columns = this.decoder.getColumns();
+    this.columnProperties = new Property[columns.size()];
+    this.tagProperties.clear();
+    this.tagValues.clear();
+    this.mapped = false;
+    if (!this.measurementName.equals(this.decoder.getSeriesName())) {
+      return;
+    }
+    for (int i = 0; i < columns.size(); i++) {
+      this.columnProperties[i] = this.binding.getProperty(columns.get(i));
+      this.mapped |= this.columnProperties[i] != null;
+    }
+    // tag values are always strings, see https://docs.influxdata.com/influxdb/v1.2/concepts/glossary/#tag-value
+    for (Entry<String, String> tag : this.decoder.getTags().entrySet()) {
+      Property property = this.binding.getProperty(tag.getKey());
+      if (property != null && tag.getValue() != null) {
+        this.tagProperties.add(property);
+        this.tagValues.add(tag.getValue());
+      }
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private T newInstance() {
+    return (T) this.binding.newInstance();
+  }
+
+  @Override
+  public void nullValue(final int column) {
+    // null values leave the field unset
+  }
+
+  @Override
+  public void longValue(final int column, final long value) {
+    Property property = this.columnProperties[column];
+    if (property != null) {
+      property.setLong(this.object, value, this.precision);
+    }
+  }
+
+  @Override
+  public void doubleValue(final int column, final double value) {
+    Property property = this.columnProperties[column];
+    if (property != null) {
+      property.setDouble(this.object, value, this.precision);
+    }
+  }
+
+  @Override
+  public void stringValue(final int column, final String value) {
+    objectValue(column, value);
+  }
+
+  @Override
+  public void booleanValue(final int column, final boolean value) {
+    objectValue(column, value);
+  }
+
+  @Override
+  public void objectValue(final int column, final Object value) {
+    Property property = this.columnProperties[column];
+    if (property != null) {
+      property.set(this.object, value, this.precision);
+    }
+  }
+
+  /**
+   * Skips the values of the rows of other series.
+   */
+  private enum IgnoredValues implements RowDecoder.ValueSink {
+    INSTANCE;
+
+    @Override
+    public void nullValue(final int column) {
+    }
+
+    @Override
+    public void longValue(final int column, final long value) {
+    }
+
+    @Override
+    public void doubleValue(final int column, final double value) {
+    }
+
+    @Override
+    public void stringValue(final int column, final String value) {
+    }
+
+    @Override
+    public void booleanValue(final int column, final boolean value) {
+    }
+
+    @Override
+    public void objectValue(final int column, final Object value) {
+    }
+  }
+}
@@ -0,0 +1,150 @@
+package org.influxdb.impl;
+
+import org.influxdb.UdpQueueDepth;
+import org.influxdb.dto.Point;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * An {@link UdpSender} that never blocks the writing threads. The records are put into a {@link MpscRing} and
+ * packed into datagrams by a dedicated sender thread, records written while the ring is full are dropped.
+ */
+final class QueuedUdpSender extends UdpSender {
+
+  private static final Logger LOG = Logger.getLogger(QueuedUdpSender.class.getName());
+  private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+  private static final long CLOSE_TIMEOUT_MILLIS = 1000;
+
+  private final int udpPort;
+  private final MpscRing<String> ring;
+  private final Consumer<UdpQueueDepth> queueDepthHandler;
+  private final LongAdder dropped = new LongAdder();
+  private final Thread senderThread;
+  private long failedSends;
+  private volatile boolean idle;
+  private volatile boolean closed;
+
+  /**
+   * @param hostName the host of InfluxDB
+   * @param udpPort the UDP port InfluxDB is listening on
+   * @param payloadLimit the largest payload of a datagram in bytes
+   * @param queueCapacity the number of records the queue holds
+   * @param queueDepthHandler called after every round of sends
+   * @throws IOException if the channel cannot be opened
+   */
+  QueuedUdpSender(final String hostName, final int udpPort, final int payloadLimit, final int queueCapacity,
+                  final Consumer<UdpQueueDepth> queueDepthHandler) throws IOException {
+    super(hostName, udpPort, payloadLimit);
+    this.udpPort = udpPort;
+    this.ring = new MpscRing<>(queueCapacity);
+    this.queueDepthHandler = queueDepthHandler;
+    this.senderThread = new Thread(this::run, "influxdb-udp-sender-" + udpPort);
+    this.senderThread.setDaemon(true);
+    this.senderThread.start();
+  }
+
+  @Override
+  void send(final CharSequence records) {
+    enqueue(records);
+    wakeUp();
+  }
+
+  @Override
+  void send(final Iterable<? extends CharSequence> records) {
+    for (CharSequence record : records) {
+      enqueue(record);
+    }
+    wakeUp();
+  }
+
+  @Override
+  void sendPoints(final Iterable<Point> points) {
+    // the points are released once sent, the ring keeps their line protocol
+    for (Point point : points) {
+      enqueue(point.lineProtocol());
+    }
+    wakeUp();
+  }
+
+  private void enqueue(final CharSequence records) {
+    if (this.closed || !this.ring.offer(records.toString())) {
+      this.dropped.increment();
+    }
+  }
+
+  private void wakeUp() {
+    if (this.idle) {
+      LockSupport.unpark(this.senderThread);
+    }
+  }
+
+  private void run() {
+    while (true) {
+      int queued = this.ring.size();
+      boolean sent = drain();
+      if (sent) {
+        this.queueDepthHandler.accept(new UdpQueueDepth(this.udpPort, queued, this.dropped.sum(),
+                                                        this.failedSends));
+      }
+      if (this.closed && this.ring.size() == 0) {
+        return;
+      }
+      if (!sent) {
+        this.idle = true;
+        // a record added before idle was set is not missed, the ring is checked again before parking
+        if (this.ring.size() == 0 && !this.closed) {
+          LockSupport.parkNanos(this, IDLE_NANOS);
+        }
+        this.idle = false;
+      }
+    }
+  }
+
+  /**
+   * Send the queued records.
+   *
+   * @return true if any record was taken from the ring
+   */
+  private boolean drain() {
+    boolean taken = false;
+    String records;
+    while ((records = this.ring.poll()) != null) {
+      taken = true;
+      try {
+        append(records);
+      } catch (IOException e) {
+        failed(e);
+      }
+    }
+    try {
+      flush();
+    } catch (IOException e) {
+      failed(e);
+    }
+    return taken;
+  }
+
+  private void failed(final IOException e) {
+    this.failedSends++;
+    LOG.log(Level.FINE, "Datagram could not be sent", e);
+  }
+
+  @Override
+  public void close() throws IOException {
+    this.closed = true;
+    LockSupport.unpark(this.senderThread);
+    try {
+      this.senderThread.join(CLOSE_TIMEOUT_MILLIS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      super.close();
+    }
+  }
+}
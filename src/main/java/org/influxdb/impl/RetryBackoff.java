@@ -0,0 +1,71 @@
+package org.influxdb.impl;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Jittered exponential backoff of the retries of a {@link RetryCapableBatchWriter}.
+ * <p>
+ * Every consecutive failure doubles the delay, starting with the initial delay and capped at the maximum
+ * delay. Half of the delay is fixed and the other half random, so the writers of many clients do not retry
+ * in lockstep after an outage. A success resets the delay to the initial one.
+ */
+final class RetryBackoff {
+
+  private final long initialDelay;
+  private final long maxDelay;
+  private final DoubleSupplier random;
+  private int failures;
+
+  /**
+   * @param initialDelay the delay after the first failure (milliseconds)
+   * @param maxDelay the longest delay (milliseconds)
+   */
+  RetryBackoff(final int initialDelay, final int maxDelay) {
+    this(initialDelay, maxDelay, () -> ThreadLocalRandom.current().nextDouble());
+  }
+
+  RetryBackoff(final int initialDelay, final int maxDelay, final DoubleSupplier random) {
+    this.initialDelay = initialDelay;
+    this.maxDelay = Math.max(maxDelay, initialDelay);
+    this.random = random;
+  }
+
+  /**
+   * Record a failed write.
+   *
+   * @return the delay until the next attempt (milliseconds)
+   */
+  long failed() {
+    long delay = delay();
+    this.failures++;
+    return delay;
+  }
+
+  /**
+   * @return the delay until the next attempt after the consecutive failures so far (milliseconds)
+   */
+  long delay() {
+    long delay = this.initialDelay;
+    for (int i = 0; i < this.failures && delay < this.maxDelay; i++) {
+      delay *= 2;
+    }
+    delay = Math.min(delay, this.maxDelay);
+    long fixed = delay / 2;
+    return fixed + (long) (this.random.getAsDouble() * (delay - fixed));
+  }
+
+  /**
+   * Record a write that reached the server, the next failure waits the initial delay again.
+   */
+  void succeeded() {
+    this.failures = 0;
+  }
+
+  /**
+   * @return the number of consecutive failures
+   */
+  int getFailures() {
+    return this.failures;
+  }
+}
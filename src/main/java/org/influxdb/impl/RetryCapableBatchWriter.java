@@ -5,33 +5,113 @@ import org.influxdb.InfluxDBException;
 import org.influxdb.dto.BatchPoints;
 import org.influxdb.dto.Point;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Iterator;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.function.BiConsumer;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * Batch writer that tries to retry a write if it failed previously and
  * the reason of the failure is not permanent.
+ * <p>
+ * Failed batches are kept as their encoded line protocol, compressed with the codec of the client while it
+ * compresses its writes, and sent again as they are. The points of a failed batch are released once it is
+ * encoded, the points of a batch dropped after a retry are decoded from its line protocol for the exception
+ * handler.
+ * <p>
+ * With a {@link WriteSpool} the failed batches overflowing the retry buffer are spooled to disk instead
+ * of being dropped. Spooled batches are older than the ones in the retry buffer, so they are written first. The
+ * flush workers share the spool, a worker writes its buffered batches only once the spool is empty.
+ * <p>
+ * Without a {@link RetryBackoff} the buffered batches are retried inline on every write. With a backoff a
+ * failed write opens the circuit: new batches go straight to the retry buffer without a write attempt, and a
+ * retry thread writes the spooled and buffered batches, oldest first, after a jittered exponential delay.
+ * The circuit closes once the retry thread has written everything, then batches are written inline again.
+ * The retry thread writes without holding the lock of the writer, so buffering new batches never waits for
+ * a write. Batches are written in the order they were given in both modes.
  */
 class RetryCapableBatchWriter implements BatchWriter {
 
+  private static final Logger LOG = Logger.getLogger(RetryCapableBatchWriter.class.getName());
+
   private InfluxDB influxDB;
   private BiConsumer<Iterable<Point>, Throwable> exceptionHandler;
-  private LinkedList<BatchPoints> batchQueue;
+  private LinkedList<EncodedBatch> batchQueue;
   private int requestActionsLimit;
   private int retryBufferCapacity;
   private int usedRetryBufferCapacity;
+  private LongSupplier requestBytesLimit;
+  private WriteSpool spool;
+  private final BatchEncoder encoder;
+  // null to retry inline
+  private final RetryBackoff backoff;
+  private final ScheduledThreadPoolExecutor retryScheduler;
+  private boolean circuitOpen;
+  private boolean retryScheduled;
+  private boolean closed;
+  // the batch written by the retry thread, it is neither merged into nor evicted while written
+  private EncodedBatch inFlight;
 
   RetryCapableBatchWriter(final InfluxDB influxDB, final BiConsumer<Iterable<Point>, Throwable> exceptionHandler,
                           final int retryBufferCapacity, final int requestActionsLimit) {
+    this(influxDB, exceptionHandler, retryBufferCapacity, requestActionsLimit, null);
+  }
+
+  RetryCapableBatchWriter(final InfluxDB influxDB, final BiConsumer<Iterable<Point>, Throwable> exceptionHandler,
+                          final int retryBufferCapacity, final int requestActionsLimit, final WriteSpool spool) {
+    this(influxDB, exceptionHandler, retryBufferCapacity, requestActionsLimit, () -> Long.MAX_VALUE, spool);
+  }
+
+  RetryCapableBatchWriter(final InfluxDB influxDB, final BiConsumer<Iterable<Point>, Throwable> exceptionHandler,
+                          final int retryBufferCapacity, final int requestActionsLimit,
+                          final LongSupplier requestBytesLimit, final WriteSpool spool) {
+    this(influxDB, exceptionHandler, retryBufferCapacity, requestActionsLimit, requestBytesLimit, spool, null, null);
+  }
+
+  RetryCapableBatchWriter(final InfluxDB influxDB, final BiConsumer<Iterable<Point>, Throwable> exceptionHandler,
+                          final int retryBufferCapacity, final int requestActionsLimit,
+                          final LongSupplier requestBytesLimit, final WriteSpool spool,
+                          final RetryBackoff backoff, final ThreadFactory threadFactory) {
+    this(influxDB, exceptionHandler, retryBufferCapacity, requestActionsLimit, requestBytesLimit, spool, backoff,
+         threadFactory, BatchEncoder.of(influxDB));
+  }
+
+  /**
+   * @param backoff the delays of the retries written by the retry thread, null to retry inline on every write
+   * @param threadFactory the factory of the retry thread
+   * @param encoder compresses the batches before they are written and encodes the failed ones
+   */
+  RetryCapableBatchWriter(final InfluxDB influxDB, final BiConsumer<Iterable<Point>, Throwable> exceptionHandler,
+                          final int retryBufferCapacity, final int requestActionsLimit,
+                          final LongSupplier requestBytesLimit, final WriteSpool spool,
+                          final RetryBackoff backoff, final ThreadFactory threadFactory,
+                          final BatchEncoder encoder) {
     this.influxDB = influxDB;
+    this.encoder = encoder;
     this.exceptionHandler = exceptionHandler;
     batchQueue = new LinkedList<>();
     this.retryBufferCapacity = retryBufferCapacity;
     this.requestActionsLimit = requestActionsLimit;
+    this.requestBytesLimit = requestBytesLimit;
+    this.spool = spool;
+    this.backoff = backoff;
+    if (backoff == null) {
+      this.retryScheduler = null;
+    } else {
+      this.retryScheduler = new ScheduledThreadPoolExecutor(1, threadFactory);
+      this.retryScheduler.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
   }
 
   private enum WriteResultOutcome { WRITTEN, FAILED_RETRY_POSSIBLE, FAILED_RETRY_IMPOSSIBLE }
@@ -39,6 +119,7 @@ class RetryCapableBatchWriter implements BatchWriter {
   private static final class WriteResult {
 
     static final WriteResult WRITTEN = new WriteResult(WriteResultOutcome.WRITTEN);
+    static final WriteResult NOT_WRITTEN = new WriteResult(WriteResultOutcome.FAILED_RETRY_POSSIBLE);
 
     WriteResultOutcome outcome;
     Throwable throwable;
@@ -63,63 +144,288 @@ class RetryCapableBatchWriter implements BatchWriter {
   }
 
   /* This method is synchronized to avoid parallel execution when the user invokes flush/close
-   * of the client in the middle of scheduled write execution (buffer flush / action limit overrun) */
+   * of the client in the middle of scheduled write execution (buffer flush / action limit overrun).
+   * The batches are compressed before, without holding the lock. */
   @Override
-  public synchronized void write(final Collection<BatchPoints> collection) {
-    // empty the cached data first
-    ListIterator<BatchPoints> batchQueueIterator = batchQueue.listIterator();
+  public void write(final Collection<BatchPoints> collection) {
+    List<BatchPoints> batches = new ArrayList<>(collection);
+    List<EncodedBatch> compressed = encoder.compress(batches);
+    synchronized (this) {
+      if (backoff != null) {
+        writeOrBuffer(batches, compressed);
+      } else {
+        writeOrRetry(batches, compressed);
+      }
+    }
+  }
+
+  private void writeOrRetry(final List<BatchPoints> batches, final List<EncodedBatch> compressed) {
+    // empty the spooled and cached data first
+    if (!replaySpool()) {
+      addToBatchQueue(batches, compressed, 0);
+      return;
+    }
+    ListIterator<EncodedBatch> batchQueueIterator = batchQueue.listIterator();
     while (batchQueueIterator.hasNext()) {
-      BatchPoints entry = batchQueueIterator.next();
+      EncodedBatch entry = batchQueueIterator.next();
       WriteResult result = tryToWrite(entry);
       if (result.outcome == WriteResultOutcome.WRITTEN
               || result.outcome == WriteResultOutcome.FAILED_RETRY_IMPOSSIBLE) {
         batchQueueIterator.remove();
-        usedRetryBufferCapacity -= entry.getPoints().size();
+        usedRetryBufferCapacity -= entry.getPoints();
         // we are throwing out data, notify the client
         if (result.outcome == WriteResultOutcome.FAILED_RETRY_IMPOSSIBLE) {
-          exceptionHandler.accept(entry.getPoints(), result.throwable);
+          exceptionHandler.accept(points(entry), result.throwable);
         }
       } else {
         // we cannot send more data otherwise we would write them in different
         // order than in which were submitted
-        for (BatchPoints batchPoints : collection) {
-          addToBatchQueue(batchPoints);
-        }
+        addToBatchQueue(batches, compressed, 0);
         return;
       }
     }
     // write the last given batch last so that duplicate data points get overwritten correctly
-    Iterator<BatchPoints> collectionIterator = collection.iterator();
-    while (collectionIterator.hasNext()) {
-      BatchPoints batchPoints = collectionIterator.next();
-      WriteResult result = tryToWrite(batchPoints);
+    for (int i = 0; i < batches.size(); i++) {
+      BatchPoints batchPoints = batches.get(i);
+      WriteResult result = tryToWrite(batchPoints, compressed, i);
       switch (result.outcome) {
         case FAILED_RETRY_POSSIBLE:
-          addToBatchQueue(batchPoints);
-          while (collectionIterator.hasNext()) {
-            addToBatchQueue(collectionIterator.next());
-          }
+          addToBatchQueue(batches, compressed, i);
+          return;
+        case FAILED_RETRY_IMPOSSIBLE:
+          exceptionHandler.accept(BatchWriter.points(batchPoints), result.throwable);
+          break;
+        default:
+          BatchWriter.release(batchPoints);
+
+      }
+    }
+  }
+
+  /**
+   * Write the batches inline while the circuit is closed, buffer them for the retry thread otherwise.
+   */
+  private void writeOrBuffer(final List<BatchPoints> batches, final List<EncodedBatch> compressed) {
+    if (!circuitOpen && (!batchQueue.isEmpty() || spool != null && !spool.isEmpty())) {
+      // spooled before the last start, written by the retry thread before any new batch
+      circuitOpen = true;
+      scheduleRetry(0);
+    }
+    int i = 0;
+    for (; i < batches.size() && !circuitOpen; i++) {
+      BatchPoints batchPoints = batches.get(i);
+      WriteResult result = tryToWrite(batchPoints, compressed, i);
+      switch (result.outcome) {
+        case FAILED_RETRY_POSSIBLE:
+          addToBatchQueue(batchPoints, encodedAt(compressed, i));
+          circuitOpen = true;
+          scheduleRetry(backoff.failed());
           break;
         case FAILED_RETRY_IMPOSSIBLE:
-          exceptionHandler.accept(batchPoints.getPoints(), result.throwable);
+          backoff.succeeded();
+          exceptionHandler.accept(BatchWriter.points(batchPoints), result.throwable);
           break;
         default:
+          backoff.succeeded();
+          BatchWriter.release(batchPoints);
+      }
+    }
+    // the circuit is open, no write attempt until the retry thread has written the older batches
+    addToBatchQueue(batches, compressed, i);
+  }
+
+  private void scheduleRetry(final long delay) {
+    if (closed || retryScheduled) {
+      return;
+    }
+    try {
+      retryScheduler.schedule(this::retry, delay, TimeUnit.MILLISECONDS);
+      retryScheduled = true;
+    } catch (RejectedExecutionException e) {
+      // closed meanwhile, close() writes or spools the buffered batches
+    }
+  }
 
+  /**
+   * Write the spooled and buffered batches in order on the retry thread, until a write fails again or
+   * everything has been written and the circuit closes.
+   */
+  private void retry() {
+    while (true) {
+      EncodedBatch batch;
+      boolean spooled;
+      synchronized (this) {
+        retryScheduled = false;
+        if (closed) {
+          return;
+        }
+        batch = null;
+        if (spool != null) {
+          batch = spool.claim();
+          if (batch == null && !spool.isEmpty()) {
+            // another worker writes the oldest spooled batch, the buffered ones are younger
+            scheduleRetry(backoff.delay());
+            return;
+          }
+        }
+        spooled = batch != null;
+        if (!spooled) {
+          batch = batchQueue.peekFirst();
+        }
+        if (batch == null) {
+          circuitOpen = false;
+          return;
+        }
+        inFlight = batch;
+      }
+      // written without the lock, the flush thread keeps buffering new batches meanwhile
+      WriteResult result = tryToWrite(batch);
+      synchronized (this) {
+        inFlight = null;
+        if (result.outcome == WriteResultOutcome.FAILED_RETRY_POSSIBLE) {
+          if (spooled) {
+            spool.release();
+          }
+          evictTooOldFailedWrites();
+          scheduleRetry(backoff.failed());
+          return;
+        }
+        backoff.succeeded();
+        if (spooled) {
+          spool.remove();
+        } else {
+          batchQueue.removeFirst();
+          usedRetryBufferCapacity -= batch.getPoints();
+        }
+        if (result.outcome == WriteResultOutcome.FAILED_RETRY_IMPOSSIBLE) {
+          exceptionHandler.accept(points(batch), result.throwable);
+        }
+        evictTooOldFailedWrites();
       }
     }
   }
 
+  @Override
+  public synchronized boolean isRetrying() {
+    return circuitOpen || !batchQueue.isEmpty() || spool != null && !spool.isEmpty();
+  }
+
   /* This method is synchronized to avoid parallel execution when the BatchProcessor scheduler
    * has been shutdown but there are jobs still being executed (using RetryCapableBatchWriter.write).*/
   @Override
-  public synchronized void close() {
-    // try to write everything queued / buffered
-    for (BatchPoints points : batchQueue) {
-      WriteResult result = tryToWrite(points);
-      if (result.outcome != WriteResultOutcome.WRITTEN) {
-        exceptionHandler.accept(points.getPoints(), result.throwable);
+  public void close() {
+    if (retryScheduler != null) {
+      synchronized (this) {
+        closed = true;
+      }
+      // wait for a write of the retry thread, it does not retry anymore
+      retryScheduler.shutdown();
+      try {
+        retryScheduler.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    flushOnClose();
+  }
+
+  private synchronized void flushOnClose() {
+    // try to write everything spooled / queued / buffered
+    boolean spoolReplayed = replaySpool();
+    WriteResult failure = null;
+    for (EncodedBatch batch : batchQueue) {
+      WriteResult result = WriteResult.NOT_WRITTEN;
+      if (failure != null) {
+        // with a backoff, the rest of the buffer is not written after a failure
+        result = failure;
+      } else if (spoolReplayed) {
+        result = tryToWrite(batch);
+        if (backoff != null && result.outcome == WriteResultOutcome.FAILED_RETRY_POSSIBLE) {
+          failure = result;
+        }
+      }
+      if (result.outcome == WriteResultOutcome.WRITTEN) {
+        continue;
+      } else if (result.outcome == WriteResultOutcome.FAILED_RETRY_POSSIBLE && spool(batch)) {
+        // written after the next start
+        continue;
+      } else if (result.throwable == null) {
+        exceptionHandler.accept(points(batch), new InfluxDBException.RetryBufferOverrunException(
+                "Spool full, batch could not be written before close"));
+      } else {
+        exceptionHandler.accept(points(batch), result.throwable);
+      }
+    }
+    if (spool != null) {
+      spool.close();
+    }
+  }
+
+  /**
+   * Write the spooled batches in order.
+   *
+   * @return false if a spooled batch could not be written yet, or is written by another worker
+   */
+  private boolean replaySpool() {
+    if (spool == null) {
+      return true;
+    }
+    EncodedBatch spooled;
+    while ((spooled = spool.claim()) != null) {
+      WriteResult result = tryToWrite(spooled);
+      if (result.outcome == WriteResultOutcome.FAILED_RETRY_POSSIBLE) {
+        spool.release();
+        return false;
+      }
+      spool.remove();
+      if (result.outcome == WriteResultOutcome.FAILED_RETRY_IMPOSSIBLE) {
+        exceptionHandler.accept(points(spooled), result.throwable);
+      }
+    }
+    return spool.isEmpty();
+  }
+
+  private boolean spool(final EncodedBatch batch) {
+    if (spool == null) {
+      return false;
+    }
+    try {
+      return spool.append(batch);
+    } catch (IOException e) {
+      LOG.log(Level.SEVERE, "Batch could not be spooled", e);
+    }
+    return false;
+  }
+
+  private WriteResult tryToWrite(final EncodedBatch batch) {
+    try {
+      if (influxDB instanceof InfluxDBImpl) {
+        ((InfluxDBImpl) influxDB).write(batch);
+      } else {
+        influxDB.write(batch.getDatabase(), batch.getRetentionPolicy(), batch.getConsistency(),
+                       batch.getPrecision(), batch.getLineProtocol());
       }
+      return WriteResult.WRITTEN;
+    } catch (InfluxDBException e) {
+      return new WriteResult(e);
+    } catch (Exception e) {
+      return new WriteResult(WriteResultOutcome.FAILED_RETRY_POSSIBLE, e);
+    }
+  }
+
+  private WriteResult tryToWrite(final BatchPoints batchPoints, final List<EncodedBatch> compressed,
+                                 final int index) {
+    if (compressed != null) {
+      return tryToWrite(compressed.get(index));
+    }
+    return tryToWrite(batchPoints);
+  }
+
+  private static EncodedBatch encodedAt(final List<EncodedBatch> compressed, final int index) {
+    if (compressed == null) {
+      return null;
     }
+    return compressed.get(index);
   }
 
   private WriteResult tryToWrite(final BatchPoints batchPoints) {
@@ -134,28 +440,70 @@ class RetryCapableBatchWriter implements BatchWriter {
   }
 
   private void evictTooOldFailedWrites() {
-    while (usedRetryBufferCapacity > retryBufferCapacity && batchQueue.size() > 0) {
-      List<Point> points = batchQueue.removeFirst().getPoints();
-      usedRetryBufferCapacity -= points.size();
-      exceptionHandler.accept(points,
+    // the batch written by the retry thread is evicted once its write failed, keeping the spool in order
+    while (usedRetryBufferCapacity > retryBufferCapacity && batchQueue.size() > 0
+        && batchQueue.getFirst() != inFlight) {
+      EncodedBatch evicted = batchQueue.removeFirst();
+      usedRetryBufferCapacity -= evicted.getPoints();
+      if (spool(evicted)) {
+        continue;
+      }
+      exceptionHandler.accept(points(evicted),
               new InfluxDBException.RetryBufferOverrunException(
                       "Retry buffer overrun, current capacity: " + retryBufferCapacity));
     }
   }
 
-  private void addToBatchQueue(final BatchPoints batchPoints) {
+  /**
+   * The points of a dropped batch for the exception handler, decoded from its line protocol.
+   */
+  private static List<Point> points(final EncodedBatch batch) {
+    try {
+      return batch.decodePoints();
+    } catch (RuntimeException e) {
+      // the batch is dropped anyway, the handler still learns about the failure
+      LOG.log(Level.SEVERE, "Points of a dropped batch could not be decoded", e);
+      return Collections.emptyList();
+    }
+  }
+
+  private boolean fitsRequestBytesLimit(final EncodedBatch last, final EncodedBatch batch) {
+    long limit = requestBytesLimit.getAsLong();
+    if (limit == Long.MAX_VALUE) {
+      return true;
+    }
+    return last.getLineProtocolSize() + batch.getLineProtocolSize() <= limit;
+  }
+
+  private void addToBatchQueue(final List<BatchPoints> batches, final List<EncodedBatch> compressed,
+                               final int from) {
+    for (int i = from; i < batches.size(); i++) {
+      addToBatchQueue(batches.get(i), encodedAt(compressed, i));
+    }
+  }
+
+  /**
+   * @param encoded the batch compressed before its write, null to encode it now
+   */
+  private void addToBatchQueue(final BatchPoints batchPoints, final EncodedBatch encoded) {
+    EncodedBatch batch = encoded;
+    if (batch == null) {
+      batch = encoder.encode(batchPoints);
+    }
+    // keep the line protocol only, the points are not needed anymore
+    BatchWriter.release(batchPoints);
     boolean hasBeenMergedIn = false;
-    if (batchQueue.size() > 0) {
-      BatchPoints last = batchQueue.getLast();
-      if (last.getPoints().size() + batchPoints.getPoints().size() <= requestActionsLimit) {
-        hasBeenMergedIn = last.mergeIn(batchPoints);
+    if (batchQueue.size() > 0 && batchQueue.getLast() != inFlight) {
+      EncodedBatch last = batchQueue.getLast();
+      if (last.getPoints() + batch.getPoints() <= requestActionsLimit && fitsRequestBytesLimit(last, batch)) {
+        hasBeenMergedIn = last.mergeIn(batch);
       }
     }
     if (!hasBeenMergedIn) {
-        batchQueue.add(batchPoints);
+        batchQueue.add(batch);
     }
     // recalculate local counter and evict old batches on merge as well
-    usedRetryBufferCapacity += batchPoints.getPoints().size();
+    usedRetryBufferCapacity += batch.getPoints();
     evictTooOldFailedWrites();
   }
 }
@@ -0,0 +1,104 @@
+package org.influxdb.impl;
+
+import okhttp3.ResponseBody;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Pulls the rows of a query response one by one from the response body, without building a
+ * {@link org.influxdb.dto.QueryResult}. Only the name, tags and columns of the current series and the values of
+ * the current row are held in memory. Chunked responses, a sequence of results, are read as one.
+ */
+abstract class RowDecoder implements Closeable {
+
+  /**
+   * Receives the values of a row, numbers are passed without boxing.
+   */
+  interface ValueSink {
+    void nullValue(int column);
+
+    void longValue(int column, long value);
+
+    void doubleValue(int column, double value);
+
+    void stringValue(int column, String value);
+
+    void booleanValue(int column, boolean value);
+
+    /**
+     * A value of any other type, like a number beyond the range of a long.
+     */
+    void objectValue(int column, Object value);
+  }
+
+  private final ResponseBody body;
+  private int statementId;
+  private String seriesName;
+  private Map<String, String> tags = Collections.emptyMap();
+  private List<String> columns = Collections.emptyList();
+  private int seriesVersion;
+
+  RowDecoder(final ResponseBody body) {
+    this.body = body;
+  }
+
+  /**
+   * Move to the next row.
+   *
+   * @return false at the end of the response
+   * @throws IOException if the response cannot be read
+   * @throws org.influxdb.InfluxDBException if the response reports an error
+   */
+  abstract boolean nextRow() throws IOException;
+
+  /**
+   * Read the values of the row {@link #nextRow()} moved to, must be called once per row.
+   *
+   * @param sink receives the values in the order of the columns
+   * @throws IOException if the response cannot be read
+   */
+  abstract void readValues(ValueSink sink) throws IOException;
+
+  final void statement(final int id) {
+    this.statementId = id;
+  }
+
+  final void series(final String name, final Map<String, String> seriesTags, final List<String> seriesColumns) {
+    this.seriesName = name;
+    this.tags = seriesTags;
+    this.columns = seriesColumns;
+    this.seriesVersion++;
+  }
+
+  final int getStatementId() {
+    return this.statementId;
+  }
+
+  final String getSeriesName() {
+    return this.seriesName;
+  }
+
+  final Map<String, String> getTags() {
+    return this.tags;
+  }
+
+  final List<String> getColumns() {
+    return this.columns;
+  }
+
+  /**
+   * @return a number changing with every series, tells whether the current row starts a new series
+   */
+  final int getSeriesVersion() {
+    return this.seriesVersion;
+  }
+
+  @Override
+  public void close() {
+    this.body.close();
+  }
+}
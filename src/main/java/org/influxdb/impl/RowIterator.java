@@ -0,0 +1,92 @@
+package org.influxdb.impl;
+
+import org.influxdb.InfluxDBIOException;
+import org.influxdb.dto.Row;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterates the rows pulled from a {@link RowDecoder}, closing the response once all rows are read.
+ */
+final class RowIterator implements Iterator<Row>, RowDecoder.ValueSink {
+
+  private final RowDecoder decoder;
+  private List<Object> values;
+  private Row next;
+  private boolean done;
+
+  RowIterator(final RowDecoder decoder) {
+    this.decoder = decoder;
+  }
+
+  @Override
+  public boolean hasNext() {
+    if (this.next == null && !this.done) {
+      try {
+        if (this.decoder.nextRow()) {
+          this.values = new ArrayList<>(this.decoder.getColumns().size());
+          this.decoder.readValues(this);
+          this.next = new Row(this.decoder.getStatementId(), this.decoder.getSeriesName(), this.decoder.getTags(),
+                              this.decoder.getColumns(), Collections.unmodifiableList(this.values));
+        } else {
+          this.done = true;
+          this.decoder.close();
+        }
+      } catch (IOException e) {
+        this.done = true;
+        this.decoder.close();
+        throw new InfluxDBIOException(e);
+      } catch (RuntimeException e) {
+        this.done = true;
+        this.decoder.close();
+        throw e;
+      }
+    }
+    return this.next != null;
+  }
+
+  @Override
+  public Row next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    Row row = this.next;
+    this.next = null;
+    return row;
+  }
+
+  @Override
+  public void nullValue(final int column) {
+    this.values.add(null);
+  }
+
+  @Override
+  public void longValue(final int column, final long value) {
+    this.values.add(value);
+  }
+
+  @Override
+  public void doubleValue(final int column, final double value) {
+    this.values.add(value);
+  }
+
+  @Override
+  public void stringValue(final int column, final String value) {
+    this.values.add(value);
+  }
+
+  @Override
+  public void booleanValue(final int column, final boolean value) {
+    this.values.add(value);
+  }
+
+  @Override
+  public void objectValue(final int column, final Object value) {
+    this.values.add(value);
+  }
+}
@@ -0,0 +1,193 @@
+package org.influxdb.impl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.PortUnreachableException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+import org.influxdb.dto.Point;
+
+/**
+ * Sends line protocol to an UDP port of InfluxDB. As many lines as fit the payload limit are packed into one
+ * datagram, separated by newlines. The address is resolved once, the lines are encoded straight into a reused
+ * direct buffer and sent through a connected channel. Points are encoded into a reused sink and copied into the
+ * datagram without a String per point.
+ */
+class UdpSender implements Closeable {
+
+  private final DatagramChannel channel;
+  private final ByteBuffer buffer;
+  // the line protocol of the point being packed
+  private final okio.Buffer line = new okio.Buffer();
+  private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+      .onMalformedInput(CodingErrorAction.REPLACE)
+      .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+  /**
+   * @param hostName the host of InfluxDB
+   * @param udpPort the UDP port InfluxDB is listening on
+   * @param payloadLimit the largest payload of a datagram in bytes
+   * @throws IOException if the channel cannot be opened
+   */
+  UdpSender(final String hostName, final int udpPort, final int payloadLimit) throws IOException {
+    this.channel = DatagramChannel.open();
+    try {
+      this.channel.connect(new InetSocketAddress(hostName, udpPort));
+    } catch (IOException | RuntimeException e) {
+      this.channel.close();
+      throw e;
+    }
+    this.buffer = ByteBuffer.allocateDirect(payloadLimit);
+  }
+
+  /**
+   * Send newline separated records, split into datagrams at line boundaries where needed.
+   *
+   * @param records the line protocol
+   * @throws IOException if a datagram cannot be sent
+   */
+  synchronized void send(final CharSequence records) throws IOException {
+    append(records);
+    flush();
+  }
+
+  /**
+   * Send records packed into as few datagrams as possible.
+   *
+   * @param records the line protocol, one or more lines each
+   * @throws IOException if a datagram cannot be sent
+   */
+  synchronized void send(final Iterable<? extends CharSequence> records) throws IOException {
+    for (CharSequence record : records) {
+      append(record);
+    }
+    flush();
+  }
+
+  /**
+   * Send the line protocol of points packed into as few datagrams as possible.
+   *
+   * @param points the points, with their timestamps in nanoseconds
+   * @throws IOException if a datagram cannot be sent
+   */
+  synchronized void sendPoints(final Iterable<Point> points) throws IOException {
+    try {
+      for (Point point : points) {
+        if (point.lineProtocol(this.line, null)) {
+          appendLine();
+        }
+      }
+      flush();
+    } finally {
+      this.line.clear();
+    }
+  }
+
+  /**
+   * Add records to the datagram being packed, sending it whenever it is full.
+   */
+  void append(final CharSequence records) throws IOException {
+    int length = records.length();
+    int start = 0;
+    while (start < length) {
+      int end = start;
+      while (end < length && records.charAt(end) != '\n') {
+        end++;
+      }
+      if (end > start) {
+        appendLine(records, start, end);
+      }
+      start = end + 1;
+    }
+  }
+
+  private void appendLine(final CharSequence records, final int start, final int end) throws IOException {
+    int mark = this.buffer.position();
+    if (mark > 0) {
+      if (this.buffer.hasRemaining()) {
+        this.buffer.put((byte) '\n');
+        if (encode(records, start, end)) {
+          return;
+        }
+        ((Buffer) this.buffer).position(mark);
+      }
+      flush();
+    }
+    if (!encode(records, start, end)) {
+      // a line larger than a datagram is still sent on its own
+      ((Buffer) this.buffer).clear();
+      write(ByteBuffer.wrap(records.subSequence(start, end).toString().getBytes(StandardCharsets.UTF_8)));
+    }
+  }
+
+  /**
+   * Move the encoded line of a point to the datagram being packed.
+   */
+  private void appendLine() throws IOException {
+    long size = this.line.size();
+    if (this.buffer.position() > 0 && size + 1 > this.buffer.remaining()) {
+      flush();
+    }
+    if (this.buffer.position() == 0 && size > this.buffer.remaining()) {
+      // a line larger than a datagram is still sent on its own
+      write(ByteBuffer.wrap(this.line.readByteArray()));
+      return;
+    }
+    if (this.buffer.position() > 0) {
+      this.buffer.put((byte) '\n');
+    }
+    while (!this.line.exhausted()) {
+      // a segment of the line at a time
+      this.line.read(this.buffer);
+    }
+  }
+
+  /**
+   * @return false if the line does not fit the buffer
+   */
+  private boolean encode(final CharSequence records, final int start, final int end) {
+    this.encoder.reset();
+    CoderResult result = this.encoder.encode(CharBuffer.wrap(records, start, end), this.buffer, true);
+    if (result.isOverflow()) {
+      return false;
+    }
+    return !this.encoder.flush(this.buffer).isOverflow();
+  }
+
+  /**
+   * Send the datagram being packed.
+   */
+  void flush() throws IOException {
+    if (this.buffer.position() == 0) {
+      return;
+    }
+    // cast to Buffer, the covariant overrides of ByteBuffer do not exist on Java 8
+    ((Buffer) this.buffer).flip();
+    try {
+      write(this.buffer);
+    } finally {
+      ((Buffer) this.buffer).clear();
+    }
+  }
+
+  private void write(final ByteBuffer datagram) throws IOException {
+    try {
+      this.channel.write(datagram);
+    } catch (PortUnreachableException e) {
+      // the ICMP error of an earlier datagram, an unconnected socket would not have noticed it either
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    this.channel.close();
+  }
+}
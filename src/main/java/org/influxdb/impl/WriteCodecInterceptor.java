@@ -0,0 +1,145 @@
+package org.influxdb.impl;
+
+import java.io.IOException;
+import java.util.Objects;
+import java.util.regex.Pattern;
+
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.ForwardingSink;
+import okio.Okio;
+import okio.Sink;
+import org.influxdb.WriteCodec;
+
+/**
+ * Implementation of a intercepter to compress the body of write requests with the {@link WriteCodec} of the
+ * client, GZIP once enabled.
+ *
+ * @author fujian1115 [at] gmail.com
+ */
+final class WriteCodecInterceptor implements Interceptor {
+
+    private static final Pattern WRITE_PATTERN = Pattern.compile(".*/write", Pattern.CASE_INSENSITIVE);
+
+    /** The weight of the latest request in the average compression ratio. */
+    private static final double RATIO_WEIGHT = 0.2;
+
+    private volatile WriteCodec codec = WriteCodec.none();
+    // 0 until the first request has been compressed
+    private volatile double compressionRatio;
+
+    WriteCodecInterceptor() {
+    }
+
+    public void setCodec(final WriteCodec codec) {
+        Objects.requireNonNull(codec, "codec");
+        this.codec = codec;
+    }
+
+    public WriteCodec getCodec() {
+        return codec;
+    }
+
+    /**
+     * @return whether request bodies are compressed, false for {@link WriteCodec#none()}
+     */
+    public boolean isEnabled() {
+        return codec.getContentEncoding() != null;
+    }
+
+    /**
+     * @return the moving average of the uncompressed size divided by the compressed size of the written
+     *         request bodies, 1 until a request has been compressed
+     */
+    public double compressionRatio() {
+        double ratio = this.compressionRatio;
+        if (ratio == 0) {
+            return 1;
+        }
+        return ratio;
+    }
+
+    /**
+     * Record the sizes of a compressed request body, also of bodies compressed before the request.
+     */
+    synchronized void compressed(final long uncompressedBytes, final long compressedBytes) {
+        if (uncompressedBytes == 0 || compressedBytes == 0) {
+            return;
+        }
+        double ratio = (double) uncompressedBytes / compressedBytes;
+        if (this.compressionRatio == 0) {
+            this.compressionRatio = ratio;
+        } else {
+            this.compressionRatio += (ratio - this.compressionRatio) * RATIO_WEIGHT;
+        }
+    }
+
+    @Override
+    public Response intercept(final Interceptor.Chain chain) throws IOException {
+        WriteCodec writeCodec = this.codec;
+        if (writeCodec.getContentEncoding() == null) {
+            return chain.proceed(chain.request());
+        }
+
+        Request originalRequest = chain.request();
+        RequestBody body = originalRequest.body();
+        if (body == null || originalRequest.header("Content-Encoding") != null) {
+            return chain.proceed(originalRequest);
+        }
+
+        if (!WRITE_PATTERN.matcher(originalRequest.url().encodedPath()).matches()) {
+            return chain.proceed(originalRequest);
+        }
+
+        Request compressedRequest = originalRequest.newBuilder()
+                .header("Content-Encoding", writeCodec.getContentEncoding())
+                .method(originalRequest.method(), encode(body, writeCodec)).build();
+        return chain.proceed(compressedRequest);
+    }
+
+    private RequestBody encode(final RequestBody body, final WriteCodec writeCodec) {
+        return new RequestBody() {
+            @Override
+            public MediaType contentType() {
+                return body.contentType();
+            }
+
+            @Override
+            public long contentLength() {
+                return -1; // We don't know the compressed length in advance!
+            }
+
+            @Override
+            public void writeTo(final BufferedSink sink) throws IOException {
+                CountingSink compressed = new CountingSink(sink);
+                CountingSink uncompressed = new CountingSink(writeCodec.encode(compressed));
+                BufferedSink encodingSink = Okio.buffer(uncompressed);
+                body.writeTo(encodingSink);
+                encodingSink.close();
+                compressed(uncompressed.bytes, compressed.bytes);
+            }
+        };
+    }
+
+    /**
+     * Sink counting the bytes written through it.
+     */
+    private static final class CountingSink extends ForwardingSink {
+        private long bytes;
+
+        CountingSink(final Sink delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public void write(final Buffer source, final long byteCount) throws IOException {
+            super.write(source, byteCount);
+            this.bytes += byteCount;
+        }
+    }
+}
@@ -0,0 +1,519 @@
+package org.influxdb.impl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+import org.influxdb.InfluxDB.ConsistencyLevel;
+import org.influxdb.SpoolDepth;
+import org.influxdb.WriteCodec;
+import org.influxdb.dto.BatchPoints;
+
+/**
+ * Write-ahead spool of failed batches in memory-mapped segment files.
+ * <p>
+ * Every batch is stored as one record holding its destination and its line protocol, compressed with its
+ * Content-Encoding if the batch was compressed for its write. A record is written
+ * payload first and its length last, so a record cut off by a crash is never read back; a checksum detects
+ * records damaged otherwise. Records are consumed in the order they were appended by negating their length,
+ * a segment file is deleted once all its records are consumed. On startup the segment files left in the
+ * directory are scanned and their remaining records are replayed first, new records always go to new
+ * segments. The Content-Encoding of a record must be gzip or the one of the codec of the client, so it can be
+ * decoded again; recovering a record of another encoding fails.
+ * <p>
+ * The spool is thread safe, the {@link RetryCapableBatchWriter} of every flush worker shares the one spool of
+ * the directory, so the spooled batches are replayed in the order they were spooled whatever the number of
+ * workers before and after a restart. A worker {@link #claim() claims} the oldest batch for its write, until it
+ * is consumed or released no other worker writes it or a younger batch.
+ */
+final class WriteSpool implements Closeable {
+
+  private static final Logger LOG = Logger.getLogger(WriteSpool.class.getName());
+
+  private static final String PREFIX = "spool-";
+  private static final String SUFFIX = ".seg";
+  private static final String SEQUENCE_FORMAT = "%020d";
+  /** The length and checksum in front of every record. */
+  private static final int RECORD_HEADER_BYTES = 8;
+  /** The zero length marking the end of the records of a segment. */
+  private static final int END_MARKER_BYTES = 4;
+  /** The precision, consistency, point count and uncompressed size in front of the encoding and destination. */
+  private static final int PAYLOAD_HEADER_BYTES = 10;
+  private static final int POINTS_OFFSET = 2;
+  private static final int NULL_STRING = -1;
+
+  private final Path directory;
+  private final long maxBytes;
+  private final int segmentBytes;
+  private final Consumer<SpoolDepth> depthHandler;
+  // the current codec of the client, decoding the records compressed with it
+  private final Supplier<WriteCodec> codec;
+  private final Deque<Segment> segments = new ArrayDeque<>();
+  // the segment appended to, null if the last segment was recovered from a previous run
+  private Segment tail;
+  private long nextSequence;
+  private long diskBytes;
+  private long batches;
+  private long points;
+  private long bytes;
+  // the oldest batch is written by a worker
+  private boolean claimed;
+  // the workers sharing the spool, the last one closing it closes the segments
+  private int users = 1;
+
+  /**
+   * Open the spool in the directory, recovering the records left by a previous run.
+   *
+   * @param directory the directory of the segment files, created if missing
+   * @param maxBytes the maximum size of all segment files together
+   * @param segmentBytes the size of a segment file, larger records get a segment of their own
+   * @param depthHandler called with the new depth whenever records are appended or consumed
+   * @throws IOException if the directory or the segment files cannot be read
+   */
+  WriteSpool(final Path directory, final long maxBytes, final int segmentBytes,
+             final Consumer<SpoolDepth> depthHandler) throws IOException {
+    this(directory, maxBytes, segmentBytes, depthHandler, WriteCodec::none);
+  }
+
+  /**
+   * Open the spool in the directory, recovering the records left by a previous run.
+   *
+   * @param directory the directory of the segment files, created if missing
+   * @param maxBytes the maximum size of all segment files together
+   * @param segmentBytes the size of a segment file, larger records get a segment of their own
+   * @param depthHandler called with the new depth whenever records are appended or consumed
+   * @param codec the current codec of the client, decoding the records compressed with its Content-Encoding
+   * @throws IOException if the directory or the segment files cannot be read, or a record has a
+   *                     Content-Encoding without a codec
+   */
+  WriteSpool(final Path directory, final long maxBytes, final int segmentBytes,
+             final Consumer<SpoolDepth> depthHandler, final Supplier<WriteCodec> codec) throws IOException {
+    this.directory = directory;
+    this.maxBytes = maxBytes;
+    this.segmentBytes = segmentBytes;
+    this.depthHandler = depthHandler;
+    this.codec = codec;
+    Files.createDirectories(directory);
+    recover();
+  }
+
+  private static final class Segment {
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private int readPosition;
+    private int writePosition;
+
+    Segment(final Path path, final FileChannel channel, final MappedByteBuffer buffer) {
+      this.path = path;
+      this.channel = channel;
+      this.buffer = buffer;
+    }
+
+    boolean isConsumed() {
+      return this.readPosition >= this.writePosition;
+    }
+  }
+
+  /**
+   * Append a batch at the end of the spool.
+   *
+   * @param batchPoints the batch to spool
+   * @return false if the spool has no room left for the batch
+   * @throws IOException if a new segment file cannot be created
+   */
+  boolean append(final BatchPoints batchPoints) throws IOException {
+    return append(EncodedBatch.encode(batchPoints, WriteCodec.none()));
+  }
+
+  /**
+   * Append an encoded batch at the end of the spool, its payload is spooled as it is.
+   *
+   * @param batch the batch to spool
+   * @return false if the spool has no room left for the batch
+   * @throws IOException if a new segment file cannot be created, or the batch has a Content-Encoding
+   *                     without a codec
+   */
+  synchronized boolean append(final EncodedBatch batch) throws IOException {
+    // a batch that could not be decoded after a restart is not spooled
+    codecFor(batch.getContentEncoding());
+    byte[] payload = encode(batch);
+    int recordBytes = RECORD_HEADER_BYTES + payload.length;
+    if (this.tail == null || this.tail.writePosition + recordBytes + END_MARKER_BYTES > this.tail.buffer.capacity()) {
+      int size = Math.max(this.segmentBytes, recordBytes + END_MARKER_BYTES);
+      if (this.diskBytes + size > this.maxBytes) {
+        return false;
+      }
+      this.tail = createSegment(size);
+      this.segments.addLast(this.tail);
+    }
+    Segment segment = this.tail;
+    int position = segment.writePosition;
+    CRC32 crc = new CRC32();
+    crc.update(payload, 0, payload.length);
+    // cast to Buffer, the covariant overrides of ByteBuffer do not exist on Java 8
+    ((Buffer) segment.buffer).position(position + RECORD_HEADER_BYTES);
+    segment.buffer.put(payload);
+    segment.buffer.putInt(position + Integer.BYTES, (int) crc.getValue());
+    // the length is written last, until then the record reads as the end of the segment
+    segment.buffer.putInt(position, payload.length);
+    segment.writePosition += recordBytes;
+    this.batches++;
+    this.points += batch.getPoints();
+    this.bytes += recordBytes;
+    depthChanged();
+    return true;
+  }
+
+  /**
+   * Claim the oldest batch for its write, it is consumed with {@link #remove()} once written or released with
+   * {@link #release()} if the write failed.
+   *
+   * @return the oldest batch of the spool, or null if the spool is empty or its oldest batch is claimed already
+   */
+  synchronized EncodedBatch claim() {
+    if (this.claimed) {
+      return null;
+    }
+    EncodedBatch batch = peek();
+    this.claimed = batch != null;
+    return batch;
+  }
+
+  /**
+   * Release the claimed oldest batch, it was not written.
+   */
+  synchronized void release() {
+    this.claimed = false;
+  }
+
+  /**
+   * Share the spool with one more worker, every worker closes it.
+   *
+   * @return this spool
+   */
+  synchronized WriteSpool share() {
+    this.users++;
+    return this;
+  }
+
+  /**
+   * @return the oldest batch of the spool, or null if the spool is empty
+   */
+  synchronized EncodedBatch peek() {
+    Segment segment = this.segments.peekFirst();
+    if (segment == null) {
+      return null;
+    }
+    int position = segment.readPosition;
+    int length = segment.buffer.getInt(position);
+    ByteBuffer payload = segment.buffer.duplicate();
+    ((Buffer) payload).position(position + RECORD_HEADER_BYTES);
+    ((Buffer) payload).limit(position + RECORD_HEADER_BYTES + length);
+    TimeUnit precision = TimeUnit.values()[payload.get()];
+    ConsistencyLevel consistency = ConsistencyLevel.values()[payload.get()];
+    int pointCount = payload.getInt();
+    int lineProtocolSize = payload.getInt();
+    String contentEncoding = readString(payload);
+    String database = readString(payload);
+    String retentionPolicy = readString(payload);
+    byte[] bytes = new byte[payload.remaining()];
+    payload.get(bytes);
+    WriteCodec recordCodec;
+    try {
+      recordCodec = codecFor(contentEncoding);
+    } catch (IOException e) {
+      // checked by append and recover
+      throw new IllegalStateException(e);
+    }
+    return new EncodedBatch(database, retentionPolicy, consistency, precision, contentEncoding, recordCodec,
+                            pointCount, bytes, lineProtocolSize);
+  }
+
+  /**
+   * Consume the oldest batch, deleting its segment file once all records of the segment are consumed.
+   */
+  synchronized void remove() {
+    this.claimed = false;
+    Segment segment = this.segments.peekFirst();
+    if (segment == null) {
+      return;
+    }
+    int position = segment.readPosition;
+    int length = segment.buffer.getInt(position);
+    int pointCount = segment.buffer.getInt(position + RECORD_HEADER_BYTES + POINTS_OFFSET);
+    segment.buffer.putInt(position, -length);
+    segment.readPosition = position + RECORD_HEADER_BYTES + length;
+    this.batches--;
+    this.points -= pointCount;
+    this.bytes -= RECORD_HEADER_BYTES + length;
+    if (segment.isConsumed()) {
+      this.segments.removeFirst();
+      if (segment == this.tail) {
+        this.tail = null;
+      }
+      delete(segment);
+    }
+    depthChanged();
+  }
+
+  /**
+   * @return true if there are no spooled batches
+   */
+  synchronized boolean isEmpty() {
+    return this.segments.isEmpty();
+  }
+
+  /**
+   * @return the current depth of the spool
+   */
+  synchronized SpoolDepth depth() {
+    return new SpoolDepth(this.directory, this.batches, this.points, this.bytes);
+  }
+
+  @Override
+  public synchronized void close() {
+    if (--this.users > 0) {
+      return;
+    }
+    for (Segment segment : this.segments) {
+      segment.buffer.force();
+      closeChannel(segment);
+    }
+    this.segments.clear();
+    this.tail = null;
+  }
+
+  private void recover() throws IOException {
+    try {
+      recoverSegments();
+    } catch (IOException e) {
+      close();
+      throw e;
+    }
+  }
+
+  private void recoverSegments() throws IOException {
+    List<Path> paths = new ArrayList<>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(this.directory, PREFIX + "*" + SUFFIX)) {
+      for (Path path : stream) {
+        paths.add(path);
+      }
+    }
+    // the sequence numbers are zero padded, so the names sort in the order the segments were created
+    Collections.sort(paths);
+    for (Path path : paths) {
+      String name = path.getFileName().toString();
+      long sequence = Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+      this.nextSequence = Math.max(this.nextSequence, sequence + 1);
+      Segment segment = openSegment(path, Files.size(path));
+      try {
+        scan(segment);
+      } catch (IOException e) {
+        closeChannel(segment);
+        throw e;
+      }
+      if (segment.isConsumed()) {
+        delete(segment);
+      } else {
+        this.segments.addLast(segment);
+      }
+    }
+    if (this.batches > 0) {
+      LOG.log(Level.INFO, "Recovered {0} spooled batches with {1} points from {2}",
+              new Object[] {this.batches, this.points, this.directory});
+    }
+    depthChanged();
+  }
+
+  /**
+   * Find the live records of a recovered segment, stopping at the end marker or at a damaged record.
+   */
+  private void scan(final Segment segment) throws IOException {
+    MappedByteBuffer buffer = segment.buffer;
+    int position = 0;
+    boolean seenLive = false;
+    while (position + RECORD_HEADER_BYTES <= buffer.capacity()) {
+      int length = buffer.getInt(position);
+      if (length == 0) {
+        break;
+      }
+      int payloadLength = Math.abs(length);
+      int end = position + RECORD_HEADER_BYTES + payloadLength;
+      if (end > buffer.capacity() || length == Integer.MIN_VALUE) {
+        LOG.log(Level.WARNING, "Ignoring truncated record at {0} of {1}", new Object[] {position, segment.path});
+        break;
+      }
+      if (length > 0) {
+        if (!isValid(buffer, position, payloadLength)) {
+          LOG.log(Level.WARNING, "Ignoring damaged record at {0} of {1}", new Object[] {position, segment.path});
+          break;
+        }
+        codecFor(contentEncoding(buffer, position), segment.path);
+        if (!seenLive) {
+          segment.readPosition = position;
+          seenLive = true;
+        }
+        this.batches++;
+        this.points += buffer.getInt(position + RECORD_HEADER_BYTES + POINTS_OFFSET);
+        this.bytes += RECORD_HEADER_BYTES + payloadLength;
+      }
+      position = end;
+    }
+    segment.writePosition = position;
+    if (!seenLive) {
+      segment.readPosition = position;
+    }
+  }
+
+  private static boolean isValid(final MappedByteBuffer buffer, final int position, final int length) {
+    ByteBuffer payload = buffer.duplicate();
+    ((Buffer) payload).position(position + RECORD_HEADER_BYTES);
+    ((Buffer) payload).limit(position + RECORD_HEADER_BYTES + length);
+    byte[] bytes = new byte[length];
+    payload.get(bytes);
+    CRC32 crc = new CRC32();
+    crc.update(bytes, 0, bytes.length);
+    return (int) crc.getValue() == buffer.getInt(position + Integer.BYTES);
+  }
+
+  private Segment createSegment(final int size) throws IOException {
+    Path path = this.directory.resolve(PREFIX + String.format(SEQUENCE_FORMAT, this.nextSequence++) + SUFFIX);
+    return openSegment(path, size);
+  }
+
+  private Segment openSegment(final Path path, final long size) throws IOException {
+    FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                           StandardOpenOption.WRITE);
+    try {
+      // mapping beyond the end of a new file extends it with zeros
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+      this.diskBytes += size;
+      return new Segment(path, channel, buffer);
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  private void delete(final Segment segment) {
+    closeChannel(segment);
+    this.diskBytes -= segment.buffer.capacity();
+    try {
+      Files.deleteIfExists(segment.path);
+    } catch (IOException e) {
+      LOG.log(Level.WARNING, "Could not delete consumed spool segment " + segment.path, e);
+    }
+  }
+
+  private static void closeChannel(final Segment segment) {
+    try {
+      segment.channel.close();
+    } catch (IOException e) {
+      LOG.log(Level.WARNING, "Could not close spool segment " + segment.path, e);
+    }
+  }
+
+  private void depthChanged() {
+    this.depthHandler.accept(depth());
+  }
+
+  private static byte[] encode(final EncodedBatch batch) {
+    byte[] bytes = batch.getPayload();
+    byte[] database = encodeString(batch.getDatabase());
+    byte[] retentionPolicy = encodeString(batch.getRetentionPolicy());
+    byte[] contentEncoding = encodeString(batch.getContentEncoding());
+    ByteBuffer payload = ByteBuffer.allocate(PAYLOAD_HEADER_BYTES + stringBytes(contentEncoding)
+        + stringBytes(database) + stringBytes(retentionPolicy) + bytes.length);
+    payload.put((byte) batch.getPrecision().ordinal());
+    payload.put((byte) batch.getConsistency().ordinal());
+    payload.putInt(batch.getPoints());
+    payload.putInt((int) batch.getLineProtocolSize());
+    putString(payload, contentEncoding);
+    putString(payload, database);
+    putString(payload, retentionPolicy);
+    payload.put(bytes);
+    return payload.array();
+  }
+
+  private static byte[] encodeString(final String value) {
+    if (value == null) {
+      return null;
+    }
+    return value.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static int stringBytes(final byte[] value) {
+    if (value == null) {
+      return Integer.BYTES;
+    }
+    return Integer.BYTES + value.length;
+  }
+
+  private static void putString(final ByteBuffer buffer, final byte[] value) {
+    if (value == null) {
+      buffer.putInt(NULL_STRING);
+    } else {
+      buffer.putInt(value.length);
+      buffer.put(value);
+    }
+  }
+
+  private WriteCodec codecFor(final String contentEncoding) throws IOException {
+    return codecFor(contentEncoding, this.directory);
+  }
+
+  /**
+   * @return the codec decoding a spooled payload for a write without it
+   * @throws IOException if there is no codec for the Content-Encoding
+   */
+  private WriteCodec codecFor(final String contentEncoding, final Path path) throws IOException {
+    if (contentEncoding == null) {
+      return WriteCodec.none();
+    }
+    WriteCodec current = this.codec.get();
+    if (current != null && contentEncoding.equals(current.getContentEncoding())) {
+      return current;
+    }
+    if (contentEncoding.equals(WriteCodec.gzip().getContentEncoding())) {
+      return WriteCodec.gzip();
+    }
+    throw new IOException("No codec for the spooled batches with Content-Encoding " + contentEncoding + " in "
+        + path + ", enable batching with a WriteCodec of this Content-Encoding");
+  }
+
+  private static String contentEncoding(final MappedByteBuffer buffer, final int position) {
+    ByteBuffer payload = buffer.duplicate();
+    ((Buffer) payload).position(position + RECORD_HEADER_BYTES + PAYLOAD_HEADER_BYTES);
+    return readString(payload);
+  }
+
+  private static String readString(final ByteBuffer buffer) {
+    int length = buffer.getInt();
+    if (length == NULL_STRING) {
+      return null;
+    }
+    byte[] value = new byte[length];
+    buffer.get(value);
+    return new String(value, StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,92 @@
+package org.influxdb.impl;
+
+import java.io.Closeable;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import org.influxdb.BatchOptions;
+import retrofit2.Retrofit;
+
+/**
+ * The client writing while batching is enabled, derived from the client of {@link InfluxDBImpl} with the
+ * protocol, dispatcher and connection pool of the {@link BatchOptions}.
+ * <p>
+ * The derived client shares the interceptors of the client, so writes are still compressed, authenticated and
+ * logged the same way. Its dispatcher and connection pool are its own and released on {@link #close()}.
+ */
+final class WriteTransport implements Closeable {
+
+  private static final int MIN_IDLE_CONNECTIONS = 5;
+  private static final int KEEP_ALIVE_MINUTES = 5;
+
+  private final OkHttpClient client;
+  private final InfluxDBService service;
+
+  private WriteTransport(final OkHttpClient client, final Retrofit retrofit) {
+    this.client = client;
+    this.service = retrofit.newBuilder().client(client).build().create(InfluxDBService.class);
+  }
+
+  /**
+   * @param client the client of {@link InfluxDBImpl}
+   * @param retrofit the retrofit instance of {@link InfluxDBImpl}
+   * @param batchOptions the batch options
+   * @return the transport for the writes, null if the options do not ask for one and the client is used as is
+   */
+  static WriteTransport of(final OkHttpClient client, final Retrofit retrofit, final BatchOptions batchOptions) {
+    Preconditions.checkNotNegativeNumber(batchOptions.getMaxRequests(), "maxRequests");
+    Preconditions.checkNotNegativeNumber(batchOptions.getMaxIdleConnections(), "maxIdleConnections");
+    boolean http2 = batchOptions.isHttp2PriorKnowledge();
+    if (!http2 && batchOptions.getMaxRequests() == 0 && batchOptions.getMaxIdleConnections() == 0) {
+      return null;
+    }
+    OkHttpClient.Builder builder = client.newBuilder();
+    if (http2) {
+      if (retrofit.baseUrl().isHttps()) {
+        throw new IllegalArgumentException("HTTP/2 with prior knowledge needs an http URL, "
+            + "over https HTTP/2 is negotiated by the client already");
+      }
+      builder.protocols(Collections.singletonList(Protocol.H2_PRIOR_KNOWLEDGE));
+    }
+
+    Dispatcher dispatcher = new Dispatcher();
+    if (batchOptions.getMaxRequests() > 0) {
+      dispatcher.setMaxRequests(batchOptions.getMaxRequests());
+    }
+    // all requests go to the server of the client
+    dispatcher.setMaxRequestsPerHost(dispatcher.getMaxRequests());
+    builder.dispatcher(dispatcher);
+
+    int maxIdleConnections = batchOptions.getMaxIdleConnections();
+    if (maxIdleConnections == 0) {
+      if (http2) {
+        maxIdleConnections = 1;
+      } else {
+        maxIdleConnections = Math.max(batchOptions.getFlushConcurrency(), MIN_IDLE_CONNECTIONS);
+      }
+    }
+    builder.connectionPool(new ConnectionPool(maxIdleConnections, KEEP_ALIVE_MINUTES, TimeUnit.MINUTES));
+    return new WriteTransport(builder.build(), retrofit);
+  }
+
+  OkHttpClient getClient() {
+    return this.client;
+  }
+
+  InfluxDBService getService() {
+    return this.service;
+  }
+
+  /**
+   * Release the threads of the dispatcher and the pooled connections. Requests in flight are completed.
+   */
+  @Override
+  public void close() {
+    this.client.dispatcher().executorService().shutdown();
+    this.client.connectionPool().evictAll();
+  }
+}
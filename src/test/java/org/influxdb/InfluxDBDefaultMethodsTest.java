@@ -0,0 +1,58 @@
+package org.influxdb;
+
+import static org.mockito.Mockito.CALLS_REAL_METHODS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.influxdb.InfluxDB.ConsistencyLevel;
+import org.influxdb.dto.Query;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.platform.runner.JUnitPlatform;
+import org.junit.runner.RunWith;
+
+/**
+ * Test the default methods of {@link InfluxDB} for implementations not overriding them.
+ */
+@RunWith(JUnitPlatform.class)
+public class InfluxDBDefaultMethodsTest {
+
+  @Test
+  public void testWriteCodecMapsToGzip() {
+    InfluxDB influxDB = mock(InfluxDB.class, CALLS_REAL_METHODS);
+
+    influxDB.setWriteCodec(WriteCodec.gzip());
+    verify(influxDB).enableGzip();
+    influxDB.setWriteCodec(WriteCodec.none());
+    verify(influxDB).disableGzip();
+    WriteCodec zstd = mock(WriteCodec.class);
+    when(zstd.getContentEncoding()).thenReturn("zstd");
+    Assertions.assertThrows(UnsupportedOperationException.class, () -> influxDB.setWriteCodec(zstd));
+
+    when(influxDB.isGzipEnabled()).thenReturn(true);
+    Assertions.assertEquals(WriteCodec.gzip().getContentEncoding(), influxDB.getWriteCodec().getContentEncoding());
+  }
+
+  @Test
+  public void testWriteAsyncWritesRecords() throws Exception {
+    InfluxDB influxDB = mock(InfluxDB.class, CALLS_REAL_METHODS);
+
+    influxDB.writeAsync("db", "rp", ConsistencyLevel.ONE, TimeUnit.SECONDS, Arrays.asList("cpu idle=1i 1",
+        "cpu idle=2i 2")).get(1, TimeUnit.SECONDS);
+    verify(influxDB).write("db", "rp", ConsistencyLevel.ONE, TimeUnit.SECONDS, "cpu idle=1i 1\ncpu idle=2i 2");
+  }
+
+  @Test
+  public void testUnsupportedMethodsThrow() {
+    InfluxDB influxDB = mock(InfluxDB.class, CALLS_REAL_METHODS);
+    Query query = new Query("SELECT * FROM cpu", "db");
+
+    Assertions.assertThrows(UnsupportedOperationException.class, () -> influxDB.queryStream(query));
+    Assertions.assertThrows(UnsupportedOperationException.class, () -> influxDB.queryColumnar(query));
+    Assertions.assertThrows(UnsupportedOperationException.class, () -> influxDB.setUdpOptions(null));
+  }
+}
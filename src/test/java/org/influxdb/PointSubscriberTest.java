@@ -0,0 +1,147 @@
+package org.influxdb;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.influxdb.dto.BatchPoints;
+import org.influxdb.dto.Point;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.platform.runner.JUnitPlatform;
+import org.junit.runner.RunWith;
+
+/**
+ * Test for the PointSubscriber, with the writes of the client mocked.
+ */
+@RunWith(JUnitPlatform.class)
+public class PointSubscriberTest {
+
+  private InfluxDB influxDB;
+  private LinkedBlockingQueue<BatchPoints> batches;
+  private LinkedBlockingQueue<CompletableFuture<Void>> writes;
+  private TestSubscription subscription;
+
+  @BeforeEach
+  public void setUp() {
+    this.influxDB = mock(InfluxDB.class);
+    this.batches = new LinkedBlockingQueue<>();
+    this.writes = new LinkedBlockingQueue<>();
+    when(this.influxDB.writeAsync(any(BatchPoints.class))).thenAnswer(invocation -> {
+      CompletableFuture<Void> write = new CompletableFuture<>();
+      this.batches.add(invocation.getArgument(0));
+      this.writes.add(write);
+      return write;
+    });
+    this.subscription = new TestSubscription();
+  }
+
+  @Test
+  public void testDemandIsBoundedByBufferLimit() throws Exception {
+    PointSubscriber subscriber = PointSubscriber.builder(this.influxDB).database("db")
+        .options(BatchOptions.DEFAULTS.actions(2).bufferLimit(4).flushDuration(60_000)).build();
+    subscriber.onSubscribe(this.subscription);
+    Assertions.assertEquals(4, this.subscription.requested);
+
+    for (int i = 0; i < 4; i++) {
+      subscriber.onNext(point(i));
+    }
+    // only one batch is in flight, the second one waits for it
+    Assertions.assertEquals(1, this.batches.size());
+    Assertions.assertEquals(4, this.subscription.requested);
+
+    this.writes.take().complete(null);
+    Assertions.assertEquals(6, this.subscription.requested);
+    Assertions.assertEquals(2, this.batches.size());
+    Assertions.assertEquals("cpu value=0i 0\ncpu value=1i 1\n", this.batches.take().lineProtocol());
+    Assertions.assertEquals("cpu value=2i 2\ncpu value=3i 3\n", this.batches.take().lineProtocol());
+  }
+
+  @Test
+  public void testCompleteWritesRemainingPoints() throws Exception {
+    List<BatchPoints> written = new CopyOnWriteArrayList<>();
+    PointSubscriber subscriber = PointSubscriber.builder(this.influxDB)
+        .options(BatchOptions.DEFAULTS.actions(10).flushDuration(60_000))
+        .batchListener((batch, throwable) -> written.add(batch)).build();
+    subscriber.onSubscribe(this.subscription);
+    subscriber.onNext(point(1));
+    subscriber.onComplete();
+    Assertions.assertFalse(subscriber.completion().isDone());
+
+    this.writes.take().complete(null);
+    subscriber.completion().get(1, TimeUnit.SECONDS);
+    Assertions.assertEquals(1, written.size());
+    Assertions.assertEquals(1, written.get(0).getPoints().size());
+  }
+
+  @Test
+  public void testFlushDurationWritesPartialBatch() throws Exception {
+    PointSubscriber subscriber = PointSubscriber.builder(this.influxDB)
+        .options(BatchOptions.DEFAULTS.actions(10).flushDuration(10)).build();
+    subscriber.onSubscribe(this.subscription);
+    subscriber.onNext(point(1));
+
+    BatchPoints batch = this.batches.poll(1, TimeUnit.SECONDS);
+    Assertions.assertNotNull(batch);
+    Assertions.assertEquals(1, batch.getPoints().size());
+    subscriber.cancel();
+    Assertions.assertTrue(this.subscription.cancelled);
+  }
+
+  @Test
+  public void testFailedWriteCancelsSubscription() throws Exception {
+    List<Point> failedPoints = new ArrayList<>();
+    PointSubscriber subscriber = PointSubscriber.builder(this.influxDB)
+        .options(BatchOptions.DEFAULTS.actions(1).flushDuration(60_000)
+            .exceptionHandler((points, throwable) -> points.forEach(failedPoints::add)))
+        .build();
+    subscriber.onSubscribe(this.subscription);
+    subscriber.onNext(point(1));
+    subscriber.onNext(point(2));
+
+    InfluxDBException failure = new InfluxDBException("database not found");
+    this.writes.take().completeExceptionally(failure);
+    Assertions.assertTrue(this.subscription.cancelled);
+    Assertions.assertEquals(2, failedPoints.size());
+    Assertions.assertTrue(subscriber.completion().isCompletedExceptionally());
+    Assertions.assertEquals(1, this.batches.size());
+  }
+
+  @Test
+  public void testSecondSubscriptionIsCancelled() {
+    PointSubscriber subscriber = PointSubscriber.builder(this.influxDB).build();
+    subscriber.onSubscribe(this.subscription);
+    TestSubscription second = new TestSubscription();
+    subscriber.onSubscribe(second);
+    Assertions.assertTrue(second.cancelled);
+    Assertions.assertEquals(0, second.requested);
+    subscriber.cancel();
+  }
+
+  private static Point point(final long value) {
+    return Point.measurement("cpu").time(value, TimeUnit.NANOSECONDS).addField("value", value).build();
+  }
+
+  private static final class TestSubscription implements PointSubscriber.Subscription {
+    private volatile long requested;
+    private volatile boolean cancelled;
+
+    @Override
+    public synchronized void request(final long n) {
+      this.requested += n;
+    }
+
+    @Override
+    public void cancel() {
+      this.cancelled = true;
+    }
+  }
+}
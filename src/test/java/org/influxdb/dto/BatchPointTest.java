@@ -121,4 +121,17 @@ public class BatchPointTest {
       assertNotNull(returned);
       assertEquals(2, returned.size());
     }
+
+    @Test
+    public void lineProtocolToSink() throws Exception {
+      Point p1 = Point.measurement("something").tag("a b", "c").addField("one", 1)
+          .time(1000, TimeUnit.MILLISECONDS).build();
+      Point p2 = Point.measurement("something2").addField("two", "\u00e9\"").build();
+      BatchPoints b = BatchPoints.database("db").tag("batch", "tag").precision(TimeUnit.SECONDS)
+          .points(p1, p2).build();
+
+      okio.Buffer buffer = new okio.Buffer();
+      b.lineProtocol(buffer);
+      assertEquals(b.lineProtocol(), buffer.readUtf8());
+    }
 }
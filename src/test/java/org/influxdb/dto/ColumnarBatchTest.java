@@ -0,0 +1,147 @@
+package org.influxdb.dto;
+
+import org.influxdb.dto.ColumnarBatch.FieldType;
+import org.influxdb.dto.ColumnarBatch.Schema;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.platform.runner.JUnitPlatform;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import okio.Buffer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test for the ColumnarBatch.
+ */
+@RunWith(JUnitPlatform.class)
+public class ColumnarBatchTest {
+
+    private static final Schema SCHEMA = Schema.measurement("cpu load")
+        .tag("region")
+        .tag("host")
+        .field("user", FieldType.DOUBLE)
+        .field("count", FieldType.LONG)
+        .field("up", FieldType.BOOLEAN)
+        .field("state", FieldType.STRING)
+        .build();
+
+    @Test
+    public void testLineProtocolMatchesPoints() {
+        ColumnarBatch batch = ColumnarBatch.builder(SCHEMA).precision(TimeUnit.MILLISECONDS).build();
+        int row = batch.addRow(1);
+        batch.setTag(row, 0, "eu west").setTag(row, 1, "a=1")
+            .setDouble(row, 0, 0.5).setLong(row, 1, 7).setBoolean(row, 2, true).setString(row, 3, "say \"hi\"");
+        row = batch.addRow(2);
+        batch.setTag(row, 1, "b").setLong(row, 1, -3);
+
+        Point first = Point.measurement("cpu load").time(1, TimeUnit.MILLISECONDS)
+            .tag("region", "eu west").tag("host", "a=1")
+            .addField("user", 0.5).addField("count", 7L).addField("up", true).addField("state", "say \"hi\"")
+            .build();
+        Point second = Point.measurement("cpu load").time(2, TimeUnit.MILLISECONDS)
+            .tag("host", "b").addField("count", -3L).build();
+
+        assertThat(batch.lineProtocol()).isEqualTo(first.lineProtocol() + "\n" + second.lineProtocol() + "\n");
+        assertThat(batch.toPoints()).containsExactly(first, second);
+    }
+
+    @Test
+    public void testEstimatedBytesMatchPoints() {
+        ColumnarBatch batch = ColumnarBatch.builder(SCHEMA).build();
+        int row = batch.addRow(1600000000000000000L);
+        batch.setTag(row, 1, "server01").setLong(row, 1, 12345).setBoolean(row, 2, false).setString(row, 3, "ok");
+        row = batch.addRow(1600000000000000001L);
+        batch.setTag(row, 0, "eu").setDouble(row, 0, 0.25);
+        batch.addRow(1600000000000000002L);
+
+        long expected = 0;
+        for (Point point : batch.toPoints()) {
+            expected += point.estimatedLineProtocolBytes();
+        }
+        // the escaped measurement name is known to the schema, points ignore escaping
+        assertThat(batch.estimatedLineProtocolBytes()).isEqualTo(expected + 2);
+    }
+
+    @Test
+    public void testRowsWithoutWritableFieldsAreSkipped() {
+        ColumnarBatch batch = ColumnarBatch.builder(SCHEMA).build();
+        batch.addRow(1);
+        int row = batch.addRow(2);
+        batch.setDouble(row, 0, Double.NaN);
+        row = batch.addRow(3);
+        batch.setDouble(row, 0, Double.POSITIVE_INFINITY).setBoolean(row, 2, false);
+
+        assertThat(batch.lineProtocol()).isEqualTo("cpu\\ load up=false 3\n");
+        assertThat(batch.toPoints()).hasSize(2);
+    }
+
+    @Test
+    public void testBatchPointsWriteRowsWithTheirTagsAndPrecision() throws IOException {
+        ColumnarBatch batch = ColumnarBatch.builder(SCHEMA).precision(TimeUnit.SECONDS).build();
+        int row = batch.addRow(5);
+        batch.setTag(row, 0, "us").setTag(row, 1, "a").setLong(row, 1, 1);
+
+        Point point = Point.measurement("mem").time(1, TimeUnit.SECONDS).addField("free", 2L).build();
+        BatchPoints batchPoints = BatchPoints.database("db").tag("region", "eu").tag("dc", "x")
+            .precision(TimeUnit.MILLISECONDS).point(point).columnarBatch(batch).build();
+
+        String expected = "mem,dc=x,region=eu free=2i 1000\ncpu\\ load,dc=x,host=a,region=eu count=1i 5000\n";
+        assertThat(batchPoints.lineProtocol()).isEqualTo(expected);
+        Buffer buffer = new Buffer();
+        batchPoints.lineProtocol(buffer);
+        assertThat(buffer.readUtf8()).isEqualTo(expected);
+    }
+
+    @Test
+    public void testMergeInKeepsColumnarBatches() {
+        ColumnarBatch batch = ColumnarBatch.builder(SCHEMA).build();
+        batch.setLong(batch.addRow(1), 1, 1);
+        BatchPoints first = BatchPoints.database("db").build();
+        BatchPoints second = BatchPoints.database("db").columnarBatch(batch).build();
+
+        Assertions.assertTrue(first.mergeIn(second));
+        assertThat(first.getColumnarBatches()).containsExactly(batch);
+        assertThat(first.lineProtocol()).isEqualTo("cpu\\ load count=1i 1\n");
+    }
+
+    @Test
+    public void testColumnsGrowAndClear() {
+        ColumnarBatch batch = ColumnarBatch.builder(SCHEMA).capacity(1).build();
+        for (int i = 0; i < 130; i++) {
+            int row = batch.addRow(i);
+            batch.setTag(row, 1, "h" + i).setLong(row, 1, i);
+        }
+        Assertions.assertEquals(130, batch.getRowCount());
+        List<Point> points = batch.toPoints();
+        assertThat(points).hasSize(130);
+        assertThat(points.get(129).lineProtocol()).isEqualTo("cpu\\ load,host=h129 count=129i 129");
+
+        batch.clear();
+        Assertions.assertEquals(0, batch.getRowCount());
+        batch.addRow(1);
+        assertThat(batch.lineProtocol()).isEmpty();
+    }
+
+    @Test
+    public void testSchemaLookupsAndChecks() {
+        Assertions.assertEquals(1, SCHEMA.tagIndex("host"));
+        Assertions.assertEquals(3, SCHEMA.fieldIndex("state"));
+        Assertions.assertEquals(-1, SCHEMA.fieldIndex("host"));
+        Assertions.assertEquals(FieldType.BOOLEAN, SCHEMA.getFieldType(2));
+
+        Assertions.assertThrows(IllegalArgumentException.class,
+            () -> Schema.measurement("cpu").tag("a").field("a", FieldType.LONG));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> Schema.measurement("cpu").tag("a").build());
+
+        ColumnarBatch batch = ColumnarBatch.builder(SCHEMA).build();
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> batch.setLong(0, 1, 1));
+        int row = batch.addRow(1);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> batch.setLong(row, 0, 1));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> batch.setString(row, 1, "x"));
+    }
+}
@@ -0,0 +1,106 @@
+package org.influxdb.dto;
+
+import org.influxdb.dto.ColumnarSeries.ColumnType;
+import org.influxdb.dto.ColumnarSeries.Cursor;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.platform.runner.JUnitPlatform;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * Test for the ColumnarSeries.
+ */
+@RunWith(JUnitPlatform.class)
+public class ColumnarSeriesTest {
+
+    @Test
+    public void testValuesAreReadFromTypedColumns() {
+        ColumnarSeries.Builder builder = ColumnarSeries.builder(Arrays.asList("time", "idle", "count", "up", "host"))
+            .name("cpu").tags(Collections.singletonMap("region", "eu"));
+        for (int i = 0; i < 100; i++) {
+            builder.addString(0, "2024-01-01T00:00:0" + (i % 10) + ".5Z").addDouble(1, i + 0.5).addLong(2, i)
+                .addBoolean(3, i % 2 == 0).addString(4, "host" + (i % 3)).endRow();
+        }
+        ColumnarSeries series = builder.build();
+
+        Assertions.assertEquals(100, series.getRowCount());
+        Assertions.assertEquals(ColumnType.LONG, series.getColumnType(0));
+        Assertions.assertEquals(ColumnType.DOUBLE, series.getColumnType(1));
+        Assertions.assertEquals(ColumnType.LONG, series.getColumnType(2));
+        Assertions.assertEquals(ColumnType.BOOLEAN, series.getColumnType(3));
+        Assertions.assertEquals(ColumnType.STRING, series.getColumnType(4));
+        Cursor cursor = series.cursor();
+        for (int i = 0; i < 100; i++) {
+            Assertions.assertTrue(cursor.next());
+            Assertions.assertEquals(1704067200_500_000_000L + (i % 10) * 1_000_000_000L, cursor.getTime());
+            Assertions.assertEquals(i + 0.5, cursor.getDouble(1));
+            Assertions.assertEquals(i, cursor.getLong(2));
+            Assertions.assertEquals(i % 2 == 0, cursor.getBoolean(3));
+            Assertions.assertEquals("host" + (i % 3), cursor.getString(4));
+        }
+        Assertions.assertFalse(cursor.next());
+    }
+
+    @Test
+    public void testMissingValuesAreNull() {
+        ColumnarSeries series = ColumnarSeries.builder(Arrays.asList("time", "idle"))
+            .addLong(0, 1).addDouble(1, 90).endRow()
+            .addLong(0, 2).endRow()
+            .build();
+
+        Cursor cursor = series.cursor();
+        cursor.next();
+        Assertions.assertFalse(cursor.isNull(1));
+        cursor.next();
+        Assertions.assertTrue(cursor.isNull(1));
+        Assertions.assertTrue(Double.isNaN(cursor.getDouble(1)));
+        Assertions.assertNull(cursor.getValue(1));
+        Assertions.assertNull(cursor.getString(1));
+    }
+
+    @Test
+    public void testMixedNumbersArePromotedToDoubles() {
+        ColumnarSeries series = ColumnarSeries.builder(Collections.singletonList("value"))
+            .addLong(0, 7).endRow()
+            .addNull(0).endRow()
+            .addDouble(0, 2.5).endRow()
+            .build();
+
+        Assertions.assertEquals(ColumnType.DOUBLE, series.getColumnType(0));
+        Cursor cursor = series.cursor();
+        cursor.next();
+        Assertions.assertEquals(7.0, cursor.getDouble(0));
+        Assertions.assertEquals(7, cursor.getLong(0));
+        cursor.next();
+        Assertions.assertTrue(cursor.isNull(0));
+        cursor.next();
+        Assertions.assertEquals(2.5, cursor.getDouble(0));
+    }
+
+    @Test
+    public void testMixedTypesAreBoxed() {
+        ColumnarSeries series = ColumnarSeries.builder(Collections.singletonList("value"))
+            .addString(0, "a").endRow()
+            .addLong(0, 1).endRow()
+            .build();
+
+        Assertions.assertEquals(ColumnType.OBJECT, series.getColumnType(0));
+        Cursor cursor = series.cursor();
+        cursor.next();
+        Assertions.assertEquals("a", cursor.getValue(0));
+        cursor.next();
+        Assertions.assertEquals(1L, cursor.getValue(0));
+        Assertions.assertEquals("1", cursor.getString(0));
+        Assertions.assertThrows(IllegalStateException.class, () -> cursor.getLong(0));
+    }
+
+    @Test
+    public void testValueCannotBeAddedTwiceToARow() {
+        ColumnarSeries.Builder builder = ColumnarSeries.builder(Collections.singletonList("value")).addLong(0, 1);
+
+        Assertions.assertThrows(IllegalStateException.class, () -> builder.addLong(0, 2));
+    }
+}
@@ -0,0 +1,137 @@
+package org.influxdb.dto;
+
+import okio.Buffer;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.platform.runner.JUnitPlatform;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.text.NumberFormat;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Conformance test for the shortest representation double formatting of the line protocol.
+ */
+@RunWith(JUnitPlatform.class)
+public class DoubleFormatterTest {
+
+    private static String format(final double value) {
+        StringBuilder sb = new StringBuilder();
+        new DoubleFormatter().format(sb, value);
+        return sb.toString();
+    }
+
+    private static String legacyFormat(final double value) {
+        NumberFormat numberFormat = NumberFormat.getInstance(Locale.ENGLISH);
+        numberFormat.setMaximumFractionDigits(340);
+        numberFormat.setGroupingUsed(false);
+        numberFormat.setMinimumFractionDigits(1);
+        return numberFormat.format(value);
+    }
+
+    private static String zeros(final int count) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            sb.append('0');
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void testZero() {
+        Assertions.assertEquals("0.0", format(0.0));
+        Assertions.assertEquals("-0.0", format(-0.0));
+        Assertions.assertEquals(legacyFormat(-0.0), format(-0.0));
+    }
+
+    @Test
+    public void testIntegers() {
+        Assertions.assertEquals("1.0", format(1.0));
+        Assertions.assertEquals("-1.0", format(-1.0));
+        Assertions.assertEquals("42.0", format(42));
+        Assertions.assertEquals("9007199254740992.0", format(9007199254740992.0));
+        Assertions.assertEquals("100000000000000000000.0", format(1e20));
+        Assertions.assertEquals("10000000000000000000000.0", format(1e22));
+    }
+
+    @Test
+    public void testFractions() {
+        Assertions.assertEquals("0.1", format(0.1));
+        Assertions.assertEquals("0.30000000000000004", format(0.1 + 0.2));
+        Assertions.assertEquals("0.00001", format(1e-5));
+        Assertions.assertEquals("0.000015", format(1.5e-5));
+        Assertions.assertEquals("123456789.123", format(123456789.123));
+        Assertions.assertEquals("-3.141592653589793", format(-Math.PI));
+        Assertions.assertEquals("1.100000023841858", format(1.1f));
+    }
+
+    @Test
+    public void testLargeExponents() {
+        Assertions.assertEquals("17976931348623157" + zeros(292) + ".0", format(Double.MAX_VALUE));
+        Assertions.assertEquals("-17976931348623157" + zeros(292) + ".0", format(-Double.MAX_VALUE));
+        Assertions.assertEquals("1" + zeros(300) + ".0", format(1e300));
+        Assertions.assertEquals(legacyFormat(Double.MAX_VALUE), format(Double.MAX_VALUE));
+    }
+
+    @Test
+    public void testSubnormals() {
+        Assertions.assertEquals("0." + zeros(323) + "49", format(Double.MIN_VALUE));
+        Assertions.assertEquals("-0." + zeros(323) + "49", format(-Double.MIN_VALUE));
+        // like Double.toString since Java 19, two digits are chosen where a single one would round as well
+        Assertions.assertEquals("0." + zeros(323) + "99", format(2 * Double.MIN_VALUE));
+        Assertions.assertEquals(2 * Double.MIN_VALUE, Double.parseDouble(format(2 * Double.MIN_VALUE)));
+        Assertions.assertEquals("0." + zeros(307) + "22250738585072014", format(Double.MIN_NORMAL));
+        Assertions.assertEquals("0." + zeros(307) + "2225073858507201", format(Math.nextDown(Double.MIN_NORMAL)));
+        Assertions.assertEquals(legacyFormat(Double.MIN_VALUE), format(Double.MIN_VALUE));
+    }
+
+    @Test
+    public void testShortestRepresentation() {
+        // the NumberFormat of older JDKs does not always pick the shortest digits
+        Assertions.assertEquals("100000000000000000000000.0", format(1e23));
+        Assertions.assertEquals("200000000000000000000000.0", format(2e23));
+    }
+
+    @Test
+    public void testNotFinite() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> format(Double.NaN));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> format(Double.POSITIVE_INFINITY));
+    }
+
+    @Test
+    public void testRandomValuesRoundTrip() {
+        Random random = new Random(4711);
+        DoubleFormatter formatter = new DoubleFormatter();
+        for (int i = 0; i < 100_000; i++) {
+            double value;
+            if (i % 2 == 0) {
+                value = Double.longBitsToDouble(random.nextLong());
+            } else {
+                value = random.nextDouble() * Math.pow(10, random.nextInt(40) - 20);
+            }
+            if (!Double.isFinite(value)) {
+                continue;
+            }
+            StringBuilder sb = new StringBuilder();
+            formatter.format(sb, value);
+            String formatted = sb.toString();
+            Assertions.assertEquals(value, Double.parseDouble(formatted), formatted);
+            Assertions.assertTrue(formatted.indexOf('.') > 0, formatted);
+            if (i % 100 == 0) {
+                Assertions.assertTrue(formatted.length() <= legacyFormat(value).length(), formatted);
+            }
+        }
+    }
+
+    @Test
+    public void testFormatToSink() throws IOException {
+        Buffer buffer = new Buffer();
+        DoubleFormatter formatter = new DoubleFormatter();
+        formatter.format(buffer, 1.5);
+        buffer.writeByte(',');
+        formatter.format(buffer, -0.0);
+        Assertions.assertEquals("1.5,-0.0", buffer.readUtf8());
+    }
+}
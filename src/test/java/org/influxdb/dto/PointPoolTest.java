@@ -0,0 +1,128 @@
+package org.influxdb.dto;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.platform.runner.JUnitPlatform;
+import org.junit.runner.RunWith;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test for reusable builders and the PointPool.
+ */
+@RunWith(JUnitPlatform.class)
+public class PointPoolTest {
+
+    @Test
+    public void testResetBuilderDoesNotChangeBuiltPoints() {
+        Point.Builder builder = Point.measurement("cpu");
+        Point first = builder.tag("host", "a").addField("idle", 1L).time(1, TimeUnit.NANOSECONDS).build();
+        Point second = builder.reset("mem").addField("free", 2L).build();
+
+        assertThat(first.lineProtocol()).isEqualTo("cpu,host=a idle=1i 1");
+        assertThat(second.lineProtocol()).isEqualTo("mem free=2i");
+    }
+
+    @Test
+    public void testPooledBuilderDoesNotChangeBuiltPoints() {
+        PointPool pool = new PointPool();
+        Point.Builder builder = pool.builder("cpu");
+        Point first = builder.tag("host", "a").addField("idle", 1L).time(1, TimeUnit.NANOSECONDS).build();
+        Point second = builder.reset("cpu").tag("region", "b").addField("user", 2L).build();
+
+        assertThat(first.lineProtocol()).isEqualTo("cpu,host=a idle=1i 1");
+        assertThat(second.lineProtocol()).isEqualTo("cpu,region=b user=2i");
+        assertThat(first).isEqualTo(Point.measurement("cpu").tag("host", "a").addField("idle", 1L)
+            .time(1, TimeUnit.NANOSECONDS).build());
+    }
+
+    @Test
+    public void testReleasedPointIsReused() {
+        PointPool pool = new PointPool();
+        Point.Builder builder = pool.builder("cpu");
+        Point first = builder.tag("host", "a").addField("idle", 1L).time(1, TimeUnit.NANOSECONDS).build();
+        Assertions.assertEquals(0, pool.size());
+
+        first.release();
+        Assertions.assertEquals(1, pool.size());
+        // releasing twice must not put the point into the pool twice
+        first.release();
+        Assertions.assertEquals(1, pool.size());
+
+        Point second = builder.reset("mem").addField("free", 2L).build();
+        Assertions.assertSame(first, second);
+        Assertions.assertEquals(0, pool.size());
+        assertThat(second.lineProtocol()).isEqualTo("mem free=2i");
+    }
+
+    @Test
+    public void testReusedPointChangesFieldTypes() {
+        PointPool pool = new PointPool();
+        Point.Builder builder = pool.builder("cpu");
+        Point first = builder.addField("a", 1L).addField("b", 1.5).addField("c", true).build();
+        first.release();
+
+        Point second = builder.reset("cpu").addField("a", "x").addField("b", 2).build();
+        Assertions.assertSame(first, second);
+        assertThat(second.lineProtocol()).isEqualTo("cpu a=\"x\",b=2i");
+        Assertions.assertEquals(2, second.getFields().get("b"));
+    }
+
+    @Test
+    public void testReleasedPointOfSeriesKeyIsReused() {
+        PointPool pool = new PointPool();
+        SeriesKey seriesKey = SeriesKey.of("cpu", Collections.singletonMap("host", "a"));
+        Point first = pool.builder(seriesKey).addField("idle", 1L).build();
+        first.release();
+
+        Point second = pool.builder("mem").tag("region", "b").addField("free", 2L).build();
+        Assertions.assertSame(first, second);
+        assertThat(second.lineProtocol()).isEqualTo("mem,region=b free=2i");
+        assertThat(seriesKey.getTags()).containsOnlyKeys("host");
+    }
+
+    @Test
+    public void testPoolSizeIsBounded() {
+        PointPool pool = new PointPool(1);
+        Point first = pool.builder("cpu").addField("idle", 1L).build();
+        Point second = pool.builder("cpu").addField("idle", 1L).build();
+        first.release();
+        second.release();
+        Assertions.assertEquals(1, pool.size());
+    }
+
+    @Test
+    public void testReleaseOfUnpooledPointDoesNothing() {
+        Point point = Point.measurement("cpu").addField("idle", 1L).build();
+        point.release();
+        assertThat(point.lineProtocol()).isEqualTo("cpu idle=1i");
+    }
+
+    @Test
+    public void testSortedArrayMapKeepsKeysSorted() {
+        SortedArrayMap<Object> map = new SortedArrayMap<>();
+        map.put("c", 3);
+        map.put("a", 1);
+        map.put("b", 2);
+        Assertions.assertEquals(2, map.put("b", 22));
+        Assertions.assertEquals("{a=1, b=22, c=3}", map.toString());
+        Assertions.assertEquals("a", map.keyAt(0));
+        Assertions.assertEquals(3, map.valueAt(2));
+
+        Assertions.assertEquals(1, map.remove("a"));
+        Assertions.assertNull(map.get("a"));
+        Assertions.assertNull(map.get(1));
+        Assertions.assertEquals(new java.util.TreeMap<>(map), map);
+
+        SortedArrayMap<Object> copy = new SortedArrayMap<>();
+        copy.put("z", 0);
+        copy.copyFrom(map);
+        Assertions.assertEquals(map, copy);
+        map.clear();
+        Assertions.assertTrue(map.isEmpty());
+        Assertions.assertEquals(2, copy.size());
+    }
+}
@@ -627,6 +627,117 @@ public class PointTest {
     }
 
 
+    @Test
+    public void testLineProtocolToSinkMatchesString() throws Exception {
+        Point[] points = {
+            Point.measurement("test").time(1, TimeUnit.NANOSECONDS).addField("a", 1.0).build(),
+            Point.measurement("test, =1").tag("t ,=", "v ,=").time(1, TimeUnit.NANOSECONDS)
+                .addField("f ,=", "A \"B\" \\C").build(),
+            Point.measurement("m\u00e9sure\u20ac").tag("h\u00f6st", "\ud83d\ude00").addField("\u00e4", "\u00fc=\ud83d\ude00")
+                .build(),
+            Point.measurement("types").time(1500L, TimeUnit.MILLISECONDS)
+                .addField("long", Long.MIN_VALUE).addField("int", 42).addField("short", (short) -3)
+                .addField("float", 1.1f).addField("double", 1e-7).addField("bool", true)
+                .addField("bigDecimal", new BigDecimal("123.456")).addField("bigInteger", BigInteger.TEN)
+                .addField("atomic", new AtomicLong(5)).build(),
+            Point.measurement("nan").addField("a", Double.NaN).addField("b", 2L).build(),
+            Point.measurement("onlyNan").addField("a", Double.NaN).build(),
+            Point.measurement("bigTime").time(new BigInteger("1500000000123456789"), TimeUnit.NANOSECONDS)
+                .addField("a", 1L).build(),
+            Point.measurement("bigDecimalTime").time(new BigDecimal("1500000000123.456789"), TimeUnit.MILLISECONDS)
+                .addField("a", 1L).build(),
+        };
+        TimeUnit[] precisions = {null, TimeUnit.NANOSECONDS, TimeUnit.MICROSECONDS, TimeUnit.SECONDS};
+        for (Point point : points) {
+            for (TimeUnit precision : precisions) {
+                okio.Buffer buffer = new okio.Buffer();
+                boolean written = point.lineProtocol(buffer, precision);
+                String expected = point.lineProtocol(precision);
+                assertThat(buffer.readUtf8()).isEqualTo(expected);
+                assertThat(written).isEqualTo(!expected.isEmpty());
+            }
+        }
+    }
+
+    @Test
+    public void testPrimitiveFieldsAreBoxedLazily() {
+        Point point = Point.measurement("test")
+            .addField("long", 1L).addField("int", 2).addField("short", (short) 3)
+            .addField("double", 4.5).addField("float", 5.5f).addField("bool", true)
+            .addField("string", "s").build();
+
+        assertThat(point.lineProtocol())
+            .isEqualTo("test bool=true,double=4.5,float=5.5,int=2i,long=1i,short=3i,string=\"s\"");
+        Map<String, Object> fields = point.getFields();
+        assertThat(fields.get("long")).isEqualTo(1L);
+        assertThat(fields.get("int")).isEqualTo(2);
+        assertThat(fields.get("short")).isEqualTo((short) 3);
+        assertThat(fields.get("double")).isEqualTo(4.5);
+        assertThat(fields.get("float")).isEqualTo(5.5f);
+        assertThat(fields.get("bool")).isEqualTo(true);
+        assertThat(fields.get("string")).isEqualTo("s");
+
+        Map<String, Object> boxed = new HashMap<>();
+        boxed.put("long", 1L);
+        boxed.put("int", 2);
+        boxed.put("short", (short) 3);
+        boxed.put("double", 4.5);
+        boxed.put("float", 5.5f);
+        boxed.put("bool", true);
+        boxed.put("string", "s");
+        assertThat(fields).isEqualTo(boxed);
+        assertThat(point).isEqualTo(Point.measurement("test").fields(boxed).build());
+    }
+
+    @Test
+    public void testPrimitiveFieldsCanBeReplaced() {
+        Point point = Point.measurement("test")
+            .addField("a", 1L).addField("a", "text")
+            .addField("b", "text").addField("b", 2.0)
+            .addField("c", Double.NaN).addField("d", Float.POSITIVE_INFINITY)
+            .build();
+
+        assertThat(point.lineProtocol()).isEqualTo("test a=\"text\",b=2.0");
+        assertThat(point.getFields().get("c")).isEqualTo(Double.NaN);
+    }
+
+    @Test
+    public void testLineProtocolWithSeriesKey() throws Exception {
+        Map<String, String> tags = new HashMap<>();
+        tags.put("host", "server 01");
+        tags.put("region", "us,west");
+        SeriesKey seriesKey = new SeriesKeyCache().get("cpu load", tags);
+
+        Point point = Point.series(seriesKey).time(1, TimeUnit.NANOSECONDS).addField("idle", 90.5).build();
+        Point expected = Point.measurement("cpu load").tag(tags).time(1, TimeUnit.NANOSECONDS)
+            .addField("idle", 90.5).build();
+
+        assertThat(point.lineProtocol()).isEqualTo("cpu\\ load,host=server\\ 01,region=us\\,west idle=90.5 1");
+        assertThat(point).isEqualTo(expected);
+        okio.Buffer buffer = new okio.Buffer();
+        point.lineProtocol(buffer, null);
+        assertThat(buffer.readUtf8()).isEqualTo(expected.lineProtocol());
+    }
+
+    @Test
+    public void testSeriesKeyWithAdditionalTags() {
+        SeriesKey seriesKey = SeriesKey.of("cpu", Collections.singletonMap("host", "a"));
+
+        Point point = Point.series(seriesKey).tag("host", "b").tag("region", "c").addField("idle", 1L).build();
+        assertThat(point.lineProtocol()).isEqualTo("cpu,host=b,region=c idle=1i");
+        assertThat(seriesKey.getTags()).containsOnlyKeys("host");
+
+        BatchPoints batchPoints = BatchPoints.database("db").tag("region", "d").build();
+        Point unchanged = Point.series(SeriesKey.of("cpu", Collections.singletonMap("region", "d")))
+            .addField("idle", 1L).build();
+        Point changed = Point.series(seriesKey).addField("idle", 1L).build();
+        batchPoints.point(unchanged);
+        batchPoints.point(changed);
+        assertThat(unchanged.lineProtocol()).isEqualTo("cpu,region=d idle=1i");
+        assertThat(changed.lineProtocol()).isEqualTo("cpu,host=a,region=d idle=1i");
+        assertThat(seriesKey.getTags()).containsOnlyKeys("host");
+    }
+
     @Test
     public void testAddFieldsFromPOJONullCheck() {
         Assertions.assertThrows(NullPointerException.class, () -> {
@@ -906,6 +1017,20 @@ public class PointTest {
         Assert.assertEquals(expected, actual);
     }
 
+    @Test
+    public void testEstimatedLineProtocolBytes() {
+        Point point = Point.measurement("disk").tag("host", "server01").tag("path", "/var")
+                .addField("used", 123456789L).addField("free", -42).addField("mounted", true)
+                .addField("label", "data disk").time(1600000000000000000L, TimeUnit.NANOSECONDS).build();
+        // exact for integers, strings, booleans and timestamps in nanoseconds
+        Assertions.assertEquals(point.lineProtocol().length() + 1, point.estimatedLineProtocolBytes());
+
+        Point doubles = Point.measurement("cpu").addField("idle", 0.5).build();
+        Assertions.assertTrue(doubles.estimatedLineProtocolBytes() >= doubles.lineProtocol().length() + 1);
+        Assertions.assertEquals(0, Point.measurement("cpu").addField("idle", Double.NaN).build()
+                .estimatedLineProtocolBytes());
+    }
+
     static class PojoWithoutAnnotation {
 
         private String id;
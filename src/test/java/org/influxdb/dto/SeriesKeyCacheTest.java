@@ -0,0 +1,87 @@
+package org.influxdb.dto;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.platform.runner.JUnitPlatform;
+import org.junit.runner.RunWith;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Test for the SeriesKey and SeriesKeyCache DTOs.
+ */
+@RunWith(JUnitPlatform.class)
+public class SeriesKeyCacheTest {
+
+    private static Map<String, String> tags(final String... nameValues) {
+        Map<String, String> tags = new HashMap<>();
+        for (int i = 0; i < nameValues.length; i += 2) {
+            tags.put(nameValues[i], nameValues[i + 1]);
+        }
+        return tags;
+    }
+
+    @Test
+    public void testSeriesKeyIsEscapedOnce() {
+        SeriesKey seriesKey = SeriesKey.of("cpu load", tags("host", "server,01", "region", "us=west", "empty", ""));
+
+        Assertions.assertEquals("cpu\\ load,host=server\\,01,region=us\\=west", seriesKey.lineProtocol());
+        Assertions.assertEquals(2, seriesKey.getTags().size());
+        Assertions.assertEquals(SeriesKey.of("cpu load", tags("region", "us=west", "host", "server,01")), seriesKey);
+    }
+
+    @Test
+    public void testSeriesKeyTagsAreUnmodifiable() {
+        SeriesKey seriesKey = SeriesKey.of("cpu", tags("host", "a"));
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> seriesKey.getTags().put("host", "b"));
+    }
+
+    @Test
+    public void testSeriesKeyRequiresMeasurement() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> SeriesKey.of("", Collections.emptyMap()));
+    }
+
+    @Test
+    public void testCacheReturnsSameKey() {
+        SeriesKeyCache cache = new SeriesKeyCache();
+        SeriesKey first = cache.get("cpu", tags("host", "a", "region", "b"));
+        SeriesKey second = cache.get("cpu", tags("region", "b", "host", "a"));
+
+        Assertions.assertSame(first, second);
+        Assertions.assertNotSame(first, cache.get("cpu", tags("host", "b", "region", "b")));
+        Assertions.assertNotSame(first, cache.get("mem", tags("host", "a", "region", "b")));
+        Assertions.assertEquals(3, cache.size());
+    }
+
+    @Test
+    public void testCacheDoesNotKeepCallerTags() {
+        SeriesKeyCache cache = new SeriesKeyCache();
+        Map<String, String> tags = tags("host", "a");
+        SeriesKey first = cache.get("cpu", tags);
+        tags.put("host", "b");
+
+        Assertions.assertEquals("cpu,host=b", cache.get("cpu", tags).lineProtocol());
+        Assertions.assertSame(first, cache.get("cpu", tags("host", "a")));
+    }
+
+    @Test
+    public void testCacheEvictsLeastRecentlyUsed() {
+        SeriesKeyCache cache = new SeriesKeyCache(2);
+        SeriesKey a = cache.get("a", Collections.emptyMap());
+        SeriesKey b = cache.get("b", Collections.emptyMap());
+        // touch a, so b is the least recently used
+        Assertions.assertSame(a, cache.get("a", Collections.emptyMap()));
+        cache.get("c", Collections.emptyMap());
+
+        Assertions.assertEquals(2, cache.size());
+        Assertions.assertSame(a, cache.get("a", Collections.emptyMap()));
+        Assertions.assertNotSame(b, cache.get("b", Collections.emptyMap()));
+    }
+
+    @Test
+    public void testCacheSizeMustBePositive() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new SeriesKeyCache(0));
+    }
+}
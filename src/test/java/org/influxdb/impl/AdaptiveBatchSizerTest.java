@@ -0,0 +1,92 @@
+package org.influxdb.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.influxdb.BatchSizing;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.platform.runner.JUnitPlatform;
+import org.junit.runner.RunWith;
+
+/**
+ * Test for the adaptive batch size and flush interval.
+ */
+@RunWith(JUnitPlatform.class)
+public class AdaptiveBatchSizerTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(500);
+
+    @Test
+    public void testBatchSizeIncreasesAdditivelyAndDecreasesMultiplicatively() {
+        List<BatchSizing> changes = new ArrayList<>();
+        AdaptiveBatchSizer sizer = new AdaptiveBatchSizer(1000, 1200, 1000, TimeUnit.MILLISECONDS, 100, changes::add);
+
+        sizer.written(1000, FAST, false);
+        Assertions.assertEquals(1100, sizer.getActions());
+        sizer.written(1100, FAST, false);
+        sizer.written(1200, FAST, false);
+        // capped at the maximum, no change is reported
+        Assertions.assertEquals(1200, sizer.getActions());
+        Assertions.assertEquals(2, changes.size());
+
+        sizer.written(1200, SLOW, false);
+        Assertions.assertEquals(600, sizer.getActions());
+        sizer.written(10, FAST, true);
+        Assertions.assertEquals(300, sizer.getActions());
+
+        BatchSizing last = changes.get(changes.size() - 1);
+        Assertions.assertEquals(BatchSizing.Reason.WRITE_FAILED, last.getReason());
+        Assertions.assertEquals(300, last.getActions());
+        Assertions.assertEquals(10, last.getWriteLatency());
+        Assertions.assertEquals(BatchSizing.Reason.WRITE_LATENCY_ABOVE_TARGET, changes.get(2).getReason());
+    }
+
+    @Test
+    public void testSmallBatchesDoNotGrowTheBatchSize() {
+        AdaptiveBatchSizer sizer = new AdaptiveBatchSizer(1000, 5000, 1000, TimeUnit.MILLISECONDS, 100, s -> { });
+        sizer.written(100, FAST, false);
+        sizer.written(0, SLOW, true);
+        Assertions.assertEquals(1000, sizer.getActions());
+    }
+
+    @Test
+    public void testBatchSizeStaysAboveTenthOfActions() {
+        AdaptiveBatchSizer sizer = new AdaptiveBatchSizer(1000, 0, 1000, TimeUnit.MILLISECONDS, 100, s -> { });
+        for (int i = 0; i < 10; i++) {
+            sizer.written(1000, SLOW, false);
+        }
+        Assertions.assertEquals(100, sizer.getActions());
+        Assertions.assertEquals(1000, sizer.getMaxActions());
+    }
+
+    @Test
+    public void testFlushIntervalFollowsQueueFilling() {
+        List<BatchSizing> changes = new ArrayList<>();
+        AdaptiveBatchSizer sizer = new AdaptiveBatchSizer(1000, 0, 1, TimeUnit.SECONDS, 100, changes::add);
+
+        sizer.flushed(600);
+        Assertions.assertEquals(1, sizer.getFlushInterval());
+        Assertions.assertTrue(changes.isEmpty());
+
+        sizer = new AdaptiveBatchSizer(1000, 0, 1000, TimeUnit.MILLISECONDS, 100, changes::add);
+        sizer.flushed(600);
+        sizer.flushed(500);
+        Assertions.assertEquals(250, sizer.getFlushInterval());
+        // between a quarter and half a batch keeps the interval
+        sizer.flushed(300);
+        Assertions.assertEquals(250, sizer.getFlushInterval());
+        sizer.flushed(10);
+        sizer.flushed(0);
+        sizer.flushed(0);
+        Assertions.assertEquals(1000, sizer.getFlushInterval());
+
+        Assertions.assertEquals(BatchSizing.Reason.QUEUE_FILLING, changes.get(0).getReason());
+        Assertions.assertEquals(500, changes.get(0).getFlushDuration());
+        Assertions.assertEquals(-1, changes.get(0).getWriteLatency());
+        Assertions.assertEquals(BatchSizing.Reason.QUEUE_DRAINING, changes.get(changes.size() - 1).getReason());
+        Assertions.assertEquals(4, changes.size());
+    }
+}
@@ -13,19 +13,31 @@ import static org.mockito.hamcrest.MockitoHamcrest.argThat;
 
 import java.io.IOException;
 import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
 import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 import org.hamcrest.Matchers;
 import org.influxdb.BatchOptions;
+import org.influxdb.BatchSizing;
 import org.influxdb.InfluxDB;
+import org.influxdb.InfluxDBException;
 import org.influxdb.TestUtils;
 import org.influxdb.dto.BatchPoints;
+import org.influxdb.dto.ColumnarBatch;
 import org.influxdb.dto.Point;
 import org.influxdb.dto.Query;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.junit.platform.runner.JUnitPlatform;
 import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
@@ -182,6 +194,224 @@ public class BatchProcessorTest {
         Assertions.assertEquals(true, batchProcessor.isDropActionsOnQueueExhaustion());
     }
 
+    @Test
+    public void testStripesIsZero() {
+        InfluxDB mockInfluxDB = mock(InfluxDBImpl.class);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+          BatchProcessor.builder(mockInfluxDB).actions(1).stripes(0)
+              .interval(1, TimeUnit.NANOSECONDS).build();
+        });
+    }
+
+    @Test
+    public void testStripedLanesAreFlushedTogether() throws InterruptedException {
+        InfluxDB mockInfluxDB = mock(InfluxDBImpl.class);
+        BatchProcessor batchProcessor = BatchProcessor.builder(mockInfluxDB).actions(8).stripes(4)
+            .interval(1, TimeUnit.HOURS).build();
+        assertEquals(4, batchProcessor.getStripes());
+
+        Point point = Point.measurement("cpu").addField("idle", 90L).build();
+        Thread[] producers = new Thread[4];
+        for (int i = 0; i < producers.length; i++) {
+          producers[i] = new Thread(() -> {
+            batchProcessor.put(new BatchProcessor.HttpBatchEntry(point, "db1", "rp"));
+            batchProcessor.put(new BatchProcessor.HttpBatchEntry(point, "db1", "rp"));
+          });
+          producers[i].start();
+        }
+        for (Thread producer : producers) {
+          producer.join();
+        }
+
+        // reaching actions over all lanes triggers a single write with the points of every lane
+        ArgumentCaptor<BatchPoints> captor = ArgumentCaptor.forClass(BatchPoints.class);
+        verify(mockInfluxDB, timeout(1000).times(1)).write(captor.capture());
+        assertEquals(8, captor.getValue().getPoints().size());
+    }
+
+    @Test
+    public void testStripedLanesDropOnlyWhenAllLanesAreFull() {
+        InfluxDB mockInfluxDB = mock(InfluxDBImpl.class);
+        Consumer<Point> droppedActionHandler = mock(Consumer.class);
+        BatchProcessor batchProcessor = BatchProcessor.builder(mockInfluxDB).actions(4).stripes(2)
+            .interval(1, TimeUnit.HOURS).dropActionsOnQueueExhaustion(true)
+            .droppedActionHandler(droppedActionHandler).build();
+
+        // a single producer fills its own lane and overflows into the other one
+        Point point = Point.measurement("cpu").addField("idle", 90L).build();
+        for (int i = 0; i < 4; i++) {
+          batchProcessor.put(new BatchProcessor.HttpBatchEntry(point, "db1", "rp"));
+        }
+        verify(droppedActionHandler, never()).accept(any(Point.class));
+
+        ArgumentCaptor<BatchPoints> captor = ArgumentCaptor.forClass(BatchPoints.class);
+        verify(mockInfluxDB, timeout(1000).times(1)).write(captor.capture());
+        assertEquals(4, captor.getValue().getPoints().size());
+    }
+
+    @Test
+    public void testStripedLanesHoldActionsEntriesTogether() {
+        InfluxDB mockInfluxDB = mock(InfluxDBImpl.class);
+        Consumer<Point> droppedActionHandler = mock(Consumer.class);
+        BatchProcessor batchProcessor = BatchProcessor.builder(mockInfluxDB).actions(5).stripes(2)
+            .interval(1, TimeUnit.HOURS).dropActionsOnQueueExhaustion(true)
+            .droppedActionHandler(droppedActionHandler).build();
+
+        Point point = Point.measurement("cpu").addField("idle", 90L).build();
+        // the flush triggered by the fifth entry waits until all entries were put
+        synchronized (batchProcessor) {
+          for (int i = 0; i < 6; i++) {
+            batchProcessor.put(new BatchProcessor.HttpBatchEntry(point, "db1", "rp"));
+          }
+        }
+        // the lanes hold 3 and 2 entries, not 3 each
+        verify(droppedActionHandler, times(1)).accept(point);
+
+        ArgumentCaptor<BatchPoints> captor = ArgumentCaptor.forClass(BatchPoints.class);
+        verify(mockInfluxDB, timeout(1000).times(1)).write(captor.capture());
+        assertEquals(5, captor.getValue().getPoints().size());
+    }
+
+    @Test
+    public void testFlushSwapsBatchesOfDestinations() {
+        InfluxDB mockInfluxDB = mock(InfluxDBImpl.class);
+        BatchProcessor batchProcessor = BatchProcessor.builder(mockInfluxDB).actions(Integer.MAX_VALUE)
+            .interval(1, TimeUnit.HOURS).build();
+
+        Point first = Point.measurement("cpu").addField("idle", 90L).build();
+        Point second = Point.measurement("cpu").addField("idle", 80L).build();
+        batchProcessor.put(new BatchProcessor.HttpBatchEntry(first, "db1", "rp"));
+        batchProcessor.flush();
+        batchProcessor.put(new BatchProcessor.HttpBatchEntry(second, "db1", "rp"));
+        batchProcessor.flush();
+
+        // the batch of the first flush is not filled any further
+        ArgumentCaptor<BatchPoints> captor = ArgumentCaptor.forClass(BatchPoints.class);
+        verify(mockInfluxDB, times(2)).write(captor.capture());
+        assertEquals(Collections.singletonList(first), captor.getAllValues().get(0).getPoints());
+        assertEquals(Collections.singletonList(second), captor.getAllValues().get(1).getPoints());
+    }
+
+    @Test
+    public void testFlushConcurrencyIsZero() {
+        InfluxDB mockInfluxDB = mock(InfluxDBImpl.class);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+          BatchProcessor.builder(mockInfluxDB).actions(1).flushConcurrency(0)
+              .interval(1, TimeUnit.NANOSECONDS).build();
+        });
+    }
+
+    @Test
+    public void testFlushWaitsForFlushWorkers() {
+        InfluxDB mockInfluxDB = mock(InfluxDBImpl.class);
+        BatchProcessor batchProcessor = BatchProcessor.builder(mockInfluxDB).actions(Integer.MAX_VALUE)
+            .flushConcurrency(4).interval(1, TimeUnit.HOURS).build();
+
+        Point point = Point.measurement("cpu").addField("idle", 90L).build();
+        for (int i = 0; i < 8; i++) {
+          batchProcessor.put(new BatchProcessor.HttpBatchEntry(point, "db" + i, "rp"));
+        }
+        batchProcessor.flush();
+
+        // one batch per destination, all written by the time flush returns
+        verify(mockInfluxDB, times(8)).write(any(BatchPoints.class));
+        batchProcessor.flushAndShutdown();
+    }
+
+    @Test
+    public void testIdleDestinationsAreDropped() throws Exception {
+        InfluxDBImpl mockInfluxDB = mock(InfluxDBImpl.class);
+        BatchProcessor batchProcessor = BatchProcessor.builder(mockInfluxDB).actions(Integer.MAX_VALUE)
+            .interval(1, TimeUnit.HOURS).build();
+        Point point = Point.measurement("cpu").addField("idle", 90L).build();
+        batchProcessor.put(new BatchProcessor.HttpBatchEntry(point, "db1", "rp"));
+        batchProcessor.put(new BatchProcessor.UdpBatchEntry(point, 8089));
+        batchProcessor.flush();
+        verify(mockInfluxDB).write(any(BatchPoints.class));
+        verify(mockInfluxDB).writePoints(eq(8089), any());
+
+        for (int i = 0; i < 10; i++) {
+          batchProcessor.put(new BatchProcessor.HttpBatchEntry(point, "db2", "rp"));
+          batchProcessor.flush();
+        }
+        // only the destination written by the last flushes is kept
+        assertEquals(1, destinations(batchProcessor, "httpDestinations").size());
+        assertTrue(destinations(batchProcessor, "udpDestinations").isEmpty());
+
+        // a dropped destination is created again by its next entry
+        batchProcessor.put(new BatchProcessor.HttpBatchEntry(point, "db1", "rp"));
+        batchProcessor.put(new BatchProcessor.UdpBatchEntry(point, 8089));
+        batchProcessor.flush();
+        verify(mockInfluxDB, times(12)).write(any(BatchPoints.class));
+        verify(mockInfluxDB, times(2)).writePoints(eq(8089), any());
+        batchProcessor.flushAndShutdown();
+    }
+
+    private static Map<?, ?> destinations(final BatchProcessor batchProcessor, final String name) throws Exception {
+        Field field = BatchProcessor.class.getDeclaredField(name);
+        field.setAccessible(true);
+        return (Map<?, ?>) field.get(batchProcessor);
+    }
+
+    @Test
+    public void testSpoolIsReplayedInOrderAfterRestartWithOtherFlushConcurrency(@TempDir final Path directory)
+        throws IOException {
+        InfluxDBImpl failingInfluxDB = mock(InfluxDBImpl.class);
+        InfluxDBException recoverable = InfluxDBException.buildExceptionForErrorState(
+            "{ \"error\": \"cache-max-memory-size exceeded 104/1400\" }");
+        doThrow(recoverable).when(failingInfluxDB).write(any(BatchPoints.class));
+        doThrow(recoverable).when(failingInfluxDB).write(any(EncodedBatch.class));
+        // two workers with a retry buffer of two points each, the older batches are spooled
+        BatchProcessor batchProcessor = BatchProcessor.builder(failingInfluxDB).actions(1).bufferLimit(4)
+            .flushConcurrency(2).interval(1, TimeUnit.HOURS).spool(directory, 1 << 20, 1 << 12, depth -> { })
+            .build();
+        for (int i = 0; i < 9; i++) {
+          batchProcessor.put(new BatchProcessor.HttpBatchEntry(point(i), "db" + i % 3, "rp"));
+          batchProcessor.flush();
+        }
+        batchProcessor.flushAndShutdown();
+
+        InfluxDBImpl mockInfluxDB = mock(InfluxDBImpl.class);
+        List<String> written = new CopyOnWriteArrayList<>();
+        doAnswer(invocation -> {
+          EncodedBatch batch = invocation.getArgument(0);
+          written.add(batch.getDatabase() + " " + batch.getLineProtocol());
+          return null;
+        }).when(mockInfluxDB).write(any(EncodedBatch.class));
+        doAnswer(invocation -> {
+          BatchPoints batch = invocation.getArgument(0);
+          written.add(batch.getDatabase() + " " + batch.lineProtocol());
+          return null;
+        }).when(mockInfluxDB).write(any(BatchPoints.class));
+        batchProcessor = BatchProcessor.builder(mockInfluxDB).actions(1).bufferLimit(8)
+            .flushConcurrency(4).interval(1, TimeUnit.HOURS).spool(directory, 1 << 20, 1 << 12, depth -> { })
+            .build();
+        batchProcessor.put(new BatchProcessor.HttpBatchEntry(point(9), "db0", "rp"));
+        batchProcessor.flush();
+        batchProcessor.flushAndShutdown();
+
+        // every batch of the first run is written once, in order per destination, before the new one
+        assertEquals(10, written.size());
+        for (int db = 0; db < 3; db++) {
+          int last = -1;
+          for (String batch : written) {
+            if (batch.startsWith("db" + db + " ")) {
+              int value = Integer.parseInt(batch.substring(batch.indexOf('=') + 1, batch.indexOf('i')));
+              assertTrue(value > last);
+              last = value;
+            }
+          }
+        }
+        assertTrue(written.get(9).startsWith("db0 cpu value=9i"));
+        try (Stream<Path> files = Files.list(directory)) {
+          assertEquals(0, files.count());
+        }
+    }
+
+    private static Point point(final int value) {
+        return Point.measurement("cpu").addField("value", value).time(value, TimeUnit.SECONDS).build();
+    }
+
     @Test
     @SuppressWarnings("unchecked")
     public void precision() throws Exception {
@@ -226,6 +456,112 @@ public class BatchProcessorTest {
       }
     }
 
+    @Test
+    public void testColumnarBatchRowsCountAsActions() throws InterruptedException {
+      InfluxDB mockInfluxDB = mock(InfluxDBImpl.class);
+      BatchProcessor batchProcessor = BatchProcessor.builder(mockInfluxDB).actions(3)
+          .interval(1, TimeUnit.DAYS).build();
+      ColumnarBatch.Schema schema = ColumnarBatch.Schema.measurement("cpu")
+          .field("idle", ColumnarBatch.FieldType.LONG).build();
+      ColumnarBatch batch = ColumnarBatch.builder(schema).build();
+      batch.setLong(batch.addRow(1), 0, 1);
+      batch.setLong(batch.addRow(2), 0, 2);
+
+      Point point = Point.measurement("cpu").time(3, TimeUnit.NANOSECONDS).addField("idle", 3L).build();
+      batchProcessor.put(new BatchProcessor.HttpBatchEntry(point, "db1", "rp"));
+      // the two rows reach the actions limit together with the point
+      batchProcessor.put(new BatchProcessor.ColumnarBatchEntry(batch, "db1", "rp"));
+
+      ArgumentCaptor<BatchPoints> captor = ArgumentCaptor.forClass(BatchPoints.class);
+      verify(mockInfluxDB, timeout(1000)).write(captor.capture());
+      BatchPoints batchPoints = captor.getValue();
+      assertThat(batchPoints.getPoints().size(), is(1));
+      assertThat(batchPoints.getColumnarBatches().size(), is(1));
+      assertThat(batchPoints.lineProtocol(), equalTo("cpu idle=3i 3\ncpu idle=1i 1\ncpu idle=2i 2\n"));
+    }
+
+    @Test
+    public void testColumnarBatchRowsTakeQueuePlaces() {
+      InfluxDB mockInfluxDB = mock(InfluxDBImpl.class);
+      Consumer<Point> droppedActionHandler = mock(Consumer.class);
+      BatchProcessor batchProcessor = BatchProcessor.builder(mockInfluxDB).actions(4)
+          .interval(1, TimeUnit.DAYS).dropActionsOnQueueExhaustion(true)
+          .droppedActionHandler(droppedActionHandler).build();
+      ColumnarBatch.Schema schema = ColumnarBatch.Schema.measurement("cpu")
+          .field("idle", ColumnarBatch.FieldType.LONG).build();
+      ColumnarBatch batch = ColumnarBatch.builder(schema).build();
+      for (int i = 0; i < 3; i++) {
+        batch.setLong(batch.addRow(i), 0, i);
+      }
+
+      Point point = Point.measurement("cpu").time(3, TimeUnit.NANOSECONDS).addField("idle", 3L).build();
+      // the flush triggered by the fourth action waits until all entries were put
+      synchronized (batchProcessor) {
+        batchProcessor.put(new BatchProcessor.ColumnarBatchEntry(batch, "db1", "rp"));
+        batchProcessor.put(new BatchProcessor.HttpBatchEntry(point, "db1", "rp"));
+        batchProcessor.put(new BatchProcessor.HttpBatchEntry(point, "db1", "rp"));
+      }
+      // the three rows and the first point fill the four places
+      verify(droppedActionHandler, times(1)).accept(point);
+    }
+
+    @Test
+    public void testMaxBatchBytesSplitsRequests() {
+      InfluxDB mockInfluxDB = mock(InfluxDBImpl.class);
+      BatchProcessor batchProcessor = BatchProcessor.builder(mockInfluxDB).actions(1000)
+          .interval(1, TimeUnit.DAYS).maxBatchBytes(100, () -> 1).build();
+
+      for (int i = 0; i < 3; i++) {
+        // 46 bytes of line protocol each, the third point reaches the limit
+        Point point = Point.measurement("cpu").tag("host", "server01").addField("idle", (long) i)
+            .time(1600000000000000000L + i, TimeUnit.NANOSECONDS).build();
+        assertEquals(46, point.estimatedLineProtocolBytes());
+        batchProcessor.put(new BatchProcessor.HttpBatchEntry(point, "db1", "rp"));
+      }
+
+      ArgumentCaptor<BatchPoints> captor = ArgumentCaptor.forClass(BatchPoints.class);
+      verify(mockInfluxDB, timeout(1000).times(2)).write(captor.capture());
+      assertThat(captor.getAllValues().get(0).getPoints().size(), is(2));
+      assertThat(captor.getAllValues().get(1).getPoints().size(), is(1));
+    }
+
+    @Test
+    public void testAdaptiveBatchSizeShrinksOnSlowWrites() {
+      InfluxDB mockInfluxDB = mock(InfluxDBImpl.class);
+      doAnswer(invocation -> {
+        Thread.sleep(50);
+        return null;
+      }).when(mockInfluxDB).write(any(BatchPoints.class));
+      List<BatchSizing> changes = new CopyOnWriteArrayList<>();
+      BatchProcessor batchProcessor = BatchProcessor.builder(mockInfluxDB).actions(4)
+          .interval(1, TimeUnit.DAYS).adaptive(10, 8, changes::add).build();
+
+      for (int i = 0; i < 4; i++) {
+        batchProcessor.put(new BatchProcessor.HttpBatchEntry(
+            Point.measurement("cpu").addField("idle", (long) i).build(), "db1", "rp"));
+      }
+      verify(mockInfluxDB, timeout(1000)).write(any(BatchPoints.class));
+      verify(mockInfluxDB, after(200).times(1)).write(any(BatchPoints.class));
+      assertEquals(1, changes.size());
+      assertEquals(BatchSizing.Reason.WRITE_LATENCY_ABOVE_TARGET, changes.get(0).getReason());
+      assertEquals(2, changes.get(0).getActions());
+
+      // two points make a batch now
+      for (int i = 0; i < 2; i++) {
+        batchProcessor.put(new BatchProcessor.HttpBatchEntry(
+            Point.measurement("cpu").addField("idle", (long) i).build(), "db1", "rp"));
+      }
+      verify(mockInfluxDB, timeout(1000).times(2)).write(any(BatchPoints.class));
+    }
+
+    @Test
+    public void testMaxBatchBytesFollowsCompressionRatio() {
+      assertEquals(Long.MAX_VALUE, BatchProcessor.batchBytesLimit(0, () -> 5));
+      assertEquals(500, BatchProcessor.batchBytesLimit(100, () -> 5));
+      // a ratio below 1 is never assumed
+      assertEquals(100, BatchProcessor.batchBytesLimit(100, () -> 0.5));
+    }
+
     @Test
     @SuppressWarnings("unchecked")
     public void randomSupplier() {
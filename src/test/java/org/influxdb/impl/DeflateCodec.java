@@ -0,0 +1,80 @@
+package org.influxdb.impl;
+
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.influxdb.WriteCodec;
+
+import okio.Buffer;
+import okio.DeflaterSink;
+import okio.Okio;
+import okio.Sink;
+import okio.Source;
+
+/**
+ * A codec outside of the built-in ones for the tests, zlib streams sent with the deflate Content-Encoding.
+ */
+final class DeflateCodec implements WriteCodec {
+
+    static final String CONTENT_ENCODING = "deflate";
+
+    private final int level;
+
+    DeflateCodec(final int level) {
+        this.level = level;
+    }
+
+    @Override
+    public String getContentEncoding() {
+        return CONTENT_ENCODING;
+    }
+
+    @Override
+    public int getLevel() {
+        return level;
+    }
+
+    @Override
+    public Sink encode(final Sink sink) {
+        return new DeflaterSink(sink, new Deflater(level));
+    }
+
+    @Override
+    public Source decode(final Source source) throws IOException {
+        return new Buffer().write(inflate(Okio.buffer(source).readByteArray()));
+    }
+
+    @Override
+    public String toString() {
+        return "deflate(" + level + ")";
+    }
+
+    /**
+     * Inflate concatenated zlib streams, the way a server accepting merged payloads has to.
+     */
+    static byte[] inflate(final byte[] payload) throws IOException {
+        Buffer decoded = new Buffer();
+        byte[] chunk = new byte[8192];
+        int offset = 0;
+        while (offset < payload.length) {
+            Inflater inflater = new Inflater();
+            inflater.setInput(payload, offset, payload.length - offset);
+            try {
+                while (!inflater.finished()) {
+                    int count = inflater.inflate(chunk);
+                    if (count == 0 && inflater.needsInput()) {
+                        throw new IOException("Truncated deflate stream");
+                    }
+                    decoded.write(chunk, 0, count);
+                }
+            } catch (DataFormatException e) {
+                throw new IOException(e);
+            }
+            offset = payload.length - inflater.getRemaining();
+            inflater.end();
+        }
+        return decoded.readByteArray();
+    }
+}
@@ -0,0 +1,106 @@
+package org.influxdb.impl;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+
+import org.influxdb.InfluxDB.ConsistencyLevel;
+import org.influxdb.WriteCodec;
+import org.influxdb.dto.BatchPoints;
+import org.influxdb.dto.Point;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.platform.runner.JUnitPlatform;
+import org.junit.runner.RunWith;
+
+import okio.Buffer;
+
+/**
+ * Test for the batches kept as encoded line protocol.
+ */
+@RunWith(JUnitPlatform.class)
+public class EncodedBatchTest {
+
+    private static BatchPoints batch(final String database, final int first, final int count) {
+        BatchPoints.Builder builder = BatchPoints.database(database).precision(TimeUnit.SECONDS);
+        for (int i = first; i < first + count; i++) {
+            builder.point(Point.measurement("cpu").time(i, TimeUnit.SECONDS).addField("value", i).build());
+        }
+        return builder.build();
+    }
+
+    @Test
+    public void encodesTheLineProtocolOfTheBatch() {
+        BatchPoints batchPoints = batch("db", 0, 3);
+        EncodedBatch batch = EncodedBatch.encode(batchPoints, WriteCodec.none());
+
+        Assertions.assertEquals("db", batch.getDatabase());
+        Assertions.assertEquals(TimeUnit.SECONDS, batch.getPrecision());
+        Assertions.assertEquals(ConsistencyLevel.ONE, batch.getConsistency());
+        Assertions.assertEquals(3, batch.getPoints());
+        Assertions.assertEquals(batchPoints.lineProtocol(), batch.getLineProtocol());
+        Assertions.assertEquals(batch.getBytes(), batch.getLineProtocolSize());
+    }
+
+    @Test
+    public void mergedGzipBatchesAreOneGzipStream() throws IOException {
+        BatchPoints first = batch("db", 0, 3);
+        BatchPoints second = batch("db", 3, 2);
+        EncodedBatch batch = EncodedBatch.encode(first, WriteCodec.gzip());
+
+        Assertions.assertTrue(batch.mergeIn(EncodedBatch.encode(second, WriteCodec.gzip())));
+        Assertions.assertEquals(5, batch.getPoints());
+        String lineProtocol = first.lineProtocol() + second.lineProtocol();
+        Assertions.assertEquals(lineProtocol, batch.getLineProtocol());
+        Assertions.assertEquals(lineProtocol.length(), batch.getLineProtocolSize());
+
+        Buffer body = new Buffer();
+        batch.requestBody().writeTo(body);
+        Assertions.assertEquals(batch.getBytes(), batch.requestBody().contentLength());
+        Assertions.assertEquals(batch.getBytes(), body.size());
+        // the server reads the concatenated gzip members as a single stream
+        Buffer decoded = new Buffer();
+        decoded.readFrom(new GZIPInputStream(body.inputStream()));
+        Assertions.assertEquals(lineProtocol, decoded.readUtf8());
+    }
+
+    @Test
+    public void compressionLevelIsApplied() {
+        BatchPoints batchPoints = batch("db", 0, 200);
+        EncodedBatch stored = EncodedBatch.encode(batchPoints, WriteCodec.gzip(Deflater.NO_COMPRESSION));
+        EncodedBatch best = EncodedBatch.encode(batchPoints, WriteCodec.gzip(Deflater.BEST_COMPRESSION));
+
+        Assertions.assertTrue(stored.getBytes() > stored.getLineProtocolSize());
+        Assertions.assertTrue(best.getBytes() < stored.getBytes());
+        Assertions.assertEquals(batchPoints.lineProtocol(), stored.getLineProtocol());
+        Assertions.assertEquals(batchPoints.lineProtocol(), best.getLineProtocol());
+    }
+
+    @Test
+    public void mergedBatchesOfAnotherCodecAreDecodedAsOneStream() throws IOException {
+        BatchPoints first = batch("db", 0, 3);
+        BatchPoints second = batch("db", 3, 2);
+        WriteCodec codec = new DeflateCodec(Deflater.BEST_SPEED);
+        EncodedBatch batch = EncodedBatch.encode(first, codec);
+
+        Assertions.assertTrue(batch.mergeIn(EncodedBatch.encode(second, codec)));
+        Assertions.assertEquals(DeflateCodec.CONTENT_ENCODING, batch.getContentEncoding());
+        String lineProtocol = first.lineProtocol() + second.lineProtocol();
+        Assertions.assertEquals(lineProtocol, batch.getLineProtocol());
+        Buffer body = new Buffer();
+        batch.requestBody().writeTo(body);
+        byte[] decoded = DeflateCodec.inflate(body.readByteArray());
+        Assertions.assertEquals(lineProtocol, new Buffer().write(decoded).readUtf8());
+    }
+
+    @Test
+    public void batchesOfOtherDestinationsAreNotMerged() {
+        EncodedBatch batch = EncodedBatch.encode(batch("db", 0, 1), WriteCodec.none());
+
+        Assertions.assertFalse(batch.mergeIn(EncodedBatch.encode(batch("other", 1, 1), WriteCodec.none())));
+        Assertions.assertFalse(batch.mergeIn(EncodedBatch.encode(batch("db", 1, 1), WriteCodec.gzip())));
+        Assertions.assertFalse(batch.mergeIn(EncodedBatch.encode(batch("db", 1, 1), new DeflateCodec(1))));
+        Assertions.assertEquals(1, batch.getPoints());
+    }
+}
@@ -0,0 +1,144 @@
+package org.influxdb.impl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Headers;
+import okhttp3.internal.concurrent.TaskRunner;
+import okhttp3.internal.http2.Header;
+import okhttp3.internal.http2.Http2Connection;
+import okhttp3.internal.http2.Http2Stream;
+import okio.BufferedSource;
+import okio.Okio;
+
+/**
+ * A local server speaking cleartext HTTP/2 with prior knowledge, answering every request with 204 after an
+ * optional delay. It counts the connections carrying requests, the requests and the streams open at the same
+ * time, and keeps the paths and bodies of the requests. It is built on the HTTP/2 implementation of OkHttp, in server mode.
+ */
+final class Http2StubServer implements Closeable {
+
+    private final ServerSocket serverSocket;
+    private final Thread acceptor;
+    private final long delayMillis;
+    private final List<Http2Connection> connections = new CopyOnWriteArrayList<>();
+    private final Set<Http2Connection> streamConnections = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger openStreams = new AtomicInteger();
+    private final AtomicInteger maxOpenStreams = new AtomicInteger();
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicLong bodyBytes = new AtomicLong();
+    private final ConcurrentLinkedQueue<String> paths = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<String> bodies = new ConcurrentLinkedQueue<>();
+
+    /**
+     * @param delay the time every request is held before it is answered
+     * @param unit the unit of the delay
+     */
+    Http2StubServer(final long delay, final TimeUnit unit) throws IOException {
+        this.delayMillis = unit.toMillis(delay);
+        this.serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        this.acceptor = new Thread(this::accept, "http2-stub-acceptor");
+        this.acceptor.setDaemon(true);
+        this.acceptor.start();
+    }
+
+    String url() {
+        return "http://127.0.0.1:" + serverSocket.getLocalPort();
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                Http2Connection connection = new Http2Connection.Builder(false, TaskRunner.INSTANCE)
+                    .socket(socket)
+                    .listener(new Http2Connection.Listener() {
+                        @Override
+                        public void onStream(final Http2Stream stream) throws IOException {
+                            serve(stream);
+                        }
+                    })
+                    .build();
+                connections.add(connection);
+                connection.start();
+            } catch (IOException e) {
+                // closed
+            }
+        }
+    }
+
+    private void serve(final Http2Stream stream) throws IOException {
+        streamConnections.add(stream.getConnection());
+        int open = openStreams.incrementAndGet();
+        maxOpenStreams.accumulateAndGet(open, Math::max);
+        try {
+            Headers headers = stream.takeHeaders();
+            byte[] body;
+            try (BufferedSource source = Okio.buffer(stream.getSource())) {
+                body = source.readByteArray();
+            }
+            paths.add(headers.get(":path"));
+            bodies.add(new String(body, StandardCharsets.UTF_8));
+            bodyBytes.addAndGet(body.length);
+            if (delayMillis > 0) {
+                Thread.sleep(delayMillis);
+            }
+            requests.incrementAndGet();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            openStreams.decrementAndGet();
+        }
+        stream.writeHeaders(Collections.singletonList(new Header(Header.RESPONSE_STATUS, "204")), true, true);
+    }
+
+    /**
+     * @return the number of connections that carried requests, a client racing to connect opens more connections
+     *         but keeps only one of them
+     */
+    int getConnections() {
+        return streamConnections.size();
+    }
+
+    int getRequests() {
+        return requests.get();
+    }
+
+    int getMaxOpenStreams() {
+        return maxOpenStreams.get();
+    }
+
+    long getBodyBytes() {
+        return bodyBytes.get();
+    }
+
+    List<String> getPaths() {
+        return new ArrayList<>(paths);
+    }
+
+    List<String> getBodies() {
+        return new ArrayList<>(bodies);
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        for (Http2Connection connection : connections) {
+            connection.close();
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package org.influxdb.impl;
+
+import org.influxdb.dto.Point;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.platform.runner.JUnitPlatform;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test for decoding line protocol back into points.
+ */
+@RunWith(JUnitPlatform.class)
+public class LineProtocolDecoderTest {
+
+    @Test
+    public void decodesTheLineProtocolOfPoints() {
+        Point point = Point.measurement("cpu load,1")
+            .tag("host name", "a=b,c")
+            .tag("region", "eu")
+            .addField("count", 42L)
+            .addField("load", 0.5)
+            .addField("up", true)
+            .addField("note", "say \"hi\" \\ bye, now")
+            .time(1234567, TimeUnit.MILLISECONDS)
+            .build();
+        Point untimed = Point.measurement("mem").addField("free", -7L).build();
+
+        List<Point> points = LineProtocolDecoder.decode(
+            point.lineProtocol(TimeUnit.MILLISECONDS) + "\n" + untimed.lineProtocol() + "\n", TimeUnit.MILLISECONDS);
+
+        Assertions.assertEquals(2, points.size());
+        Assertions.assertEquals(point.lineProtocol(TimeUnit.MILLISECONDS),
+            points.get(0).lineProtocol(TimeUnit.MILLISECONDS));
+        Assertions.assertEquals(untimed.lineProtocol(), points.get(1).lineProtocol());
+    }
+
+    @Test
+    public void rejectsInvalidLineProtocol() {
+        Assertions.assertThrows(IllegalArgumentException.class,
+            () -> LineProtocolDecoder.decode("cpu value=\"open", TimeUnit.NANOSECONDS));
+        Assertions.assertThrows(IllegalArgumentException.class,
+            () -> LineProtocolDecoder.decode("cpu value=x1", TimeUnit.NANOSECONDS));
+    }
+}
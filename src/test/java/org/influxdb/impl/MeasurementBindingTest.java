@@ -0,0 +1,106 @@
+package org.influxdb.impl;
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.influxdb.InfluxDBMapperException;
+import org.influxdb.annotation.Column;
+import org.influxdb.annotation.Measurement;
+import org.influxdb.annotation.TimeColumn;
+import org.influxdb.impl.MeasurementBinding.Property;
+import org.influxdb.impl.MeasurementBinding.ValueType;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.platform.runner.JUnitPlatform;
+import org.junit.runner.RunWith;
+
+/**
+ * Test for the MeasurementBinding.
+ */
+@RunWith(JUnitPlatform.class)
+public class MeasurementBindingTest {
+
+    @Test
+    public void testBindingIsCachedPerClass() {
+        Assertions.assertSame(MeasurementBinding.of(Cpu.class), MeasurementBinding.of(Cpu.class));
+    }
+
+    @Test
+    public void testFieldsOfGenericSuperclassAreResolved() {
+        MeasurementBinding binding = MeasurementBinding.of(Cpu.class);
+
+        Assertions.assertEquals(4, binding.getProperties().size());
+        Property value = binding.getProperty("value");
+        Assertions.assertEquals(Double.class, value.getType());
+        Assertions.assertEquals(ValueType.DOUBLE, value.getValueType());
+        Assertions.assertTrue(binding.getProperty("host").isTag());
+        Assertions.assertEquals(TimeUnit.SECONDS, binding.getProperty("time").getTimeUnit());
+    }
+
+    @Test
+    public void testValuesAreSetAndGot() {
+        MeasurementBinding binding = MeasurementBinding.of(Cpu.class);
+        Cpu cpu = (Cpu) binding.newInstance();
+
+        binding.getProperty("time").setLong(cpu, 2000, TimeUnit.MILLISECONDS);
+        binding.getProperty("host").set(cpu, "a", TimeUnit.MILLISECONDS);
+        binding.getProperty("count").setDouble(cpu, 7.0, TimeUnit.MILLISECONDS);
+        binding.getProperty("value").setLong(cpu, 3, TimeUnit.MILLISECONDS);
+
+        Assertions.assertEquals(Instant.ofEpochSecond(2), cpu.time);
+        Assertions.assertEquals("a", cpu.host);
+        Assertions.assertEquals(7, cpu.count);
+        Assertions.assertEquals(3.0, cpu.value);
+        Assertions.assertEquals(7L, binding.getProperty("count").get(cpu));
+    }
+
+    @Test
+    public void testUnsupportedTypeFailsWhenAValueIsSet() {
+        MeasurementBinding binding = MeasurementBinding.of(Unsupported.class);
+        Unsupported unsupported = (Unsupported) binding.newInstance();
+
+        Assertions.assertEquals(ValueType.OTHER, binding.getProperty("date").getValueType());
+        Assertions.assertThrows(InfluxDBMapperException.class,
+            () -> binding.getProperty("date").set(unsupported, "2024", TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testMissingConstructorFailsOnNewInstance() {
+        MeasurementBinding binding = MeasurementBinding.of(NoDefaultConstructor.class);
+
+        Assertions.assertThrows(InfluxDBMapperException.class, binding::newInstance);
+    }
+
+    static class Sample<V> {
+        @Column(name = "value")
+        V value;
+    }
+
+    @Measurement(name = "cpu")
+    static class Cpu extends Sample<Double> {
+        @TimeColumn(timeUnit = TimeUnit.SECONDS)
+        @Column(name = "time")
+        private Instant time;
+        @Column(name = "host", tag = true)
+        private String host;
+        @Column(name = "count")
+        private long count;
+    }
+
+    @Measurement(name = "unsupported")
+    static class Unsupported {
+        @Column(name = "date")
+        private Date date;
+    }
+
+    @Measurement(name = "cpu")
+    static class NoDefaultConstructor {
+        @Column(name = "host")
+        private String host;
+
+        NoDefaultConstructor(final String host) {
+            this.host = host;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package org.influxdb.impl;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.platform.runner.JUnitPlatform;
+import org.junit.runner.RunWith;
+
+/**
+ * Test for the lock-free ring of the queued UDP sender.
+ */
+@RunWith(JUnitPlatform.class)
+public class MpscRingTest {
+
+    @Test
+    public void testOfferUntilFull() {
+        MpscRing<Integer> ring = new MpscRing<>(3);
+        Assertions.assertEquals(4, ring.capacity());
+        for (int i = 0; i < 4; i++) {
+            Assertions.assertTrue(ring.offer(i));
+        }
+        Assertions.assertFalse(ring.offer(4));
+        Assertions.assertEquals(4, ring.size());
+
+        Assertions.assertEquals(0, ring.poll().intValue());
+        Assertions.assertTrue(ring.offer(4));
+        for (int i = 1; i <= 4; i++) {
+            Assertions.assertEquals(i, ring.poll().intValue());
+        }
+        Assertions.assertNull(ring.poll());
+        Assertions.assertEquals(0, ring.size());
+    }
+
+    @Test
+    public void testProducersKeepTheirOrder() throws InterruptedException {
+        int producers = 4;
+        int perProducer = 100_000;
+        MpscRing<long[]> ring = new MpscRing<>(64);
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            long producer = p;
+            threads[p] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (long i = 0; i < perProducer; i++) {
+                    long[] element = {producer, i};
+                    while (!ring.offer(element)) {
+                        Thread.yield();
+                    }
+                }
+            });
+            threads[p].start();
+        }
+        start.countDown();
+
+        long[] next = new long[producers];
+        int received = 0;
+        while (received < producers * perProducer) {
+            long[] element = ring.poll();
+            if (element == null) {
+                Thread.yield();
+                continue;
+            }
+            Assertions.assertEquals(next[(int) element[0]]++, element[1]);
+            received++;
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assertions.assertNull(ring.poll());
+    }
+}
@@ -0,0 +1,156 @@
+package org.influxdb.impl;
+
+import org.influxdb.InfluxDB;
+import org.influxdb.dto.BatchPoints;
+import org.influxdb.dto.Point;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.platform.runner.JUnitPlatform;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+@RunWith(JUnitPlatform.class)
+@SuppressWarnings("unchecked")
+public class ParallelBatchWriterTest {
+
+  private static BatchPoints getBP(final String db) {
+    return BatchPoints.database(db).retentionPolicy("autogen")
+        .point(Point.measurement("x1").addField("x", 1).build()).build();
+  }
+
+  private static ParallelBatchWriter parallelWriter(final InfluxDB influxDB, final int workers,
+                                                    final BiConsumer<Iterable<Point>, Throwable> errorHandler) {
+    List<BatchWriter> writers = new ArrayList<>();
+    for (int i = 0; i < workers; i++) {
+      writers.add(new OneShotBatchWriter(influxDB));
+    }
+    return new ParallelBatchWriter(writers, Executors.defaultThreadFactory(), errorHandler);
+  }
+
+  /**
+   * Find a database name that maps to a different worker than the given batch.
+   */
+  private static BatchPoints getBPOnOtherWorker(final BatchPoints other, final int workers) {
+    int otherIndex = ParallelBatchWriter.workerIndex(other, workers);
+    for (int i = 0; ; i++) {
+      BatchPoints candidate = getBP("db" + i);
+      if (ParallelBatchWriter.workerIndex(candidate, workers) != otherIndex) {
+        return candidate;
+      }
+    }
+  }
+
+  @Test
+  public void testBatchesOfDifferentDestinationsAreWrittenConcurrently() throws Exception {
+    InfluxDB mockInfluxDB = mock(InfluxDBImpl.class);
+    CountDownLatch bothWriting = new CountDownLatch(2);
+    doAnswer(invocation -> {
+      bothWriting.countDown();
+      // blocks forever if the second batch is not written concurrently
+      Assertions.assertTrue(bothWriting.await(5, TimeUnit.SECONDS));
+      return null;
+    }).when(mockInfluxDB).write(any(BatchPoints.class));
+
+    ParallelBatchWriter writer = parallelWriter(mockInfluxDB, 2, mock(BiConsumer.class));
+    BatchPoints bp1 = getBP("db");
+    BatchPoints bp2 = getBPOnOtherWorker(bp1, 2);
+    writer.write(Arrays.asList(bp1, bp2));
+    writer.awaitPendingWrites();
+
+    Assertions.assertEquals(0, bothWriting.getCount());
+    writer.close();
+  }
+
+  @Test
+  public void testWriteOrderIsPreservedPerDestination() {
+    InfluxDB mockInfluxDB = mock(InfluxDBImpl.class);
+    List<BatchPoints> written = new CopyOnWriteArrayList<>();
+    doAnswer(invocation -> {
+      written.add(invocation.getArgument(0));
+      return null;
+    }).when(mockInfluxDB).write(any(BatchPoints.class));
+
+    ParallelBatchWriter writer = parallelWriter(mockInfluxDB, 4, mock(BiConsumer.class));
+    List<BatchPoints> expected = new ArrayList<>();
+    for (int i = 0; i < 50; i++) {
+      BatchPoints bp = getBP("db");
+      expected.add(bp);
+      writer.write(Collections.singletonList(bp));
+    }
+    writer.close();
+
+    Assertions.assertEquals(expected.size(), written.size());
+    for (int i = 0; i < expected.size(); i++) {
+      Assertions.assertSame(expected.get(i), written.get(i));
+    }
+  }
+
+  @Test
+  public void testInFlightWritesAreBounded() {
+    InfluxDB mockInfluxDB = mock(InfluxDBImpl.class);
+    AtomicInteger inFlight = new AtomicInteger();
+    AtomicInteger maxInFlight = new AtomicInteger();
+    doAnswer(invocation -> {
+      int current = inFlight.incrementAndGet();
+      maxInFlight.accumulateAndGet(current, Math::max);
+      Thread.sleep(5);
+      inFlight.decrementAndGet();
+      return null;
+    }).when(mockInfluxDB).write(any(BatchPoints.class));
+
+    ParallelBatchWriter writer = parallelWriter(mockInfluxDB, 3, mock(BiConsumer.class));
+    List<BatchPoints> batches = new ArrayList<>();
+    for (int i = 0; i < 30; i++) {
+      batches.add(getBP("db" + i));
+    }
+    writer.write(batches);
+    writer.close();
+
+    Assertions.assertTrue(maxInFlight.get() <= 3);
+  }
+
+  @Test
+  public void testFailedWriteIsReportedToExceptionHandler() {
+    InfluxDB mockInfluxDB = mock(InfluxDBImpl.class);
+    BiConsumer<Iterable<Point>, Throwable> errorHandler = mock(BiConsumer.class);
+    RuntimeException failure = new RuntimeException("boom");
+    doThrow(failure).when(mockInfluxDB).write(any(BatchPoints.class));
+
+    ParallelBatchWriter writer = parallelWriter(mockInfluxDB, 2, errorHandler);
+    BatchPoints bp = getBP("db");
+    writer.write(Collections.singletonList(bp));
+
+    verify(errorHandler, timeout(1000)).accept(eq(bp.getPoints()), eq(failure));
+    writer.close();
+  }
+
+  @Test
+  public void testClosingTwiceIsHarmless() {
+    InfluxDB mockInfluxDB = mock(InfluxDBImpl.class);
+    ParallelBatchWriter writer = parallelWriter(mockInfluxDB, 2, mock(BiConsumer.class));
+    writer.write(Collections.singletonList(getBP("db")));
+
+    writer.close();
+    writer.close();
+
+    verify(mockInfluxDB).write(any(BatchPoints.class));
+  }
+}
@@ -0,0 +1,158 @@
+package org.influxdb.impl;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.zip.GZIPInputStream;
+
+import org.influxdb.InfluxDB;
+import org.influxdb.WriteCodec;
+import org.influxdb.dto.BatchPoints;
+import org.influxdb.dto.Point;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.platform.runner.JUnitPlatform;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+
+import com.squareup.moshi.JsonAdapter;
+
+import okhttp3.OkHttpClient;
+import okhttp3.RequestBody;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import retrofit2.Call;
+import retrofit2.Response;
+
+/**
+ * Test for the batches compressed before their write, with the calls of the service mocked.
+ */
+@RunWith(JUnitPlatform.class)
+public class PrecompressedWriteTest {
+
+    private InfluxDBService influxDBService;
+    private Call<ResponseBody> call;
+    private InfluxDBImpl influxDB;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        this.influxDBService = mock(InfluxDBService.class);
+        this.call = mock(Call.class);
+        when(this.influxDBService.writePoints(any(), any(), any(), any(), any(), any(RequestBody.class)))
+            .thenReturn(this.call);
+        this.influxDB = new InfluxDBImpl("http://localhost:8086", "admin", "admin", new OkHttpClient.Builder(),
+            this.influxDBService, mock(JsonAdapter.class));
+        this.influxDB.enableGzip();
+    }
+
+    @AfterEach
+    public void cleanup() {
+        this.influxDB.close();
+    }
+
+    @Test
+    public void batchesAreCompressedOnTheExecutorAndWrittenInOrder() throws Exception {
+        when(this.call.execute()).thenReturn(Response.success(ResponseBody.create(null, "")));
+        AtomicInteger compressions = new AtomicInteger();
+        Executor executor = command -> {
+            compressions.incrementAndGet();
+            new Thread(command).start();
+        };
+        @SuppressWarnings("unchecked")
+        BiConsumer<Iterable<Point>, Throwable> errorHandler = mock(BiConsumer.class);
+        this.influxDB.setWriteCodec(WriteCodec.gzip(9));
+        RetryCapableBatchWriter writer = new RetryCapableBatchWriter(this.influxDB, errorHandler, 1000, 100,
+            () -> Long.MAX_VALUE, null, null, null, new BatchEncoder(this.influxDB::getWriteCodec, executor));
+        BatchPoints first = batch("db1", 0);
+        BatchPoints second = batch("db2", 1);
+        String firstLines = first.lineProtocol();
+        String secondLines = second.lineProtocol();
+
+        writer.write(Arrays.asList(first, second));
+
+        Assertions.assertEquals(2, compressions.get());
+        ArgumentCaptor<String> databases = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<RequestBody> bodies = ArgumentCaptor.forClass(RequestBody.class);
+        verify(this.influxDBService, times(2)).writePoints(databases.capture(), isNull(), eq("s"), eq("one"),
+            eq("gzip"), bodies.capture());
+        verify(this.influxDBService, never()).writePoints(any(), any(), any(), any(), any(RequestBody.class));
+        Assertions.assertEquals(Arrays.asList("db1", "db2"), databases.getAllValues());
+        Assertions.assertEquals(firstLines, gunzip(bodies.getAllValues().get(0)));
+        Assertions.assertEquals(secondLines, gunzip(bodies.getAllValues().get(1)));
+        Assertions.assertTrue(this.influxDB.writeCompressionRatio() > 1);
+    }
+
+    @Test
+    public void retriesSendTheCompressedBytesAgain() throws Exception {
+        when(this.call.execute()).thenThrow(new IOException("connection refused"))
+            .thenReturn(Response.success(ResponseBody.create(null, "")));
+        @SuppressWarnings("unchecked")
+        BiConsumer<Iterable<Point>, Throwable> errorHandler = mock(BiConsumer.class);
+        this.influxDB.setWriteCodec(WriteCodec.fast());
+        RetryCapableBatchWriter writer = new RetryCapableBatchWriter(this.influxDB, errorHandler, 1000, 100,
+            () -> Long.MAX_VALUE, null, null, null, new BatchEncoder(this.influxDB::getWriteCodec, null));
+        BatchPoints batchPoints = batch("db", 0);
+        String lineProtocol = batchPoints.lineProtocol();
+
+        writer.write(Arrays.asList(batchPoints));
+        Assertions.assertTrue(writer.isRetrying());
+        writer.write(Arrays.asList());
+        Assertions.assertFalse(writer.isRetrying());
+
+        ArgumentCaptor<RequestBody> bodies = ArgumentCaptor.forClass(RequestBody.class);
+        verify(this.influxDBService, times(2)).writePoints(eq("db"), isNull(), eq("s"), eq("one"), eq("gzip"),
+            bodies.capture());
+        List<RequestBody> written = bodies.getAllValues();
+        Assertions.assertArrayEquals(bytes(written.get(0)), bytes(written.get(1)));
+        Assertions.assertEquals(lineProtocol, gunzip(written.get(1)));
+        verify(errorHandler, never()).accept(any(), any());
+    }
+
+    @Test
+    public void otherImplementationsGetThePoints() {
+        InfluxDB other = mock(InfluxDB.class);
+        OneShotBatchWriter writer = new OneShotBatchWriter(other, new BatchEncoder(WriteCodec::gzip, null));
+        BatchPoints batchPoints = batch("db", 0);
+
+        writer.write(Arrays.asList(batchPoints));
+        verify(other).write(batchPoints);
+    }
+
+    private static BatchPoints batch(final String database, final int value) {
+        BatchPoints.Builder builder = BatchPoints.database(database).precision(TimeUnit.SECONDS);
+        for (int i = 0; i < 100; i++) {
+            builder.point(Point.measurement("cpu").tag("host", "server01").time(i, TimeUnit.SECONDS)
+                .addField("value", value).build());
+        }
+        return builder.build();
+    }
+
+    private static byte[] bytes(final RequestBody body) throws IOException {
+        Buffer buffer = new Buffer();
+        body.writeTo(buffer);
+        Assertions.assertEquals(body.contentLength(), buffer.size());
+        return buffer.readByteArray();
+    }
+
+    private static String gunzip(final RequestBody body) throws IOException {
+        Buffer decoded = new Buffer();
+        decoded.readFrom(new GZIPInputStream(new Buffer().write(bytes(body)).inputStream()));
+        return decoded.readUtf8();
+    }
+}
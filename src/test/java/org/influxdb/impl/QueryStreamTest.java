@@ -0,0 +1,279 @@
+package org.influxdb.impl;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.influxdb.InfluxDB;
+import org.influxdb.InfluxDBException;
+import org.influxdb.InfluxDBMapperException;
+import org.influxdb.annotation.Column;
+import org.influxdb.annotation.Measurement;
+import org.influxdb.dto.ColumnarSeries;
+import org.influxdb.dto.Query;
+import org.influxdb.dto.Row;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.platform.runner.JUnitPlatform;
+import org.junit.runner.RunWith;
+import org.msgpack.core.MessageBufferPacker;
+import org.msgpack.core.MessagePack;
+
+import com.squareup.moshi.JsonAdapter;
+
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.ForwardingSource;
+import okio.Okio;
+import retrofit2.Call;
+import retrofit2.Response;
+
+/**
+ * Test for the rows streamed from a query response, with the calls of the service mocked.
+ */
+@RunWith(JUnitPlatform.class)
+public class QueryStreamTest {
+
+    private static final String CHUNKED_RESPONSE =
+        "{\"results\":[{\"statement_id\":0,\"series\":[{\"name\":\"cpu\",\"tags\":{\"host\":\"a\"},"
+        + "\"columns\":[\"time\",\"idle\",\"busy\"],\"values\":[[\"2024-01-01T00:00:00Z\",90,true],"
+        + "[\"2024-01-01T00:00:01Z\",null,false]],\"partial\":true}],\"partial\":true}]}\n"
+        + "{\"results\":[{\"statement_id\":0,\"series\":[{\"name\":\"cpu\",\"tags\":{\"host\":\"b\"},"
+        + "\"columns\":[\"time\",\"idle\",\"busy\"],\"values\":[[\"2024-01-01T00:00:00Z\",80.5,true]]}]},"
+        + "{\"statement_id\":1}]}\n";
+
+    private InfluxDBService influxDBService;
+    private Call<ResponseBody> call;
+    private InfluxDB influxDB;
+    private AtomicBoolean closed;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        this.influxDBService = mock(InfluxDBService.class);
+        this.call = mock(Call.class);
+        this.closed = new AtomicBoolean();
+        when(this.influxDBService.query(eq("db"), any(String.class), anyInt())).thenReturn(this.call);
+        this.influxDB = new InfluxDBImpl("http://localhost:8086", "admin", "admin", new OkHttpClient.Builder(),
+            this.influxDBService, mock(JsonAdapter.class));
+    }
+
+    @AfterEach
+    public void cleanup() {
+        this.influxDB.close();
+    }
+
+    @Test
+    public void testRowsOfAllChunksAreStreamed() throws IOException {
+        when(this.call.execute()).thenReturn(Response.success(body(CHUNKED_RESPONSE)));
+
+        List<Row> rows;
+        try (Stream<Row> stream = this.influxDB.queryStream(new Query("SELECT * FROM cpu GROUP BY host", "db"),
+                                                            2)) {
+            rows = stream.collect(Collectors.toList());
+        }
+        Assertions.assertEquals(3, rows.size());
+        Row first = rows.get(0);
+        Assertions.assertEquals("cpu", first.getSeriesName());
+        Assertions.assertEquals(Collections.singletonMap("host", "a"), first.getTags());
+        Assertions.assertEquals(Arrays.asList("time", "idle", "busy"), first.getColumns());
+        Assertions.assertEquals(Arrays.asList("2024-01-01T00:00:00Z", 90.0, true), first.getValues());
+        Assertions.assertNull(rows.get(1).getValue("idle"));
+        Assertions.assertEquals(Collections.singletonMap("host", "b"), rows.get(2).getTags());
+        Assertions.assertEquals(80.5, rows.get(2).getValue("idle"));
+        Assertions.assertTrue(this.closed.get());
+    }
+
+    @Test
+    public void testClosingTheStreamClosesTheResponse() throws IOException {
+        when(this.call.execute()).thenReturn(Response.success(body(CHUNKED_RESPONSE)));
+
+        try (Stream<Row> stream = this.influxDB.queryStream(new Query("SELECT * FROM cpu", "db"))) {
+            Assertions.assertEquals("a", stream.findFirst().get().getTags().get("host"));
+            Assertions.assertFalse(this.closed.get());
+        }
+        Assertions.assertTrue(this.closed.get());
+    }
+
+    @Test
+    public void testErrorOfAStatementIsThrown() throws IOException {
+        when(this.call.execute()).thenReturn(Response.success(
+            body("{\"results\":[{\"statement_id\":0,\"error\":\"database not found: db\"}]}")));
+
+        try (Stream<Row> stream = this.influxDB.queryStream(new Query("SELECT * FROM cpu", "db"))) {
+            InfluxDBException e = Assertions.assertThrows(InfluxDBException.class, () -> stream.count());
+            Assertions.assertEquals("database not found: db", e.getMessage());
+        }
+        Assertions.assertTrue(this.closed.get());
+    }
+
+    @Test
+    public void testMessagePackRowsAreDecoded() throws IOException {
+        MessageBufferPacker packer = MessagePack.newDefaultBufferPacker();
+        for (int chunk = 0; chunk < 2; chunk++) {
+            packer.packMapHeader(1).packString("results").packArrayHeader(1);
+            packer.packMapHeader(2).packString("statement_id").packInt(0).packString("series").packArrayHeader(1);
+            packer.packMapHeader(3).packString("name").packString("cpu");
+            packer.packString("columns").packArrayHeader(2).packString("time").packString("idle");
+            packer.packString("values").packArrayHeader(1).packArrayHeader(2);
+            // epoch seconds and nanos of the time extension
+            packer.packExtensionTypeHeader((byte) 5, 12);
+            packer.writePayload(ByteBuffer.allocate(12).putLong(chunk).putInt(7).array());
+            packer.packLong(90 + chunk);
+        }
+
+        Iterator<Row> rows = new RowIterator(new MessagePackRowDecoder(
+            ResponseBody.create(MediaType.get("application/x-msgpack"), packer.toByteArray())));
+        Row first = rows.next();
+        Assertions.assertEquals("cpu", first.getSeriesName());
+        Assertions.assertEquals(Collections.emptyMap(), first.getTags());
+        Assertions.assertEquals(Arrays.asList(7L, 90L), first.getValues());
+        Assertions.assertEquals(Arrays.asList(1_000_000_007L, 91L), rows.next().getValues());
+        Assertions.assertFalse(rows.hasNext());
+    }
+
+    @Test
+    public void testChunksOfASeriesAreReadIntoColumns() throws IOException {
+        when(this.call.execute()).thenReturn(Response.success(body(CHUNKED_RESPONSE.replace("\"b\"", "\"a\""))));
+
+        List<ColumnarSeries> series = this.influxDB.queryColumnar(new Query("SELECT * FROM cpu GROUP BY host", "db"));
+        Assertions.assertEquals(1, series.size());
+        ColumnarSeries cpu = series.get(0);
+        Assertions.assertEquals(3, cpu.getRowCount());
+        Assertions.assertEquals(ColumnarSeries.ColumnType.DOUBLE, cpu.getColumnType(1));
+        ColumnarSeries.Cursor cursor = cpu.cursor();
+        cursor.next();
+        Assertions.assertEquals(1_704_067_200_000_000_000L, cursor.getTime());
+        Assertions.assertEquals(90.0, cursor.getDouble(cpu.getColumnIndex("idle")));
+        Assertions.assertTrue(cursor.getBoolean(cpu.getColumnIndex("busy")));
+        cursor.next();
+        Assertions.assertTrue(cursor.isNull(1));
+        cursor.next();
+        Assertions.assertEquals(80.5, cursor.getDouble(1));
+        Assertions.assertTrue(this.closed.get());
+    }
+
+    @Test
+    public void testSeriesOfEveryStatementAreReadIntoColumns() throws IOException {
+        when(this.call.execute()).thenReturn(Response.success(body(CHUNKED_RESPONSE)));
+
+        List<ColumnarSeries> series = this.influxDB.queryColumnar(new Query("SELECT * FROM cpu GROUP BY host", "db"));
+        Assertions.assertEquals(2, series.size());
+        Assertions.assertEquals(2, series.get(0).getRowCount());
+        Assertions.assertEquals("a", series.get(0).getTags().get("host"));
+        Assertions.assertEquals(1, series.get(1).getRowCount());
+        Assertions.assertEquals("b", series.get(1).getTags().get("host"));
+    }
+
+    @Test
+    public void testMessagePackRowsAreReadIntoColumns() throws IOException {
+        MessageBufferPacker packer = MessagePack.newDefaultBufferPacker();
+        packer.packMapHeader(1).packString("results").packArrayHeader(1);
+        packer.packMapHeader(1).packString("series").packArrayHeader(1);
+        packer.packMapHeader(2).packString("columns").packArrayHeader(2).packString("time").packString("count");
+        packer.packString("values").packArrayHeader(2);
+        for (int row = 0; row < 2; row++) {
+            packer.packArrayHeader(2).packExtensionTypeHeader((byte) 5, 12);
+            packer.writePayload(ByteBuffer.allocate(12).putLong(row).putInt(0).array());
+            packer.packLong(Long.MAX_VALUE - row);
+        }
+
+        List<ColumnarSeries> series = new ColumnarSeriesCollector(new MessagePackRowDecoder(
+            ResponseBody.create(MediaType.get("application/x-msgpack"), packer.toByteArray()))).collect();
+        ColumnarSeries.Cursor cursor = series.get(0).cursor();
+        Assertions.assertEquals(ColumnarSeries.ColumnType.LONG, series.get(0).getColumnType(1));
+        cursor.next();
+        cursor.next();
+        Assertions.assertEquals(1_000_000_000L, cursor.getTime());
+        Assertions.assertEquals(Long.MAX_VALUE - 1, cursor.getLong(1));
+    }
+
+    @Test
+    public void testRowsAreMappedOntoMeasurementObjects() throws IOException {
+        when(this.call.execute()).thenReturn(Response.success(body(CHUNKED_RESPONSE)));
+
+        List<Cpu> cpus = new InfluxDBMapper(this.influxDB).query(new Query("SELECT * FROM cpu GROUP BY host", "db"),
+                                                                 Cpu.class);
+        Assertions.assertEquals(3, cpus.size());
+        Assertions.assertEquals(Instant.parse("2024-01-01T00:00:00Z"), cpus.get(0).time);
+        Assertions.assertEquals("a", cpus.get(0).host);
+        Assertions.assertEquals(90, cpus.get(0).idle);
+        Assertions.assertEquals(Boolean.TRUE, cpus.get(0).busy);
+        Assertions.assertEquals(0, cpus.get(1).idle);
+        Assertions.assertEquals(Boolean.FALSE, cpus.get(1).busy);
+        Assertions.assertEquals("b", cpus.get(2).host);
+        Assertions.assertEquals(80, cpus.get(2).idle);
+        Assertions.assertTrue(this.closed.get());
+    }
+
+    @Test
+    public void testErrorOfAStatementIsThrownByTheMapper() throws IOException {
+        when(this.call.execute()).thenReturn(Response.success(
+            body("{\"results\":[{\"statement_id\":0,\"error\":\"database not found: db\"}]}")));
+
+        InfluxDBMapper mapper = new InfluxDBMapper(this.influxDB);
+        Assertions.assertThrows(InfluxDBMapperException.class,
+            () -> mapper.query(new Query("SELECT * FROM cpu", "db"), Cpu.class));
+        Assertions.assertTrue(this.closed.get());
+    }
+
+    @Test
+    public void testMessagePackTimesAreMappedAsNanoseconds() throws IOException {
+        MessageBufferPacker packer = MessagePack.newDefaultBufferPacker();
+        packer.packMapHeader(1).packString("results").packArrayHeader(1);
+        packer.packMapHeader(1).packString("series").packArrayHeader(1);
+        packer.packMapHeader(3).packString("name").packString("cpu");
+        packer.packString("columns").packArrayHeader(2).packString("time").packString("idle");
+        packer.packString("values").packArrayHeader(1).packArrayHeader(2).packExtensionTypeHeader((byte) 5, 12);
+        packer.writePayload(ByteBuffer.allocate(12).putLong(1).putInt(2_000_000).array());
+        packer.packLong(42);
+
+        List<Cpu> cpus = new PojoRowCollector<>(new MessagePackRowDecoder(
+            ResponseBody.create(MediaType.get("application/x-msgpack"), packer.toByteArray())), Cpu.class, "cpu",
+            TimeUnit.NANOSECONDS).collect();
+        Assertions.assertEquals(Instant.ofEpochMilli(1002), cpus.get(0).time);
+        Assertions.assertEquals(42, cpus.get(0).idle);
+    }
+
+    @Measurement(name = "cpu")
+    public static class Cpu {
+        @Column(name = "time")
+        private Instant time;
+        @Column(name = "host", tag = true)
+        private String host;
+        @Column(name = "idle")
+        private long idle;
+        @Column(name = "busy")
+        private Boolean busy;
+    }
+
+    private ResponseBody body(final String json) {
+        Buffer buffer = new Buffer().writeUtf8(json);
+        ForwardingSource source = new ForwardingSource(buffer) {
+            @Override
+            public void close() throws IOException {
+                QueryStreamTest.this.closed.set(true);
+                super.close();
+            }
+        };
+        return ResponseBody.create(MediaType.get("application/json"), -1, Okio.buffer(source));
+    }
+}
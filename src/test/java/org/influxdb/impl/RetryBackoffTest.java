@@ -0,0 +1,47 @@
+package org.influxdb.impl;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.platform.runner.JUnitPlatform;
+import org.junit.runner.RunWith;
+
+/**
+ * Test for the backoff of the retries.
+ */
+@RunWith(JUnitPlatform.class)
+public class RetryBackoffTest {
+
+    @Test
+    public void delayDoublesUpToTheMaximum() {
+        RetryBackoff backoff = new RetryBackoff(100, 700, () -> 1.0);
+
+        Assertions.assertEquals(100, backoff.failed());
+        Assertions.assertEquals(200, backoff.failed());
+        Assertions.assertEquals(400, backoff.failed());
+        Assertions.assertEquals(700, backoff.failed());
+        Assertions.assertEquals(700, backoff.failed());
+        Assertions.assertEquals(5, backoff.getFailures());
+    }
+
+    @Test
+    public void halfOfTheDelayIsRandom() {
+        RetryBackoff backoff = new RetryBackoff(100, 1000, () -> 0.0);
+
+        Assertions.assertEquals(50, backoff.failed());
+        Assertions.assertEquals(100, backoff.failed());
+
+        backoff = new RetryBackoff(100, 1000, () -> 0.5);
+        Assertions.assertEquals(75, backoff.failed());
+    }
+
+    @Test
+    public void successResetsTheDelay() {
+        RetryBackoff backoff = new RetryBackoff(100, 1000, () -> 1.0);
+        backoff.failed();
+        backoff.failed();
+
+        backoff.succeeded();
+        Assertions.assertEquals(0, backoff.getFailures());
+        Assertions.assertEquals(100, backoff.failed());
+    }
+}
@@ -1,10 +1,10 @@
 package org.influxdb.impl;
 
-import org.influxdb.InfluxDB;
 import org.influxdb.InfluxDBException;
 import org.influxdb.TestAnswer;
 import org.influxdb.dto.BatchPoints;
 import org.influxdb.dto.Point;
+import org.influxdb.dto.PointPool;
 import org.junit.Assert;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
@@ -12,9 +12,12 @@ import org.junit.platform.runner.JUnitPlatform;
 import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
+import org.mockito.InOrder;
 import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 import java.text.MessageFormat;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedList;
@@ -39,7 +42,7 @@ public class RetryCapableBatchWriterTest {
 
   @Test
   public void test() {
-    InfluxDB mockInfluxDB = mock(InfluxDBImpl.class);
+    InfluxDBImpl mockInfluxDB = mock(InfluxDBImpl.class);
     BiConsumer errorHandler = mock(BiConsumer.class);
     RetryCapableBatchWriter rw = new RetryCapableBatchWriter(mockInfluxDB, errorHandler,
             150, 100);
@@ -55,6 +58,12 @@ public class RetryCapableBatchWriterTest {
     Mockito.doThrow(recoverable).when(mockInfluxDB).write(bp1);
     Mockito.doThrow(recoverable).when(mockInfluxDB).write(bp2);
     Mockito.doThrow(recoverable).when(mockInfluxDB).write(bp3);
+    // the retried batches are written as encoded line protocol, record their size when written
+    List<Integer> encodedWrites = new ArrayList<>();
+    Mockito.doAnswer(invocation -> {
+      encodedWrites.add(invocation.<EncodedBatch>getArgument(0).getPoints());
+      throw recoverable;
+    }).when(mockInfluxDB).write(any(EncodedBatch.class));
     // first one will fail with non-recoverable error
     rw.write(Collections.singletonList(bp0));
     // second one will fail with recoverable error
@@ -65,7 +74,7 @@ public class RetryCapableBatchWriterTest {
     rw.write(Collections.singletonList(bp3));
 
     ArgumentCaptor<BatchPoints> captor = ArgumentCaptor.forClass(BatchPoints.class);
-    verify(mockInfluxDB, times(4)).write(captor.capture());
+    verify(mockInfluxDB, times(2)).write(captor.capture());
     final List<BatchPoints> capturedArgument1 = captor.getAllValues();
     for (BatchPoints b : capturedArgument1) {
       System.out.println("batchSize written " + b.getPoints().size());
@@ -73,8 +82,7 @@ public class RetryCapableBatchWriterTest {
 
     Assert.assertEquals(capturedArgument1.get(0).getPoints().size(), 5);
     Assert.assertEquals(capturedArgument1.get(1).getPoints().size(), 90);
-    Assert.assertEquals(capturedArgument1.get(2).getPoints().size(), 90);
-    Assert.assertEquals(capturedArgument1.get(3).getPoints().size(), 98);
+    Assert.assertEquals(Arrays.asList(90, 90), encodedWrites);
 
     // error handler called twice; once for first unrecoverable write, se
     verify(errorHandler, times(2)).accept(any(),any());
@@ -83,21 +91,19 @@ public class RetryCapableBatchWriterTest {
     Mockito.reset(mockInfluxDB);
     rw.write(Collections.singletonList(bp4));
 
+    ArgumentCaptor<EncodedBatch> encodedCaptor = ArgumentCaptor.forClass(EncodedBatch.class);
+    verify(mockInfluxDB, times(1)).write(encodedCaptor.capture());
+    Assert.assertEquals(encodedCaptor.getValue().getPoints(), 98);
     ArgumentCaptor<BatchPoints> captor2 = ArgumentCaptor.forClass(BatchPoints.class);
-    verify(mockInfluxDB, times(2)).write(captor2.capture());
-    final List<BatchPoints> capturedArgument2 = captor2.getAllValues();
-    for (BatchPoints b : capturedArgument2) {
-      System.out.println("batchSize written " + b.getPoints().size());
-    }
-    Assert.assertEquals(capturedArgument2.get(0).getPoints().size(), 98);
-    Assert.assertEquals(capturedArgument2.get(1).getPoints().size(), 100);
+    verify(mockInfluxDB, times(1)).write(captor2.capture());
+    Assert.assertEquals(captor2.getValue().getPoints().size(), 100);
 
   }
   
   @Test
   public void testAllNonRecoverableExceptions() {
     
-    InfluxDB mockInfluxDB = mock(InfluxDBImpl.class);
+    InfluxDBImpl mockInfluxDB = mock(InfluxDBImpl.class);
     BiConsumer errorHandler = mock(BiConsumer.class);
     RetryCapableBatchWriter rw = new RetryCapableBatchWriter(mockInfluxDB, errorHandler,
             150, 100);
@@ -134,48 +140,49 @@ public class RetryCapableBatchWriterTest {
   
   @Test
   public void testClosingWriter() {
-    InfluxDB mockInfluxDB = mock(InfluxDB.class);
+    InfluxDBImpl mockInfluxDB = mock(InfluxDBImpl.class);
     BiConsumer<Iterable<Point>, Throwable> errorHandler = mock(BiConsumer.class);
 
     BatchPoints bp5 = getBP(5);
     BatchPoints bp6 = getBP(6);
     BatchPoints bp90 = getBP(90);
-    
-    doAnswer(new TestAnswer() {
-      int i = 0;
-      @Override
-      protected void check(InvocationOnMock invocation) {
-        //first 4 calls
-        if (i++ < 4) {
-          throw InfluxDBException.buildExceptionForErrorState("cache-max-memory-size exceeded 104/1400"); 
-        }
-        return;
+
+    int[] calls = new int[1];
+    Answer<Void> failFirstFour = invocation -> {
+      //first 4 calls
+      if (calls[0]++ < 4) {
+        throw InfluxDBException.buildExceptionForErrorState("cache-max-memory-size exceeded 104/1400");
       }
-    }).when(mockInfluxDB).write(any(BatchPoints.class));
-    
+      return null;
+    };
+    doAnswer(failFirstFour).when(mockInfluxDB).write(any(BatchPoints.class));
+    doAnswer(failFirstFour).when(mockInfluxDB).write(any(EncodedBatch.class));
+
     RetryCapableBatchWriter rw = new RetryCapableBatchWriter(mockInfluxDB, errorHandler,
         150, 100);
-    
+
     rw.write(Collections.singletonList(bp5));
     rw.write(Collections.singletonList(bp6));
     rw.write(Collections.singletonList(bp90));
     //recoverable exception -> never errorHandler
     verify(errorHandler, never()).accept(any(), any());
-    verify(mockInfluxDB, times(3)).write(any(BatchPoints.class));
-    
+    verify(mockInfluxDB, times(1)).write(any(BatchPoints.class));
+    verify(mockInfluxDB, times(2)).write(any(EncodedBatch.class));
+
     rw.close();
-    
-    ArgumentCaptor<BatchPoints> captor4Write = ArgumentCaptor.forClass(BatchPoints.class);
+
+    ArgumentCaptor<EncodedBatch> captor4Write = ArgumentCaptor.forClass(EncodedBatch.class);
     ArgumentCaptor<List<Point>> captor4Accept = ArgumentCaptor.forClass(List.class);
     verify(errorHandler, times(1)).accept(captor4Accept.capture(), any());
-    verify(mockInfluxDB, times(5)).write(captor4Write.capture());
-    
+    verify(mockInfluxDB, times(4)).write(captor4Write.capture());
+
     //bp5 and bp6 were merged and writing of the merged batch points on closing should be failed
     Assertions.assertEquals(11, captor4Accept.getValue().size());
+    Assertions.assertEquals(11, captor4Write.getAllValues().get(2).getPoints());
     //bp90 was written because no more exception thrown
-    Assertions.assertEquals(90, captor4Write.getAllValues().get(4).getPoints().size());
+    Assertions.assertEquals(90, captor4Write.getAllValues().get(3).getPoints());
   }
-  
+
   @Test
   public void testRetryingKeepChronologicalOrder() {
     
@@ -201,33 +208,26 @@ public class RetryCapableBatchWriterTest {
     }
     BatchPoints bp2 = b.build();
     
-    InfluxDB mockInfluxDB = mock(InfluxDB.class);
+    String lineProtocol1 = bp1.lineProtocol();
+    InfluxDBImpl mockInfluxDB = mock(InfluxDBImpl.class);
     BiConsumer<Iterable<Point>, Throwable> errorHandler = mock(BiConsumer.class);
     RetryCapableBatchWriter rw = new RetryCapableBatchWriter(mockInfluxDB, errorHandler,
         450, 150);
-    doAnswer(new TestAnswer() {
-      int i = 0;
-      @Override
-      protected void check(InvocationOnMock invocation) {
-        if (i++ < 1) {
-          throw InfluxDBException.buildExceptionForErrorState("cache-max-memory-size exceeded 104/1400"); 
-        }
-        return;
-      }
-    }).when(mockInfluxDB).write(any(BatchPoints.class));
-    
+    doThrow(InfluxDBException.buildExceptionForErrorState("cache-max-memory-size exceeded 104/1400"))
+        .doNothing().when(mockInfluxDB).write(any(BatchPoints.class));
+
     rw.write(Collections.singletonList(bp1));
     rw.write(Collections.singletonList(bp2));
-    
-    ArgumentCaptor<BatchPoints> captor4Write = ArgumentCaptor.forClass(BatchPoints.class);
-    verify(mockInfluxDB, times(3)).write(captor4Write.capture());
-    
+
+    InOrder inOrder = inOrder(mockInfluxDB);
+    ArgumentCaptor<EncodedBatch> captor4Retry = ArgumentCaptor.forClass(EncodedBatch.class);
     //bp1 written but failed because of recoverable cache-max-memory-size error
-    Assertions.assertEquals(bp1, captor4Write.getAllValues().get(0));
-    //bp1 rewritten on writing of bp2 
-    Assertions.assertEquals(bp1, captor4Write.getAllValues().get(1));
+    inOrder.verify(mockInfluxDB).write(bp1);
+    //bp1 rewritten on writing of bp2
+    inOrder.verify(mockInfluxDB).write(captor4Retry.capture());
     //bp2 written
-    Assertions.assertEquals(bp2, captor4Write.getAllValues().get(2));
+    inOrder.verify(mockInfluxDB).write(bp2);
+    Assertions.assertEquals(lineProtocol1, captor4Retry.getValue().getLineProtocol());
   }
 
   @Test
@@ -239,7 +239,7 @@ public class RetryCapableBatchWriterTest {
 
   @Test
   public void testBufferCountConsistency() throws Exception {
-    InfluxDB mockInfluxDB = mock(InfluxDBImpl.class);
+    InfluxDBImpl mockInfluxDB = mock(InfluxDBImpl.class);
     BiConsumer errorHandler = mock(BiConsumer.class);
     int MAX_BUFFER_CAPACITY = 3000;
     RetryCapableBatchWriter rw = new RetryCapableBatchWriter(mockInfluxDB, errorHandler,
@@ -268,6 +268,7 @@ public class RetryCapableBatchWriterTest {
         BatchPoints bps = getBP(count);
         if (exception != null) {
             Mockito.doThrow(exception).when(mockInfluxDB).write(bps);
+            Mockito.doThrow(exception).when(mockInfluxDB).write(any(EncodedBatch.class));
         }
         else {
             Mockito.reset(mockInfluxDB);
@@ -276,10 +277,10 @@ public class RetryCapableBatchWriterTest {
 
         // count actual number of points in batchQueue
         @SuppressWarnings("unchecked")
-        LinkedList<BatchPoints> batchQueue = (LinkedList<BatchPoints>)localBatchQueue.get(rw);
+        LinkedList<EncodedBatch> batchQueue = (LinkedList<EncodedBatch>)localBatchQueue.get(rw);
         int sum = 0;
-        for (BatchPoints b : batchQueue) {
-          sum += b.getPoints().size();
+        for (EncodedBatch b : batchQueue) {
+          sum += b.getPoints();
         }
 
         // compare with value of usedRetryBufferCapacity
@@ -293,7 +294,101 @@ public class RetryCapableBatchWriterTest {
     }
   }
 
+  @Test
+  public void testBackoffBuffersWhileCircuitIsOpen() throws Exception {
+    InfluxDBImpl mockInfluxDB = mock(InfluxDBImpl.class);
+    BiConsumer errorHandler = mock(BiConsumer.class);
+    RetryCapableBatchWriter rw = new RetryCapableBatchWriter(mockInfluxDB, errorHandler, 500, 100,
+        () -> Long.MAX_VALUE, null, new RetryBackoff(10, 100, () -> 0.0), Thread::new);
+    BatchPoints bp1 = getBP(60);
+    BatchPoints bp2 = getBP(70);
+    BatchPoints bp3 = getBP(80);
+    String lineProtocol1 = bp1.lineProtocol();
+    String lineProtocol2 = bp2.lineProtocol();
+
+    Exception recoverable = InfluxDBException.buildExceptionForErrorState("{ \"error\": \"cache-max-memory-size exceeded 104/1400\" }");
+    Mockito.doThrow(recoverable).when(mockInfluxDB).write(bp1);
+    List<String> retried = Collections.synchronizedList(new ArrayList<>());
+    Mockito.doThrow(recoverable).doAnswer(invocation -> {
+      retried.add(invocation.<EncodedBatch>getArgument(0).getLineProtocol());
+      return null;
+    }).when(mockInfluxDB).write(any(EncodedBatch.class));
+
+    rw.write(Collections.singletonList(bp1));
+    // the circuit is open, bp2 is buffered without a write attempt
+    rw.write(Collections.singletonList(bp2));
+    verify(mockInfluxDB, never()).write(bp2);
+
+    // the retry thread writes the buffered batches in order once a retry succeeds
+    verify(mockInfluxDB, timeout(5000).times(3)).write(any(EncodedBatch.class));
+    Assertions.assertEquals(Arrays.asList(lineProtocol1, lineProtocol2), retried);
+    long deadline = System.currentTimeMillis() + 5000;
+    while (rw.isRetrying() && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    Assertions.assertFalse(rw.isRetrying());
+
+    // the circuit is closed again, batches are written inline
+    rw.write(Collections.singletonList(bp3));
+    verify(mockInfluxDB).write(bp3);
+    rw.close();
+    verify(errorHandler, never()).accept(any(), any());
+  }
+
+  @Test
+  public void testBackoffClosingWriterStopsAfterFailure() {
+    InfluxDBImpl mockInfluxDB = mock(InfluxDBImpl.class);
+    BiConsumer errorHandler = mock(BiConsumer.class);
+    RetryCapableBatchWriter rw = new RetryCapableBatchWriter(mockInfluxDB, errorHandler, 500, 100,
+        () -> Long.MAX_VALUE, null, new RetryBackoff(60000, 60000), Thread::new);
+
+    Exception recoverable = InfluxDBException.buildExceptionForErrorState("{ \"error\": \"cache-max-memory-size exceeded 104/1400\" }");
+    Mockito.doThrow(recoverable).when(mockInfluxDB).write(any(BatchPoints.class));
+    Mockito.doThrow(recoverable).when(mockInfluxDB).write(any(EncodedBatch.class));
+
+    rw.write(Collections.singletonList(getBP(60)));
+    rw.write(Collections.singletonList(getBP(70)));
+    verify(mockInfluxDB, times(1)).write(any(BatchPoints.class));
+
+    // one last attempt on close, the second batch is not written after it failed
+    rw.close();
+    verify(mockInfluxDB, times(1)).write(any(EncodedBatch.class));
+    ArgumentCaptor<List<Point>> captor4Accept = ArgumentCaptor.forClass(List.class);
+    verify(errorHandler, times(2)).accept(captor4Accept.capture(), eq(recoverable));
+    Assertions.assertEquals(60, captor4Accept.getAllValues().get(0).size());
+    Assertions.assertEquals(70, captor4Accept.getAllValues().get(1).size());
+  }
+
   private static String createErrorBody(String errorMessage) {
     return MessageFormat.format("'{' \"error\": \"{0}\" '}'", errorMessage);
   }
+
+  @Test
+  public void testPooledPointsAreReleasedOnceWritten() {
+    InfluxDBImpl mockInfluxDB = mock(InfluxDBImpl.class);
+    BiConsumer errorHandler = mock(BiConsumer.class);
+    RetryCapableBatchWriter rw = new RetryCapableBatchWriter(mockInfluxDB, errorHandler, 150, 100);
+    PointPool pool = new PointPool();
+    Point.Builder builder = pool.builder("x1");
+    BatchPoints written = BatchPoints.database("d1").points(builder.addField("x", 1).build()).build();
+    BatchPoints retried = BatchPoints.database("d1").points(builder.reset("x1").addField("x", 2).build()).build();
+    BatchPoints failed = BatchPoints.database("d1").points(builder.reset("x1").addField("x", 3).build()).build();
+
+    Exception recoverable = InfluxDBException.buildExceptionForErrorState("{ \"error\": \"cache-max-memory-size exceeded 104/1400\" }");
+    Exception nonRecoverable = InfluxDBException.buildExceptionForErrorState("{ \"error\": \"database not found: cvfdgf\" }");
+    Mockito.doThrow(recoverable).doNothing().when(mockInfluxDB).write(retried);
+    Mockito.doThrow(nonRecoverable).when(mockInfluxDB).write(failed);
+
+    rw.write(Collections.singletonList(written));
+    Assertions.assertEquals(1, pool.size());
+
+    // the points of the retried batch are released once it is encoded for the retry
+    rw.write(Collections.singletonList(retried));
+    Assertions.assertEquals(2, pool.size());
+
+    // the retried batch is written now, the failed one goes to the error handler and is not reused
+    rw.write(Collections.singletonList(failed));
+    Assertions.assertEquals(2, pool.size());
+    verify(errorHandler).accept(eq(failed.getPoints()), eq(nonRecoverable));
+  }
 }
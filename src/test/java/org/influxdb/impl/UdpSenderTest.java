@@ -0,0 +1,182 @@
+package org.influxdb.impl;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.influxdb.UdpOptions;
+import org.influxdb.UdpQueueDepth;
+import org.influxdb.dto.Point;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.platform.runner.JUnitPlatform;
+import org.junit.runner.RunWith;
+
+/**
+ * Test for the packing of lines into datagrams.
+ */
+@RunWith(JUnitPlatform.class)
+public class UdpSenderTest {
+
+    private static final int PAYLOAD_LIMIT = 64;
+
+    private DatagramSocket receiver;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        this.receiver = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        this.receiver.close();
+    }
+
+    @Test
+    public void testLinesArePackedUnderPayloadLimit() throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            lines.add("cpu,host=server" + i + " idle=" + i + "i");
+        }
+        try (UdpSender sender = sender(PAYLOAD_LIMIT)) {
+            sender.send(lines);
+        }
+
+        List<String> datagrams = receive();
+        Assertions.assertTrue(datagrams.size() < lines.size());
+        List<String> received = new ArrayList<>();
+        for (String datagram : datagrams) {
+            Assertions.assertTrue(datagram.getBytes(StandardCharsets.UTF_8).length <= PAYLOAD_LIMIT);
+            received.addAll(Arrays.asList(datagram.split("\n")));
+        }
+        Assertions.assertEquals(lines, received);
+    }
+
+    @Test
+    public void testRecordsAreSplitAtLineBoundaries() throws IOException {
+        String first = "cpu,host=a idle=1i,user=2i,system=3i,iowait=4i";
+        String second = "cpu,host=b idle=5i,user=6i,system=7i,iowait=8i";
+        try (UdpSender sender = sender(PAYLOAD_LIMIT)) {
+            sender.send(first + "\n" + second + "\n");
+        }
+
+        Assertions.assertEquals(Arrays.asList(first, second), receive());
+    }
+
+    @Test
+    public void testLargerLineIsSentOnItsOwn() throws IOException {
+        StringBuilder large = new StringBuilder("cpu value=\"");
+        while (large.length() < 2 * PAYLOAD_LIMIT) {
+            large.append("x");
+        }
+        large.append("\"");
+        try (UdpSender sender = sender(PAYLOAD_LIMIT)) {
+            sender.send(Arrays.asList("cpu value=1i", large.toString(), "cpu value=2i"));
+        }
+
+        Assertions.assertEquals(Arrays.asList("cpu value=1i", large.toString(), "cpu value=2i"), receive());
+    }
+
+    @Test
+    public void testPointsArePackedUnderPayloadLimit() throws IOException {
+        List<Point> points = new ArrayList<>();
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            Point point = Point.measurement("cpu").tag("host", "server" + i).addField("idle", i).build();
+            points.add(point);
+            lines.add(point.lineProtocol());
+        }
+        StringBuilder large = new StringBuilder();
+        while (large.length() < 2 * PAYLOAD_LIMIT) {
+            large.append("x");
+        }
+        Point largePoint = Point.measurement("cpu").addField("value", large.toString()).build();
+        points.add(largePoint);
+        lines.add(largePoint.lineProtocol());
+        try (UdpSender sender = sender(PAYLOAD_LIMIT)) {
+            sender.sendPoints(points);
+        }
+
+        List<String> datagrams = receive();
+        Assertions.assertTrue(datagrams.size() < lines.size());
+        List<String> received = new ArrayList<>();
+        for (String datagram : datagrams) {
+            received.addAll(Arrays.asList(datagram.split("\n")));
+        }
+        Assertions.assertEquals(lines, received);
+    }
+
+    @Test
+    public void testQueuedSenderSendsFromItsOwnThread() throws IOException, InterruptedException {
+        List<UdpQueueDepth> depths = new CopyOnWriteArrayList<>();
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            lines.add("cpu value=" + i + "i");
+        }
+        QueuedUdpSender sender = new QueuedUdpSender(InetAddress.getLoopbackAddress().getHostAddress(),
+            this.receiver.getLocalPort(), PAYLOAD_LIMIT, 16, depths::add);
+        try {
+            sender.send(lines.subList(0, 5));
+            for (String line : lines.subList(5, 10)) {
+                sender.send(line);
+            }
+            List<String> received = new ArrayList<>();
+            for (String datagram : receive()) {
+                received.addAll(Arrays.asList(datagram.split("\n")));
+            }
+            Assertions.assertEquals(lines, received);
+            Assertions.assertFalse(depths.isEmpty());
+            Assertions.assertEquals(this.receiver.getLocalPort(), depths.get(0).getUdpPort());
+            Assertions.assertEquals(0, depths.get(depths.size() - 1).getDropped());
+        } finally {
+            sender.close();
+        }
+
+        // records written after close are dropped instead of blocking
+        sender.send("cpu value=10i");
+        Assertions.assertTrue(receive().isEmpty());
+    }
+
+    @Test
+    public void testQueueCapacityIsValidated() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> UdpOptions.DEFAULTS.queueCapacity(-1));
+        Assertions.assertEquals(0, UdpOptions.DEFAULTS.getQueueCapacity());
+    }
+
+    @Test
+    public void testPayloadLimitIsValidated() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> UdpOptions.DEFAULTS.payloadLimit(0));
+        Assertions.assertThrows(IllegalArgumentException.class,
+            () -> UdpOptions.DEFAULTS.payloadLimit(UdpOptions.MAX_PAYLOAD_LIMIT + 1));
+        Assertions.assertEquals(UdpOptions.DEFAULT_PAYLOAD_LIMIT, UdpOptions.DEFAULTS.getPayloadLimit());
+    }
+
+    private UdpSender sender(final int payloadLimit) throws IOException {
+        return new UdpSender(InetAddress.getLoopbackAddress().getHostAddress(), this.receiver.getLocalPort(),
+            payloadLimit);
+    }
+
+    private List<String> receive() throws IOException {
+        List<String> datagrams = new ArrayList<>();
+        byte[] buffer = new byte[UdpOptions.MAX_PAYLOAD_LIMIT];
+        this.receiver.setSoTimeout(200);
+        try {
+            while (true) {
+                DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+                this.receiver.receive(packet);
+                datagrams.add(new String(packet.getData(), 0, packet.getLength(), StandardCharsets.UTF_8));
+            }
+        } catch (SocketTimeoutException e) {
+            return datagrams;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package org.influxdb.impl;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.influxdb.InfluxDB;
+import org.influxdb.InfluxDB.ConsistencyLevel;
+import org.influxdb.InfluxDBException;
+import org.influxdb.InfluxDBIOException;
+import org.influxdb.dto.BatchPoints;
+import org.influxdb.dto.Point;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.platform.runner.JUnitPlatform;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+
+import com.squareup.moshi.JsonAdapter;
+
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.RequestBody;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * Test for the non-blocking writes, with the calls of the service mocked.
+ */
+@RunWith(JUnitPlatform.class)
+public class WriteAsyncTest {
+
+    private InfluxDBService influxDBService;
+    private Call<ResponseBody> call;
+    private InfluxDB influxDB;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        this.influxDBService = mock(InfluxDBService.class);
+        this.call = mock(Call.class);
+        when(this.influxDBService.writePoints(any(), any(), any(), any(), any(RequestBody.class)))
+            .thenReturn(this.call);
+        this.influxDB = new InfluxDBImpl("http://localhost:8086", "admin", "admin", new OkHttpClient.Builder(),
+            this.influxDBService, mock(JsonAdapter.class));
+    }
+
+    @AfterEach
+    public void cleanup() {
+        this.influxDB.close();
+    }
+
+    @Test
+    public void testWriteAsyncCompletesOnSuccess() throws Exception {
+        BatchPoints batchPoints = BatchPoints.database("db").retentionPolicy("rp")
+            .point(Point.measurement("cpu").time(1, TimeUnit.NANOSECONDS).addField("idle", 1L).build()).build();
+        CompletableFuture<Void> future = this.influxDB.writeAsync(batchPoints);
+        Assertions.assertFalse(future.isDone());
+
+        ArgumentCaptor<RequestBody> body = ArgumentCaptor.forClass(RequestBody.class);
+        verify(this.influxDBService).writePoints(eq("db"), eq("rp"), eq("n"), eq("one"), body.capture());
+        Buffer buffer = new Buffer();
+        body.getValue().writeTo(buffer);
+        Assertions.assertEquals("cpu idle=1i 1\n", buffer.readUtf8());
+
+        callback().onResponse(this.call, Response.success(ResponseBody.create(null, "")));
+        Assertions.assertNull(future.get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testWriteAsyncMapsErrorResponse() throws Exception {
+        CompletableFuture<Void> future = this.influxDB.writeAsync("db", "rp", ConsistencyLevel.ALL,
+            TimeUnit.SECONDS, Arrays.asList("cpu idle=1i 1", "cpu idle=2i 2"));
+
+        callback().onResponse(this.call, Response.error(404, ResponseBody.create(MediaType.get("application/json"),
+            "{\"error\":\"database not found: \\\"db\\\"\"}")));
+        ExecutionException e = Assertions.assertThrows(ExecutionException.class, () -> future.get(1, TimeUnit.SECONDS));
+        Assertions.assertTrue(e.getCause() instanceof InfluxDBException.DatabaseNotFoundException);
+    }
+
+    @Test
+    public void testWriteAsyncMapsIOException() throws Exception {
+        CompletableFuture<Void> future = this.influxDB.writeAsync("db", "rp", ConsistencyLevel.ONE,
+            TimeUnit.NANOSECONDS, "cpu idle=1i 1");
+
+        callback().onFailure(this.call, new IOException("connection reset"));
+        ExecutionException e = Assertions.assertThrows(ExecutionException.class, () -> future.get(1, TimeUnit.SECONDS));
+        Assertions.assertTrue(e.getCause() instanceof InfluxDBIOException);
+    }
+
+    @Test
+    public void testOnlyWriteAsyncWritesToTheDatabaseOfTheClient() throws Exception {
+        when(this.call.execute()).thenReturn(Response.success(ResponseBody.create(null, "")));
+        this.influxDB.setDatabase("client");
+
+        this.influxDB.write(null, "rp", ConsistencyLevel.ONE, TimeUnit.NANOSECONDS, "cpu idle=1i 1");
+        verify(this.influxDBService).writePoints(isNull(), eq("rp"), eq("n"), eq("one"), any(RequestBody.class));
+
+        this.influxDB.writeAsync(null, "rp", ConsistencyLevel.ONE, TimeUnit.NANOSECONDS, "cpu idle=1i 1");
+        verify(this.influxDBService).writePoints(eq("client"), eq("rp"), eq("n"), eq("one"), any(RequestBody.class));
+    }
+
+    @Test
+    public void testCancelCancelsCall() {
+        CompletableFuture<Void> future = this.influxDB.writeAsync("db", "rp", ConsistencyLevel.ONE,
+            TimeUnit.NANOSECONDS, "cpu idle=1i 1");
+        future.cancel(false);
+        verify(this.call).cancel();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Callback<ResponseBody> callback() {
+        ArgumentCaptor<Callback<ResponseBody>> captor = ArgumentCaptor.forClass(Callback.class);
+        verify(this.call).enqueue(captor.capture());
+        return captor.getValue();
+    }
+}
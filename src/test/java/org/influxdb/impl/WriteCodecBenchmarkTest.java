@@ -0,0 +1,86 @@
+package org.influxdb.impl;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.TimeUnit;
+
+import org.influxdb.WriteCodec;
+import org.influxdb.dto.BatchPoints;
+import org.influxdb.dto.Point;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.platform.runner.JUnitPlatform;
+import org.junit.runner.RunWith;
+
+/**
+ * Compares the throughput per core of the write codecs on batches shaped like the metrics of a host agent.
+ * Every codec encodes the same batch, including the serialization of its line protocol, for a fixed budget of
+ * CPU time of the test thread, the results are printed.
+ */
+@RunWith(JUnitPlatform.class)
+public class WriteCodecBenchmarkTest {
+
+    private static final int HOSTS = 50;
+    private static final int INTERVALS = 20;
+    private static final long CPU_BUDGET_NANOS = TimeUnit.MILLISECONDS.toNanos(300);
+
+    private static BatchPoints metrics() {
+        BatchPoints.Builder builder = BatchPoints.database("telegraf").precision(TimeUnit.NANOSECONDS);
+        long start = 1_700_000_000_000_000_000L;
+        for (int interval = 0; interval < INTERVALS; interval++) {
+            long time = start + TimeUnit.SECONDS.toNanos(10) * interval;
+            for (int host = 0; host < HOSTS; host++) {
+                String name = "web-" + host + ".prod.example.com";
+                String region = "eu-west-" + (host % 3);
+                builder.point(Point.measurement("cpu").tag("host", name).tag("region", region).tag("cpu", "cpu-total")
+                    .addField("usage_idle", 92.4 + (host * 7 + interval) % 13 * 0.31)
+                    .addField("usage_user", 4.1 + (host + interval) % 7 * 0.17)
+                    .addField("usage_system", 2.2 + (host * 3 + interval) % 5 * 0.09)
+                    .addField("usage_iowait", 0.03 * (interval % 4))
+                    .time(time, TimeUnit.NANOSECONDS).build());
+                builder.point(Point.measurement("mem").tag("host", name).tag("region", region)
+                    .addField("used", 6_442_450_944L + host * 1_048_576L + interval * 4096L)
+                    .addField("available", 10_737_418_240L - host * 1_048_576L)
+                    .addField("used_percent", 37.5 + (host + interval) % 11 * 0.7)
+                    .time(time, TimeUnit.NANOSECONDS).build());
+                builder.point(Point.measurement("net").tag("host", name).tag("region", region).tag("interface", "eth0")
+                    .addField("bytes_recv", 982_374_123L + interval * 1_250_000L + host)
+                    .addField("bytes_sent", 473_829_001L + interval * 830_000L + host)
+                    .addField("err_in", 0L)
+                    .addField("err_out", 0L)
+                    .time(time, TimeUnit.NANOSECONDS).build());
+            }
+        }
+        return builder.build();
+    }
+
+    @Test
+    public void compareCodecThroughputPerCore() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        Assertions.assertTrue(threads.isCurrentThreadCpuTimeSupported());
+        BatchPoints batchPoints = metrics();
+        String lineProtocol = batchPoints.lineProtocol();
+        WriteCodec[] codecs = {WriteCodec.none(), WriteCodec.fast(), WriteCodec.gzip(), WriteCodec.gzip(9),
+            new DeflateCodec(1)};
+        for (WriteCodec codec : codecs) {
+            // warm up and check the round trip
+            EncodedBatch encoded = EncodedBatch.encode(batchPoints, codec);
+            Assertions.assertEquals(lineProtocol, encoded.getLineProtocol(), codec.toString());
+
+            long encodings = 0;
+            long cpuStart = threads.getCurrentThreadCpuTime();
+            long cpuTime;
+            do {
+                EncodedBatch.encode(batchPoints, codec);
+                encodings++;
+                cpuTime = threads.getCurrentThreadCpuTime() - cpuStart;
+            } while (cpuTime < CPU_BUDGET_NANOS);
+
+            double megabytesPerCpuSecond = (double) encoded.getLineProtocolSize() * encodings
+                / (1024 * 1024) / (cpuTime / 1e9);
+            double ratio = (double) encoded.getLineProtocolSize() / encoded.getBytes();
+            System.out.println(String.format("%-10s %8.1f MB/s per core, ratio %5.2f, %d bytes for %d points",
+                codec, megabytesPerCpuSecond, ratio, encoded.getBytes(), encoded.getPoints()));
+        }
+    }
+}
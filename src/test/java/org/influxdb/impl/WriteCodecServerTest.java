@@ -0,0 +1,151 @@
+package org.influxdb.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import org.influxdb.BatchOptions;
+import org.influxdb.InfluxDB;
+import org.influxdb.InfluxDBFactory;
+import org.influxdb.WriteCodec;
+import org.influxdb.dto.BatchPoints;
+import org.influxdb.dto.Point;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.platform.runner.JUnitPlatform;
+import org.junit.runner.RunWith;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import okio.Buffer;
+
+/**
+ * Test for the write codecs against a local server decoding the request bodies by their Content-Encoding.
+ */
+@RunWith(JUnitPlatform.class)
+public class WriteCodecServerTest {
+
+    private HttpServer server;
+    private final BlockingQueue<DecodedWrite> writes = new LinkedBlockingQueue<>();
+    private InfluxDB influxDB;
+
+    /**
+     * A write request as the server decoded it.
+     */
+    private static final class DecodedWrite {
+        private final String contentEncoding;
+        private final String lineProtocol;
+
+        DecodedWrite(final String contentEncoding, final String lineProtocol) {
+            this.contentEncoding = contentEncoding;
+            this.lineProtocol = lineProtocol;
+        }
+    }
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        this.server.createContext("/write", this::decode);
+        this.server.start();
+        this.influxDB = InfluxDBFactory.connect("http://127.0.0.1:" + this.server.getAddress().getPort());
+    }
+
+    @AfterEach
+    public void cleanup() {
+        this.influxDB.close();
+        this.server.stop(0);
+    }
+
+    private void decode(final HttpExchange exchange) throws IOException {
+        String contentEncoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+        byte[] body;
+        try (InputStream in = exchange.getRequestBody()) {
+            body = new Buffer().readFrom(in).readByteArray();
+        }
+        Buffer lineProtocol = new Buffer();
+        if (contentEncoding == null) {
+            lineProtocol.write(body);
+        } else if ("gzip".equals(contentEncoding)) {
+            lineProtocol.readFrom(new GZIPInputStream(new Buffer().write(body).inputStream()));
+        } else if (DeflateCodec.CONTENT_ENCODING.equals(contentEncoding)) {
+            lineProtocol.write(DeflateCodec.inflate(body));
+        } else {
+            exchange.sendResponseHeaders(415, -1);
+            exchange.close();
+            return;
+        }
+        this.writes.add(new DecodedWrite(contentEncoding, lineProtocol.readUtf8()));
+        exchange.sendResponseHeaders(204, -1);
+        exchange.close();
+    }
+
+    private static BatchPoints batch(final int count) {
+        BatchPoints.Builder builder = BatchPoints.database("db").precision(TimeUnit.SECONDS);
+        for (int i = 0; i < count; i++) {
+            builder.point(Point.measurement("cpu").tag("host", "server" + (i % 10)).tag("region", "eu-west")
+                .time(i, TimeUnit.SECONDS).addField("idle", 90.5 + i).addField("user", i).build());
+        }
+        return builder.build();
+    }
+
+    private DecodedWrite nextWrite() throws InterruptedException {
+        DecodedWrite write = this.writes.poll(10, TimeUnit.SECONDS);
+        Assertions.assertNotNull(write, "no write received");
+        return write;
+    }
+
+    @Test
+    public void everyCodecIsDecodedByTheServer() throws InterruptedException {
+        WriteCodec[] codecs = {WriteCodec.none(), WriteCodec.gzip(), WriteCodec.gzip(9), WriteCodec.fast(),
+            new DeflateCodec(6)};
+        for (WriteCodec codec : codecs) {
+            this.influxDB.setWriteCodec(codec);
+            BatchPoints batchPoints = batch(100);
+
+            this.influxDB.write(batchPoints);
+
+            DecodedWrite write = nextWrite();
+            Assertions.assertEquals(codec.getContentEncoding(), write.contentEncoding, codec.toString());
+            Assertions.assertEquals(batchPoints.lineProtocol(), write.lineProtocol, codec.toString());
+        }
+    }
+
+    @Test
+    public void gzipIsAWriteCodec() {
+        Assertions.assertSame(WriteCodec.none(), this.influxDB.getWriteCodec());
+        this.influxDB.enableGzip();
+        Assertions.assertTrue(this.influxDB.isGzipEnabled());
+        Assertions.assertEquals("gzip", this.influxDB.getWriteCodec().getContentEncoding());
+        this.influxDB.setWriteCodec(new DeflateCodec(1));
+        Assertions.assertFalse(this.influxDB.isGzipEnabled());
+        this.influxDB.setWriteCodec(WriteCodec.fast());
+        Assertions.assertTrue(this.influxDB.isGzipEnabled());
+        this.influxDB.disableGzip();
+        Assertions.assertSame(WriteCodec.none(), this.influxDB.getWriteCodec());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> WriteCodec.gzip(10));
+    }
+
+    @Test
+    public void batchesAreCompressedWithTheCodecBeforeTheirWrite() throws InterruptedException {
+        this.influxDB.setWriteCodec(new DeflateCodec(1));
+        this.influxDB.enableBatch(BatchOptions.DEFAULTS.actions(50).flushDuration(100).bufferLimit(500)
+            .precision(TimeUnit.SECONDS));
+        BatchPoints batchPoints = batch(50);
+
+        for (Point point : batchPoints.getPoints()) {
+            this.influxDB.write("db", null, point);
+        }
+
+        DecodedWrite write = nextWrite();
+        Assertions.assertEquals(DeflateCodec.CONTENT_ENCODING, write.contentEncoding);
+        Assertions.assertEquals(batchPoints.lineProtocol(), write.lineProtocol);
+    }
+}
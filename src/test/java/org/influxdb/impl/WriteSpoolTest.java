@@ -0,0 +1,278 @@
+package org.influxdb.impl;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.influxdb.InfluxDB.ConsistencyLevel;
+import org.influxdb.InfluxDBException;
+import org.influxdb.SpoolDepth;
+import org.influxdb.WriteCodec;
+import org.influxdb.dto.BatchPoints;
+import org.influxdb.dto.Point;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.platform.runner.JUnitPlatform;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+
+/**
+ * Test for the spool of failed batches.
+ */
+@RunWith(JUnitPlatform.class)
+public class WriteSpoolTest {
+
+    private static final int SEGMENT_BYTES = 256;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testAppendAndRemoveInOrder() throws IOException {
+        List<SpoolDepth> depths = new ArrayList<>();
+        try (WriteSpool spool = new WriteSpool(this.directory, 1 << 20, SEGMENT_BYTES, depths::add)) {
+            Assertions.assertTrue(spool.isEmpty());
+            for (int i = 0; i < 10; i++) {
+                Assertions.assertTrue(spool.append(batch("rp", i, 2)));
+            }
+            Assertions.assertEquals(10, spool.depth().getBatches());
+            Assertions.assertEquals(20, spool.depth().getPoints());
+            Assertions.assertTrue(segments().size() > 1);
+
+            for (int i = 0; i < 10; i++) {
+                EncodedBatch spooled = spool.peek();
+                Assertions.assertEquals("db", spooled.getDatabase());
+                Assertions.assertEquals("rp", spooled.getRetentionPolicy());
+                Assertions.assertEquals(ConsistencyLevel.QUORUM, spooled.getConsistency());
+                Assertions.assertEquals(TimeUnit.SECONDS, spooled.getPrecision());
+                Assertions.assertEquals(2, spooled.getPoints());
+                Assertions.assertEquals("cpu value=" + i + "i " + i + "\ncpu value=" + i + "i " + (i + 1) + "\n",
+                    spooled.getLineProtocol());
+                spool.remove();
+            }
+            Assertions.assertTrue(spool.isEmpty());
+            Assertions.assertNull(spool.peek());
+            Assertions.assertEquals(0, spool.depth().getBytes());
+            Assertions.assertTrue(segments().isEmpty());
+        }
+        // the initial depth, ten appends and ten removals
+        Assertions.assertEquals(21, depths.size());
+        Assertions.assertEquals(10, depths.get(10).getBatches());
+    }
+
+    @Test
+    public void testCompressedBatchesAreSpooledAsTheyAre() throws IOException {
+        BatchPoints first = batch("rp", 0, 3);
+        BatchPoints second = batch("rp", 3, 2);
+        EncodedBatch batch = EncodedBatch.encode(first, WriteCodec.gzip());
+        batch.mergeIn(EncodedBatch.encode(second, WriteCodec.gzip()));
+        try (WriteSpool spool = new WriteSpool(this.directory, 1 << 20, SEGMENT_BYTES, depth -> { })) {
+            Assertions.assertTrue(spool.append(batch));
+        }
+        try (WriteSpool spool = new WriteSpool(this.directory, 1 << 20, SEGMENT_BYTES, depth -> { })) {
+            EncodedBatch spooled = spool.peek();
+            Assertions.assertEquals("gzip", spooled.getContentEncoding());
+            Assertions.assertEquals(5, spooled.getPoints());
+            Assertions.assertArrayEquals(batch.getPayload(), spooled.getPayload());
+            Assertions.assertEquals(batch.getLineProtocolSize(), spooled.getLineProtocolSize());
+            Assertions.assertEquals(first.lineProtocol() + second.lineProtocol(), spooled.getLineProtocol());
+        }
+    }
+
+    @Test
+    public void testBatchesOfTheClientCodecAreSpooledAsTheyAre() throws IOException {
+        BatchPoints first = batch("rp", 0, 3);
+        EncodedBatch batch = EncodedBatch.encode(first, new DeflateCodec(1));
+        try (WriteSpool spool = new WriteSpool(this.directory, 1 << 20, SEGMENT_BYTES, depth -> { },
+                                               () -> new DeflateCodec(1))) {
+            Assertions.assertTrue(spool.append(batch));
+        }
+        try (WriteSpool spool = new WriteSpool(this.directory, 1 << 20, SEGMENT_BYTES, depth -> { },
+                                               () -> new DeflateCodec(9))) {
+            EncodedBatch spooled = spool.peek();
+            Assertions.assertEquals(DeflateCodec.CONTENT_ENCODING, spooled.getContentEncoding());
+            Assertions.assertArrayEquals(batch.getPayload(), spooled.getPayload());
+            Assertions.assertEquals(first.lineProtocol(), spooled.getLineProtocol());
+        }
+    }
+
+    @Test
+    public void testBatchesOfAnUnknownEncodingFailTheRecovery() throws IOException {
+        EncodedBatch batch = EncodedBatch.encode(batch("rp", 0, 3), new DeflateCodec(1));
+        try (WriteSpool spool = new WriteSpool(this.directory, 1 << 20, SEGMENT_BYTES, depth -> { })) {
+            // not spooled, it could not be decoded after a restart
+            Assertions.assertThrows(IOException.class, () -> spool.append(batch));
+        }
+        try (WriteSpool spool = new WriteSpool(this.directory, 1 << 20, SEGMENT_BYTES, depth -> { },
+                                               () -> new DeflateCodec(1))) {
+            Assertions.assertTrue(spool.append(batch));
+        }
+        IOException e = Assertions.assertThrows(IOException.class,
+            () -> new WriteSpool(this.directory, 1 << 20, SEGMENT_BYTES, depth -> { }, WriteCodec::gzip));
+        Assertions.assertTrue(e.getMessage().contains(DeflateCodec.CONTENT_ENCODING));
+    }
+
+    @Test
+    public void testRecoverAfterReopen() throws IOException {
+        try (WriteSpool spool = new WriteSpool(this.directory, 1 << 20, SEGMENT_BYTES, depth -> { })) {
+            for (int i = 0; i < 6; i++) {
+                spool.append(batch(null, i, 1));
+            }
+            spool.remove();
+            spool.remove();
+        }
+        try (WriteSpool spool = new WriteSpool(this.directory, 1 << 20, SEGMENT_BYTES, depth -> { })) {
+            Assertions.assertEquals(4, spool.depth().getBatches());
+            Assertions.assertEquals(4, spool.depth().getPoints());
+            spool.append(batch(null, 6, 1));
+            for (int i = 2; i <= 6; i++) {
+                EncodedBatch spooled = spool.peek();
+                Assertions.assertNull(spooled.getRetentionPolicy());
+                Assertions.assertEquals("cpu value=" + i + "i " + i + "\n", spooled.getLineProtocol());
+                spool.remove();
+            }
+            Assertions.assertTrue(spool.isEmpty());
+        }
+    }
+
+    @Test
+    public void testDiskUsageIsBounded() throws IOException {
+        try (WriteSpool spool = new WriteSpool(this.directory, 2 * SEGMENT_BYTES, SEGMENT_BYTES, depth -> { })) {
+            int appended = 0;
+            while (spool.append(batch("rp", appended, 4))) {
+                appended++;
+            }
+            Assertions.assertTrue(appended > 0);
+            Assertions.assertEquals(appended, spool.depth().getBatches());
+            Assertions.assertEquals(2, segments().size());
+            Assertions.assertTrue(segments().stream().mapToLong(WriteSpoolTest::size).sum() <= 2 * SEGMENT_BYTES);
+        }
+    }
+
+    @Test
+    public void testDamagedRecordStopsRecovery() throws IOException {
+        try (WriteSpool spool = new WriteSpool(this.directory, 1 << 20, 1 << 12, depth -> { })) {
+            for (int i = 0; i < 3; i++) {
+                spool.append(batch("rp", i, 1));
+            }
+        }
+        Path segment = segments().get(0);
+        // flip the last byte of the line protocol of the last record
+        int position;
+        try (WriteSpool spool = new WriteSpool(this.directory, 1 << 20, 1 << 12, depth -> { })) {
+            position = (int) spool.depth().getBytes() - 2;
+        }
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] {'X'}), position);
+        }
+        try (WriteSpool spool = new WriteSpool(this.directory, 1 << 20, 1 << 12, depth -> { })) {
+            Assertions.assertEquals(2, spool.depth().getBatches());
+        }
+    }
+
+    @Test
+    public void testClaimedBatchIsNotClaimedAgain() throws IOException {
+        WriteSpool spool = new WriteSpool(this.directory, 1 << 20, SEGMENT_BYTES, depth -> { });
+        WriteSpool shared = spool.share();
+        spool.append(batch("rp", 0, 1));
+        spool.append(batch("rp", 1, 1));
+
+        EncodedBatch claimed = spool.claim();
+        Assertions.assertNotNull(claimed);
+        // neither the claimed batch nor a younger one is written by another worker
+        Assertions.assertNull(shared.claim());
+        spool.remove();
+        EncodedBatch next = shared.claim();
+        Assertions.assertEquals(batch("rp", 1, 1).lineProtocol(), next.getLineProtocol());
+
+        // the segments stay open until every worker closed the spool
+        spool.close();
+        Assertions.assertEquals(1, shared.depth().getBatches());
+        Assertions.assertNotNull(shared.peek());
+        shared.close();
+        try (WriteSpool reopened = new WriteSpool(this.directory, 1 << 20, SEGMENT_BYTES, depth -> { })) {
+            Assertions.assertEquals(1, reopened.depth().getBatches());
+        }
+    }
+
+    @Test
+    public void testRetryCapableBatchWriterReplaysSpoolInOrder() throws IOException {
+        InfluxDBImpl influxDB = mock(InfluxDBImpl.class);
+        @SuppressWarnings("unchecked")
+        BiConsumer<Iterable<Point>, Throwable> errorHandler = mock(BiConsumer.class);
+        WriteSpool spool = new WriteSpool(this.directory, 1 << 20, SEGMENT_BYTES, depth -> { });
+        RetryCapableBatchWriter writer = new RetryCapableBatchWriter(influxDB, errorHandler, 2, 2, spool);
+        BatchPoints first = batch("rp", 0, 2);
+        BatchPoints second = batch("rp", 1, 2);
+        BatchPoints third = batch("rp", 2, 2);
+        String firstLines = first.lineProtocol();
+        String secondLines = second.lineProtocol();
+        InfluxDBException recoverable = InfluxDBException.buildExceptionForErrorState(
+            "{ \"error\": \"cache-max-memory-size exceeded 104/1400\" }");
+        doThrow(recoverable).when(influxDB).write(first);
+        doThrow(recoverable).when(influxDB).write(second);
+        doThrow(recoverable).when(influxDB).write(any(EncodedBatch.class));
+
+        writer.write(Collections.singletonList(first));
+        // overflows the retry buffer, the first batch goes to the spool
+        writer.write(Collections.singletonList(second));
+        Assertions.assertEquals(1, spool.depth().getBatches());
+
+        reset(influxDB);
+        writer.write(Collections.singletonList(third));
+        Assertions.assertTrue(spool.isEmpty());
+        InOrder order = inOrder(influxDB);
+        ArgumentCaptor<EncodedBatch> retried = ArgumentCaptor.forClass(EncodedBatch.class);
+        order.verify(influxDB, times(2)).write(retried.capture());
+        order.verify(influxDB).write(third);
+        Assertions.assertEquals(firstLines, retried.getAllValues().get(0).getLineProtocol());
+        Assertions.assertEquals(ConsistencyLevel.QUORUM, retried.getAllValues().get(0).getConsistency());
+        Assertions.assertEquals(TimeUnit.SECONDS, retried.getAllValues().get(0).getPrecision());
+        Assertions.assertEquals(secondLines, retried.getAllValues().get(1).getLineProtocol());
+        writer.close();
+        verifyNoInteractions(errorHandler);
+    }
+
+    private static BatchPoints batch(final String retentionPolicy, final int value, final int points) {
+        BatchPoints.Builder builder = BatchPoints.database("db").retentionPolicy(retentionPolicy)
+            .consistency(ConsistencyLevel.QUORUM).precision(TimeUnit.SECONDS);
+        for (int i = 0; i < points; i++) {
+            builder.point(Point.measurement("cpu").time(value + i, TimeUnit.SECONDS).addField("value", value).build());
+        }
+        return builder.build();
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(this.directory)) {
+            return files.sorted().collect(Collectors.toList());
+        }
+    }
+
+    private static long size(final Path path) {
+        try {
+            return Files.size(path);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package org.influxdb.impl;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.influxdb.BatchOptions;
+import org.influxdb.InfluxDBFactory;
+import org.influxdb.dto.BatchPoints;
+import org.influxdb.dto.Point;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.platform.runner.JUnitPlatform;
+import org.junit.runner.RunWith;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import retrofit2.Retrofit;
+
+/**
+ * Test for the transport of writes configured by the {@link BatchOptions}, with HTTP/2 against a local stub.
+ */
+@RunWith(JUnitPlatform.class)
+public class WriteTransportTest {
+
+    private static BatchPoints batch(final String database, final int count) {
+        BatchPoints.Builder builder = BatchPoints.database(database).precision(TimeUnit.SECONDS);
+        for (int i = 0; i < count; i++) {
+            builder.point(Point.measurement("cpu").tag("host", "server" + (i % 10)).time(i, TimeUnit.SECONDS)
+                .addField("idle", 90.5 + i).build());
+        }
+        return builder.build();
+    }
+
+    private static void awaitRequests(final Http2StubServer server, final int requests) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (server.getRequests() < requests && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assertions.assertEquals(requests, server.getRequests());
+    }
+
+    @Test
+    public void transportIsDerivedFromTheOptions() {
+        OkHttpClient client = new OkHttpClient();
+        Retrofit retrofit = new Retrofit.Builder().baseUrl("http://localhost:8086").build();
+        Assertions.assertNull(WriteTransport.of(client, retrofit, BatchOptions.DEFAULTS));
+
+        WriteTransport http2 = WriteTransport.of(client, retrofit, BatchOptions.DEFAULTS.http2PriorKnowledge(true));
+        Assertions.assertEquals(Collections.singletonList(Protocol.H2_PRIOR_KNOWLEDGE),
+            http2.getClient().protocols());
+        Assertions.assertEquals(64, http2.getClient().dispatcher().getMaxRequestsPerHost());
+        http2.close();
+
+        WriteTransport sized = WriteTransport.of(client, retrofit, BatchOptions.DEFAULTS.maxRequests(16));
+        Assertions.assertEquals(client.protocols(), sized.getClient().protocols());
+        Assertions.assertEquals(16, sized.getClient().dispatcher().getMaxRequests());
+        Assertions.assertEquals(16, sized.getClient().dispatcher().getMaxRequestsPerHost());
+        Assertions.assertNotSame(client.connectionPool(), sized.getClient().connectionPool());
+        sized.close();
+    }
+
+    @Test
+    public void invalidOptionsAreRejected() {
+        OkHttpClient client = new OkHttpClient();
+        Retrofit https = new Retrofit.Builder().baseUrl("https://localhost:8086").build();
+        Assertions.assertThrows(IllegalArgumentException.class,
+            () -> WriteTransport.of(client, https, BatchOptions.DEFAULTS.http2PriorKnowledge(true)));
+        Assertions.assertThrows(IllegalArgumentException.class,
+            () -> WriteTransport.of(client, https, BatchOptions.DEFAULTS.maxRequests(-1)));
+        Assertions.assertThrows(IllegalArgumentException.class,
+            () -> WriteTransport.of(client, https, BatchOptions.DEFAULTS.maxIdleConnections(-1)));
+    }
+
+    @Test
+    public void transportIsNotKeptWhenTheBatchOptionsAreRejected() {
+        InfluxDBImpl influxDB = (InfluxDBImpl) InfluxDBFactory.connect("http://localhost:8086");
+        try {
+            Assertions.assertThrows(IllegalArgumentException.class,
+                () -> influxDB.enableBatch(BatchOptions.DEFAULTS.maxRequests(16).actions(0)));
+            Assertions.assertNull(influxDB.getWriteTransport());
+            Assertions.assertFalse(influxDB.isBatchEnabled());
+        } finally {
+            influxDB.close();
+        }
+    }
+
+    @Test
+    public void flushWorkersShareOneHttp2Connection() throws IOException, InterruptedException {
+        try (Http2StubServer server = new Http2StubServer(200, TimeUnit.MILLISECONDS)) {
+            InfluxDBImpl influxDB = (InfluxDBImpl) InfluxDBFactory.connect(server.url());
+            try {
+                influxDB.enableBatch(BatchOptions.DEFAULTS.http2PriorKnowledge(true).flushConcurrency(4)
+                    .actions(1000).flushDuration(10000).precision(TimeUnit.SECONDS));
+                Assertions.assertNotNull(influxDB.getWriteTransport());
+                List<String> lineProtocols = new ArrayList<>();
+                for (int db = 0; db < 4; db++) {
+                    BatchPoints batchPoints = batch("db" + db, 10);
+                    lineProtocols.add(batchPoints.lineProtocol());
+                    for (Point point : batchPoints.getPoints()) {
+                        influxDB.write("db" + db, null, point);
+                    }
+                }
+
+                influxDB.flush();
+
+                awaitRequests(server, 4);
+                Assertions.assertEquals(1, server.getConnections());
+                Assertions.assertTrue(server.getMaxOpenStreams() > 1, "batches were not written concurrently");
+                Assertions.assertTrue(server.getBodies().containsAll(lineProtocols));
+                influxDB.disableBatch();
+                Assertions.assertNull(influxDB.getWriteTransport());
+            } finally {
+                influxDB.close();
+            }
+        }
+    }
+
+    @Test
+    public void measureAsyncWriteThroughputOverOneConnection() throws IOException {
+        int writes = 200;
+        int maxRequests = 16;
+        try (Http2StubServer server = new Http2StubServer(20, TimeUnit.MILLISECONDS)) {
+            InfluxDBImpl influxDB = (InfluxDBImpl) InfluxDBFactory.connect(server.url());
+            try {
+                influxDB.enableBatch(BatchOptions.DEFAULTS.http2PriorKnowledge(true).maxRequests(maxRequests));
+                BatchPoints batchPoints = batch("db", 100);
+                List<CompletableFuture<Void>> futures = new ArrayList<>();
+                long start = System.nanoTime();
+                for (int i = 0; i < writes; i++) {
+                    futures.add(influxDB.writeAsync(batchPoints));
+                }
+                CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+                double seconds = (System.nanoTime() - start) / 1e9;
+
+                System.out.println(String.format("%d writes over %d connection, %d concurrent streams: "
+                        + "%.0f requests/s, %.1f MB/s", writes, server.getConnections(), server.getMaxOpenStreams(),
+                    writes / seconds, server.getBodyBytes() / seconds / (1024 * 1024)));
+                Assertions.assertEquals(writes, server.getRequests());
+                Assertions.assertEquals(1, server.getConnections());
+                Assertions.assertTrue(server.getMaxOpenStreams() > 1);
+                Assertions.assertTrue(server.getMaxOpenStreams() <= maxRequests);
+                Assertions.assertTrue(server.getPaths().get(0).startsWith("/write?"));
+            } finally {
+                influxDB.close();
+            }
+        }
+    }
+}